@@ -0,0 +1,107 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs;
+
+import java.io.Serializable;
+
+/**
+ * A row of the transitive closure of concept set membership: the descendant concept is a member of
+ * the ancestor concept set, or of one of its subsets. The depth is the length of the shortest path
+ * between them, 1 for the direct members of a set. <br/>
+ * <br/>
+ * The closure is maintained when concepts are saved, so HQL queries can use it to match all the
+ * concepts in a set and its subsets, e.g.
+ * 
+ * <pre>
+ * from Obs o where o.concept.conceptId in
+ *     (select c.descendantId from ConceptSetClosure c where c.ancestorId = :setId)
+ * </pre>
+ * 
+ * @since 1.10
+ */
+public class ConceptSetClosure implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private Integer ancestorId;
+	
+	private Integer descendantId;
+	
+	private Integer depth;
+	
+	/**
+	 * @return the id of the concept set
+	 */
+	public Integer getAncestorId() {
+		return ancestorId;
+	}
+	
+	/**
+	 * @param ancestorId the id of the concept set
+	 */
+	public void setAncestorId(Integer ancestorId) {
+		this.ancestorId = ancestorId;
+	}
+	
+	/**
+	 * @return the id of the concept in the set or one of its subsets
+	 */
+	public Integer getDescendantId() {
+		return descendantId;
+	}
+	
+	/**
+	 * @param descendantId the id of the concept in the set or one of its subsets
+	 */
+	public void setDescendantId(Integer descendantId) {
+		this.descendantId = descendantId;
+	}
+	
+	/**
+	 * @return the length of the shortest path from the set to the concept
+	 */
+	public Integer getDepth() {
+		return depth;
+	}
+	
+	/**
+	 * @param depth the length of the shortest path from the set to the concept
+	 */
+	public void setDepth(Integer depth) {
+		this.depth = depth;
+	}
+	
+	/**
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ConceptSetClosure))
+			return false;
+		ConceptSetClosure other = (ConceptSetClosure) obj;
+		return ancestorId != null && ancestorId.equals(other.ancestorId) && descendantId != null
+		        && descendantId.equals(other.descendantId);
+	}
+	
+	/**
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		int hash = ancestorId == null ? 0 : ancestorId.hashCode();
+		return 31 * hash + (descendantId == null ? 0 : descendantId.hashCode());
+	}
+}
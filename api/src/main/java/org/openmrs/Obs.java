@@ -36,6 +36,7 @@ import org.openmrs.api.handler.OpenmrsObjectSaveHandler;
 import org.openmrs.api.handler.SaveHandler;
 import org.openmrs.obs.ComplexData;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.handler.AbstractHandler;
 import org.openmrs.util.Format;
 import org.openmrs.util.Format.FORMAT_TYPE;
 
@@ -133,6 +134,14 @@ public class Obs extends BaseOpenmrsData implements java.io.Serializable {
 	 */
 	private String formNamespaceAndPath;
 	
+	/**
+	 * The part of the value complex after the "|", stored in its own indexed column so that the obs
+	 * that refer to a file can be found with an exact match
+	 * 
+	 * @since 1.10
+	 */
+	private String complexDataLocation;
+	
 	/** default constructor */
 	public Obs() {
 	}
@@ -860,6 +869,7 @@ public class Obs extends BaseOpenmrsData implements java.io.Serializable {
 	 */
 	public void setValueComplex(String valueComplex) {
 		this.valueComplex = valueComplex;
+		this.complexDataLocation = valueComplex == null ? null : AbstractHandler.getComplexDataLocation(valueComplex);
 	}
 	
 	/**
@@ -701,13 +701,16 @@ public interface AdministrationService extends OpenmrsService {
 	 * @param aClass class of object getting length for
 	 * @param fieldName name of the field to get the length for
 	 * @return the max field length of a property
+	 * @should return the length of the column of the property
+	 * @should fail for a class that is not mapped
 	 */
 	public int getMaximumPropertyLength(Class<? extends OpenmrsObject> aClass, String fieldName);
 	
 	/**
 	 * Performs validation in the manual flush mode to prevent any premature flushes.
 	 * <p>
-	 * Used by {@link ValidateUtil#validate(Object)}.
+	 * Used by {@link ValidateUtil#validate(Object)}. The time spent in each validator is recorded in
+	 * {@link org.openmrs.validator.ValidatorStatistics}.
 	 * 
 	 * @since 1.9
 	 * @param object
@@ -715,6 +718,7 @@ public interface AdministrationService extends OpenmrsService {
 	 * @should pass for a valid object
 	 * @should fail for an invalid object
 	 * @should throw throw APIException if the input is null
+	 * @should record the time spent in the validators
 	 */
 	public void validate(Object object, Errors errors) throws APIException;
 	
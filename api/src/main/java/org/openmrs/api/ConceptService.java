@@ -793,11 +793,14 @@ public interface ConceptService extends OpenmrsService {
 	public List<Concept> getConceptsInSet(Concept concept) throws APIException;
 	
 	/**
-	 * Return a List of all concepts within a concept set
+	 * Return a List of all concepts within a concept set and its subsets, in the order of their
+	 * sort weights. The set members are read with one query on the concept set closure.
 	 * 
 	 * @param concept The concept representing the concept set
 	 * @return A List<Concept> object containing all objects within the ConceptSet
 	 * @throws APIException
+	 * @should return all concepts in set and subsets
+	 * @should return members added to a subset after the set was saved
 	 */
 	@Authorized(PrivilegeConstants.VIEW_CONCEPTS)
 	public List<Concept> getConceptsByConceptSet(Concept concept) throws APIException;
@@ -1198,6 +1201,27 @@ public interface ConceptService extends OpenmrsService {
 	@Authorized(PrivilegeConstants.VIEW_CONCEPTS)
 	public Iterator<Concept> conceptIterator();
 	
+	/**
+	 * Gets one page of concepts ordered by concept id, e.g. to export the whole dictionary. A page
+	 * starts after the last concept of the previous page rather than at an offset, so every page is
+	 * read equally fast. The names, descriptions, answers and set members of the concepts on the
+	 * page are fetched with one query each for the whole page instead of one query per concept.
+	 * 
+	 * @param after the last concept of the previous page, null for the first page
+	 * @param pageSize the maximum number of concepts to return, a shorter page is the last one
+	 * @param includeRetired true/false whether to also include the retired concepts
+	 * @return the page of concepts
+	 * @throws APIException
+	 * @since 1.10
+	 * @should return the concepts after the given concept ordered by concept id
+	 * @should return every concept exactly once when paging through all pages
+	 * @should not return retired concepts if includeRetired is false
+	 * @should fetch the names and descriptions of the concepts
+	 * @should fail if pageSize is not positive
+	 */
+	@Authorized(PrivilegeConstants.VIEW_CONCEPTS)
+	public List<Concept> getConceptPage(Concept after, int pageSize, boolean includeRetired) throws APIException;
+	
 	/**
 	 * Looks up a concept via {@link ConceptMap} This will return the {@link Concept} which contains
 	 * a {@link ConceptMap} entry whose <code>sourceCode</code> is equal to the passed
@@ -1934,4 +1958,15 @@ public interface ConceptService extends OpenmrsService {
 	 */
 	@Authorized(PrivilegeConstants.VIEW_CONCEPT_MAP_TYPES)
 	public ConceptMapType getDefaultConceptMapType() throws APIException;
+	
+	/**
+	 * Rebuilds the closure of concept set membership that {@link #getConceptsByConceptSet(Concept)}
+	 * uses. It is kept up to date when concepts are saved, so this is only needed after concept
+	 * sets were changed without the API, e.g. with SQL.
+	 * 
+	 * @throws APIException
+	 * @since 1.10
+	 */
+	@Authorized( { PrivilegeConstants.MANAGE_CONCEPTS })
+	public void updateConceptSetClosure() throws APIException;
 }
@@ -367,6 +367,22 @@ public interface LocationService extends OpenmrsService {
 	@Authorized( { PrivilegeConstants.GET_LOCATIONS })
 	public List<Location> getRootLocations(boolean includeRetired);
 	
+	/**
+	 * Returns the descendants of a location, i.e. its child locations, their child locations and so
+	 * on, optionally including retired ones.
+	 * 
+	 * @param location the location to get the descendants of
+	 * @param includeRetired whether to include retired locations
+	 * @return the descendant locations ordered by name, not including the location itself
+	 * @should return all descendants of the location
+	 * @should not return retired descendants if includeRetired is false
+	 * @should return new descendants after a location is saved
+	 * @should not return descendants after they are purged
+	 * @since 1.10
+	 */
+	@Authorized( { PrivilegeConstants.GET_LOCATIONS })
+	public List<Location> getDescendantLocations(Location location, boolean includeRetired);
+	
 	/**
 	 * Given an Address object, returns all the possible values for the specified AddressField. This
 	 * method is not implemented in core, but is meant to overridden by implementing modules such as
@@ -14,6 +14,7 @@
 package org.openmrs.api;
 
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,6 +30,8 @@ import org.openmrs.Person;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.db.ObsDAO;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.ObsRow;
+import org.openmrs.obs.ObsValues;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
 import org.openmrs.util.PrivilegeConstants;
@@ -165,6 +168,7 @@ public interface ObsService extends OpenmrsService {
 	 * @throws APIException
 	 * @should create new file from complex data for new obs
 	 * @should not overwrite file when updating a complex obs
+	 * @should store complex data in the sharded layout if it is configured
 	 * @should void the given obs in the database
 	 * @should create very basic obs and add new obsId
 	 * @should allow changing of every property on obs
@@ -443,6 +447,86 @@ public interface ObsService extends OpenmrsService {
 	        List<Concept> answers, List<PERSON_TYPE> personTypes, List<Location> locations, Integer obsGroupId,
 	        Date fromDate, Date toDate, boolean includeVoidedObs) throws APIException;
 	
+	/**
+	 * Gets one page of the observations matching the given criteria, ordered from the most recent
+	 * to the oldest by obsDatetime and then obsId. A page starts after the last obs of the
+	 * previous page rather than at an offset, so every page is read equally fast however deep it is
+	 * into a large obs history, and obs saved while paging do not shift the pages. All criteria are
+	 * optional and "and"ed together like in
+	 * {@link #getObservations(List, List, List, List, List, List, List, Integer, Integer, Date, Date, boolean)}
+	 * 
+	 * @param whom List<Person> to restrict obs to (optional)
+	 * @param encounters List<Encounter> to restrict obs to (optional)
+	 * @param questions List<Concept> to restrict the obs to (optional)
+	 * @param locations The org.openmrs.Location objects to restrict to (optional)
+	 * @param fromDate the earliest Obs date to get (optional)
+	 * @param toDate the latest Obs date to get (optional)
+	 * @param includeVoidedObs true/false whether to also include the voided obs (required)
+	 * @param after the last obs of the previous page, null for the first page
+	 * @param pageSize the maximum number of obs to return, a shorter page is the last one
+	 * @return the page of observations
+	 * @throws APIException
+	 * @since 1.10
+	 * @should return the most recent obs first
+	 * @should return the obs after the given obs
+	 * @should return every obs exactly once when paging through all pages
+	 * @should fail if pageSize is not positive
+	 */
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public List<Obs> getObservationPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, boolean includeVoidedObs, Obs after, int pageSize)
+	        throws APIException;
+	
+	/**
+	 * Like {@link #getObservationPage(List, List, List, List, Date, Date, boolean, Obs, int)} but
+	 * only reads the ids and values of the observations into {@link ObsRow}s, without loading the
+	 * obs, concepts, encounters and people themselves.
+	 * 
+	 * @param whom List<Person> to restrict obs to (optional)
+	 * @param encounters List<Encounter> to restrict obs to (optional)
+	 * @param questions List<Concept> to restrict the obs to (optional)
+	 * @param locations The org.openmrs.Location objects to restrict to (optional)
+	 * @param fromDate the earliest Obs date to get (optional)
+	 * @param toDate the latest Obs date to get (optional)
+	 * @param includeVoidedObs true/false whether to also include the voided obs (required)
+	 * @param after the last row of the previous page, null for the first page
+	 * @param pageSize the maximum number of rows to return, a shorter page is the last one
+	 * @return the page of rows
+	 * @throws APIException
+	 * @since 1.10
+	 * @should return the same obs as getObservationPage
+	 * @should return the values of the obs
+	 */
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public List<ObsRow> getObservationRowPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, boolean includeVoidedObs, ObsRow after, int pageSize)
+	        throws APIException;
+	
+	/**
+	 * Iterates over all observations matching the given criteria, from the most recent to the
+	 * oldest, reading them one page at a time with
+	 * {@link #getObservationPage(List, List, List, List, Date, Date, boolean, Obs, int)}. The
+	 * observations of a page are evicted from the session when the next page is read, so they
+	 * should not be used to navigate to other objects after moving past them.
+	 * 
+	 * @param whom List<Person> to restrict obs to (optional)
+	 * @param encounters List<Encounter> to restrict obs to (optional)
+	 * @param questions List<Concept> to restrict the obs to (optional)
+	 * @param locations The org.openmrs.Location objects to restrict to (optional)
+	 * @param fromDate the earliest Obs date to get (optional)
+	 * @param toDate the latest Obs date to get (optional)
+	 * @param includeVoidedObs true/false whether to also include the voided obs (required)
+	 * @param pageSize the number of obs to read at a time
+	 * @return an iterator over the observations
+	 * @throws APIException
+	 * @since 1.10
+	 * @should iterate over all matching obs in the order of the pages
+	 */
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public Iterator<Obs> getObservationIterator(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, boolean includeVoidedObs, int pageSize)
+	        throws APIException;
+	
 	/**
 	 * This method searches the obs table based on the given <code>searchString</code>.
 	 * 
@@ -487,6 +571,23 @@ public interface ObsService extends OpenmrsService {
 	@Authorized(PrivilegeConstants.VIEW_OBS)
 	public List<Obs> getObservationsByPersonAndConcept(Person who, Concept question) throws APIException;
 	
+	/**
+	 * Gets the values of the non voided observations of a person for the given question concepts,
+	 * from the most recent to the oldest. Only the concept, obs datetime, numeric value and coded
+	 * value are read, into primitive arrays, without loading the observations themselves. This is
+	 * meant for graphs and flowsheets that show many values of a few concepts.
+	 * 
+	 * @param who the person to get the values for (required)
+	 * @param questions the question concepts to get the values of (required)
+	 * @return the values of the observations, empty if there are none
+	 * @throws APIException
+	 * @since 1.10
+	 * @should return the values of the obs of the person for the given concepts most recent first
+	 * @should return empty values if no concepts are given
+	 */
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public ObsValues getObservationValues(Person who, List<Concept> questions) throws APIException;
+	
 	/**
 	 * @deprecated use
 	 *             {@link #getObservations(List, List, List, List, List, List, List, Integer, Integer, Date, Date, boolean)}
@@ -595,10 +696,60 @@ public interface ObsService extends OpenmrsService {
 	 * @should fill in complex data object for complex obs
 	 * @should return normal obs for non complex obs
 	 * @should not fail with null view
+	 * @should return the file of the complex data for the file view
 	 */
 	@Authorized( { PrivilegeConstants.VIEW_OBS })
 	public Obs getComplexObs(Integer obsId, String view) throws APIException;
 	
+	/**
+	 * Gets a page of the obs with complex data, including voided ones, in the order of their ids.
+	 * This is meant for tasks that go through the files of all complex obs.
+	 * 
+	 * @param after the last obs of the previous page, null for the first page
+	 * @param pageSize the maximum number of obs to return
+	 * @return the obs with complex data after the given obs
+	 * @throws APIException
+	 * @since 1.10
+	 * @should return the complex obs after the given obs
+	 */
+	@Authorized( { PrivilegeConstants.VIEW_OBS })
+	public List<Obs> getComplexObservationPage(Obs after, int pageSize) throws APIException;
+	
+	/**
+	 * Counts the obs, including voided ones, whose complex data is stored at the given location.
+	 * More than one obs refer to the same file if an obs was edited or if obs have the same content
+	 * in the sharded layout of {@link org.openmrs.obs.handler.AbstractHandler}.
+	 * 
+	 * @param location the path of the file relative to the complex obs directory, the part of the
+	 *            value complex after the "|"
+	 * @return the number of obs that refer to the file
+	 * @throws APIException
+	 * @since 1.10
+	 * @should count the obs that refer to the location
+	 * @should not treat underscores and percent signs in the location as wildcards
+	 */
+	@Authorized( { PrivilegeConstants.VIEW_OBS })
+	public Integer getObservationCountByComplexDataLocation(String location) throws APIException;
+	
+	/**
+	 * Moves the files of complex obs that are stored in the flat layout into the sharded layout of
+	 * {@link org.openmrs.obs.handler.AbstractHandler}. The value complex of each obs is updated in
+	 * place instead of voiding the obs because its data does not change. The obs that still refer
+	 * to the old files are counted with one query for all of them, and the old files and the
+	 * smaller copies the handlers made of them are deleted after the transaction is committed,
+	 * unless another obs still refers to them. Obs that are already in the sharded layout, whose
+	 * handler does not store files or whose file cannot be copied are left as they are.
+	 * 
+	 * @param obs the complex obs, e.g. a page of {@link #getComplexObservationPage(Obs, int)}
+	 * @return the obs that were moved
+	 * @throws APIException
+	 * @since 1.10
+	 * @should move the files into the sharded layout
+	 * @should leave obs that are in the sharded layout already as they are
+	 */
+	@Authorized( { PrivilegeConstants.EDIT_OBS })
+	public List<Obs> migrateComplexData(List<Obs> obs) throws APIException;
+	
 	/**
 	 * Get the ComplexObsHandler that has been registered with the given key
 	 * 
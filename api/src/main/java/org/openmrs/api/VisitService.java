@@ -383,4 +383,26 @@ public interface VisitService extends OpenmrsService {
 	 */
 	@Authorized(PrivilegeConstants.EDIT_VISITS)
 	public void stopVisits(Date maximumStartDate);
+	
+	/**
+	 * Stops the visits that {@link #stopVisits(Date)} stops with set based updates, at most the
+	 * given number at a time so that callers can stop a large number of visits in several
+	 * transactions. Visits with unvoided encounters after the current time are left active, since
+	 * they can't be stopped without failing validation. <br/>
+	 * The changed by and date changed fields of the stopped visits are set, but visit save handlers
+	 * are not called for them.
+	 * 
+	 * @param maximumStartDate Visits started on or before this date time value will get stopped
+	 * @param maxVisits the maximum number of visits to stop, null to stop all of them
+	 * @param dryRun if true, no visit is stopped and the number of visits that would be stopped is
+	 *            returned
+	 * @return the number of visits that were stopped, or would be stopped if dryRun is true
+	 * @should stop at most the given number of visits
+	 * @should only count the visits to stop on a dry run
+	 * @should not stop visits with encounters after the stop date
+	 * @should set the changed by and date changed fields of the stopped visits
+	 * @since 1.10
+	 */
+	@Authorized(PrivilegeConstants.EDIT_VISITS)
+	public int stopVisits(Date maximumStartDate, Integer maxVisits, boolean dryRun);
 }
@@ -83,6 +83,8 @@ import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
+import org.openmrs.util.Security;
+import org.openmrs.util.StartupProfiler;
 import org.springframework.aop.Advisor;
 import org.springframework.context.support.AbstractApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
@@ -362,6 +364,7 @@ public class Context {
 	 */
 	public static void setRuntimeProperties(Properties props) {
 		runtimeProperties = props;
+		Security.clearSavedKeys();
 	}
 	
 	/**
@@ -834,19 +837,37 @@ public class Context {
 		getContextDAO().startup(props);
 		
 		// find/set/check whether the current database version is compatible
-		checkForDatabaseUpdates(props);
+		StartupProfiler.start(StartupProfiler.DATABASE_UPDATE_CHECK);
+		try {
+			checkForDatabaseUpdates(props);
+		}
+		finally {
+			StartupProfiler.stop(StartupProfiler.DATABASE_UPDATE_CHECK);
+		}
 		
 		// this should be first in the startup routines so that the application
 		// data directory can be set from the runtime properties
 		OpenmrsUtil.startup(props);
 		
 		// Loop over each module and startup each with these custom properties
-		ModuleUtil.startup(props);
+		StartupProfiler.start(StartupProfiler.MODULE_STARTUP);
+		try {
+			ModuleUtil.startup(props);
+		}
+		finally {
+			StartupProfiler.stop(StartupProfiler.MODULE_STARTUP);
+		}
 		
 		// add any privileges/roles that /must/ exist for openmrs to work
 		// correctly.
 		// TODO: Should this be one of the first things executed at startup?
-		checkCoreDataset();
+		StartupProfiler.start(StartupProfiler.CORE_DATASET_CHECK);
+		try {
+			checkCoreDataset();
+		}
+		finally {
+			StartupProfiler.stop(StartupProfiler.CORE_DATASET_CHECK);
+		}
 	}
 	
 	/**
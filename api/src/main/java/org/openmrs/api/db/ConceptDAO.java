@@ -34,6 +34,7 @@ import org.openmrs.ConceptReferenceTerm;
 import org.openmrs.ConceptReferenceTermMap;
 import org.openmrs.ConceptSearchResult;
 import org.openmrs.ConceptSet;
+import org.openmrs.ConceptSetClosure;
 import org.openmrs.ConceptSource;
 import org.openmrs.ConceptStopWord;
 import org.openmrs.ConceptWord;
@@ -227,6 +228,37 @@ public interface ConceptDAO {
 	 */
 	public List<ConceptSet> getSetsContainingConcept(Concept concept) throws DAOException;
 	
+	/**
+	 * Gets the concept set rows of the given set and of all its subsets with one query on the
+	 * {@link ConceptSetClosure}, with the member concepts loaded
+	 * 
+	 * @param concept the concept set
+	 * @return the concept set rows ordered by sort weight
+	 * @should return the rows of the set and all its subsets
+	 * @since 1.10
+	 */
+	public List<ConceptSet> getConceptSetsInSetAndSubsets(Concept concept) throws DAOException;
+	
+	/**
+	 * Updates the {@link ConceptSetClosure} rows of the given concept and of all sets containing
+	 * it, if the set members of the concept have changed since the closure was last updated
+	 * 
+	 * @param concept the concept that was saved
+	 * @should add the members of a new set to the closure of the sets containing it
+	 * @should remove members that were removed from a set
+	 * @since 1.10
+	 */
+	public void updateConceptSetClosure(Concept concept) throws DAOException;
+	
+	/**
+	 * Rebuilds the whole {@link ConceptSetClosure} from the concept_set table. This is needed if
+	 * concept sets were changed without saving the concepts through the API, e.g. with SQL.
+	 * 
+	 * @should build the closure of all concept sets
+	 * @since 1.10
+	 */
+	public void rebuildConceptSetClosure() throws DAOException;
+	
 	/**
 	 * @see org.openmrs.api.ConceptService#getConceptNumeric(java.lang.Integer)
 	 */
@@ -335,6 +367,12 @@ public interface ConceptDAO {
 	 */
 	public Iterator<Concept> conceptIterator();
 	
+	/**
+	 * @see org.openmrs.api.ConceptService#getConceptPage(Concept, int, boolean)
+	 */
+	public List<Concept> getConceptPage(Integer afterConceptId, int pageSize, boolean includeRetired)
+	        throws DAOException;
+	
 	/**
 	 * @see org.openmrs.api.ConceptService@getConceptsByMapping(java.lang.String, java.lang.String)
 	 */
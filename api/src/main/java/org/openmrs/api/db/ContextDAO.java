@@ -52,6 +52,8 @@ public interface ContextDAO {
 	 * @should pass regression test for 1580
 	 * @should throw a ContextAuthenticationException if username is an empty string
 	 * @should throw a ContextAuthenticationException if username is white space
+	 * @should not authenticate with the old password after the password is changed
+	 * @should not authenticate a retired user with a remembered password
 	 */
 	@Transactional(noRollbackFor = ContextAuthenticationException.class)
 	public User authenticate(String username, String password) throws ContextAuthenticationException;
@@ -13,6 +13,7 @@
  */
 package org.openmrs.api.db;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.hibernate.SessionFactory;
@@ -182,4 +183,30 @@ public interface LocationDAO {
 	 */
 	public LocationAttribute getLocationAttributeByUuid(String uuid);
 	
+	/**
+	 * Gets the parent and retired flag of all locations, to build the location hierarchy from
+	 * without loading the locations
+	 * 
+	 * @return rows of location id, parent location id (null for root locations) and retired flag
+	 * @since 1.10
+	 */
+	public List<Object[]> getLocationHierarchy();
+	
+	/**
+	 * Gets the tags of all locations without loading the locations
+	 * 
+	 * @return rows of location id and location tag id
+	 * @since 1.10
+	 */
+	public List<Object[]> getLocationTagMappings();
+	
+	/**
+	 * Gets the locations with the given ids
+	 * 
+	 * @param locationIds the ids of the locations
+	 * @return the locations ordered by name
+	 * @since 1.10
+	 */
+	public List<Location> getLocations(Collection<Integer> locationIds);
+	
 }
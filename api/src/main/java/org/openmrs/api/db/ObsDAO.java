@@ -13,8 +13,10 @@
  */
 package org.openmrs.api.db;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import org.openmrs.Concept;
 import org.openmrs.ConceptName;
@@ -24,6 +26,8 @@ import org.openmrs.MimeType;
 import org.openmrs.Obs;
 import org.openmrs.Person;
 import org.openmrs.api.ObsService;
+import org.openmrs.obs.ObsRow;
+import org.openmrs.obs.ObsValues;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
 
 /**
@@ -105,4 +109,53 @@ public interface ObsDAO {
 	 */
 	public Obs getObsByUuid(String uuid);
 	
+	/**
+	 * @param afterObsDatetime the obs datetime of the last obs of the previous page, null for the
+	 *            first page
+	 * @param afterObsId the id of the last obs of the previous page, null for the first page
+	 * @see org.openmrs.api.ObsService#getObservationPage(List, List, List, List, Date, Date,
+	 *      boolean, Obs, int)
+	 */
+	public List<Obs> getObservationPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, boolean includeVoidedObs, Date afterObsDatetime,
+	        Integer afterObsId, int pageSize) throws DAOException;
+	
+	/**
+	 * @param afterObsDatetime the obs datetime of the last row of the previous page, null for the
+	 *            first page
+	 * @param afterObsId the obs id of the last row of the previous page, null for the first page
+	 * @see org.openmrs.api.ObsService#getObservationRowPage(List, List, List, List, Date, Date,
+	 *      boolean, ObsRow, int)
+	 */
+	public List<ObsRow> getObservationRowPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, boolean includeVoidedObs, Date afterObsDatetime,
+	        Integer afterObsId, int pageSize) throws DAOException;
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getObservationValues(Person, List)
+	 */
+	public ObsValues getObservationValues(Person who, List<Concept> questions) throws DAOException;
+	
+	/**
+	 * @param afterObsId the id of the last obs of the previous page, null for the first page
+	 * @see org.openmrs.api.ObsService#getComplexObservationPage(Obs, int)
+	 */
+	public List<Obs> getComplexObservationPage(Integer afterObsId, int pageSize) throws DAOException;
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getObservationCountByComplexDataLocation(String)
+	 */
+	public Long getObservationCountByComplexDataLocation(String location) throws DAOException;
+	
+	/**
+	 * Counts the obs, including voided ones, that refer to each of the given complex data
+	 * locations with one query
+	 * 
+	 * @param locations the paths of the files relative to the complex obs directory
+	 * @return the number of obs by location, locations no obs refers to are left out
+	 * @see org.openmrs.api.ObsService#getObservationCountByComplexDataLocation(String)
+	 */
+	public Map<String, Long> getObservationCountsByComplexDataLocation(Collection<String> locations)
+	        throws DAOException;
+	
 }
@@ -21,6 +21,7 @@ import java.util.Map;
 import org.openmrs.Concept;
 import org.openmrs.Location;
 import org.openmrs.Patient;
+import org.openmrs.User;
 import org.openmrs.Visit;
 import org.openmrs.VisitAttribute;
 import org.openmrs.VisitAttributeType;
@@ -160,4 +161,44 @@ public interface VisitDAO {
 	 */
 	public Visit getNextVisit(Visit previousVisit, Collection<VisitType> visitTypes, Date maximumStartDate);
 	
+	/**
+	 * Gets the ids of the unvoided active visits of the specified types that can be stopped at the
+	 * given date, i.e. that started before it and have no unvoided encounters after it
+	 * 
+	 * @param visitTypes a collection of visit types to match against
+	 * @param maximumStartDate the visits should have been started before or at this date time
+	 * @param stopDate the date time the visits would be stopped at
+	 * @param maxResults the maximum number of ids to return, null for all of them
+	 * @return the visit ids in ascending order
+	 * @should return the ids of unvoided active visits matching the specified types and startDate
+	 * @should not return visits with encounters after the stop date
+	 */
+	public List<Integer> getVisitIdsToStop(Collection<VisitType> visitTypes, Date maximumStartDate, Date stopDate,
+	        Integer maxResults);
+	
+	/**
+	 * Counts the visits that {@link #getVisitIdsToStop(Collection, Date, Date, Integer)} returns
+	 * 
+	 * @param visitTypes a collection of visit types to match against
+	 * @param maximumStartDate the visits should have been started before or at this date time
+	 * @param stopDate the date time the visits would be stopped at
+	 * @return the number of visits that can be stopped
+	 */
+	public long getCountOfVisitsToStop(Collection<VisitType> visitTypes, Date maximumStartDate, Date stopDate);
+	
+	/**
+	 * Sets the stop date of the active visits with the given ids with set based updates instead of
+	 * saving each visit. This bypasses the save handlers and interceptors, so the changed by and
+	 * date changed fields are set here.
+	 * 
+	 * @param visitIds the ids of the visits to stop
+	 * @param stopDate the stop date to set
+	 * @param changedBy the user that stops the visits
+	 * @param dateChanged the date the visits are changed
+	 * @return the number of visits that were stopped
+	 * @should stop the active visits with the given ids
+	 * @should not change visits that are already stopped
+	 */
+	public int stopVisits(List<Integer> visitIds, Date stopDate, User changedBy, Date dateChanged);
+	
 }
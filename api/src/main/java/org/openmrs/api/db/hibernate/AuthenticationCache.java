@@ -0,0 +1,376 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.APIException;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.api.context.Context;
+import org.openmrs.util.OpenmrsConstants;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Remembers recently verified logins and failed login attempts for the
+ * {@link HibernateContextDAO#authenticate(String, String)} method. <br/>
+ * <br/>
+ * A verified login is stored as the login and a salted hash of the password, the password itself
+ * is never kept. The salt is random for every run of OpenMRS. Entries expire after
+ * {@link OpenmrsConstants#GP_AUTHENTICATION_CACHE_TIME_TO_LIVE} seconds and are removed when the
+ * password of the user is changed. <br/>
+ * <br/>
+ * Failed attempts are counted per login, so that a login that has failed more than
+ * {@link OpenmrsConstants#GP_ALLOWED_FAILED_LOGINS_BEFORE_LOCKOUT} times can be rejected without
+ * looking up the user or hashing the password. At most {@link #MAX_ENTRIES} logins are counted, the
+ * least recently used one is dropped when another login fails. A dropped login is only checked
+ * against the lockout of the user in the database again, so trying many logins cannot use up
+ * memory or unlock a user.
+ *
+ * @since 1.10
+ */
+public class AuthenticationCache implements GlobalPropertyListener {
+	
+	private static final Log log = LogFactory.getLog(AuthenticationCache.class);
+	
+	/**
+	 * The default number of seconds a verified login is remembered
+	 */
+	public static final int DEFAULT_TIME_TO_LIVE = 300;
+	
+	/**
+	 * The default number of failed logins after which a login is rejected
+	 */
+	public static final int DEFAULT_ALLOWED_FAILED_LOGINS = 7;
+	
+	/**
+	 * The milliseconds a login is rejected after its last failed attempt, the same as the lockout
+	 * time of a user
+	 */
+	public static final long LOCKOUT_TIME = 300000;
+	
+	/**
+	 * The maximum number of verified logins and of logins with failed attempts that are kept
+	 */
+	public static final int MAX_ENTRIES = 10000;
+	
+	private static final byte[] salt = new byte[32];
+	
+	static {
+		new SecureRandom().nextBytes(salt);
+	}
+	
+	private static final ConcurrentMap<String, VerifiedLogin> logins = new ConcurrentHashMap<String, VerifiedLogin>();
+	
+	/**
+	 * The failed attempts by login, access ordered so that the least recently used login is
+	 * dropped first, guarded by {@link #failuresLock}
+	 */
+	private static final Map<String, FailedLogins> failures = new LinkedHashMap<String, FailedLogins>(16, 0.75f, true) {
+		
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, FailedLogins> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	
+	private static final Object failuresLock = new Object();
+	
+	private static volatile Integer timeToLive = null;
+	
+	private static volatile Integer allowedFailedLogins = null;
+	
+	/**
+	 * Gets the user that was recently authenticated with the given login and password
+	 *
+	 * @param login the username or system id
+	 * @param password the password
+	 * @return the id of the user or null if the login was not verified recently
+	 */
+	public static Integer getUserId(String login, String password) {
+		String key = getKey(login, password);
+		VerifiedLogin verified = logins.get(key);
+		if (verified == null)
+			return null;
+		if (verified.expires < System.currentTimeMillis()) {
+			logins.remove(key);
+			return null;
+		}
+		return verified.userId;
+	}
+	
+	/**
+	 * Remembers that the given login and password authenticate the given user, and forgets the
+	 * failed attempts of the login
+	 *
+	 * @param login the username or system id
+	 * @param password the password
+	 * @param userId the id of the authenticated user
+	 * @should forget the failed attempts of the login
+	 */
+	public static void loginSucceeded(String login, String password, Integer userId) {
+		synchronized (failuresLock) {
+			failures.remove(login);
+		}
+		
+		int seconds = getTimeToLive();
+		if (seconds <= 0)
+			return;
+		
+		if (logins.size() >= MAX_ENTRIES) {
+			long now = System.currentTimeMillis();
+			for (Iterator<VerifiedLogin> i = logins.values().iterator(); i.hasNext();) {
+				if (i.next().expires < now)
+					i.remove();
+			}
+			if (logins.size() >= MAX_ENTRIES)
+				logins.clear();
+		}
+		logins.put(getKey(login, password), new VerifiedLogin(userId, System.currentTimeMillis() + seconds * 1000L));
+	}
+	
+	/**
+	 * Counts a failed attempt of the given login
+	 *
+	 * @param login the username or system id
+	 * @param userId the id of the user with that login, null if there is none
+	 * @should start counting again after the lockout time
+	 * @should keep at most the maximum number of logins
+	 */
+	public static void loginFailed(String login, Integer userId) {
+		loginFailed(login, userId, System.currentTimeMillis());
+	}
+	
+	/**
+	 * @see #loginFailed(String, Integer)
+	 * @param now the time of the attempt
+	 */
+	static void loginFailed(String login, Integer userId, long now) {
+		synchronized (failuresLock) {
+			FailedLogins failed = failures.get(login);
+			if (failed == null) {
+				failed = new FailedLogins();
+				failures.put(login, failed);
+			}
+			
+			if (now - failed.lastAttempt > LOCKOUT_TIME)
+				failed.count = 0;
+			failed.count++;
+			failed.lastAttempt = now;
+			if (userId != null)
+				failed.userId = userId;
+		}
+	}
+	
+	/**
+	 * Checks whether the given login failed too often recently. Every attempt of a rejected login
+	 * restarts the lockout time.
+	 *
+	 * @param login the username or system id
+	 * @return true if the login should be rejected without checking the password
+	 * @should not lock out a login that failed the allowed number of times
+	 * @should lock out a login that failed more than the allowed number of times
+	 * @should not lock out a login after the lockout time
+	 */
+	public static boolean isLockedOut(String login) {
+		return isLockedOut(login, System.currentTimeMillis());
+	}
+	
+	/**
+	 * @see #isLockedOut(String)
+	 * @param now the time of the attempt
+	 */
+	static boolean isLockedOut(String login, long now) {
+		int allowed = getAllowedFailedLogins();
+		synchronized (failuresLock) {
+			FailedLogins failed = failures.get(login);
+			if (failed == null)
+				return false;
+			
+			if (failed.count > allowed && now - failed.lastAttempt <= LOCKOUT_TIME) {
+				failed.lastAttempt = now;
+				return true;
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * Forgets the verified logins and failed attempts of a user because the password was changed.
+	 * If a transaction is active they are forgotten again when it completes, so that a login
+	 * verified against the old password in the meantime is not kept.
+	 *
+	 * @param userId the id of the user
+	 */
+	public static void passwordChanged(final Integer userId) {
+		if (userId == null)
+			return;
+		
+		forget(userId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					forget(userId);
+				}
+			});
+		}
+	}
+	
+	private static void forget(Integer userId) {
+		for (Iterator<VerifiedLogin> i = logins.values().iterator(); i.hasNext();) {
+			if (i.next().userId.equals(userId))
+				i.remove();
+		}
+		synchronized (failuresLock) {
+			for (Iterator<FailedLogins> i = failures.values().iterator(); i.hasNext();) {
+				if (userId.equals(i.next().userId))
+					i.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Forgets all verified logins and failed attempts
+	 */
+	public static void clear() {
+		logins.clear();
+		synchronized (failuresLock) {
+			failures.clear();
+		}
+	}
+	
+	/**
+	 * @param timeToLive the number of seconds a verified login is remembered, null to read it from
+	 *            the global property again
+	 */
+	public static void setTimeToLive(Integer timeToLive) {
+		AuthenticationCache.timeToLive = timeToLive;
+	}
+	
+	private static String getKey(String login, String password) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(salt);
+			digest.update(login.getBytes("UTF-8"));
+			digest.update((byte) 0);
+			digest.update(password.getBytes("UTF-8"));
+			return login + ":" + new BigInteger(1, digest.digest()).toString(16);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new APIException("System cannot find the SHA-256 algorithm", e);
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new APIException("System cannot find UTF-8 encoding", e);
+		}
+	}
+	
+	private static int getTimeToLive() {
+		Integer value = timeToLive;
+		if (value == null) {
+			value = getIntegerGlobalProperty(OpenmrsConstants.GP_AUTHENTICATION_CACHE_TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE);
+			timeToLive = value;
+		}
+		return value;
+	}
+	
+	private static int getAllowedFailedLogins() {
+		Integer value = allowedFailedLogins;
+		if (value == null) {
+			value = getIntegerGlobalProperty(OpenmrsConstants.GP_ALLOWED_FAILED_LOGINS_BEFORE_LOCKOUT,
+			    DEFAULT_ALLOWED_FAILED_LOGINS);
+			allowedFailedLogins = value;
+		}
+		return value;
+	}
+	
+	private static int getIntegerGlobalProperty(String propertyName, int defaultValue) {
+		if (!Context.isSessionOpen())
+			return defaultValue;
+		try {
+			return Integer.valueOf(Context.getAdministrationService().getGlobalProperty(propertyName,
+			    String.valueOf(defaultValue)).trim());
+		}
+		catch (NumberFormatException e) {
+			log.warn("The global property " + propertyName + " should be a number, using " + defaultValue);
+			return defaultValue;
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyChanged(org.openmrs.GlobalProperty)
+	 */
+	@Override
+	public void globalPropertyChanged(GlobalProperty newValue) {
+		timeToLive = null;
+		allowedFailedLogins = null;
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyDeleted(java.lang.String)
+	 */
+	@Override
+	public void globalPropertyDeleted(String propertyName) {
+		timeToLive = null;
+		allowedFailedLogins = null;
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#supportsPropertyName(java.lang.String)
+	 */
+	@Override
+	public boolean supportsPropertyName(String propertyName) {
+		return OpenmrsConstants.GP_AUTHENTICATION_CACHE_TIME_TO_LIVE.equals(propertyName)
+		        || OpenmrsConstants.GP_ALLOWED_FAILED_LOGINS_BEFORE_LOCKOUT.equals(propertyName);
+	}
+	
+	private static class VerifiedLogin {
+		
+		private final Integer userId;
+		
+		private final long expires;
+		
+		public VerifiedLogin(Integer userId, long expires) {
+			this.userId = userId;
+			this.expires = expires;
+		}
+	}
+	
+	/**
+	 * The failed attempts of a login, guarded by {@link AuthenticationCache#failuresLock}
+	 */
+	private static class FailedLogins {
+		
+		private int count = 0;
+		
+		private long lastAttempt = 0;
+		
+		private Integer userId = null;
+	}
+}
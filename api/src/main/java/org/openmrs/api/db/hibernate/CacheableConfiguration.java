@@ -0,0 +1,132 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Properties;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.cfg.AnnotationConfiguration;
+
+/**
+ * The hibernate configuration used by the {@link HibernateSessionFactoryBean}. It can be
+ * serialized after its mapping files and annotated classes are parsed, and a configuration read
+ * back from the cache ignores the mapping files, mapping jars and annotated classes that are added
+ * to it again, so that they are not parsed a second time. The mappings themselves are still built
+ * from the parsed ones in the second pass, when the session factory is created. <br/>
+ * <br/>
+ * The properties set by the configuration files are kept separately, so that the serialized
+ * configuration does not have to contain the runtime properties (like the database password).
+ *
+ * @since 1.10
+ */
+public class CacheableConfiguration extends AnnotationConfiguration {
+	
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * The properties that {@link #configure(URL)} has to set when the mappings are cached
+	 */
+	private Properties configuredProperties;
+	
+	private transient boolean fromCache = false;
+	
+	/**
+	 * @return true if this configuration was read from the cache
+	 */
+	public boolean isFromCache() {
+		return fromCache;
+	}
+	
+	/**
+	 * Marks this configuration as read from the cache, adding mappings to it is ignored from now
+	 * on
+	 */
+	public void setFromCache() {
+		this.fromCache = true;
+	}
+	
+	/**
+	 * @param configuredProperties the properties that {@link #configure(URL)} has to set when the
+	 *            mappings are cached
+	 */
+	public void setConfiguredProperties(Properties configuredProperties) {
+		this.configuredProperties = configuredProperties;
+	}
+	
+	/**
+	 * @see org.hibernate.cfg.AnnotationConfiguration#configure(java.net.URL)
+	 */
+	@Override
+	public AnnotationConfiguration configure(URL url) throws HibernateException {
+		if (!fromCache)
+			return super.configure(url);
+		
+		if (configuredProperties != null)
+			addProperties(configuredProperties);
+		return this;
+	}
+	
+	/**
+	 * @see org.hibernate.cfg.AnnotationConfiguration#addInputStream(java.io.InputStream)
+	 */
+	@Override
+	public AnnotationConfiguration addInputStream(InputStream xmlInputStream) throws MappingException {
+		if (!fromCache)
+			return super.addInputStream(xmlInputStream);
+		
+		try {
+			xmlInputStream.close();
+		}
+		catch (IOException e) {
+			// the mapping is not needed anyway
+		}
+		return this;
+	}
+	
+	/**
+	 * @see org.hibernate.cfg.AnnotationConfiguration#addJar(java.io.File)
+	 */
+	@Override
+	public AnnotationConfiguration addJar(File jar) throws MappingException {
+		if (!fromCache)
+			return super.addJar(jar);
+		return this;
+	}
+	
+	/**
+	 * @see org.hibernate.cfg.AnnotationConfiguration#addAnnotatedClass(java.lang.Class)
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	public AnnotationConfiguration addAnnotatedClass(Class annotatedClass) throws MappingException {
+		if (!fromCache)
+			return super.addAnnotatedClass(annotatedClass);
+		return this;
+	}
+	
+	/**
+	 * @see org.hibernate.cfg.AnnotationConfiguration#addPackage(java.lang.String)
+	 */
+	@Override
+	public AnnotationConfiguration addPackage(String packageName) throws MappingException {
+		if (!fromCache)
+			return super.addPackage(packageName);
+		return this;
+	}
+}
@@ -17,12 +17,17 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -47,6 +52,7 @@ import org.openmrs.reporting.ReportObjectWrapper;
 import org.openmrs.util.DatabaseUtil;
 import org.openmrs.util.HandlerUtil;
 import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.validator.ValidatorStatistics;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
@@ -70,10 +76,22 @@ public class HibernateAdministrationDAO implements AdministrationDAO, Applicatio
 	 */
 	private SessionFactory sessionFactory;
 	
-	private Configuration configuration;
+	/**
+	 * The lengths of the columns of the table of each mapped class, by entity name and lower case
+	 * column name. They are read from the hibernate configuration, including the mappings of the
+	 * started modules, when a length is first needed. Modules with mappings are started with a
+	 * refresh of the application context, which creates a new DAO with a new table.
+	 */
+	private volatile Map<String, Map<String, Integer>> columnLengths;
 	
 	private ApplicationContext applicationContext;
 	
+	/**
+	 * The validators of each class of validated objects, in the order they are run. The validators
+	 * are only looked up again when the application context is refreshed, which creates a new DAO.
+	 */
+	private final ConcurrentMap<Class<?>, List<Validator>> validatorsByClass = new ConcurrentHashMap<Class<?>, List<Validator>>();
+	
 	public HibernateAdministrationDAO() {
 	}
 	
@@ -342,17 +360,45 @@ public class HibernateAdministrationDAO implements AdministrationDAO, Applicatio
 	
 	@Override
 	public int getMaximumPropertyLength(Class<? extends OpenmrsObject> aClass, String fieldName) {
-		if (configuration == null) {
+		Map<String, Integer> lengths = getColumnLengths().get(aClass.getName());
+		if (lengths == null) {
+			log.error("Uh oh, couldn't find a class in the hibernate configuration named: " + aClass.getName());
+			throw new DAOException("No hibernate mapping found for " + aClass.getName());
+		}
+		
+		Integer length = lengths.get(fieldName.toLowerCase());
+		if (length == null)
+			throw new DAOException("No column named " + fieldName + " found in the mapping of " + aClass.getName());
+		return length;
+	}
+	
+	/**
+	 * Gets the lengths of the columns of all mapped classes, reading them from the hibernate
+	 * configuration the first time
+	 * 
+	 * @return the column lengths by entity name and lower case column name
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, Map<String, Integer>> getColumnLengths() {
+		Map<String, Map<String, Integer>> lengths = columnLengths;
+		if (lengths == null) {
 			LocalSessionFactoryBean sessionFactoryBean = (LocalSessionFactoryBean) applicationContext
 			        .getBean("&sessionFactory");
-			configuration = sessionFactoryBean.getConfiguration();
+			Configuration configuration = sessionFactoryBean.getConfiguration();
+			
+			lengths = new HashMap<String, Map<String, Integer>>();
+			for (Iterator<PersistentClass> classes = configuration.getClassMappings(); classes.hasNext();) {
+				PersistentClass persistentClass = classes.next();
+				Map<String, Integer> tableLengths = new HashMap<String, Integer>();
+				for (Iterator<Column> columns = persistentClass.getTable().getColumnIterator(); columns.hasNext();) {
+					Column column = columns.next();
+					tableLengths.put(column.getCanonicalName(), column.getLength());
+				}
+				lengths.put(persistentClass.getEntityName(), tableLengths);
+			}
+			columnLengths = lengths;
 		}
-		
-		PersistentClass persistentClass = configuration.getClassMapping(aClass.getName());
-		if (persistentClass == null)
-			log.error("Uh oh, couldn't find a class in the hibernate configuration named: " + aClass.getName());
-		
-		return persistentClass.getTable().getColumn(new Column(fieldName)).getLength();
+		return lengths;
 	}
 	
 	@Override
@@ -369,7 +415,9 @@ public class HibernateAdministrationDAO implements AdministrationDAO, Applicatio
 		sessionFactory.getCurrentSession().setFlushMode(FlushMode.MANUAL);
 		try {
 			for (Validator validator : getValidators(object)) {
+				long start = System.nanoTime();
 				validator.validate(object, errors);
+				ValidatorStatistics.record(validator.getClass(), System.nanoTime() - start);
 			}
 		}
 		finally {
@@ -378,14 +426,18 @@ public class HibernateAdministrationDAO implements AdministrationDAO, Applicatio
 	}
 	
 	/**
-	 * Fetches all validators that are registered
+	 * Fetches all validators that are registered. The validators are looked up once per class of
+	 * object.
 	 * 
 	 * @param obj the object that will be validated
-	 * @return list of compatibile validators
+	 * @return list of compatibile validators, it must not be modified
 	 */
 	protected List<Validator> getValidators(Object obj) {
-		List<Validator> matchingValidators = new Vector<Validator>();
+		List<Validator> matchingValidators = validatorsByClass.get(obj.getClass());
+		if (matchingValidators != null)
+			return matchingValidators;
 		
+		matchingValidators = new ArrayList<Validator>();
 		List<Validator> validators = HandlerUtil.getHandlersForType(Validator.class, obj.getClass());
 		
 		for (Validator validator : validators) {
@@ -394,6 +446,8 @@ public class HibernateAdministrationDAO implements AdministrationDAO, Applicatio
 			}
 		}
 		
+		matchingValidators = Collections.unmodifiableList(matchingValidators);
+		validatorsByClass.put(obj.getClass(), matchingValidators);
 		return matchingValidators;
 	}
 }
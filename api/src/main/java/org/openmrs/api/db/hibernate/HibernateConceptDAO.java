@@ -32,10 +32,12 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
 import org.hibernate.FlushMode;
 import org.hibernate.NonUniqueObjectException;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Conjunction;
 import org.hibernate.criterion.Criterion;
@@ -277,6 +279,10 @@ public class HibernateConceptDAO implements ConceptDAO {
 		sessionFactory.getCurrentSession().createQuery("delete ConceptWord where concept = :c").setInteger("c",
 		    concept.getConceptId()).executeUpdate();
 		
+		// a concept can only be deleted if it isn't in any set, so only its own closure rows are left
+		sessionFactory.getCurrentSession().createQuery("delete ConceptSetClosure where ancestorId = :c").setInteger("c",
+		    concept.getConceptId()).executeUpdate();
+		
 		// now we can safely delete the concept
 		sessionFactory.getCurrentSession().delete(concept);
 	}
@@ -841,6 +847,97 @@ public class HibernateConceptDAO implements ConceptDAO {
 		        .list();
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#getConceptSetsInSetAndSubsets(org.openmrs.Concept)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<ConceptSet> getConceptSetsInSetAndSubsets(Concept concept) throws DAOException {
+		return sessionFactory.getCurrentSession().createQuery(
+		    "select cs from ConceptSet cs join fetch cs.concept where cs.conceptSet.conceptId = :setId "
+		            + "or cs.conceptSet.conceptId in (select c.descendantId from ConceptSetClosure c "
+		            + "where c.ancestorId = :setId) order by cs.sortWeight").setInteger("setId", concept.getConceptId())
+		        .list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#updateConceptSetClosure(org.openmrs.Concept)
+	 */
+	@SuppressWarnings("unchecked")
+	public void updateConceptSetClosure(Concept concept) throws DAOException {
+		if (concept.getConceptId() == null)
+			return;
+		
+		Set<Integer> memberIds = new HashSet<Integer>();
+		if (concept.getConceptSets() != null) {
+			for (ConceptSet conceptSet : concept.getConceptSets()) {
+				if (conceptSet.getConcept() != null && conceptSet.getConcept().getConceptId() != null)
+					memberIds.add(conceptSet.getConcept().getConceptId());
+			}
+		}
+		
+		Session session = sessionFactory.getCurrentSession();
+		List<Integer> closureMemberIds = session.createQuery(
+		    "select c.descendantId from ConceptSetClosure c where c.ancestorId = :conceptId and c.depth = 1").setInteger(
+		    "conceptId", concept.getConceptId()).list();
+		if (memberIds.equals(new HashSet<Integer>(closureMemberIds)))
+			return;
+		
+		// the members changed, so the descendants of this concept and of all sets containing it change
+		List<Integer> ancestorIds = new ArrayList<Integer>();
+		ancestorIds.add(concept.getConceptId());
+		ancestorIds.addAll(session.createQuery(
+		    "select c.ancestorId from ConceptSetClosure c where c.descendantId = :conceptId").setInteger("conceptId",
+		    concept.getConceptId()).list());
+		
+		// the closure is built from the concept_set table, so the new members have to be in it
+		session.flush();
+		rebuildConceptSetClosure(ancestorIds);
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#rebuildConceptSetClosure()
+	 */
+	public void rebuildConceptSetClosure() throws DAOException {
+		sessionFactory.getCurrentSession().flush();
+		rebuildConceptSetClosure(null);
+	}
+	
+	/**
+	 * Rebuilds the closure rows of the given concept sets one level at a time: first the direct
+	 * members, then the members of the members that are not in the closure yet, and so on
+	 * 
+	 * @param ancestorIds the ids of the concept sets to rebuild, null to rebuild all of them
+	 */
+	private void rebuildConceptSetClosure(List<Integer> ancestorIds) {
+		Session session = sessionFactory.getCurrentSession();
+		String ancestorRestriction = ancestorIds == null ? "" : " and closure.ancestor_id in (:ancestorIds)";
+		
+		SQLQuery delete = session.createSQLQuery("delete from concept_set_closure"
+		        + (ancestorIds == null ? "" : " where ancestor_id in (:ancestorIds)"));
+		SQLQuery insertMembers = session.createSQLQuery("insert into concept_set_closure (ancestor_id, descendant_id, depth) "
+		        + "select distinct concept_set, concept_id, 1 from concept_set"
+		        + (ancestorIds == null ? "" : " where concept_set in (:ancestorIds)"));
+		SQLQuery insertNextLevel = session.createSQLQuery("insert into concept_set_closure (ancestor_id, descendant_id, depth) "
+		        + "select distinct closure.ancestor_id, cs.concept_id, :nextDepth from concept_set_closure closure "
+		        + "join concept_set cs on cs.concept_set = closure.descendant_id where closure.depth = :depth"
+		        + ancestorRestriction + " and not exists (select * from concept_set_closure existing "
+		        + "where existing.ancestor_id = closure.ancestor_id and existing.descendant_id = cs.concept_id)");
+		if (ancestorIds != null) {
+			delete.setParameterList("ancestorIds", ancestorIds);
+			insertMembers.setParameterList("ancestorIds", ancestorIds);
+			insertNextLevel.setParameterList("ancestorIds", ancestorIds);
+		}
+		
+		delete.executeUpdate();
+		int inserted = insertMembers.executeUpdate();
+		for (int depth = 1; inserted > 0; depth++)
+			inserted = insertNextLevel.setInteger("depth", depth).setInteger("nextDepth", depth + 1).executeUpdate();
+		
+		if (log.isDebugEnabled())
+			log.debug("Rebuilt the concept set closure of " + (ancestorIds == null ? "all" : ancestorIds.size())
+			        + " concept sets");
+	}
+	
 	/**
 	 * returns a list of n-generations of parents of a concept in a concept set
 	 * 
@@ -984,6 +1081,47 @@ public class HibernateConceptDAO implements ConceptDAO {
 		return new ConceptIterator();
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#getConceptPage(java.lang.Integer, int, boolean)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Concept> getConceptPage(Integer afterConceptId, int pageSize, boolean includeRetired)
+	        throws DAOException {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Concept.class);
+		if (afterConceptId != null)
+			criteria.add(Restrictions.gt("conceptId", afterConceptId));
+		if (!includeRetired)
+			criteria.add(Restrictions.eq("retired", false));
+		criteria.setFetchMode("conceptClass", FetchMode.JOIN);
+		criteria.setFetchMode("datatype", FetchMode.JOIN);
+		criteria.setFetchMode("creator", FetchMode.JOIN);
+		criteria.setFetchMode("changedBy", FetchMode.JOIN);
+		criteria.addOrder(Order.asc("conceptId"));
+		criteria.setMaxResults(pageSize);
+		List<Concept> concepts = criteria.list();
+		if (concepts.isEmpty())
+			return concepts;
+		
+		// initialize the collections of the concepts already in the session with one query per
+		// collection, fetching them all in one query would return the product of their sizes
+		List<Integer> conceptIds = new ArrayList<Integer>(concepts.size());
+		for (Concept concept : concepts)
+			conceptIds.add(concept.getConceptId());
+		fetchForConcepts("left join fetch c.names", conceptIds);
+		fetchForConcepts("left join fetch c.descriptions", conceptIds);
+		fetchForConcepts("left join fetch c.answers a left join fetch a.answerConcept ac left join fetch ac.names",
+		    conceptIds);
+		fetchForConcepts("left join fetch c.conceptSets s left join fetch s.concept sc left join fetch sc.names",
+		    conceptIds);
+		return concepts;
+	}
+	
+	private void fetchForConcepts(String fetchJoins, List<Integer> conceptIds) {
+		sessionFactory.getCurrentSession().createQuery(
+		    "select distinct c from Concept c " + fetchJoins + " where c.conceptId in (:conceptIds)").setParameterList(
+		    "conceptIds", conceptIds).list();
+	}
+	
 	/**
 	 * An iterator that loops over all concepts in the dictionary one at a time
 	 */
@@ -87,6 +87,19 @@ public class HibernateContextDAO implements ContextDAO {
 			if (login.matches("\\d{2,}"))
 				loginWithDash = login.substring(0, login.length() - 1) + "-" + login.charAt(login.length() - 1);
 			
+			// reject logins that failed too often without looking up the user or hashing the password
+			if (AuthenticationCache.isLockedOut(login)) {
+				log.info("Failed login attempt (login=" + login + ") - too many failed attempts");
+				throw new ContextAuthenticationException("Invalid number of connection attempts. Please try again later.");
+			}
+			
+			// a login and password that were verified recently only need the user to be loaded
+			if (password != null) {
+				User cachedUser = getCachedUser(session, login, loginWithDash, password);
+				if (cachedUser != null)
+					return cachedUser;
+			}
+			
 			try {
 				candidateUser = (User) session.createQuery(
 				    "from User u where (u.username = ? or u.systemId = ? or u.systemId = ?) and u.retired = '0'").setString(
@@ -155,6 +168,8 @@ public class HibernateContextDAO implements ContextDAO {
 					saveUserProperties(candidateUser);
 				}
 				
+				AuthenticationCache.loginSucceeded(login, password, candidateUser.getUserId());
+				
 				// skip out of the method early (instead of throwing the exception)
 				// to indicate that this is the valid user
 				return candidateUser;
@@ -189,6 +204,9 @@ public class HibernateContextDAO implements ContextDAO {
 			}
 		}
 		
+		if (login != null)
+			AuthenticationCache.loginFailed(login, candidateUser == null ? null : candidateUser.getUserId());
+		
 		// throw this exception only once in the same place with the same
 		// message regardless of username/pw combo entered
 		log.info("Failed login attempt (login=" + login + ") - " + errorMsg);
@@ -196,6 +214,38 @@ public class HibernateContextDAO implements ContextDAO {
 		
 	}
 	
+	/**
+	 * Gets the user of a login and password that were verified recently. The user is only returned
+	 * if it still has that login, is not retired and has no failed login attempts to clean up.
+	 *
+	 * @param session the current session
+	 * @param login the username or system id
+	 * @param loginWithDash the login with a dash before the check digit
+	 * @param password the password
+	 * @return the hydrated user or null if the password has to be checked against the database
+	 */
+	private User getCachedUser(Session session, String login, String loginWithDash, String password) {
+		Integer userId = AuthenticationCache.getUserId(login, password);
+		if (userId == null)
+			return null;
+		
+		User user = (User) session.get(User.class, userId);
+		if (user == null || user.isRetired())
+			return null;
+		if (!login.equals(user.getUsername()) && !login.equals(user.getSystemId())
+		        && !loginWithDash.equals(user.getSystemId()))
+			return null;
+		String lockoutTime = user.getUserProperty(OpenmrsConstants.USER_PROPERTY_LOCKOUT_TIMESTAMP, "0");
+		if (getUsersLoginAttempts(user) > 0 || (StringUtils.isNotBlank(lockoutTime) && !"0".equals(lockoutTime)))
+			return null;
+		
+		// hydrate the user object
+		user.getAllRoles().size();
+		user.getUserProperties().size();
+		user.getPrivileges().size();
+		return user;
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.ContextDAO#getUserByUuid(java.lang.String)
 	 */
@@ -13,6 +13,8 @@
  */
 package org.openmrs.api.db.hibernate;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
@@ -293,4 +295,39 @@ public class HibernateLocationDAO implements LocationDAO {
 		return (LocationAttribute) sessionFactory.getCurrentSession().createCriteria(LocationAttribute.class).add(
 		    Restrictions.eq("uuid", uuid)).uniqueResult();
 	}
+	
+	/**
+	 * @see org.openmrs.api.db.LocationDAO#getLocationHierarchy()
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<Object[]> getLocationHierarchy() {
+		return sessionFactory.getCurrentSession().createQuery(
+		    "select l.locationId, p.locationId, l.retired from Location l left join l.parentLocation p").list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.LocationDAO#getLocationTagMappings()
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<Object[]> getLocationTagMappings() {
+		return sessionFactory.getCurrentSession().createQuery(
+		    "select l.locationId, t.locationTagId from Location l join l.tags t").list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.LocationDAO#getLocations(java.util.Collection)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<Location> getLocations(Collection<Integer> locationIds) {
+		if (locationIds.isEmpty())
+			return new ArrayList<Location>();
+		
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Location.class);
+		criteria.add(Restrictions.in("locationId", locationIds));
+		criteria.addOrder(Order.asc("name"));
+		return criteria.list();
+	}
 }
@@ -13,8 +13,13 @@
  */
 package org.openmrs.api.db.hibernate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.logging.Log;
@@ -39,6 +44,8 @@ import org.openmrs.Person;
 import org.openmrs.User;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.ObsDAO;
+import org.openmrs.obs.ObsRow;
+import org.openmrs.obs.ObsValues;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
 
 /**
@@ -277,4 +284,134 @@ public class HibernateObsDAO implements ObsDAO {
 		    uuid).uniqueResult();
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getObservationPage(java.util.List, java.util.List,
+	 *      java.util.List, java.util.List, java.util.Date, java.util.Date, boolean, java.util.Date,
+	 *      java.lang.Integer, int)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Obs> getObservationPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, boolean includeVoidedObs, Date afterObsDatetime,
+	        Integer afterObsId, int pageSize) throws DAOException {
+		return createObservationPageCriteria(whom, encounters, questions, locations, fromDate, toDate, includeVoidedObs,
+		    afterObsDatetime, afterObsId, pageSize).list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getObservationRowPage(java.util.List, java.util.List,
+	 *      java.util.List, java.util.List, java.util.Date, java.util.Date, boolean, java.util.Date,
+	 *      java.lang.Integer, int)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<ObsRow> getObservationRowPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, boolean includeVoidedObs, Date afterObsDatetime,
+	        Integer afterObsId, int pageSize) throws DAOException {
+		Criteria criteria = createObservationPageCriteria(whom, encounters, questions, locations, fromDate, toDate,
+		    includeVoidedObs, afterObsDatetime, afterObsId, pageSize);
+		criteria.setProjection(Projections.projectionList().add(Projections.property("obsId")).add(
+		    Projections.property("personId")).add(Projections.property("concept.conceptId")).add(
+		    Projections.property("encounter.encounterId")).add(Projections.property("location.locationId")).add(
+		    Projections.property("obsDatetime")).add(Projections.property("valueNumeric")).add(
+		    Projections.property("valueCoded.conceptId")).add(Projections.property("valueDatetime")).add(
+		    Projections.property("valueText")));
+		
+		List<Object[]> rows = criteria.list();
+		List<ObsRow> result = new ArrayList<ObsRow>(rows.size());
+		for (Object[] row : rows) {
+			result.add(new ObsRow((Integer) row[0], (Integer) row[1], (Integer) row[2], (Integer) row[3],
+			        (Integer) row[4], (Date) row[5], (Double) row[6], (Integer) row[7], (Date) row[8], (String) row[9]));
+		}
+		return result;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getObservationValues(org.openmrs.Person, java.util.List)
+	 */
+	@SuppressWarnings("unchecked")
+	public ObsValues getObservationValues(Person who, List<Concept> questions) throws DAOException {
+		Criteria criteria = createGetObservationsCriteria(Collections.singletonList(who), null, questions, null, null,
+		    null, null, null, null, null, null, null, false);
+		criteria.setProjection(Projections.projectionList().add(Projections.property("concept.conceptId")).add(
+		    Projections.property("obsDatetime")).add(Projections.property("valueNumeric")).add(
+		    Projections.property("valueCoded.conceptId")));
+		criteria.addOrder(Order.desc("obsDatetime"));
+		criteria.addOrder(Order.desc("obsId"));
+		
+		List<Object[]> rows = criteria.list();
+		ObsValues values = new ObsValues(rows.size());
+		for (int i = 0; i < rows.size(); i++) {
+			Object[] row = rows.get(i);
+			values.set(i, (Integer) row[0], (Date) row[1], (Double) row[2], (Integer) row[3]);
+		}
+		return values;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getComplexObservationPage(java.lang.Integer, int)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Obs> getComplexObservationPage(Integer afterObsId, int pageSize) throws DAOException {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Obs.class);
+		criteria.add(Restrictions.isNotNull("valueComplex"));
+		if (afterObsId != null)
+			criteria.add(Restrictions.gt("obsId", afterObsId));
+		criteria.addOrder(Order.asc("obsId"));
+		criteria.setMaxResults(pageSize);
+		return criteria.list();
+	}
+	
+	/**
+	 * The location is matched exactly against the indexed complex_data_location column
+	 * 
+	 * @see org.openmrs.api.db.ObsDAO#getObservationCountByComplexDataLocation(java.lang.String)
+	 */
+	public Long getObservationCountByComplexDataLocation(String location) throws DAOException {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Obs.class);
+		criteria.add(Restrictions.eq("complexDataLocation", location));
+		criteria.setProjection(Projections.rowCount());
+		return ((Number) criteria.uniqueResult()).longValue();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getObservationCountsByComplexDataLocation(java.util.Collection)
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Long> getObservationCountsByComplexDataLocation(Collection<String> locations)
+	        throws DAOException {
+		Map<String, Long> counts = new HashMap<String, Long>();
+		if (locations.isEmpty())
+			return counts;
+		
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Obs.class);
+		criteria.add(Restrictions.in("complexDataLocation", locations));
+		criteria.setProjection(Projections.projectionList().add(Projections.groupProperty("complexDataLocation")).add(
+		    Projections.rowCount()));
+		for (Object[] row : (List<Object[]>) criteria.list())
+			counts.put((String) row[0], ((Number) row[1]).longValue());
+		return counts;
+	}
+	
+	/**
+	 * Creates the criteria for a page of observations ordered by obsDatetime and obsId descending.
+	 * The page starts after the given obs datetime and id (the key of the last obs of the previous
+	 * page) instead of at an offset, so that reading a page deep into a large history uses the
+	 * index rather than skipping all rows before it.
+	 */
+	private Criteria createObservationPageCriteria(List<Person> whom, List<Encounter> encounters,
+	        List<Concept> questions, List<Location> locations, Date fromDate, Date toDate, boolean includeVoidedObs,
+	        Date afterObsDatetime, Integer afterObsId, int pageSize) {
+		Criteria criteria = createGetObservationsCriteria(whom, encounters, questions, null, null, locations, null, null,
+		    null, fromDate, toDate, null, includeVoidedObs);
+		
+		if (afterObsDatetime != null && afterObsId != null) {
+			criteria.add(Restrictions.or(Restrictions.lt("obsDatetime", afterObsDatetime), Restrictions.and(Restrictions
+			        .eq("obsDatetime", afterObsDatetime), Restrictions.lt("obsId", afterObsId))));
+		}
+		
+		criteria.addOrder(Order.desc("obsDatetime"));
+		criteria.addOrder(Order.desc("obsId"));
+		criteria.setMaxResults(pageSize);
+		return criteria;
+	}
+	
 }
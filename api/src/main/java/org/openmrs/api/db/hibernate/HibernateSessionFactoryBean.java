@@ -13,8 +13,18 @@
  */
 package org.openmrs.api.db.hibernate;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Comparator;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -24,25 +34,76 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.hibernate.EmptyInterceptor;
 import org.hibernate.HibernateException;
 import org.hibernate.Interceptor;
+import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
 import org.hibernate.util.ConfigHelper;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.Module;
 import org.openmrs.module.ModuleFactory;
+import org.openmrs.util.OpenmrsClassLoader;
+import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
+import org.openmrs.util.StartupProfiler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
 import org.springframework.orm.hibernate3.annotation.AnnotationSessionFactoryBean;
+import org.springframework.util.ClassUtils;
 
 public class HibernateSessionFactoryBean extends AnnotationSessionFactoryBean {
 	
 	private static Log log = LogFactory.getLog(HibernateSessionFactoryBean.class);
 	
+	/**
+	 * The runtime property to set to true to cache the hibernate configuration with its parsed
+	 * mappings in the application data directory. The cache is used on the next startup if none of
+	 * the mapping files, mapping jars, mapped classes or module versions changed. Only the parsing
+	 * of the mapping files and annotated classes is saved, the mappings are still built (in the
+	 * second pass of the configuration) when the session factory is created.
+	 * 
+	 * @since 1.10
+	 */
+	public static final String CONFIGURATION_CACHE_PROPERTY = "hibernate.configuration_cache";
+	
+	/**
+	 * The name of the file in the application data directory that the configuration is cached in
+	 */
+	private static final String CONFIGURATION_CACHE_FILE = "hibernate-configuration.cache";
+	
+	private static final Pattern MAPPING_RESOURCE_PATTERN = Pattern.compile("<mapping\\s+resource=\"([^\"]+)\"");
+	
+	private Resource[] configLocations = new Resource[0];
+	
+	private Resource[] mappingJarLocations = new Resource[0];
+	
+	/**
+	 * The checksum of the mappings of the configuration that is being built, null if the
+	 * configuration is not cached
+	 */
+	private String mappingChecksum = null;
+	
+	/**
+	 * Whether the configuration that is being built was read from the cache
+	 */
+	private boolean configurationFromCache = false;
+	
+	private boolean configurationCacheFailed = false;
+	
+	public HibernateSessionFactoryBean() {
+		setConfigurationClass(CacheableConfiguration.class);
+	}
+	
 	protected Set<String> tmpMappingResources = new HashSet<String>();
 	
 	/**
@@ -60,8 +121,41 @@ public class HibernateSessionFactoryBean extends AnnotationSessionFactoryBean {
 	
 	//public SessionFactory newSessionFactory(Configuration config) throws HibernateException {
 	public Configuration newConfiguration() throws HibernateException {
-		Configuration config = super.newConfiguration();
+		StartupProfiler.start(StartupProfiler.HIBERNATE_MAPPINGS);
+		
+		Configuration config = null;
+		mappingChecksum = null;
+		if (isConfigurationCacheEnabled()) {
+			mappingChecksum = getMappingChecksum();
+			config = readCachedConfiguration(mappingChecksum);
+		}
+		configurationFromCache = config != null;
+		if (config == null)
+			config = super.newConfiguration();
+		
+		addProperties(config);
+		
+		log.debug("Setting global Hibernate Session Interceptor for SessionFactory, Interceptor: " + chainingInterceptor);
+		
+		// make sure all autowired interceptors are put onto our chaining interceptor
+		// sort on the keys so that the devs/modules have some sort of control over the order of the interceptors 
+		List<String> keys = new ArrayList<String>(interceptors.keySet());
+		Collections.sort(keys);
+		for (String key : keys) {
+			chainingInterceptor.addInterceptor(interceptors.get(key));
+		}
 		
+		config.setInterceptor(chainingInterceptor);
+		
+		return config;
+	}
+	
+	/**
+	 * Sets the module, runtime and default hibernate properties on the given configuration
+	 * 
+	 * @param config the configuration to set the properties on
+	 */
+	private void addProperties(Configuration config) {
 		log.debug("Configuring hibernate sessionFactory properties");
 		
 		Properties moduleProperties = Context.getConfigProperties();
@@ -101,20 +195,276 @@ public class HibernateSessionFactoryBean extends AnnotationSessionFactoryBean {
 		catch (IOException e) {
 			log.fatal("Unable to load default hibernate properties", e);
 		}
+	}
+	
+	/**
+	 * Caches the configuration if its mappings were parsed. This is called after the mapping files
+	 * and annotated classes are parsed, but before the mappings are built in the second pass of the
+	 * configuration, which happens when the session factory is created.
+	 * 
+	 * @see org.springframework.orm.hibernate3.LocalSessionFactoryBean#postProcessConfiguration(org.hibernate.cfg.Configuration)
+	 */
+	@Override
+	protected void postProcessConfiguration(Configuration config) throws HibernateException {
+		super.postProcessConfiguration(config);
 		
-		log.debug("Setting global Hibernate Session Interceptor for SessionFactory, Interceptor: " + chainingInterceptor);
+		if (mappingChecksum != null && config instanceof CacheableConfiguration
+		        && !((CacheableConfiguration) config).isFromCache())
+			writeCachedConfiguration((CacheableConfiguration) config, mappingChecksum);
 		
-		// make sure all autowired interceptors are put onto our chaining interceptor
-		// sort on the keys so that the devs/modules have some sort of control over the order of the interceptors 
-		List<String> keys = new ArrayList<String>(interceptors.keySet());
-		Collections.sort(keys);
-		for (String key : keys) {
-			chainingInterceptor.addInterceptor(interceptors.get(key));
+		StartupProfiler.stop(StartupProfiler.HIBERNATE_MAPPINGS);
+	}
+	
+	/**
+	 * Builds the session factory, and if that fails for a configuration read from the cache, drops
+	 * the cache and builds it once more from the parsed mappings
+	 * 
+	 * @see org.springframework.orm.hibernate3.LocalSessionFactoryBean#buildSessionFactory()
+	 */
+	@Override
+	protected SessionFactory buildSessionFactory() throws Exception {
+		try {
+			return super.buildSessionFactory();
+		}
+		catch (RuntimeException e) {
+			if (!configurationFromCache)
+				throw e;
+			
+			log.warn("Unable to build the session factory from the cached hibernate configuration", e);
+			getConfigurationCacheFile().delete();
+			configurationCacheFailed = true;
+			// the cache is disabled now, so this parses the mappings and sets them as the configuration of this bean
+			return super.buildSessionFactory();
+		}
+		finally {
+			// the mappings phase is only stopped in postProcessConfiguration if the mappings could be built
+			StartupProfiler.stop(StartupProfiler.HIBERNATE_MAPPINGS);
+		}
+	}
+	
+	/**
+	 * @see org.springframework.orm.hibernate3.LocalSessionFactoryBean#newSessionFactory(org.hibernate.cfg.Configuration)
+	 */
+	@Override
+	protected SessionFactory newSessionFactory(Configuration config) throws HibernateException {
+		StartupProfiler.start(StartupProfiler.HIBERNATE_SESSION_FACTORY);
+		try {
+			return super.newSessionFactory(config);
+		}
+		finally {
+			StartupProfiler.stop(StartupProfiler.HIBERNATE_SESSION_FACTORY);
+		}
+	}
+	
+	/**
+	 * @return true if the configuration should be read from and written to the cache
+	 */
+	private boolean isConfigurationCacheEnabled() {
+		return !configurationCacheFailed
+		        && "true".equalsIgnoreCase(Context.getRuntimeProperties().getProperty(CONFIGURATION_CACHE_PROPERTY));
+	}
+	
+	private File getConfigurationCacheFile() {
+		return new File(OpenmrsUtil.getApplicationDataDirectory(), CONFIGURATION_CACHE_FILE);
+	}
+	
+	/**
+	 * Computes a checksum of everything that the mappings of the configuration are built from: the
+	 * configuration files and the mapping files they list, the other mapping files, the mapping
+	 * jars, the classes in the packages with mapped classes and the versions of OpenMRS and the
+	 * started modules.
+	 * 
+	 * @return the checksum, null if it could not be computed
+	 */
+	private String getMappingChecksum() {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			update(digest, OpenmrsConstants.OPENMRS_VERSION);
+			
+			for (Resource resource : configLocations) {
+				String content = IOUtils.toString(resource.getInputStream(), "UTF-8");
+				update(digest, content);
+				Matcher matcher = MAPPING_RESOURCE_PATTERN.matcher(content);
+				while (matcher.find())
+					updateWithResource(digest, matcher.group(1));
+			}
+			
+			List<String> resources = new ArrayList<String>(getModuleMappingResources());
+			Collections.sort(resources);
+			for (String resource : resources)
+				updateWithResource(digest, resource);
+			
+			for (Resource resource : mappingJarLocations) {
+				File file = resource.getFile();
+				update(digest, file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified());
+			}
+			
+			List<String> packages = new ArrayList<String>(packagesToScan);
+			packages.addAll(getModulePackagesWithMappedClasses());
+			Collections.sort(packages);
+			for (String pack : packages) {
+				update(digest, pack);
+				updateWithClasses(digest, pack);
+			}
+			
+			List<String> modules = new ArrayList<String>();
+			for (Module module : ModuleFactory.getStartedModules())
+				modules.add(module.getModuleId() + ":" + module.getVersion());
+			Collections.sort(modules);
+			for (String module : modules)
+				update(digest, module);
+			
+			return new BigInteger(1, digest.digest()).toString(16);
+		}
+		catch (Exception e) {
+			log.warn("Unable to compute the checksum of the hibernate mappings, they will not be cached", e);
+			return null;
+		}
+	}
+	
+	private void update(MessageDigest digest, String value) throws IOException {
+		digest.update(value.getBytes("UTF-8"));
+		digest.update((byte) 0);
+	}
+	
+	private void updateWithResource(MessageDigest digest, String resource) throws IOException {
+		update(digest, resource);
+		InputStream in = OpenmrsClassLoader.getInstance().getResourceAsStream(resource);
+		if (in == null) {
+			update(digest, "missing");
+			return;
 		}
+		try {
+			digest.update(IOUtils.toByteArray(in));
+		}
+		finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Adds the class files in the given package and its sub packages to the digest, so that a
+	 * changed annotated class does not reuse the cached mappings
+	 * 
+	 * @param digest the digest to update
+	 * @param pack the name of the package
+	 */
+	private void updateWithClasses(MessageDigest digest, String pack) throws IOException {
+		ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(OpenmrsClassLoader.getInstance());
+		Resource[] classes = resolver.getResources(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX
+		        + ClassUtils.convertClassNameToResourcePath(pack) + "/**/*.class");
 		
-		config.setInterceptor(chainingInterceptor);
+		// the resolver does not guarantee any order
+		final Map<Resource, String> urls = new HashMap<Resource, String>();
+		for (Resource resource : classes)
+			urls.put(resource, resource.getURL().toString());
+		Arrays.sort(classes, new Comparator<Resource>() {
+			
+			public int compare(Resource r1, Resource r2) {
+				return urls.get(r1).compareTo(urls.get(r2));
+			}
+		});
 		
-		return config;
+		for (Resource resource : classes) {
+			InputStream in = resource.getInputStream();
+			try {
+				digest.update(IOUtils.toByteArray(in));
+			}
+			finally {
+				in.close();
+			}
+		}
+	}
+	
+	/**
+	 * Reads the cached configuration
+	 * 
+	 * @param checksum the checksum of the current mappings
+	 * @return the cached configuration or null if there is none for the given checksum
+	 */
+	private Configuration readCachedConfiguration(String checksum) {
+		File file = getConfigurationCacheFile();
+		if (checksum == null || !file.exists())
+			return null;
+		
+		ObjectInputStream in = null;
+		try {
+			in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (!checksum.equals(in.readUTF())) {
+				log.info("The hibernate mappings changed, parsing them again");
+				return null;
+			}
+			CacheableConfiguration config = (CacheableConfiguration) in.readObject();
+			config.setFromCache();
+			config.setProperties(Environment.getProperties());
+			log.info("Using the cached hibernate configuration from " + file.getAbsolutePath());
+			return config;
+		}
+		catch (Exception e) {
+			log.warn("Unable to read the cached hibernate configuration from " + file.getAbsolutePath(), e);
+			return null;
+		}
+		finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+	
+	/**
+	 * Writes the configuration to the cache. Only the properties that were set by the configuration
+	 * files are written, the runtime and default properties are set again when it is read.
+	 * 
+	 * @param config the configuration with the parsed mappings
+	 * @param checksum the checksum of the mappings
+	 */
+	private void writeCachedConfiguration(CacheableConfiguration config, String checksum) {
+		Configuration base = new Configuration();
+		addProperties(base);
+		Properties baseProperties = base.getProperties();
+		
+		Properties properties = config.getProperties();
+		Properties configuredProperties = new Properties();
+		for (String key : properties.stringPropertyNames()) {
+			String value = properties.getProperty(key);
+			if (!value.equals(baseProperties.getProperty(key)))
+				configuredProperties.setProperty(key, value);
+		}
+		
+		Interceptor interceptor = config.getInterceptor();
+		File file = getConfigurationCacheFile();
+		ObjectOutputStream out = null;
+		try {
+			config.setProperties(new Properties());
+			config.setInterceptor(EmptyInterceptor.INSTANCE);
+			config.setConfiguredProperties(configuredProperties);
+			
+			out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeUTF(checksum);
+			out.writeObject(config);
+			out.close();
+			out = null;
+			log.info("Cached the hibernate configuration in " + file.getAbsolutePath());
+		}
+		catch (Exception e) {
+			log.warn("Unable to cache the hibernate configuration in " + file.getAbsolutePath(), e);
+			IOUtils.closeQuietly(out);
+			file.delete();
+		}
+		finally {
+			config.setProperties(properties);
+			config.setInterceptor(interceptor);
+			config.setConfiguredProperties(null);
+		}
+	}
+	
+	/**
+	 * Collect the config locations for the checksum of the cached configuration
+	 * 
+	 * @see org.springframework.orm.hibernate3.LocalSessionFactoryBean#setConfigLocations(org.springframework.core.io.Resource[])
+	 */
+	@Override
+	public void setConfigLocations(Resource[] configLocations) {
+		this.configLocations = configLocations;
+		super.setConfigLocations(configLocations);
 	}
 	
 	/**
@@ -209,6 +559,7 @@ public class HibernateSessionFactoryBean extends AnnotationSessionFactoryBean {
 	 */
 	@Override
 	public void setMappingJarLocations(Resource[] mappingJarLocations) {
+		this.mappingJarLocations = mappingJarLocations;
 		super.setMappingJarLocations(mappingJarLocations);
 	}
 	
@@ -289,6 +289,7 @@ public class HibernateUserDAO implements UserDAO {
 		credentials.setUuid(changeForUser.getUuid());
 		
 		sessionFactory.getCurrentSession().merge(credentials);
+		AuthenticationCache.passwordChanged(userIdToChange);
 		
 		// reset lockout 
 		changeForUser.setUserProperty(OpenmrsConstants.USER_PROPERTY_LOCKOUT_TIMESTAMP, "");
@@ -476,6 +477,7 @@ public class HibernateUserDAO implements UserDAO {
 	 */
 	public void updateLoginCredential(LoginCredential credential) {
 		sessionFactory.getCurrentSession().update(credential);
+		AuthenticationCache.passwordChanged(credential.getUserId());
 	}
 	
 	/**
@@ -13,6 +13,7 @@
  */
 package org.openmrs.api.db.hibernate;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -22,12 +23,17 @@ import org.apache.commons.collections.CollectionUtils;
 import org.hibernate.Criteria;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.Subqueries;
 import org.openmrs.Concept;
+import org.openmrs.Encounter;
 import org.openmrs.Location;
 import org.openmrs.Patient;
+import org.openmrs.User;
 import org.openmrs.Visit;
 import org.openmrs.VisitAttribute;
 import org.openmrs.VisitAttributeType;
@@ -35,6 +41,7 @@ import org.openmrs.VisitType;
 import org.openmrs.api.APIException;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.VisitDAO;
+import org.openmrs.reporting.CohortResultCacheInterceptor;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -45,6 +52,11 @@ import org.springframework.transaction.annotation.Transactional;
  */
 public class HibernateVisitDAO implements VisitDAO {
 	
+	/**
+	 * The maximum number of visit ids in the IN clause of one update statement
+	 */
+	private static final int STOP_VISITS_CHUNK_SIZE = 1000;
+	
 	private SessionFactory sessionFactory;
 	
 	public void setSessionFactory(SessionFactory sessionFactory) {
@@ -290,4 +302,77 @@ public class HibernateVisitDAO implements VisitDAO {
 		
 		return (Visit) criteria.uniqueResult();
 	}
+	
+	/**
+	 * @see org.openmrs.api.db.VisitDAO#getVisitIdsToStop(Collection, Date, Date, Integer)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<Integer> getVisitIdsToStop(Collection<VisitType> visitTypes, Date maximumStartDate, Date stopDate,
+	        Integer maxResults) {
+		Criteria criteria = createVisitsToStopCriteria(visitTypes, maximumStartDate, stopDate);
+		criteria.setProjection(Projections.property("visitId")).addOrder(Order.asc("visitId"));
+		if (maxResults != null)
+			criteria.setMaxResults(maxResults);
+		
+		return criteria.list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.VisitDAO#getCountOfVisitsToStop(Collection, Date, Date)
+	 */
+	@Override
+	public long getCountOfVisitsToStop(Collection<VisitType> visitTypes, Date maximumStartDate, Date stopDate) {
+		Criteria criteria = createVisitsToStopCriteria(visitTypes, maximumStartDate, stopDate);
+		criteria.setProjection(Projections.rowCount());
+		
+		return ((Number) criteria.uniqueResult()).longValue();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.VisitDAO#stopVisits(List, Date, User, Date)
+	 */
+	@Override
+	public int stopVisits(List<Integer> visitIds, Date stopDate, User changedBy, Date dateChanged) {
+		// the update statements don't see changes that are still in the session
+		getCurrentSession().flush();
+		
+		int stopped = 0;
+		for (int i = 0; i < visitIds.size(); i += STOP_VISITS_CHUNK_SIZE) {
+			List<Integer> chunk = new ArrayList<Integer>(visitIds.subList(i, Math.min(i + STOP_VISITS_CHUNK_SIZE, visitIds
+			        .size())));
+			stopped += getCurrentSession().createQuery(
+			    "update Visit set stopDatetime = :stopDate, changedBy = :changedBy, dateChanged = :dateChanged "
+			            + "where visitId in (:visitIds) and stopDatetime is null").setTimestamp("stopDate", stopDate)
+			        .setParameter("changedBy", changedBy).setTimestamp("dateChanged", dateChanged).setParameterList(
+			            "visitIds", chunk).executeUpdate();
+		}
+		if (stopped > 0)
+			CohortResultCacheInterceptor.dataChangedInBulk();
+		return stopped;
+	}
+	
+	/**
+	 * Creates the criteria for unvoided active visits that started before the stop date and have no
+	 * unvoided encounters after it, which is what the VisitValidator requires of a stopped visit
+	 */
+	private Criteria createVisitsToStopCriteria(Collection<VisitType> visitTypes, Date maximumStartDate, Date stopDate) {
+		Criteria criteria = getCurrentSession().createCriteria(Visit.class, "visit");
+		criteria.add(Restrictions.eq("voided", false)).add(Restrictions.isNull("stopDatetime"));
+		criteria.add(Restrictions.le("startDatetime", stopDate));
+		if (maximumStartDate != null)
+			criteria.add(Restrictions.le("startDatetime", maximumStartDate));
+		
+		if (CollectionUtils.isNotEmpty(visitTypes))
+			criteria.add(Restrictions.in("visitType", visitTypes));
+		
+		DetachedCriteria laterEncounters = DetachedCriteria.forClass(Encounter.class, "encounter");
+		laterEncounters.add(Restrictions.eqProperty("encounter.visit.visitId", "visit.visitId"));
+		laterEncounters.add(Restrictions.eq("encounter.voided", false));
+		laterEncounters.add(Restrictions.gt("encounter.encounterDatetime", stopDate));
+		laterEncounters.setProjection(Projections.id());
+		criteria.add(Subqueries.notExists(laterEncounters));
+		
+		return criteria;
+	}
 }
@@ -64,12 +64,14 @@ import org.openmrs.module.Module;
 import org.openmrs.module.ModuleFactory;
 import org.openmrs.module.ModuleUtil;
 import org.openmrs.reporting.AbstractReportObject;
+import org.openmrs.reporting.CohortResultCacheInterceptor;
 import org.openmrs.reporting.Report;
 import org.openmrs.util.HttpClient;
 import org.openmrs.util.LocaleUtility;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
+import org.openmrs.validator.ValidatorStatistics;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.validation.Errors;
@@ -811,7 +813,11 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 		if (sql == null || sql.trim().equals(""))
 			return null;
 		
-		return dao.executeSQL(sql, selectOnly);
+		List<List<Object>> results = dao.executeSQL(sql, selectOnly);
+		// the statement may have changed patient data without saving objects
+		if (!selectOnly)
+			CohortResultCacheInterceptor.dataChangedInBulk();
+		return results;
 	}
 	
 	/**
@@ -1206,6 +1212,8 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 			}
 		});
 		
+		systemInfoMap.put("SystemInfo.title.validatorInformation", ValidatorStatistics.getSummary());
+		
 		return systemInfoMap;
 	}
 	
@@ -292,6 +292,8 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 		// add/remove entries in the concept_word table (used for searching)
 		this.updateConceptIndex(conceptToReturn);
 		
+		dao.updateConceptSetClosure(conceptToReturn);
+		
 		return conceptToReturn;
 	}
 	
@@ -951,7 +953,22 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 	public List<Concept> getConceptsByConceptSet(Concept c) {
 		Set<Integer> alreadySeen = new HashSet<Integer>();
 		List<Concept> ret = new ArrayList<Concept>();
-		explodeConceptSetHelper(c, ret, alreadySeen);
+		if (c.getConceptId() == null)
+			return ret;
+		
+		// read the members of the set and all its subsets at once
+		Map<Integer, List<ConceptSet>> conceptSets = new HashMap<Integer, List<ConceptSet>>();
+		for (ConceptSet conceptSet : dao.getConceptSetsInSetAndSubsets(c)) {
+			Integer setId = conceptSet.getConceptSet().getConceptId();
+			List<ConceptSet> members = conceptSets.get(setId);
+			if (members == null) {
+				members = new ArrayList<ConceptSet>();
+				conceptSets.put(setId, members);
+			}
+			members.add(conceptSet);
+		}
+		
+		explodeConceptSetHelper(c, ret, alreadySeen, conceptSets);
 		return ret;
 	}
 	
@@ -1383,16 +1400,19 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 	 * @param ret
 	 * @param alreadySeen
 	 */
-	private void explodeConceptSetHelper(Concept concept, Collection<Concept> ret, Collection<Integer> alreadySeen) {
+	private void explodeConceptSetHelper(Concept concept, Collection<Concept> ret, Collection<Integer> alreadySeen,
+	        Map<Integer, List<ConceptSet>> conceptSets) {
 		if (alreadySeen.contains(concept.getConceptId()))
 			return;
 		alreadySeen.add(concept.getConceptId());
-		List<ConceptSet> cs = getConceptSets(concept);
+		List<ConceptSet> cs = conceptSets.get(concept.getConceptId());
+		if (cs == null)
+			return;
 		for (ConceptSet set : cs) {
 			Concept c = set.getConcept();
 			if (c.isSet()) {
 				ret.add(c);
-				explodeConceptSetHelper(c, ret, alreadySeen);
+				explodeConceptSetHelper(c, ret, alreadySeen, conceptSets);
 			} else {
 				ret.add(c);
 			}
@@ -1481,6 +1501,16 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 		return dao.conceptIterator();
 	}
 	
+	/**
+	 * @see org.openmrs.api.ConceptService#getConceptPage(org.openmrs.Concept, int, boolean)
+	 */
+	@Transactional(readOnly = true)
+	public List<Concept> getConceptPage(Concept after, int pageSize, boolean includeRetired) throws APIException {
+		if (pageSize < 1)
+			throw new APIException("The page size must be at least 1 but was " + pageSize);
+		return dao.getConceptPage(after == null ? null : after.getConceptId(), pageSize, includeRetired);
+	}
+	
 	private TaskDefinition createConceptIndexUpdateTask() {
 		TaskDefinition conceptIndexUpdateTaskDef = new TaskDefinition();
 		conceptIndexUpdateTaskDef.setTaskClass("org.openmrs.scheduler.tasks.ConceptIndexUpdateTask");
@@ -2272,4 +2302,11 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 		//We need to fetch it in DAO since it must be done in the MANUAL fush mode to prevent pre-mature flushes.
 		return dao.getDefaultConceptMapType();
 	}
+	
+	/**
+	 * @see org.openmrs.api.ConceptService#updateConceptSetClosure()
+	 */
+	public void updateConceptSetClosure() throws APIException {
+		dao.rebuildConceptSetClosure();
+	}
 }
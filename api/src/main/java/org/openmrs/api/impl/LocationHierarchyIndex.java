@@ -0,0 +1,241 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.db.LocationDAO;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * An in-memory index of the location tree and of the tags of every location, used by the
+ * {@link LocationServiceImpl} to answer descendant and tag queries without loading every location
+ * and its tags. <br/>
+ * <br/>
+ * An index is an immutable snapshot: every location has a position, and the descendants, retired
+ * locations and locations of a tag are bit sets of positions. The snapshot is shared by all
+ * threads and replaced as a whole (copy on write) when locations or tags are saved or purged. A
+ * snapshot built by a thread that changed locations in its current transaction is not shared, so
+ * other threads never see uncommitted changes.
+ *
+ * @since 1.10
+ */
+public class LocationHierarchyIndex {
+	
+	private static final Log log = LogFactory.getLog(LocationHierarchyIndex.class);
+	
+	private static volatile LocationHierarchyIndex current = null;
+	
+	/**
+	 * Incremented whenever the index is invalidated, so that a snapshot that was being built at the
+	 * same time is not shared
+	 */
+	private static long generation = 0;
+	
+	/**
+	 * Set for threads whose current transaction changed locations or tags
+	 */
+	private static final ThreadLocal<Boolean> changedInTransaction = new ThreadLocal<Boolean>();
+	
+	private final Integer[] locationIds;
+	
+	private final Map<Integer, Integer> positions;
+	
+	/**
+	 * The descendants of each location, including the location itself
+	 */
+	private final BitSet[] descendants;
+	
+	private final BitSet retired;
+	
+	private final Map<Integer, BitSet> tagMembers;
+	
+	/**
+	 * @param locations rows of location id, parent location id and retired flag
+	 * @param tagMappings rows of location id and location tag id
+	 */
+	private LocationHierarchyIndex(List<Object[]> locations, List<Object[]> tagMappings) {
+		int size = locations.size();
+		locationIds = new Integer[size];
+		positions = new HashMap<Integer, Integer>(size * 2);
+		descendants = new BitSet[size];
+		retired = new BitSet(size);
+		
+		int[] parents = new int[size];
+		for (int i = 0; i < size; i++) {
+			Object[] row = locations.get(i);
+			locationIds[i] = (Integer) row[0];
+			positions.put(locationIds[i], i);
+			descendants[i] = new BitSet(size);
+			if (Boolean.TRUE.equals(row[2]))
+				retired.set(i);
+		}
+		for (int i = 0; i < size; i++) {
+			Integer parentPosition = positions.get(locations.get(i)[1]);
+			parents[i] = parentPosition == null ? -1 : parentPosition;
+		}
+		
+		// walk up from every location and add it to the descendants of all its ancestors
+		for (int i = 0; i < size; i++) {
+			int position = i;
+			while (position >= 0 && !descendants[position].get(i)) {
+				descendants[position].set(i);
+				position = parents[position];
+			}
+		}
+		
+		tagMembers = new HashMap<Integer, BitSet>();
+		for (Object[] row : tagMappings) {
+			Integer position = positions.get(row[0]);
+			if (position == null)
+				continue;
+			BitSet members = tagMembers.get(row[1]);
+			if (members == null) {
+				members = new BitSet(size);
+				tagMembers.put((Integer) row[1], members);
+			}
+			members.set(position);
+		}
+	}
+	
+	/**
+	 * Gets the current index, building it from the database if needed
+	 *
+	 * @param dao the dao to read locations and tags with
+	 * @return the index
+	 */
+	public static LocationHierarchyIndex getIndex(LocationDAO dao) {
+		LocationHierarchyIndex index = current;
+		if (index != null && changedInTransaction.get() == null)
+			return index;
+		
+		long startGeneration;
+		synchronized (LocationHierarchyIndex.class) {
+			startGeneration = generation;
+		}
+		index = new LocationHierarchyIndex(dao.getLocationHierarchy(), dao.getLocationTagMappings());
+		if (log.isDebugEnabled())
+			log.debug("Built the location hierarchy index of " + index.locationIds.length + " locations");
+		
+		if (changedInTransaction.get() == null) {
+			synchronized (LocationHierarchyIndex.class) {
+				if (generation == startGeneration)
+					current = index;
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Drops the current index, it is built again when it is needed next
+	 */
+	public static void invalidate() {
+		synchronized (LocationHierarchyIndex.class) {
+			generation++;
+			current = null;
+		}
+	}
+	
+	/**
+	 * Drops the current index because locations or tags were changed. If a transaction is active,
+	 * the index is not shared by the current thread until the transaction completes and it is
+	 * dropped again then.
+	 */
+	public static void locationsChanged() {
+		invalidate();
+		if (TransactionSynchronizationManager.isSynchronizationActive() && changedInTransaction.get() == null) {
+			changedInTransaction.set(Boolean.TRUE);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					changedInTransaction.remove();
+					invalidate();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Gets the ids of the descendants of a location
+	 *
+	 * @param locationId the id of the location
+	 * @param includeSelf whether to include the location itself
+	 * @param includeRetired whether to include retired locations
+	 * @return the location ids, empty if the location is not in the index
+	 */
+	public List<Integer> getDescendantIds(Integer locationId, boolean includeSelf, boolean includeRetired) {
+		Integer position = positions.get(locationId);
+		if (position == null)
+			return new ArrayList<Integer>();
+		
+		BitSet result = (BitSet) descendants[position].clone();
+		if (!includeSelf)
+			result.clear(position);
+		if (!includeRetired)
+			result.andNot(retired);
+		return toIds(result);
+	}
+	
+	/**
+	 * Gets the ids of the unretired locations that have all of the given tags
+	 *
+	 * @param tagIds the location tag ids, a null id matches no location
+	 * @return the location ids, all unretired locations if no tags are given
+	 */
+	public List<Integer> getLocationIdsHavingAllTags(Collection<Integer> tagIds) {
+		BitSet result = new BitSet(locationIds.length);
+		result.set(0, locationIds.length);
+		for (Integer tagId : tagIds) {
+			BitSet members = tagMembers.get(tagId);
+			if (members == null)
+				return new ArrayList<Integer>();
+			result.and(members);
+		}
+		result.andNot(retired);
+		return toIds(result);
+	}
+	
+	/**
+	 * Gets the ids of the unretired locations that have any of the given tags
+	 *
+	 * @param tagIds the location tag ids
+	 * @return the location ids, empty if no tags are given
+	 */
+	public List<Integer> getLocationIdsHavingAnyTag(Collection<Integer> tagIds) {
+		BitSet result = new BitSet(locationIds.length);
+		for (Integer tagId : tagIds) {
+			BitSet members = tagMembers.get(tagId);
+			if (members != null)
+				result.or(members);
+		}
+		result.andNot(retired);
+		return toIds(result);
+	}
+	
+	private List<Integer> toIds(BitSet bits) {
+		List<Integer> ids = new ArrayList<Integer>(bits.cardinality());
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+			ids.add(locationIds[i]);
+		return ids;
+	}
+}
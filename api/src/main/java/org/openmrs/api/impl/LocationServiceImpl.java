@@ -84,6 +84,7 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 		
 		CustomDatatypeUtil.saveAttributesIfNecessary(location);
 		
+		LocationHierarchyIndex.locationsChanged();
 		return dao.saveLocation(location);
 	}
 	
@@ -183,13 +184,12 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 	 */
 	@Transactional(readOnly = true)
 	public List<Location> getLocationsByTag(LocationTag tag) throws APIException {
-		List<Location> locations = new ArrayList<Location>();
+		if (tag == null)
+			return new ArrayList<Location>();
 		
-		for (Location l : dao.getAllLocations(false))
-			if (l.getTags().contains(tag))
-				locations.add(l);
-		
-		return locations;
+		List<Integer> tagIds = new ArrayList<Integer>();
+		tagIds.add(tag.getLocationTagId());
+		return dao.getLocations(getIndex().getLocationIdsHavingAllTags(tagIds));
 	}
 	
 	/**
@@ -197,13 +197,13 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 	 */
 	@Transactional(readOnly = true)
 	public List<Location> getLocationsHavingAllTags(List<LocationTag> tags) throws APIException {
-		List<Location> locations = new ArrayList<Location>();
-		
-		for (Location loc : dao.getAllLocations(false))
-			if (loc.getTags().containsAll(tags))
-				locations.add(loc);
+		if (tags.isEmpty())
+			return dao.getAllLocations(false);
 		
-		return locations;
+		List<Integer> tagIds = new ArrayList<Integer>();
+		for (LocationTag tag : tags)
+			tagIds.add(tag == null ? null : tag.getLocationTagId());
+		return dao.getLocations(getIndex().getLocationIdsHavingAllTags(tagIds));
 	}
 	
 	/**
@@ -211,16 +211,12 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 	 */
 	@Transactional(readOnly = true)
 	public List<Location> getLocationsHavingAnyTag(List<LocationTag> tags) throws APIException {
-		List<Location> locations = new ArrayList<Location>();
-		
-		for (Location loc : dao.getAllLocations(false)) {
-			for (LocationTag t : tags) {
-				if (loc.getTags().contains(t) && !locations.contains(loc))
-					locations.add(loc);
-			}
+		List<Integer> tagIds = new ArrayList<Integer>();
+		for (LocationTag tag : tags) {
+			if (tag != null && tag.getLocationTagId() != null)
+				tagIds.add(tag.getLocationTagId());
 		}
-		
-		return locations;
+		return dao.getLocations(getIndex().getLocationIdsHavingAnyTag(tagIds));
 	}
 	
 	/**
@@ -244,6 +240,7 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 	 * @see org.openmrs.api.LocationService#purgeLocation(org.openmrs.Location)
 	 */
 	public void purgeLocation(Location location) throws APIException {
+		LocationHierarchyIndex.locationsChanged();
 		dao.deleteLocation(location);
 	}
 	
@@ -251,6 +248,7 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 	 * @see org.openmrs.api.LocationService#saveLocationTag(org.openmrs.LocationTag)
 	 */
 	public LocationTag saveLocationTag(LocationTag tag) throws APIException {
+		LocationHierarchyIndex.locationsChanged();
 		return dao.saveLocationTag(tag);
 	}
 	
@@ -329,6 +327,7 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 	 * @see org.openmrs.api.LocationService#purgeLocationTag(org.openmrs.LocationTag)
 	 */
 	public void purgeLocationTag(LocationTag tag) throws APIException {
+		LocationHierarchyIndex.locationsChanged();
 		dao.deleteLocationTag(tag);
 	}
 	
@@ -360,6 +359,25 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 		return dao.getRootLocations(includeRetired);
 	}
 	
+	/**
+	 * @see LocationService#getDescendantLocations(Location, boolean)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<Location> getDescendantLocations(Location location, boolean includeRetired) throws APIException {
+		if (location == null || location.getLocationId() == null)
+			return new ArrayList<Location>();
+		
+		return dao.getLocations(getIndex().getDescendantIds(location.getLocationId(), false, includeRetired));
+	}
+	
+	/**
+	 * @return the location hierarchy index, built if needed
+	 */
+	private LocationHierarchyIndex getIndex() {
+		return LocationHierarchyIndex.getIndex(dao);
+	}
+	
 	/**
 	 * @see org.openmrs.api.LocationService#getPossibleAddressValues(org.openmrs.Address, org.openmrs.AddressField)
 	 */
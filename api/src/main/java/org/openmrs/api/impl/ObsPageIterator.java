@@ -0,0 +1,105 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.impl;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.openmrs.Concept;
+import org.openmrs.Encounter;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.Person;
+import org.openmrs.api.ObsService;
+import org.openmrs.api.context.Context;
+
+/**
+ * Iterates over observations one page at a time with
+ * {@link ObsService#getObservationPage(List, List, List, List, Date, Date, boolean, Obs, int)}.
+ * The observations of a page are evicted from the session when the next page is read, so only one
+ * page is held in memory at a time.
+ *
+ * @since 1.10
+ */
+class ObsPageIterator implements Iterator<Obs> {
+	
+	private final List<Person> whom;
+	
+	private final List<Encounter> encounters;
+	
+	private final List<Concept> questions;
+	
+	private final List<Location> locations;
+	
+	private final Date fromDate;
+	
+	private final Date toDate;
+	
+	private final boolean includeVoidedObs;
+	
+	private final int pageSize;
+	
+	private List<Obs> page = null;
+	
+	private int index = 0;
+	
+	private Obs last = null;
+	
+	ObsPageIterator(List<Person> whom, List<Encounter> encounters, List<Concept> questions, List<Location> locations,
+	    Date fromDate, Date toDate, boolean includeVoidedObs, int pageSize) {
+		this.whom = whom;
+		this.encounters = encounters;
+		this.questions = questions;
+		this.locations = locations;
+		this.fromDate = fromDate;
+		this.toDate = toDate;
+		this.includeVoidedObs = includeVoidedObs;
+		this.pageSize = pageSize;
+	}
+	
+	/**
+	 * @see java.util.Iterator#hasNext()
+	 */
+	public boolean hasNext() {
+		if (page == null || (index >= page.size() && page.size() == pageSize)) {
+			if (page != null) {
+				for (Obs obs : page)
+					Context.evictFromSession(obs);
+			}
+			page = Context.getObsService().getObservationPage(whom, encounters, questions, locations, fromDate, toDate,
+			    includeVoidedObs, last, pageSize);
+			index = 0;
+		}
+		return index < page.size();
+	}
+	
+	/**
+	 * @see java.util.Iterator#next()
+	 */
+	public Obs next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		last = page.get(index++);
+		return last;
+	}
+	
+	/**
+	 * @see java.util.Iterator#remove()
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException("Observations cannot be removed while iterating over them");
+	}
+}
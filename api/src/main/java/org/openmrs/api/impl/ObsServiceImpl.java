@@ -13,14 +13,20 @@
  */
 package org.openmrs.api.impl;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.openmrs.Cohort;
 import org.openmrs.Concept;
 import org.openmrs.ConceptName;
@@ -39,12 +45,17 @@ import org.openmrs.api.context.Context;
 import org.openmrs.api.db.ObsDAO;
 import org.openmrs.api.handler.SaveHandler;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.ObsRow;
+import org.openmrs.obs.ObsValues;
+import org.openmrs.obs.handler.AbstractHandler;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * Default implementation of the Observation Service
@@ -54,6 +65,8 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 	
+	private static final Log log = LogFactory.getLog(ObsServiceImpl.class);
+	
 	/**
 	 * The data access object for the obs service
 	 */
@@ -328,6 +341,51 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 		    locations, obsGroupId, fromDate, toDate, null, includeVoidedObs));
 	}
 	
+	/**
+	 * @see org.openmrs.api.ObsService#getObservationPage(java.util.List, java.util.List,
+	 *      java.util.List, java.util.List, java.util.Date, java.util.Date, boolean, org.openmrs.Obs,
+	 *      int)
+	 */
+	@Transactional(readOnly = true)
+	public List<Obs> getObservationPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, boolean includeVoidedObs, Obs after, int pageSize)
+	        throws APIException {
+		validatePageSize(pageSize);
+		return dao.getObservationPage(whom, encounters, questions, locations, fromDate, toDate, includeVoidedObs,
+		    after == null ? null : after.getObsDatetime(), after == null ? null : after.getObsId(), pageSize);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getObservationRowPage(java.util.List, java.util.List,
+	 *      java.util.List, java.util.List, java.util.Date, java.util.Date, boolean,
+	 *      org.openmrs.obs.ObsRow, int)
+	 */
+	@Transactional(readOnly = true)
+	public List<ObsRow> getObservationRowPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, boolean includeVoidedObs, ObsRow after, int pageSize)
+	        throws APIException {
+		validatePageSize(pageSize);
+		return dao.getObservationRowPage(whom, encounters, questions, locations, fromDate, toDate, includeVoidedObs,
+		    after == null ? null : after.getObsDatetime(), after == null ? null : after.getObsId(), pageSize);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getObservationIterator(java.util.List, java.util.List,
+	 *      java.util.List, java.util.List, java.util.Date, java.util.Date, boolean, int)
+	 */
+	@Transactional(readOnly = true)
+	public Iterator<Obs> getObservationIterator(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, boolean includeVoidedObs, int pageSize)
+	        throws APIException {
+		validatePageSize(pageSize);
+		return new ObsPageIterator(whom, encounters, questions, locations, fromDate, toDate, includeVoidedObs, pageSize);
+	}
+	
+	private void validatePageSize(int pageSize) {
+		if (pageSize < 1)
+			throw new APIException("The page size must be at least 1 but was " + pageSize);
+	}
+	
 	/**
 	 * This implementation queries the obs table comparing the given <code>searchString</code> with
 	 * the patient's identifier, encounterId, and obsId
@@ -566,6 +624,16 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 		return getObservations(whom, null, questions, null, null, null, null, null, null, null, null, false);
 	}
 	
+	/**
+	 * @see org.openmrs.api.ObsService#getObservationValues(org.openmrs.Person, java.util.List)
+	 */
+	@Transactional(readOnly = true)
+	public ObsValues getObservationValues(Person who, List<Concept> questions) throws APIException {
+		if (who == null || who.getPersonId() == null || questions == null || questions.isEmpty())
+			return new ObsValues(0);
+		return dao.getObservationValues(who, questions);
+	}
+	
 	/**
 	 * @see org.openmrs.api.ObsService#getLastNObservations(java.lang.Integer, org.openmrs.Person,
 	 *      org.openmrs.Concept, boolean includeVoided)
@@ -744,6 +812,88 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 		return obs;
 	}
 	
+	/**
+	 * @see org.openmrs.api.ObsService#getComplexObservationPage(org.openmrs.Obs, int)
+	 */
+	@Transactional(readOnly = true)
+	public List<Obs> getComplexObservationPage(Obs after, int pageSize) throws APIException {
+		validatePageSize(pageSize);
+		return dao.getComplexObservationPage(after == null ? null : after.getObsId(), pageSize);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getObservationCountByComplexDataLocation(java.lang.String)
+	 */
+	@Transactional(readOnly = true)
+	public Integer getObservationCountByComplexDataLocation(String location) throws APIException {
+		return OpenmrsUtil.convertToInteger(dao.getObservationCountByComplexDataLocation(location));
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#migrateComplexData(java.util.List)
+	 */
+	public List<Obs> migrateComplexData(List<Obs> obsList) throws APIException {
+		List<Obs> migrated = new ArrayList<Obs>();
+		Map<String, File> oldFiles = new LinkedHashMap<String, File>();
+		final Map<File, AbstractHandler> handlers = new LinkedHashMap<File, AbstractHandler>();
+		for (Obs obs : obsList) {
+			ComplexObsHandler handler = obs.isComplex() ? getHandler(obs) : null;
+			if (!(handler instanceof AbstractHandler))
+				continue;
+			
+			String oldLocation = AbstractHandler.getComplexDataLocation(obs);
+			File oldFile = AbstractHandler.getComplexDataFile(obs);
+			String valueComplex;
+			try {
+				valueComplex = ((AbstractHandler) handler).copyToShardedLayout(obs);
+			}
+			catch (IOException e) {
+				log.warn("Unable to move the complex data of obs " + obs.getObsId(), e);
+				continue;
+			}
+			if (valueComplex == null)
+				continue;
+			
+			obs.setValueComplex(valueComplex);
+			dao.saveObs(obs);
+			oldFiles.put(oldLocation, oldFile);
+			handlers.put(oldFile, (AbstractHandler) handler);
+			migrated.add(obs);
+		}
+		if (oldFiles.isEmpty())
+			return migrated;
+		
+		// other versions of the obs may still refer to the old files
+		for (String location : dao.getObservationCountsByComplexDataLocation(oldFiles.keySet()).keySet())
+			handlers.remove(oldFiles.get(location));
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					if (status == STATUS_COMMITTED)
+						deleteFiles(handlers);
+				}
+			});
+		} else {
+			deleteFiles(handlers);
+		}
+		
+		return migrated;
+	}
+	
+	/**
+	 * Deletes files of the complex obs directory that no obs refers to anymore
+	 * 
+	 * @param handlers the handler of each file, by the file
+	 */
+	private void deleteFiles(Map<File, AbstractHandler> handlers) {
+		for (Map.Entry<File, AbstractHandler> entry : handlers.entrySet()) {
+			if (!entry.getValue().deleteFile(entry.getKey()))
+				log.warn("Could not delete " + entry.getKey().getAbsolutePath());
+		}
+	}
+	
 	/**
 	 * Internal method to remove ComplexData when an Obs is purged.
 	 */
@@ -48,6 +48,11 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public class VisitServiceImpl extends BaseOpenmrsService implements VisitService {
 	
+	/**
+	 * The number of visits {@link #stopVisits(Date)} stops with each update
+	 */
+	private static final int STOP_VISITS_BATCH_SIZE = 1000;
+	
 	private VisitDAO dao;
 	
 	/**
@@ -345,42 +350,60 @@ public class VisitServiceImpl extends BaseOpenmrsService implements VisitService
 	 */
 	@Override
 	public void stopVisits(Date maximumStartDate) {
+		if (maximumStartDate == null)
+			maximumStartDate = new Date();
+		
+		int stopped;
+		do {
+			stopped = stopVisits(maximumStartDate, STOP_VISITS_BATCH_SIZE, false);
+		} while (stopped == STOP_VISITS_BATCH_SIZE);
+	}
+	
+	/**
+	 * @see org.openmrs.api.VisitService#stopVisits(Date, Integer, boolean)
+	 */
+	@Override
+	public int stopVisits(Date maximumStartDate, Integer maxVisits, boolean dryRun) {
+		List<VisitType> visitTypesToStop = getVisitTypesToAutoClose();
+		if (visitTypesToStop.isEmpty())
+			return 0;
+		
+		Date stopDate = new Date();
+		if (maximumStartDate == null)
+			maximumStartDate = stopDate;
+		
+		if (dryRun) {
+			long count = dao.getCountOfVisitsToStop(visitTypesToStop, maximumStartDate, stopDate);
+			return (int) (maxVisits == null ? count : Math.min(count, maxVisits));
+		}
+		
+		List<Integer> visitIds = dao.getVisitIdsToStop(visitTypesToStop, maximumStartDate, stopDate, maxVisits);
+		if (visitIds.isEmpty())
+			return 0;
+		
+		return dao.stopVisits(visitIds, stopDate, Context.getAuthenticatedUser(), new Date());
+	}
+	
+	/**
+	 * @return the visit types named by the {@link OpenmrsConstants#GP_VISIT_TYPES_TO_AUTO_CLOSE}
+	 *         global property
+	 */
+	private List<VisitType> getVisitTypesToAutoClose() {
+		List<VisitType> visitTypesToStop = new ArrayList<VisitType>();
 		String gpValue = Context.getAdministrationService().getGlobalProperty(OpenmrsConstants.GP_VISIT_TYPES_TO_AUTO_CLOSE);
-		VisitService vs = Context.getVisitService();
 		if (StringUtils.isNotBlank(gpValue)) {
-			if (maximumStartDate == null)
-				maximumStartDate = new Date();
-			
-			List<VisitType> visitTypesToStop = new ArrayList<VisitType>();
 			String[] visitTypeNames = StringUtils.split(gpValue.trim(), ",");
 			for (int i = 0; i < visitTypeNames.length; i++) {
 				String currName = visitTypeNames[i];
 				visitTypeNames[i] = currName.trim().toLowerCase();
 			}
 			
-			List<VisitType> allVisitTypes = vs.getAllVisitTypes();
+			List<VisitType> allVisitTypes = Context.getVisitService().getAllVisitTypes();
 			for (VisitType visitType : allVisitTypes) {
 				if (ArrayUtils.contains(visitTypeNames, visitType.getName().toLowerCase()))
 					visitTypesToStop.add(visitType);
 			}
-			
-			if (visitTypesToStop.size() > 0) {
-				int counter = 0;
-				Date stopDate = new Date();
-				Visit nextVisit = dao.getNextVisit(null, visitTypesToStop, maximumStartDate);
-				while (nextVisit != null) {
-					nextVisit.setStopDatetime(stopDate);
-					dao.saveVisit(nextVisit);
-					if (counter++ > 50) {
-						//ensure changes are persisted to DB before reclaiming memory
-						Context.flushSession();
-						Context.clearSession();
-						counter = 0;
-					}
-					
-					nextVisit = dao.getNextVisit(nextVisit, visitTypesToStop, maximumStartDate);
-				}
-			}
 		}
+		return visitTypesToStop;
 	}
 }
@@ -30,6 +30,7 @@ import org.openmrs.api.PatientSetService.BooleanOperator;
 import org.openmrs.api.context.Context;
 import org.openmrs.report.EvaluationContext;
 import org.openmrs.reporting.AbstractReportObject;
+import org.openmrs.reporting.CohortResultCache;
 import org.openmrs.reporting.PatientFilter;
 import org.openmrs.reporting.PatientSearch;
 import org.openmrs.reporting.ReportObject;
@@ -273,23 +274,25 @@ public class CohortSearchHistory extends AbstractReportObject {
 	 * TODO: Implement {@link org.openmrs.api.impl.CohortServiceImpl#getAllCohorts()}
 	 * 
 	 * @param i
-	 * @param useCache whether to use a cached result, if available
+	 * @param useCache whether to use a cached result, if available and still current according to
+	 *            {@link CohortResultCache#isCurrent(Date)}
 	 * @return patient set resulting from the i_th filter in the search history
 	 */
 	public Cohort getPatientSet(int i, boolean useCache, EvaluationContext context) {
 		checkArrayLengths();
 		Cohort ret = null;
 		synchronized (this) {
-			if (useCache) {
+			if (useCache && CohortResultCache.isCurrent(cachedResultDates.get(i))) {
 				ret = cachedResults.get(i);
 			}
 			if (ret == null) {
 				ensureCachedFilter(i);
 				PatientFilter pf = cachedFilters.get(i);
+				Date evaluated = new Date();
 				ret = pf.filter(null, context);
 				cachedFilters.set(i, pf);
 				cachedResults.set(i, ret);
-				cachedResultDates.set(i, new Date());
+				cachedResultDates.set(i, evaluated);
 			}
 		}
 		return ret;
@@ -0,0 +1,382 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.Cohort;
+import org.openmrs.logic.datasource.ColumnarLogicDataSource;
+import org.openmrs.logic.datasource.LogicDataSource;
+import org.openmrs.logic.op.Operator;
+import org.openmrs.logic.result.ColumnarResult;
+import org.openmrs.logic.result.Result;
+
+/**
+ * Evaluates a list of criteria for a whole cohort at once. This is meant to back
+ * {@link LogicService#eval(Cohort, List)} so that a report with many columns does not read the
+ * same data once per column and patient. <br/>
+ * <br/>
+ * The criteria are grouped by the data source and key (root token) they read from. The cohort is
+ * then processed in chunks of {@link #getChunkSize()} patients, and for every chunk each key is
+ * read from its data source only once. Criteria that are just a key, optionally transformed by
+ * {@link Operator#LAST}, {@link Operator#FIRST}, {@link Operator#COUNT}, {@link Operator#AVERAGE},
+ * {@link Operator#EXISTS}, {@link Operator#NOT_EXISTS} or {@link Operator#DISTINCT}, are evaluated
+ * in memory from that shared read. If the data source is a {@link ColumnarLogicDataSource} that
+ * supports the key, the shared read is a {@link ColumnarResult} per patient and only the
+ * transformed values are converted to {@link Result}s. Other criteria on a data source key are handed to the data
+ * source for the whole chunk, and criteria on tokens that no data source knows (i.e. rules) are
+ * evaluated patient by patient through the {@link LogicContext}.
+ *
+ * @since 1.10
+ */
+public class LogicBatchEvaluator {
+	
+	private static final Log log = LogFactory.getLog(LogicBatchEvaluator.class);
+	
+	/**
+	 * The default number of patients read from a data source at a time
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+	
+	private LogicService logicService;
+	
+	private LogicContext context;
+	
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	
+	/**
+	 * @param logicService the service used to find the data sources and to parse keys
+	 * @param context the context to evaluate the criteria in
+	 */
+	public LogicBatchEvaluator(LogicService logicService, LogicContext context) {
+		this.logicService = logicService;
+		this.context = context;
+	}
+	
+	/**
+	 * @return the number of patients read from a data source at a time
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+	
+	/**
+	 * @param chunkSize the number of patients read from a data source at a time
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+	
+	/**
+	 * Evaluates all of the given criteria for every patient in the cohort
+	 *
+	 * @param who the patients to evaluate the criteria for
+	 * @param criterias the criteria to evaluate
+	 * @return the results of each criteria for each patient
+	 * @throws LogicException
+	 * @should read each key from its data source once per chunk
+	 * @should apply transforms to the shared read
+	 * @should pass criteria with comparisons to the data source
+	 * @should evaluate rule tokens per patient
+	 * @should read columns from columnar data sources
+	 */
+	public Map<LogicCriteria, Map<Integer, Result>> eval(Cohort who, List<LogicCriteria> criterias) throws LogicException {
+		Map<LogicCriteria, Map<Integer, Result>> results = new LinkedHashMap<LogicCriteria, Map<Integer, Result>>();
+		
+		// Map<data source, Map<key, criteria reading that key>>
+		Map<LogicDataSource, Map<String, List<LogicCriteria>>> groups = new LinkedHashMap<LogicDataSource, Map<String, List<LogicCriteria>>>();
+		List<LogicCriteria> rules = new ArrayList<LogicCriteria>();
+		
+		for (LogicCriteria criteria : criterias) {
+			results.put(criteria, new LinkedHashMap<Integer, Result>());
+			
+			String key = criteria.getRootToken();
+			LogicDataSource dataSource = getDataSource(key);
+			if (dataSource == null) {
+				rules.add(criteria);
+				continue;
+			}
+			
+			Map<String, List<LogicCriteria>> keys = groups.get(dataSource);
+			if (keys == null) {
+				keys = new LinkedHashMap<String, List<LogicCriteria>>();
+				groups.put(dataSource, keys);
+			}
+			List<LogicCriteria> group = keys.get(key);
+			if (group == null) {
+				group = new ArrayList<LogicCriteria>();
+				keys.put(key, group);
+			}
+			group.add(criteria);
+		}
+		
+		List<Integer> patientIds = new ArrayList<Integer>(who.getMemberIds());
+		Collections.sort(patientIds);
+		
+		for (int from = 0; from < patientIds.size(); from += chunkSize) {
+			List<Integer> chunkIds = patientIds.subList(from, Math.min(from + chunkSize, patientIds.size()));
+			Cohort chunk = new Cohort(chunkIds);
+			
+			for (Map.Entry<LogicDataSource, Map<String, List<LogicCriteria>>> dataSourceGroup : groups.entrySet()) {
+				for (Map.Entry<String, List<LogicCriteria>> keyGroup : dataSourceGroup.getValue().entrySet()) {
+					evalKeyGroup(dataSourceGroup.getKey(), keyGroup.getKey(), keyGroup.getValue(), chunk, chunkIds, results);
+				}
+			}
+			
+			for (LogicCriteria criteria : rules) {
+				Map<Integer, Result> criteriaResults = results.get(criteria);
+				for (Integer patientId : chunkIds)
+					criteriaResults.put(patientId, context.eval(patientId, criteria, criteria.getLogicParameters()));
+			}
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * Evaluates all criteria reading the given key for one chunk of patients
+	 */
+	private void evalKeyGroup(LogicDataSource dataSource, String key, List<LogicCriteria> group, Cohort chunk,
+	        List<Integer> chunkIds, Map<LogicCriteria, Map<Integer, Result>> results) throws LogicException {
+		
+		List<LogicCriteria> inMemory = new ArrayList<LogicCriteria>();
+		List<LogicCriteria> passedOn = new ArrayList<LogicCriteria>();
+		for (LogicCriteria criteria : group) {
+			if (canEvaluateInMemory(criteria))
+				inMemory.add(criteria);
+			else
+				passedOn.add(criteria);
+		}
+		
+		if (!inMemory.isEmpty() && dataSource instanceof ColumnarLogicDataSource
+		        && ((ColumnarLogicDataSource) dataSource).supportsColumns(key)) {
+			Map<Integer, ColumnarResult> values = ((ColumnarLogicDataSource) dataSource).readColumns(context, chunk, key);
+			for (LogicCriteria criteria : inMemory) {
+				LogicTransform transform = getTransform(criteria);
+				Map<Integer, Result> criteriaResults = results.get(criteria);
+				for (Integer patientId : chunkIds)
+					criteriaResults.put(patientId, applyTransform(values.get(patientId), transform));
+			}
+		} else if (!inMemory.isEmpty()) {
+			LogicCriteria keyCriteria = parseKey(key);
+			if (keyCriteria == null) {
+				passedOn.addAll(inMemory);
+			} else {
+				Map<Integer, Result> values = dataSource.read(context, chunk, keyCriteria);
+				for (LogicCriteria criteria : inMemory) {
+					LogicTransform transform = getTransform(criteria);
+					Map<Integer, Result> criteriaResults = results.get(criteria);
+					for (Integer patientId : chunkIds)
+						criteriaResults.put(patientId, applyTransform(values.get(patientId), transform));
+				}
+			}
+		}
+		
+		for (LogicCriteria criteria : passedOn) {
+			Map<Integer, Result> read = dataSource.read(context, chunk, criteria);
+			Map<Integer, Result> criteriaResults = results.get(criteria);
+			for (Integer patientId : chunkIds) {
+				Result result = read.get(patientId);
+				criteriaResults.put(patientId, result == null ? Result.emptyResult() : result);
+			}
+		}
+	}
+	
+	/**
+	 * Finds the data source that provides the given key
+	 *
+	 * @param key the key (root token) of a criteria
+	 * @return the data source or null if the key is not provided by any data source
+	 */
+	private LogicDataSource getDataSource(String key) {
+		if (key == null)
+			return null;
+		for (LogicDataSource dataSource : logicService.getLogicDataSources().values()) {
+			if (dataSource.hasKey(key))
+				return dataSource;
+		}
+		return null;
+	}
+	
+	/**
+	 * @return a criteria that reads all values of the given key or null if it can't be parsed
+	 */
+	private LogicCriteria parseKey(String key) {
+		try {
+			return logicService.parse("'" + key + "'");
+		}
+		catch (Exception e) {
+			log.debug("Unable to parse key " + key + ", passing its criteria on to the data source", e);
+			return null;
+		}
+	}
+	
+	/**
+	 * @return the transform of the given criteria or null if it has none
+	 */
+	private LogicTransform getTransform(LogicCriteria criteria) {
+		return criteria.getExpression() == null ? null : criteria.getExpression().getTransform();
+	}
+	
+	/**
+	 * @return true if the criteria is just a key with at most a transform applied to it
+	 */
+	private boolean canEvaluateInMemory(LogicCriteria criteria) {
+		if (criteria.getLogicParameters() != null && !criteria.getLogicParameters().isEmpty())
+			return false;
+		
+		LogicExpression expression = criteria.getExpression();
+		if (expression == null)
+			return true;
+		if (expression.getOperator() != null)
+			return false;
+		
+		LogicTransform transform = expression.getTransform();
+		if (transform == null || transform.getTransformOperator() == null)
+			return true;
+		
+		Operator operator = transform.getTransformOperator();
+		return transform.getSortColumn() == null
+		        && (operator == Operator.LAST || operator == Operator.FIRST || operator == Operator.COUNT
+		                || operator == Operator.AVERAGE || operator == Operator.EXISTS
+		                || operator == Operator.NOT_EXISTS || operator == Operator.DISTINCT);
+	}
+	
+	/**
+	 * Applies the given transform to all values read for one patient
+	 *
+	 * @param values the values read for a patient, may be null
+	 * @param transform the transform to apply, may be null
+	 * @return the transformed result
+	 */
+	protected Result applyTransform(Result values, LogicTransform transform) {
+		List<Result> list = toList(values);
+		Operator operator = transform == null ? null : transform.getTransformOperator();
+		
+		if (operator == null)
+			return values == null ? Result.emptyResult() : values;
+		else if (operator == Operator.COUNT)
+			return new Result(list.size());
+		else if (operator == Operator.EXISTS)
+			return new Result(!list.isEmpty());
+		else if (operator == Operator.NOT_EXISTS)
+			return new Result(list.isEmpty());
+		else if (operator == Operator.DISTINCT)
+			return new Result(list).unique();
+		else if (operator == Operator.AVERAGE) {
+			double sum = 0;
+			int count = 0;
+			for (Result value : list) {
+				Double number = value.toNumber();
+				if (number != null) {
+					sum += number;
+					count++;
+				}
+			}
+			return count == 0 ? Result.emptyResult() : new Result(sum / count);
+		}
+		
+		// LAST or FIRST
+		if (list.isEmpty())
+			return Result.emptyResult();
+		
+		Integer numResults = transform.getNumResults();
+		if (numResults == null || numResults == 1)
+			return operator == Operator.LAST ? new Result(list).latest() : new Result(list).earliest();
+		
+		List<Result> sorted = new ArrayList<Result>(list);
+		Collections.sort(sorted, new ResultDateComparator(operator == Operator.LAST));
+		return new Result(sorted.subList(0, Math.min(numResults, sorted.size())));
+	}
+	
+	/**
+	 * Applies the given transform to all values read for one patient, converting only the
+	 * transformed values to a {@link Result}
+	 *
+	 * @param values the values read for a patient, may be null
+	 * @param transform the transform to apply, may be null
+	 * @return the transformed result
+	 */
+	protected Result applyTransform(ColumnarResult values, LogicTransform transform) {
+		Operator operator = transform == null ? null : transform.getTransformOperator();
+		int size = values == null ? 0 : values.size();
+		
+		if (operator == Operator.COUNT)
+			return new Result(size);
+		else if (operator == Operator.EXISTS)
+			return new Result(size > 0);
+		else if (operator == Operator.NOT_EXISTS)
+			return new Result(size == 0);
+		else if (size == 0)
+			return Result.emptyResult();
+		else if (operator == null)
+			return values.toResult();
+		else if (operator == Operator.DISTINCT)
+			return values.distinct().toResult();
+		else if (operator == Operator.AVERAGE) {
+			Double average = values.average();
+			return average == null ? Result.emptyResult() : new Result(average);
+		}
+		
+		// LAST or FIRST
+		int numResults = transform.getNumResults() == null ? 1 : transform.getNumResults();
+		return operator == Operator.LAST ? values.latest(numResults).toResult() : values.earliest(numResults)
+		        .toResult();
+	}
+	
+	/**
+	 * @return the individual values in the given result
+	 */
+	private List<Result> toList(Result result) {
+		if (result == null || result.isNull())
+			return new ArrayList<Result>();
+		if (result.isEmpty()) {
+			// a single value
+			List<Result> single = new ArrayList<Result>();
+			single.add(result);
+			return single;
+		}
+		return result;
+	}
+	
+	/**
+	 * Sorts results by result date, putting results without a date last
+	 */
+	private static class ResultDateComparator implements Comparator<Result> {
+		
+		private boolean descending;
+		
+		public ResultDateComparator(boolean descending) {
+			this.descending = descending;
+		}
+		
+		public int compare(Result r1, Result r2) {
+			Date d1 = r1.getResultDate();
+			Date d2 = r2.getResultDate();
+			if (d1 == null)
+				return d2 == null ? 0 : 1;
+			if (d2 == null)
+				return -1;
+			return descending ? d2.compareTo(d1) : d1.compareTo(d2);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.logic.datasource;
+
+import java.util.Map;
+
+import org.openmrs.Cohort;
+import org.openmrs.logic.LogicContext;
+import org.openmrs.logic.LogicException;
+import org.openmrs.logic.result.ColumnarResult;
+
+/**
+ * A data source that can also deliver the values of (some of) its keys as a
+ * {@link ColumnarResult} per patient instead of a {@link org.openmrs.logic.result.Result}. This
+ * avoids building a result object for every value of a long history when the values are only
+ * going to be counted, averaged or reduced to the latest few, see
+ * {@link org.openmrs.logic.LogicBatchEvaluator}.
+ *
+ * @since 1.10
+ */
+public interface ColumnarLogicDataSource extends LogicDataSource {
+	
+	/**
+	 * @param key a key of this data source
+	 * @return true if all values of the given key can be read with
+	 *         {@link #readColumns(LogicContext, Cohort, String)}
+	 */
+	public boolean supportsColumns(String key);
+	
+	/**
+	 * Reads all values of the given key for the given patients
+	 * 
+	 * @param context the current logic context
+	 * @param patients Cohort of Patient(s) for whom to read the values
+	 * @param key the key to read, must be supported according to {@link #supportsColumns(String)}
+	 * @return the values for each patient, patients without values may be missing
+	 */
+	public Map<Integer, ColumnarResult> readColumns(LogicContext context, Cohort patients, String key)
+	        throws LogicException;
+	
+}
@@ -0,0 +1,435 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.logic.result;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.openmrs.Concept;
+import org.openmrs.api.context.Context;
+import org.openmrs.logic.result.Result.Datatype;
+
+/**
+ * A compact list of values of one datatype for one patient. Unlike {@link Result}, which holds
+ * every value in its own object with boxed fields and the source object, the values are kept in
+ * parallel primitive arrays: result dates as milliseconds, numeric and boolean values as doubles,
+ * coded values as concept ids and datetime values as milliseconds. <br/>
+ * <br/>
+ * This is meant for data sources and operators that process a long history of values for many
+ * patients. The operators ({@link #latest()}, {@link #count()}, {@link #average()}, etc) work on
+ * the arrays directly, and {@link #toResult()} should only be called on the (usually much smaller)
+ * outcome at the API boundary. Text values are not supported, use {@link Result} for those.
+ *
+ * @since 1.10
+ */
+public class ColumnarResult {
+	
+	private static final int INITIAL_CAPACITY = 10;
+	
+	/**
+	 * Stored in place of a missing result date
+	 */
+	private static final long NO_DATE = Long.MIN_VALUE;
+	
+	private Datatype datatype;
+	
+	private int size = 0;
+	
+	private long[] resultDates;
+	
+	private double[] numericValues;
+	
+	private int[] conceptIds;
+	
+	private long[] datetimeValues;
+	
+	/**
+	 * Creates an empty list of values of the given datatype
+	 *
+	 * @param datatype the datatype of all values that will be added
+	 * @should fail for text datatype
+	 */
+	public ColumnarResult(Datatype datatype) {
+		this(datatype, INITIAL_CAPACITY);
+	}
+	
+	/**
+	 * Creates an empty list of values of the given datatype with room for the given number of values
+	 *
+	 * @param datatype the datatype of all values that will be added
+	 * @param capacity the number of values expected
+	 */
+	public ColumnarResult(Datatype datatype, int capacity) {
+		if (datatype == null || datatype == Datatype.TEXT)
+			throw new IllegalArgumentException("Datatype " + datatype + " is not supported by ColumnarResult");
+		this.datatype = datatype;
+		
+		capacity = Math.max(capacity, 1);
+		resultDates = new long[capacity];
+		if (datatype == Datatype.CODED)
+			conceptIds = new int[capacity];
+		else if (datatype == Datatype.DATETIME)
+			datetimeValues = new long[capacity];
+		else
+			numericValues = new double[capacity];
+	}
+	
+	/**
+	 * @return the datatype of all values in this result
+	 */
+	public Datatype getDatatype() {
+		return datatype;
+	}
+	
+	/**
+	 * @return the number of values in this result
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return true if this result has no values
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Adds a numeric value
+	 *
+	 * @param resultDate the date of the value, may be null
+	 * @param value the value
+	 * @should fail if the datatype is not numeric
+	 */
+	public void addNumeric(Date resultDate, double value) {
+		checkDatatype(Datatype.NUMERIC);
+		ensureCapacity();
+		numericValues[size] = value;
+		addResultDate(resultDate);
+	}
+	
+	/**
+	 * Adds a boolean value
+	 *
+	 * @param resultDate the date of the value, may be null
+	 * @param value the value
+	 */
+	public void addBoolean(Date resultDate, boolean value) {
+		checkDatatype(Datatype.BOOLEAN);
+		ensureCapacity();
+		numericValues[size] = value ? 1 : 0;
+		addResultDate(resultDate);
+	}
+	
+	/**
+	 * Adds a coded value
+	 *
+	 * @param resultDate the date of the value, may be null
+	 * @param conceptId the id of the concept answer
+	 */
+	public void addCoded(Date resultDate, int conceptId) {
+		checkDatatype(Datatype.CODED);
+		ensureCapacity();
+		conceptIds[size] = conceptId;
+		addResultDate(resultDate);
+	}
+	
+	/**
+	 * Adds a datetime value
+	 *
+	 * @param resultDate the date of the value, may be null
+	 * @param value the value
+	 */
+	public void addDatetime(Date resultDate, Date value) {
+		checkDatatype(Datatype.DATETIME);
+		ensureCapacity();
+		datetimeValues[size] = value.getTime();
+		addResultDate(resultDate);
+	}
+	
+	/**
+	 * @param index the index of a value
+	 * @return the result date of the value at the given index or null if it has none
+	 */
+	public Date getResultDate(int index) {
+		checkIndex(index);
+		return resultDates[index] == NO_DATE ? null : new Date(resultDates[index]);
+	}
+	
+	/**
+	 * @param index the index of a value
+	 * @return the numeric value at the given index, booleans are returned as 1 or 0
+	 */
+	public double getNumeric(int index) {
+		checkIndex(index);
+		if (numericValues == null)
+			throw new IllegalStateException("A " + datatype + " result has no numeric values");
+		return numericValues[index];
+	}
+	
+	/**
+	 * @param index the index of a value
+	 * @return the concept id of the coded value at the given index
+	 */
+	public int getConceptId(int index) {
+		checkIndex(index);
+		checkDatatype(Datatype.CODED);
+		return conceptIds[index];
+	}
+	
+	/**
+	 * @param index the index of a value
+	 * @return the datetime value at the given index
+	 */
+	public Date getDatetime(int index) {
+		checkIndex(index);
+		checkDatatype(Datatype.DATETIME);
+		return new Date(datetimeValues[index]);
+	}
+	
+	/**
+	 * @return the value with the latest result date, or an empty result if there are no values
+	 * @should return the value with the latest result date
+	 * @should return the first value if no value has a result date
+	 */
+	public ColumnarResult latest() {
+		return latest(1);
+	}
+	
+	/**
+	 * @param numResults the maximum number of values to return
+	 * @return the values with the latest result dates, latest first
+	 */
+	public ColumnarResult latest(int numResults) {
+		return select(numResults, true);
+	}
+	
+	/**
+	 * @return the value with the earliest result date, or an empty result if there are no values
+	 */
+	public ColumnarResult earliest() {
+		return earliest(1);
+	}
+	
+	/**
+	 * @param numResults the maximum number of values to return
+	 * @return the values with the earliest result dates, earliest first
+	 */
+	public ColumnarResult earliest(int numResults) {
+		return select(numResults, false);
+	}
+	
+	/**
+	 * @return the number of values
+	 */
+	public int count() {
+		return size;
+	}
+	
+	/**
+	 * @return the average of the values or null if there are none or they are not numeric
+	 * @should return the average of numeric values
+	 */
+	public Double average() {
+		if (size == 0 || numericValues == null)
+			return null;
+		double sum = 0;
+		for (int i = 0; i < size; i++)
+			sum += numericValues[i];
+		return sum / size;
+	}
+	
+	/**
+	 * @return the values with duplicates removed, keeping the first occurrence of each value
+	 * @should remove duplicate values
+	 */
+	public ColumnarResult distinct() {
+		ColumnarResult distinct = new ColumnarResult(datatype, size);
+		Set<Object> seen = new HashSet<Object>();
+		for (int i = 0; i < size; i++) {
+			if (seen.add(getValue(i)))
+				distinct.copyFrom(this, i);
+		}
+		return distinct;
+	}
+	
+	/**
+	 * Converts this to a {@link Result}. A single value becomes a single result, several values a
+	 * list result and no values {@link Result#emptyResult()}. The converted results do not have a
+	 * result object. Coded values are looked up through the concept service.
+	 *
+	 * @return the equivalent Result
+	 * @should convert a single value to a single result
+	 * @should convert several values to a list result
+	 * @should convert no values to an empty result
+	 */
+	public Result toResult() {
+		if (size == 0)
+			return Result.emptyResult();
+		if (size == 1)
+			return toResult(0);
+		
+		List<Result> results = new ArrayList<Result>(size);
+		for (int i = 0; i < size; i++)
+			results.add(toResult(i));
+		return new Result(results);
+	}
+	
+	/**
+	 * Converts the value at the given index to a single {@link Result}
+	 *
+	 * @param index the index of a value
+	 * @return the equivalent Result
+	 */
+	public Result toResult(int index) {
+		checkIndex(index);
+		Date resultDate = getResultDate(index);
+		switch (datatype) {
+			case BOOLEAN:
+				return new Result(resultDate, Datatype.BOOLEAN, numericValues[index] != 0, null, null, null, null, null);
+			case CODED:
+				Concept concept = Context.getConceptService().getConcept(conceptIds[index]);
+				return new Result(resultDate, Datatype.CODED, null, concept, null, null, null, null);
+			case DATETIME:
+				return new Result(resultDate, Datatype.DATETIME, null, null, getDatetime(index), null, null, null);
+			default:
+				return new Result(resultDate, Datatype.NUMERIC, null, null, null, numericValues[index], null, null);
+		}
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append(getValue(i));
+		}
+		return sb.append("]").toString();
+	}
+	
+	/**
+	 * @return the value at the given index as a concept id, date, boolean or double
+	 */
+	private Object getValue(int index) {
+		switch (datatype) {
+			case BOOLEAN:
+				return numericValues[index] != 0;
+			case CODED:
+				return conceptIds[index];
+			case DATETIME:
+				return new Date(datetimeValues[index]);
+			default:
+				return numericValues[index];
+		}
+	}
+	
+	/**
+	 * Returns the given number of values ordered by result date, values without a date come last
+	 */
+	private ColumnarResult select(int numResults, final boolean descending) {
+		ColumnarResult selected = new ColumnarResult(datatype, Math.min(numResults, size));
+		if (numResults <= 0 || size == 0)
+			return selected;
+		
+		if (numResults == 1) {
+			// a single scan is enough, without a date anywhere the first value wins
+			int best = 0;
+			for (int i = 1; i < size; i++) {
+				if (resultDates[i] != NO_DATE
+				        && (resultDates[best] == NO_DATE || (descending ? resultDates[i] > resultDates[best]
+				                : resultDates[i] < resultDates[best])))
+					best = i;
+			}
+			selected.copyFrom(this, best);
+			return selected;
+		}
+		
+		Integer[] indexes = new Integer[size];
+		for (int i = 0; i < size; i++)
+			indexes[i] = i;
+		Arrays.sort(indexes, new Comparator<Integer>() {
+			
+			public int compare(Integer i1, Integer i2) {
+				long d1 = resultDates[i1];
+				long d2 = resultDates[i2];
+				if (d1 == d2)
+					return 0;
+				if (d1 == NO_DATE)
+					return 1;
+				if (d2 == NO_DATE)
+					return -1;
+				return (d1 < d2) == descending ? 1 : -1;
+			}
+		});
+		for (int i = 0; i < Math.min(numResults, size); i++)
+			selected.copyFrom(this, indexes[i]);
+		return selected;
+	}
+	
+	/**
+	 * Appends the value at the given index of another result of the same datatype
+	 */
+	private void copyFrom(ColumnarResult other, int index) {
+		ensureCapacity();
+		if (conceptIds != null)
+			conceptIds[size] = other.conceptIds[index];
+		else if (datetimeValues != null)
+			datetimeValues[size] = other.datetimeValues[index];
+		else
+			numericValues[size] = other.numericValues[index];
+		resultDates[size] = other.resultDates[index];
+		size++;
+	}
+	
+	/**
+	 * Stores the result date of the value being added and completes the addition
+	 */
+	private void addResultDate(Date resultDate) {
+		resultDates[size] = resultDate == null ? NO_DATE : resultDate.getTime();
+		size++;
+	}
+	
+	private void ensureCapacity() {
+		if (size < resultDates.length)
+			return;
+		int capacity = resultDates.length * 3 / 2 + 1;
+		resultDates = Arrays.copyOf(resultDates, capacity);
+		if (numericValues != null)
+			numericValues = Arrays.copyOf(numericValues, capacity);
+		if (conceptIds != null)
+			conceptIds = Arrays.copyOf(conceptIds, capacity);
+		if (datetimeValues != null)
+			datetimeValues = Arrays.copyOf(datetimeValues, capacity);
+	}
+	
+	private void checkDatatype(Datatype expected) {
+		if (datatype != expected)
+			throw new IllegalStateException("Cannot use a " + expected + " value in a " + datatype + " result");
+	}
+	
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+}
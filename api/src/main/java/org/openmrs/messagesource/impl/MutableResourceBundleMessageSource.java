@@ -15,6 +15,7 @@ package org.openmrs.messagesource.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -24,6 +25,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -39,7 +42,13 @@ import org.springframework.core.io.Resource;
 
 /**
  * ResourceBundleMessageSource extends ReloadableResourceBundleMessageSource to provide the
- * additional features of a MutableMessageSource.
+ * additional features of a MutableMessageSource. <br/>
+ * <br/>
+ * Messages are not resolved through the properties files on every lookup. The first time a locale
+ * is needed, the messages of all basenames and of the whole fallback chain of the locale are merged
+ * into one table for that locale, and message formats are cached per code in that table. Lookups
+ * are then a single map lookup without locks or file checks. The tables are replaced by
+ * {@link #refresh()} when messages change, e.g. when a module copies its messages into the webapp.
  */
 public class MutableResourceBundleMessageSource extends ReloadableResourceBundleMessageSource implements MutableMessageSource, ApplicationContextAware {
 	
@@ -61,6 +70,11 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 	/** Cached list of available locales. */
 	private Collection<Locale> locales;
 	
+	/**
+	 * The merged messages by locale, the map is replaced as a whole by {@link #refresh()}
+	 */
+	private volatile ConcurrentMap<Locale, LocaleMessages> messageTable = new ConcurrentHashMap<Locale, LocaleMessages>();
+	
 	/**
 	 * @see org.openmrs.messagesource.MessageSourceService#getLocales()
 	 */
@@ -74,6 +88,77 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 		return locales;
 	}
 	
+	/**
+	 * Forgets the merged messages of all locales, so that they are read from the properties files
+	 * again when they are next needed. Lookups that are running keep using the old messages.
+	 * 
+	 * @since 1.10
+	 * @should read changed messages again
+	 */
+	public void refresh() {
+		clearCache();
+		messageTable = new ConcurrentHashMap<Locale, LocaleMessages>();
+	}
+	
+	/**
+	 * @see org.springframework.context.support.ReloadableResourceBundleMessageSource#resolveCodeWithoutArguments(java.lang.String,
+	 *      java.util.Locale)
+	 * @should resolve a message from the properties file of the locale
+	 * @should fall back to the properties file without a locale
+	 * @should return null for an unknown code
+	 */
+	@Override
+	protected String resolveCodeWithoutArguments(String code, Locale locale) {
+		return getLocaleMessages(locale).messages.get(code);
+	}
+	
+	/**
+	 * @see org.springframework.context.support.ReloadableResourceBundleMessageSource#resolveCode(java.lang.String,
+	 *      java.util.Locale)
+	 * @should resolve a message with arguments
+	 */
+	@Override
+	protected MessageFormat resolveCode(String code, Locale locale) {
+		LocaleMessages localeMessages = getLocaleMessages(locale);
+		MessageFormat format = localeMessages.formats.get(code);
+		if (format == null) {
+			String message = localeMessages.messages.get(code);
+			if (message == null)
+				return null;
+			
+			// message formats are only used while synchronized on them by the AbstractMessageSource
+			format = createMessageFormat(message, locale);
+			MessageFormat existing = localeMessages.formats.putIfAbsent(code, format);
+			if (existing != null)
+				format = existing;
+		}
+		return format;
+	}
+	
+	/**
+	 * Gets the messages of the given locale, merging them from the properties files if they are
+	 * needed for the first time
+	 * 
+	 * @param locale the locale
+	 * @return the messages
+	 */
+	private LocaleMessages getLocaleMessages(Locale locale) {
+		ConcurrentMap<Locale, LocaleMessages> table = messageTable;
+		LocaleMessages localeMessages = table.get(locale);
+		if (localeMessages == null) {
+			long start = System.currentTimeMillis();
+			Properties merged = getMergedProperties(locale).getProperties();
+			localeMessages = new LocaleMessages(merged);
+			LocaleMessages existing = table.putIfAbsent(locale, localeMessages);
+			if (existing != null)
+				localeMessages = existing;
+			else if (log.isDebugEnabled())
+				log.debug("Merged " + localeMessages.messages.size() + " messages for locale " + locale + " in "
+				        + (System.currentTimeMillis() - start) + " ms");
+		}
+		return localeMessages;
+	}
+	
 	@Override
 	public void setCacheSeconds(int cacheSeconds) {
 		this.cacheMilliseconds = cacheSeconds * 1000;
@@ -164,7 +249,7 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 				propertiesFile.createNewFile();
 			// append the properties to the appropriate messages file
 			OpenmrsUtil.storeProperties(props, propertiesFile, namespace + ": " + name + " v" + version);
-			
+			refresh();
 		}
 		catch (Exception ex) {
 			log.error("Error creating new properties file");
@@ -214,6 +299,7 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 	public void setBasename(String basename) {
 		super.setBasename(basename);
 		this.basenames = new String[] { basename };
+		refresh();
 	}
 	
 	/**
@@ -225,6 +311,7 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 	public void setBasenames(String[] basenames) {
 		super.setBasenames(basenames);
 		this.basenames = basenames;
+		refresh();
 	}
 	
 	/**
@@ -238,6 +325,7 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 				OpenmrsUtil.loadProperties(props, propertyFile);
 				props.setProperty(message.getCode(), message.getMessage());
 				OpenmrsUtil.storeProperties(props, propertyFile, "OpenMRS Application Messages");
+				refresh();
 			}
 			catch (Exception e) {
 				log.error("Error generated", e);
@@ -256,6 +344,7 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 				OpenmrsUtil.loadProperties(props, propertyFile);
 				props.remove(message.getCode());
 				OpenmrsUtil.storeProperties(props, propertyFile, PROPERTIES_FILE_COMMENT);
+				refresh();
 			}
 			catch (Exception e) {
 				log.error("Error generated", e);
@@ -419,4 +508,20 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 		return null;
 	}
 	
+	/**
+	 * The merged messages of one locale and the message formats that were created from them
+	 */
+	private static class LocaleMessages {
+		
+		private final Map<String, String> messages;
+		
+		private final ConcurrentMap<String, MessageFormat> formats = new ConcurrentHashMap<String, MessageFormat>();
+		
+		public LocaleMessages(Properties properties) {
+			Map<String, String> copy = new HashMap<String, String>(properties.size() * 4 / 3 + 1);
+			for (String code : properties.stringPropertyNames())
+				copy.put(code, properties.getProperty(code));
+			messages = copy;
+		}
+	}
 }
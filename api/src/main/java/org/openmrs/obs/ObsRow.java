@@ -0,0 +1,121 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.obs;
+
+import java.util.Date;
+
+/**
+ * A read only row with the ids and values of an observation. Rows are read without loading the
+ * {@link org.openmrs.Obs} and the objects it refers to, so they are cheap to page through large obs
+ * histories with.
+ *
+ * @see org.openmrs.api.ObsService#getObservationRowPage(java.util.List, java.util.List,
+ *      java.util.List, java.util.List, Date, Date, boolean, ObsRow, int)
+ * @since 1.10
+ */
+public class ObsRow implements java.io.Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final Integer obsId;
+	
+	private final Integer personId;
+	
+	private final Integer conceptId;
+	
+	private final Integer encounterId;
+	
+	private final Integer locationId;
+	
+	private final Date obsDatetime;
+	
+	private final Double valueNumeric;
+	
+	private final Integer valueCodedId;
+	
+	private final Date valueDatetime;
+	
+	private final String valueText;
+	
+	/**
+	 * Creates a row from the values read in the order of the parameters
+	 */
+	public ObsRow(Integer obsId, Integer personId, Integer conceptId, Integer encounterId, Integer locationId,
+	    Date obsDatetime, Double valueNumeric, Integer valueCodedId, Date valueDatetime, String valueText) {
+		this.obsId = obsId;
+		this.personId = personId;
+		this.conceptId = conceptId;
+		this.encounterId = encounterId;
+		this.locationId = locationId;
+		this.obsDatetime = obsDatetime;
+		this.valueNumeric = valueNumeric;
+		this.valueCodedId = valueCodedId;
+		this.valueDatetime = valueDatetime;
+		this.valueText = valueText;
+	}
+	
+	public Integer getObsId() {
+		return obsId;
+	}
+	
+	public Integer getPersonId() {
+		return personId;
+	}
+	
+	public Integer getConceptId() {
+		return conceptId;
+	}
+	
+	/**
+	 * @return the encounter id, null if the obs is not in an encounter
+	 */
+	public Integer getEncounterId() {
+		return encounterId;
+	}
+	
+	public Integer getLocationId() {
+		return locationId;
+	}
+	
+	public Date getObsDatetime() {
+		return obsDatetime;
+	}
+	
+	public Double getValueNumeric() {
+		return valueNumeric;
+	}
+	
+	/**
+	 * @return the concept id of the coded answer
+	 */
+	public Integer getValueCodedId() {
+		return valueCodedId;
+	}
+	
+	public Date getValueDatetime() {
+		return valueDatetime;
+	}
+	
+	public String getValueText() {
+		return valueText;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ObsRow #" + obsId;
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.obs;
+
+import java.util.Date;
+
+/**
+ * The values of a list of observations kept in primitive arrays, e.g. to plot the numeric values of
+ * a concept over time. The i-th element of every array belongs to the i-th observation.
+ *
+ * @see org.openmrs.api.ObsService#getObservationValues(org.openmrs.Person, java.util.List)
+ * @since 1.10
+ */
+public class ObsValues implements java.io.Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final int[] conceptIds;
+	
+	private final long[] obsDatetimes;
+	
+	/**
+	 * The numeric values, {@link Double#NaN} for obs without one
+	 */
+	private final double[] valueNumerics;
+	
+	/**
+	 * The concept ids of the coded values, 0 for obs without one
+	 */
+	private final int[] valueCodedIds;
+	
+	/**
+	 * Creates empty arrays for the given number of observations, they are filled with
+	 * {@link #set(int, Integer, Date, Double, Integer)}
+	 *
+	 * @param size the number of observations
+	 */
+	public ObsValues(int size) {
+		conceptIds = new int[size];
+		obsDatetimes = new long[size];
+		valueNumerics = new double[size];
+		valueCodedIds = new int[size];
+	}
+	
+	/**
+	 * Sets the values of the i-th observation
+	 */
+	public void set(int i, Integer conceptId, Date obsDatetime, Double valueNumeric, Integer valueCodedId) {
+		conceptIds[i] = conceptId;
+		obsDatetimes[i] = obsDatetime.getTime();
+		valueNumerics[i] = valueNumeric == null ? Double.NaN : valueNumeric;
+		valueCodedIds[i] = valueCodedId == null ? 0 : valueCodedId;
+	}
+	
+	/**
+	 * @return the number of observations
+	 */
+	public int size() {
+		return obsDatetimes.length;
+	}
+	
+	/**
+	 * @return the question concept id of the i-th observation
+	 */
+	public int getConceptId(int i) {
+		return conceptIds[i];
+	}
+	
+	/**
+	 * @return the obs datetime of the i-th observation in milliseconds
+	 */
+	public long getObsDatetime(int i) {
+		return obsDatetimes[i];
+	}
+	
+	/**
+	 * @return the numeric value of the i-th observation, null if it has none
+	 */
+	public Double getValueNumeric(int i) {
+		return Double.isNaN(valueNumerics[i]) ? null : valueNumerics[i];
+	}
+	
+	/**
+	 * @return the concept id of the coded value of the i-th observation, null if it has none
+	 */
+	public Integer getValueCodedId(int i) {
+		return valueCodedIds[i] == 0 ? null : valueCodedIds[i];
+	}
+	
+	/**
+	 * @return the obs datetimes in milliseconds, the array is not copied
+	 */
+	public long[] getObsDatetimes() {
+		return obsDatetimes;
+	}
+	
+	/**
+	 * @return the numeric values with {@link Double#NaN} for obs without one, the array is not
+	 *         copied
+	 */
+	public double[] getValueNumerics() {
+		return valueNumerics;
+	}
+	
+	/**
+	 * @return the concept ids of the coded values with 0 for obs without one, the array is not
+	 *         copied
+	 */
+	public int[] getValueCodedIds() {
+		return valueCodedIds;
+	}
+}
@@ -14,7 +14,15 @@
 package org.openmrs.obs.handler;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -22,6 +30,7 @@ import java.util.Date;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Obs;
+import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 import org.openmrs.obs.ComplexData;
 import org.openmrs.util.OpenmrsConstants;
@@ -29,7 +38,16 @@ import org.openmrs.util.OpenmrsUtil;
 
 /**
  * Abstract handler for some convenience methods Files are stored in the location specified by the
- * global property: "obs.complex_obs_dir"
+ * global property: "obs.complex_obs_dir" <br/>
+ * <br/>
+ * With the {@link #FLAT_LAYOUT} all files are stored in that directory under the name of the
+ * complex data. With the {@link #SHARDED_LAYOUT} a file is named after the SHA-256 digest of its
+ * content and stored in two levels of sub directories named after the first characters of the
+ * digest, e.g. "3f/a2/3fa2...e1.png", so that no directory gets too big and files with the same
+ * content are only stored once. The layout is chosen with the global property
+ * {@link OpenmrsConstants#GLOBAL_PROPERTY_COMPLEX_OBS_LAYOUT}. The path of a file relative to the
+ * directory is stored after the "|" of the value complex of the obs, so files of both layouts are
+ * found by {@link #getComplexDataFile(Obs)}.
  * 
  * @since 1.5
  */
@@ -37,6 +55,21 @@ public class AbstractHandler {
 	
 	public static final Log log = LogFactory.getLog(AbstractHandler.class);
 	
+	/**
+	 * The layout that stores all files in the complex obs directory
+	 * 
+	 * @since 1.10
+	 */
+	public static final String FLAT_LAYOUT = "flat";
+	
+	/**
+	 * The layout that stores files by the digest of their content in sub directories of the
+	 * complex obs directory
+	 * 
+	 * @since 1.10
+	 */
+	public static final String SHARDED_LAYOUT = "sharded";
+	
 	protected NumberFormat nf;
 	
 	protected SimpleDateFormat longfmt;
@@ -101,6 +134,123 @@ public class AbstractHandler {
 		
 	}
 	
+	/**
+	 * Returns a {@link File} for the given obs complex data to be written to in the configured
+	 * layout. The file has to be passed to {@link #storeFile(File, String)} after it is written.
+	 * 
+	 * @param obs the Obs with a non-null complex data on it
+	 * @return File that the complex data should be written to
+	 * @since 1.10
+	 */
+	protected File getFileToWrite(Obs obs) throws IOException {
+		if (!isShardedLayout())
+			return getOutputFileToWrite(obs);
+		
+		return File.createTempFile("complex_obs", ".tmp", getComplexObsDir());
+	}
+	
+	/**
+	 * Stores a file written to the file returned by {@link #getFileToWrite(Obs)}. With the
+	 * {@link #SHARDED_LAYOUT} the file is moved to the sub directories of the digest of its
+	 * content, or deleted if a file with the same content is stored already.
+	 * 
+	 * @param file the written file
+	 * @param title the title of the complex data, its extension is kept
+	 * @return the path of the file relative to the complex obs directory, to be stored after the
+	 *         "|" of the value complex of the obs
+	 * @since 1.10
+	 */
+	protected String storeFile(File file, String title) throws IOException {
+		if (!isShardedLayout())
+			return file.getName();
+		
+		return storeByDigest(file, title);
+	}
+	
+	/**
+	 * Copies the file of an obs that is stored in the flat layout into the {@link #SHARDED_LAYOUT}.
+	 * The old file is not deleted because the obs still refers to it.
+	 * 
+	 * @param obs the complex obs
+	 * @return the value complex of the obs that refers to the copy, or null if the file is not
+	 *         stored in the flat layout or does not exist
+	 * @since 1.10
+	 */
+	public String copyToShardedLayout(Obs obs) throws IOException {
+		String location = getComplexDataLocation(obs);
+		File file = getComplexDataFile(obs);
+		if (location.indexOf('/') >= 0 || !file.isFile())
+			return null;
+		
+		File copy = File.createTempFile("complex_obs", ".tmp", getComplexObsDir());
+		try {
+			FileInputStream in = new FileInputStream(file);
+			FileOutputStream out = null;
+			try {
+				out = new FileOutputStream(copy);
+				FileChannel channel = in.getChannel();
+				long position = 0;
+				long size = channel.size();
+				while (position < size)
+					position += channel.transferTo(position, size - position, out.getChannel());
+			}
+			finally {
+				in.close();
+				if (out != null)
+					out.close();
+			}
+			
+			String path = storeByDigest(copy, location);
+			String valueComplex = obs.getValueComplex();
+			return valueComplex.substring(0, valueComplex.lastIndexOf('|') + 1) + path;
+		}
+		finally {
+			if (copy.exists())
+				copy.delete();
+		}
+	}
+	
+	/**
+	 * Deletes a file of the complex obs directory that no obs refers to anymore, e.g. the old file
+	 * of an obs that was copied with {@link #copyToShardedLayout(Obs)}
+	 * 
+	 * @param file the file to delete
+	 * @return true if the file was deleted
+	 * @since 1.10
+	 */
+	public boolean deleteFile(File file) {
+		return file.delete();
+	}
+	
+	/**
+	 * Moves a file to the sub directories of the digest of its content, or deletes it if a file
+	 * with the same content is stored already
+	 * 
+	 * @return the path of the stored file relative to the complex obs directory
+	 */
+	private String storeByDigest(File file, String title) throws IOException {
+		String digest = getDigest(file);
+		String path = digest.substring(0, 2) + "/" + digest.substring(2, 4) + "/" + digest;
+		int dot = title == null ? -1 : title.lastIndexOf('.');
+		if (dot >= 0 && title.substring(dot + 1).matches("[a-zA-Z0-9]+"))
+			path += title.substring(dot);
+		
+		File stored = new File(getComplexObsDir(), path);
+		if (stored.exists()) {
+			if (!file.delete())
+				log.warn("Could not delete " + file.getAbsolutePath());
+			return path;
+		}
+		
+		File dir = stored.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Unable to create the directory " + dir.getAbsolutePath());
+		if (!file.renameTo(stored))
+			throw new IOException("Unable to move " + file.getAbsolutePath() + " to " + stored.getAbsolutePath());
+		
+		return path;
+	}
+	
 	/**
 	 * Get the extension for a given filename. <br/>
 	 * If given "asdf.jpg", will return "jpg". <br/>
@@ -127,6 +277,9 @@ public class AbstractHandler {
 		File file = BinaryDataHandler.getComplexDataFile(obs);
 		log.debug("value complex: " + obs.getValueComplex());
 		log.debug("file path: " + file.getAbsolutePath());
+		if (OpenmrsConstants.FILE_VIEW.equals(view))
+			return getObsWithFile(obs, file.getName());
+		
 		ComplexData complexData = null;
 		try {
 			complexData = new ComplexData(file.getName(), OpenmrsUtil.getFileAsBytes(file));
@@ -141,10 +294,17 @@ public class AbstractHandler {
 	}
 	
 	/**
+	 * The file is kept if another obs refers to it, e.g. an earlier version of the obs or an obs
+	 * with the same content in the {@link #SHARDED_LAYOUT}
+	 * 
 	 * @see org.openmrs.obs.ComplexObsHandler#purgeComplexData(org.openmrs.Obs)
 	 */
 	public boolean purgeComplexData(Obs obs) {
 		File file = getComplexDataFile(obs);
+		if (Context.getObsService().getObservationCountByComplexDataLocation(getComplexDataLocation(obs)) > 1) {
+			obs.setComplexData(null);
+			return true;
+		}
 		if (file.exists() && file.delete()) {
 			obs.setComplexData(null);
 			// obs.setValueComplex(null);
@@ -156,6 +316,28 @@ public class AbstractHandler {
 		return false;
 	}
 	
+	/**
+	 * Attaches the file of the complex data to the obs without reading it, this is the
+	 * {@link OpenmrsConstants#FILE_VIEW} of all handlers that store their data in files
+	 * 
+	 * @param obs the complex obs
+	 * @param title the title of the complex data
+	 * @return the obs with the {@link File} as the data of its ComplexData, or with a null
+	 *         ComplexData if the file does not exist
+	 * @since 1.10
+	 */
+	protected Obs getObsWithFile(Obs obs, String title) {
+		File file = getComplexDataFile(obs);
+		if (file.isFile()) {
+			obs.setComplexData(new ComplexData(title, file));
+		} else {
+			log.error("Unable to find file associated with complex obs " + obs.getObsId() + " at "
+			        + file.getAbsolutePath());
+			obs.setComplexData(null);
+		}
+		return obs;
+	}
+	
 	/**
 	 * Convenience method to create and return a file for the stored ComplexData.data Object
 	 * 
@@ -163,11 +345,74 @@ public class AbstractHandler {
 	 * @return File object
 	 */
 	public static File getComplexDataFile(Obs obs) {
-		String[] names = obs.getValueComplex().split("\\|");
-		String filename = names.length < 2 ? names[0] : names[names.length - 1];
-		File dir = OpenmrsUtil.getDirectoryInApplicationDataDirectory(Context.getAdministrationService().getGlobalProperty(
+		return new File(getComplexObsDir(), getComplexDataLocation(obs));
+	}
+	
+	/**
+	 * Gets the path of the file of an obs relative to the complex obs directory, this is the part
+	 * of the value complex after the last "|"
+	 * 
+	 * @param obs the complex obs
+	 * @return the path of the file, with "/" between the directories of the {@link #SHARDED_LAYOUT}
+	 * @since 1.10
+	 */
+	public static String getComplexDataLocation(Obs obs) {
+		return getComplexDataLocation(obs.getValueComplex());
+	}
+	
+	/**
+	 * Gets the path of a file relative to the complex obs directory from a value complex
+	 * 
+	 * @param valueComplex the value complex of an obs
+	 * @return the part of the value complex after the last "|"
+	 * @since 1.10
+	 */
+	public static String getComplexDataLocation(String valueComplex) {
+		String[] names = valueComplex.split("\\|");
+		return names.length < 2 ? names[0] : names[names.length - 1];
+	}
+	
+	private static File getComplexObsDir() {
+		return OpenmrsUtil.getDirectoryInApplicationDataDirectory(Context.getAdministrationService().getGlobalProperty(
 		    OpenmrsConstants.GLOBAL_PROPERTY_COMPLEX_OBS_DIR));
-		return new File(dir, filename);
+	}
+	
+	/**
+	 * @return true if new files are stored in the {@link #SHARDED_LAYOUT}
+	 * @since 1.10
+	 */
+	protected boolean isShardedLayout() {
+		return SHARDED_LAYOUT.equals(Context.getAdministrationService().getGlobalProperty(
+		    OpenmrsConstants.GLOBAL_PROPERTY_COMPLEX_OBS_LAYOUT, FLAT_LAYOUT).trim());
+	}
+	
+	/**
+	 * @return the hex SHA-256 digest of the content of a file
+	 */
+	private static String getDigest(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new APIException("System cannot find the SHA-256 algorithm", e);
+		}
+		
+		InputStream in = new DigestInputStream(new FileInputStream(file), digest);
+		try {
+			byte[] buffer = new byte[8192];
+			while (in.read(buffer) != -1) {
+				// the stream updates the digest
+			}
+		}
+		finally {
+			in.close();
+		}
+		
+		String hex = new BigInteger(1, digest.digest()).toString(16);
+		while (hex.length() < 64)
+			hex = "0" + hex;
+		return hex;
 	}
 	
 }
@@ -24,6 +24,7 @@ import org.openmrs.Obs;
 import org.openmrs.api.APIException;
 import org.openmrs.obs.ComplexData;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 
 /**
@@ -45,7 +46,8 @@ public class BinaryDataHandler extends AbstractHandler implements ComplexObsHand
 	}
 	
 	/**
-	 * Currently supports all views
+	 * Currently supports all views, the data is the byte[] of the file except for
+	 * {@link OpenmrsConstants#FILE_VIEW} where it is the file itself
 	 * 
 	 * @see org.openmrs.obs.ComplexObsHandler#getObs(org.openmrs.Obs, java.lang.String)
 	 */
@@ -59,10 +61,13 @@ public class BinaryDataHandler extends AbstractHandler implements ComplexObsHand
 		// also need to remove the "file" text appended to the end of the file name
 		String[] names = obs.getValueComplex().split("\\|");
 		String originalFilename = names[0];
-		if ("download".equals(view)) {
+		if ("download".equals(view) || OpenmrsConstants.FILE_VIEW.equals(view)) {
 			originalFilename = originalFilename.replaceAll(",", "").replaceAll(" ", "").replaceAll("file$", "");
 		}
 		
+		if (OpenmrsConstants.FILE_VIEW.equals(view))
+			return getObsWithFile(obs, originalFilename);
+		
 		try {
 			complexData = new ComplexData(originalFilename, OpenmrsUtil.getFileAsBytes(file));
 		}
@@ -90,7 +95,7 @@ public class BinaryDataHandler extends AbstractHandler implements ComplexObsHand
 		
 		FileOutputStream fout = null;
 		try {
-			File outfile = getOutputFileToWrite(obs);
+			File outfile = getFileToWrite(obs);
 			fout = new FileOutputStream(outfile);
 			
 			Object data = obs.getComplexData().getData();
@@ -106,8 +111,12 @@ public class BinaryDataHandler extends AbstractHandler implements ComplexObsHand
 				}
 			}
 			
-			// Set the Title and URI for the valueComplex
-			obs.setValueComplex(outfile.getName() + " file |" + outfile.getName());
+			fout.close();
+			String location = storeFile(outfile, complexData.getTitle());
+			
+			// Set the Title and URI for the valueComplex, sharded files are named after their content
+			String title = location.indexOf('/') < 0 ? location : complexData.getTitle();
+			obs.setValueComplex(title + " file |" + location);
 			
 			// Remove the ComplexData from the Obs
 			obs.setComplexData(null);
@@ -51,7 +51,8 @@ public class BinaryStreamHandler extends AbstractHandler implements ComplexObsHa
 	 * is the raw byte[] of data (If the view is set to "download", all commas and whitespace are
 	 * stripped out of the filename to fix an issue where the browser wasn't handling a filename
 	 * with whitespace properly) Note that if the method cannot find the file associated with the
-	 * obs, it returns the obs with the ComplexData = null
+	 * obs, it returns the obs with the ComplexData = null. For {@link OpenmrsConstants#FILE_VIEW}
+	 * the data is the file itself instead of a stream.
 	 * 
 	 * @see ComplexObsHandler#getObs(Obs, String)
 	 */
@@ -62,10 +63,13 @@ public class BinaryStreamHandler extends AbstractHandler implements ComplexObsHa
 			File file = getComplexDataFile(obs);
 			String[] names = obs.getValueComplex().split("\\|");
 			String originalFilename = names[0];
-			if ("download".equals(view)) {
+			if ("download".equals(view) || OpenmrsConstants.FILE_VIEW.equals(view)) {
 				originalFilename = originalFilename.replace(",", "").replace(" ", "");
 			}
 			
+			if (OpenmrsConstants.FILE_VIEW.equals(view))
+				return getObsWithFile(obs, originalFilename);
+			
 			if (file.exists()) {
 				FileInputStream fileInputStream = new FileInputStream(file);
 				obs.setComplexData(new ComplexData(originalFilename, fileInputStream));
@@ -87,16 +91,16 @@ public class BinaryStreamHandler extends AbstractHandler implements ComplexObsHa
 			// Write the File to the File System
 			String fileName = obs.getComplexData().getTitle();
 			InputStream in = (InputStream) obs.getComplexData().getData();
-			File outfile = getOutputFileToWrite(obs);
+			File outfile = getFileToWrite(obs);
 			OutputStream out = new FileOutputStream(outfile, false);
 			OpenmrsUtil.copyFile(in, out);
 			
-			// Store the filename in the Obs
-			obs.setComplexData(null);
-			obs.setValueComplex(fileName + "|" + outfile.getName());
-			
 			// close the stream
 			out.close();
+			
+			// Store the filename in the Obs
+			obs.setComplexData(null);
+			obs.setValueComplex(fileName + "|" + storeFile(outfile, fileName));
 		}
 		catch (Exception e) {
 			throw new APIException("Error writing binary data complex obs to the file system. ", e);
@@ -13,8 +13,12 @@
  */
 package org.openmrs.obs.handler;
 
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashSet;
@@ -29,12 +33,19 @@ import org.openmrs.api.APIException;
 import org.openmrs.obs.ComplexData;
 import org.openmrs.obs.ComplexObsHandler;
 import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.util.OpenmrsUtil;
 
 /**
  * Handler for storing basic images for complex obs to the file system. The image mime type used is
  * taken from the image name. if the .* image name suffix matches
  * {@link javax.imageio.ImageIO#getWriterFormatNames()} then that mime type will be used to save the
  * image. Images are stored in the location specified by the global property: "obs.complex_obs_dir"
+ * <br/>
+ * <br/>
+ * Smaller copies of the images for the {@link OpenmrsConstants#THUMBNAIL_VIEW} and the
+ * {@link OpenmrsConstants#SCREEN_VIEW} are stored in the {@link #DERIVATIVES_DIR} directory next to
+ * the images. They are created when an image is saved, or when they are first asked for if they
+ * are missing or older than the image.
  * 
  * @see OpenmrsConstants#GLOBAL_PROPERTY_COMPLEX_OBS_DIR
  * @since 1.5
@@ -43,6 +54,30 @@ public class ImageHandler extends AbstractHandler implements ComplexObsHandler {
 	
 	public static final Log log = LogFactory.getLog(ImageHandler.class);
 	
+	/**
+	 * The maximum width and height of the images of the {@link OpenmrsConstants#THUMBNAIL_VIEW}
+	 * 
+	 * @since 1.10
+	 */
+	public static final int THUMBNAIL_SIZE = 150;
+	
+	/**
+	 * The maximum width and height of the images of the {@link OpenmrsConstants#SCREEN_VIEW}
+	 * 
+	 * @since 1.10
+	 */
+	public static final int SCREEN_SIZE = 1024;
+	
+	/**
+	 * The name of the directory next to the images that holds their smaller copies, with one
+	 * directory per view
+	 * 
+	 * @since 1.10
+	 */
+	public static final String DERIVATIVES_DIR = "derivatives";
+	
+	private static final String[] DERIVATIVE_VIEWS = { OpenmrsConstants.THUMBNAIL_VIEW, OpenmrsConstants.SCREEN_VIEW };
+	
 	private Set<String> extensions;
 	
 	/**
@@ -60,12 +95,30 @@ public class ImageHandler extends AbstractHandler implements ComplexObsHandler {
 	}
 	
 	/**
-	 * Currently supports all views and puts the Image file data into the ComplexData object
+	 * Currently supports all views and puts the Image file data into the ComplexData object, for
+	 * {@link OpenmrsConstants#FILE_VIEW} the image is not decoded and the data is the file itself.
+	 * For the {@link OpenmrsConstants#THUMBNAIL_VIEW} and the {@link OpenmrsConstants#SCREEN_VIEW}
+	 * the data is the file of the smaller copy of the image, or the file of the image if no copy
+	 * can be made.
 	 * 
 	 * @see org.openmrs.obs.ComplexObsHandler#getObs(org.openmrs.Obs, java.lang.String)
+	 * @should return a smaller copy of the image for the thumbnail view
+	 * @should create the smaller copy again if the image is newer
 	 */
 	public Obs getObs(Obs obs, String view) {
 		File file = getComplexDataFile(obs);
+		if (OpenmrsConstants.FILE_VIEW.equals(view))
+			return getObsWithFile(obs, file.getName());
+		
+		if (isDerivativeView(view)) {
+			File derivative = getDerivative(file, view);
+			if (derivative == null)
+				return getObsWithFile(obs, file.getName());
+			
+			obs.setComplexData(new ComplexData(file.getName(), derivative));
+			return obs;
+		}
+		
 		BufferedImage img = null;
 		try {
 			img = ImageIO.read(file);
@@ -107,7 +160,7 @@ public class ImageHandler extends AbstractHandler implements ComplexObsHandler {
 		}
 		
 		try {
-			File outfile = getOutputFileToWrite(obs);
+			File outfile = getFileToWrite(obs);
 			
 			String extension = getExtension(obs.getComplexData().getTitle());
 			
@@ -115,9 +168,20 @@ public class ImageHandler extends AbstractHandler implements ComplexObsHandler {
 			
 			// Write the file to the file system.
 			ImageIO.write(img, extension, outfile);
+			String location = storeFile(outfile, obs.getComplexData().getTitle());
+			outfile = new File(outfile.getParentFile(), location);
+			
+			for (String view : DERIVATIVE_VIEWS) {
+				try {
+					createDerivative(img, outfile, view);
+				}
+				catch (IOException e) {
+					log.warn("Unable to create the " + view + " of " + outfile.getAbsolutePath(), e);
+				}
+			}
 			
 			// Set the Title and URI for the valueComplex
-			obs.setValueComplex(extension + " image |" + outfile.getName());
+			obs.setValueComplex(extension + " image |" + location);
 			
 			// Remove the ComlexData from the Obs
 			obs.setComplexData(null);
@@ -130,4 +194,169 @@ public class ImageHandler extends AbstractHandler implements ComplexObsHandler {
 		return obs;
 	}
 	
+	/**
+	 * Removes the smaller copies of the image too
+	 * 
+	 * @see org.openmrs.obs.handler.AbstractHandler#purgeComplexData(org.openmrs.Obs)
+	 */
+	@Override
+	public boolean purgeComplexData(Obs obs) {
+		File file = getComplexDataFile(obs);
+		boolean purged = super.purgeComplexData(obs);
+		// the file is kept if another obs refers to it
+		if (purged && !file.exists())
+			deleteDerivatives(file);
+		return purged;
+	}
+	
+	/**
+	 * Removes the smaller copies of the image too
+	 * 
+	 * @see org.openmrs.obs.handler.AbstractHandler#deleteFile(java.io.File)
+	 */
+	@Override
+	public boolean deleteFile(File file) {
+		boolean deleted = super.deleteFile(file);
+		if (deleted)
+			deleteDerivatives(file);
+		return deleted;
+	}
+	
+	private void deleteDerivatives(File image) {
+		for (String view : DERIVATIVE_VIEWS) {
+			File derivative = getDerivativeFile(image, view);
+			if (derivative.exists() && !derivative.delete())
+				log.warn("Could not delete " + derivative.getAbsolutePath());
+		}
+	}
+	
+	/**
+	 * Creates the smaller copies of an image for all views that are missing or older than the image
+	 * 
+	 * @param image the image file
+	 * @return true if the file is an image that has all its copies now
+	 * @since 1.10
+	 */
+	public boolean createDerivatives(File image) {
+		for (String view : DERIVATIVE_VIEWS) {
+			if (getDerivative(image, view) == null)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets the smaller copy of an image for a view, it is created if it is missing or older than
+	 * the image
+	 * 
+	 * @param image the image file
+	 * @param view the {@link OpenmrsConstants#THUMBNAIL_VIEW} or the
+	 *            {@link OpenmrsConstants#SCREEN_VIEW}
+	 * @return the file of the copy, or null if the file is not an image that can be copied
+	 */
+	private File getDerivative(File image, String view) {
+		File derivative = getDerivativeFile(image, view);
+		if (derivative.isFile() && derivative.lastModified() >= image.lastModified())
+			return derivative;
+		if (!image.isFile() || !extensions.contains(getExtension(image.getName())))
+			return null;
+		
+		try {
+			BufferedImage img = ImageIO.read(image);
+			if (img == null)
+				return null;
+			return createDerivative(img, image, view);
+		}
+		catch (IOException e) {
+			log.warn("Unable to create the " + view + " of " + image.getAbsolutePath(), e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Writes the smaller copy of an image for a view. Images that already fit are copied as they
+	 * are. The copy is written to a temporary file first, so that a partly written copy is never
+	 * read.
+	 * 
+	 * @param img the decoded image
+	 * @param image the image file
+	 * @param view the view to write the copy for
+	 * @return the file of the copy, or null if the image cannot be written in its format
+	 */
+	private File createDerivative(BufferedImage img, File image, String view) throws IOException {
+		String format = getExtension(image.getName());
+		if (!extensions.contains(format))
+			return null;
+		
+		File derivative = getDerivativeFile(image, view);
+		File dir = derivative.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Unable to create the directory " + dir.getAbsolutePath());
+		
+		File tmp = File.createTempFile(derivative.getName(), ".tmp", dir);
+		try {
+			int size = OpenmrsConstants.THUMBNAIL_VIEW.equals(view) ? THUMBNAIL_SIZE : SCREEN_SIZE;
+			if (img.getWidth() <= size && img.getHeight() <= size) {
+				OpenmrsUtil.copyFile(new FileInputStream(image), new FileOutputStream(tmp));
+			} else if (!ImageIO.write(scale(img, size, "png".equals(format) || "gif".equals(format)), format, tmp)) {
+				return null;
+			}
+			
+			if (derivative.exists())
+				derivative.delete();
+			if (!tmp.renameTo(derivative))
+				throw new IOException("Unable to rename " + tmp.getAbsolutePath() + " to "
+				        + derivative.getAbsolutePath());
+		}
+		finally {
+			if (tmp.exists())
+				tmp.delete();
+		}
+		
+		return derivative;
+	}
+	
+	/**
+	 * Scales an image down so that it fits in a square of the given size. The image is halved
+	 * until it is less than twice the size, so that the smaller image keeps the details of the
+	 * bigger one.
+	 */
+	private BufferedImage scale(BufferedImage img, int size, boolean alpha) {
+		double ratio = Math.min((double) size / img.getWidth(), (double) size / img.getHeight());
+		int width = Math.max(1, (int) Math.round(img.getWidth() * ratio));
+		int height = Math.max(1, (int) Math.round(img.getHeight() * ratio));
+		
+		BufferedImage scaled = img;
+		do {
+			int w = Math.max(width, scaled.getWidth() / 2);
+			int h = Math.max(height, scaled.getHeight() / 2);
+			BufferedImage next = new BufferedImage(w, h, alpha ? BufferedImage.TYPE_INT_ARGB
+			        : BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = next.createGraphics();
+			try {
+				g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+				g.drawImage(scaled, 0, 0, w, h, null);
+			}
+			finally {
+				g.dispose();
+			}
+			scaled = next;
+		} while (scaled.getWidth() > width || scaled.getHeight() > height);
+		
+		return scaled;
+	}
+	
+	/**
+	 * @return the file of the smaller copy of an image for a view
+	 */
+	private File getDerivativeFile(File image, String view) {
+		String name = OpenmrsConstants.THUMBNAIL_VIEW.equals(view) ? "thumbnail" : "screen";
+		return new File(new File(new File(image.getParentFile(), DERIVATIVES_DIR), name), image.getName());
+	}
+	
+	private boolean isDerivativeView(String view) {
+		return OpenmrsConstants.THUMBNAIL_VIEW.equals(view) || OpenmrsConstants.SCREEN_VIEW.equals(view);
+	}
+	
 }
@@ -26,6 +26,7 @@ import org.openmrs.Obs;
 import org.openmrs.api.APIException;
 import org.openmrs.obs.ComplexData;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 
 /**
@@ -60,10 +61,13 @@ public class TextHandler extends AbstractHandler implements ComplexObsHandler {
 		// also need to remove the "file" text appended to the end of the file name
 		String[] names = obs.getValueComplex().split("\\|");
 		String originalFilename = names[0];
-		if ("download".equals(view)) {
+		if ("download".equals(view) || OpenmrsConstants.FILE_VIEW.equals(view)) {
 			originalFilename = originalFilename.replaceAll(",", "").replaceAll(" ", "").replaceAll("file$", "");
 		}
 		
+		if (OpenmrsConstants.FILE_VIEW.equals(view))
+			return getObsWithFile(obs, originalFilename);
+		
 		try {
 			complexData = new ComplexData(originalFilename, OpenmrsUtil.getFileAsString(file).toCharArray());
 		}
@@ -90,7 +94,7 @@ public class TextHandler extends AbstractHandler implements ComplexObsHandler {
 		}
 		BufferedWriter fout = null;
 		try {
-			File outfile = getOutputFileToWrite(obs);
+			File outfile = getFileToWrite(obs);
 			fout = new BufferedWriter(new FileWriter(outfile));
 			Reader tempRd = null;
 			Object data = obs.getComplexData().getData();
@@ -113,8 +117,12 @@ public class TextHandler extends AbstractHandler implements ComplexObsHandler {
 				}
 			}
 			
-			// Set the Title and URI for the valueComplex
-			obs.setValueComplex(outfile.getName() + " file |" + outfile.getName());
+			fout.close();
+			String location = storeFile(outfile, complexData.getTitle());
+			
+			// Set the Title and URI for the valueComplex, sharded files are named after their content
+			String title = location.indexOf('/') < 0 ? location : complexData.getTitle();
+			obs.setValueComplex(title + " file |" + location);
 			
 			// Remove the ComplexData from the Obs
 			obs.setComplexData(null);
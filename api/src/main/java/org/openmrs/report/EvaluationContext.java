@@ -13,8 +13,12 @@
  */
 package org.openmrs.report;
 
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
@@ -26,6 +30,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Cohort;
 import org.openmrs.Location;
+import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 
 /**
@@ -51,8 +56,20 @@ public class EvaluationContext {
 	
 	private static final DateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 	
+	/**
+	 * The key of the base cohort of all patients in caches shared by contexts
+	 */
+	public static final String ALL_PATIENTS_KEY = "all";
+	
 	private Cohort baseCohort;
 	
+	/**
+	 * True if the base cohort was set, false if it defaults to all patients
+	 */
+	private boolean baseCohortSet = false;
+	
+	private transient String baseCohortKey = null;
+	
 	private Map<Parameterizable, Map<Parameter, Object>> parameterValues = new HashMap<Parameterizable, Map<Parameter, Object>>();
 	
 	private transient Map<String, Object> cache = new HashMap<String, Object>();
@@ -407,5 +424,63 @@ public class EvaluationContext {
 	public void setBaseCohort(Cohort baseCohort) {
 		clearCache();
 		this.baseCohort = baseCohort;
+		this.baseCohortSet = baseCohort != null;
+		this.baseCohortKey = null;
+	}
+	
+	/**
+	 * @return true if a base cohort was set, false if the base cohort is all patients
+	 * @since 1.10
+	 */
+	public boolean isBaseCohortSet() {
+		return baseCohortSet;
+	}
+	
+	/**
+	 * Gets the key of the base cohort for caches that are shared by contexts. The key of a base
+	 * cohort that was set is computed only once, so the cohort should not be changed afterwards
+	 * without setting it again.
+	 * 
+	 * @return {@link #ALL_PATIENTS_KEY} if no base cohort was set, otherwise the number of members
+	 *         and a hash of their ids
+	 * @since 1.10
+	 * @should return the all patients key without loading all patients if no base cohort was set
+	 * @should return the same key for base cohorts with the same members
+	 * @should return another key for a base cohort with other members
+	 */
+	public String getBaseCohortKey() {
+		if (!baseCohortSet)
+			return ALL_PATIENTS_KEY;
+		if (baseCohortKey == null)
+			baseCohortKey = getCohortHash(baseCohort);
+		return baseCohortKey;
+	}
+	
+	/**
+	 * @param cohort a cohort
+	 * @return the number of members and a hash of the member ids of the cohort
+	 */
+	private static String getCohortHash(Cohort cohort) {
+		int[] ids = new int[cohort.size()];
+		int n = 0;
+		for (Integer id : cohort.getMemberIds())
+			ids[n++] = id;
+		Arrays.sort(ids);
+		
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			byte[] bytes = new byte[4];
+			for (int id : ids) {
+				bytes[0] = (byte) (id >>> 24);
+				bytes[1] = (byte) (id >>> 16);
+				bytes[2] = (byte) (id >>> 8);
+				bytes[3] = (byte) id;
+				digest.update(bytes);
+			}
+			return ids.length + ":" + new BigInteger(1, digest.digest()).toString(16);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new APIException("System cannot find the MD5 algorithm", e);
+		}
 	}
 }
@@ -13,11 +13,17 @@
  */
 package org.openmrs.reporting;
 
+import java.util.Date;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Cohort;
 import org.openmrs.api.context.Context;
 import org.openmrs.report.EvaluationContext;
+import org.openmrs.report.Parameter;
 
 /**
  * @deprecated see reportingcompatibility module
@@ -43,10 +49,14 @@ public abstract class CachingPatientFilter extends AbstractPatientFilter impleme
 	public abstract String getCacheKey();
 	
 	/**
-	 * TODO Auto generated method comment
+	 * Gets the result of this filter from the evaluation context, or else from the
+	 * {@link CohortResultCache} shared by all contexts, or else evaluates it and caches it in both
 	 * 
 	 * @param context
 	 * @return
+	 * @should reuse results cached by another evaluation context
+	 * @should not reuse results for other date parameter values
+	 * @should not reuse results for another base cohort
 	 */
 	private Cohort getAndMaybeCache(EvaluationContext context) {
 		if (context == null) {
@@ -55,13 +65,41 @@ public abstract class CachingPatientFilter extends AbstractPatientFilter impleme
 			String key = getCacheKey();
 			Cohort cached = (Cohort) context.getFromCache(key);
 			if (cached == null) {
-				cached = filterImpl(context);
+				String sharedKey = getSharedCacheKey(key, context);
+				cached = CohortResultCache.get(sharedKey);
+				if (cached == null) {
+					long evaluated = System.currentTimeMillis();
+					cached = CohortResultCache.put(sharedKey, filterImpl(context), evaluated);
+				}
 				context.addToCache(key, cached);
 			}
 			return cached;
 		}
 	}
 	
+	/**
+	 * The result of a filter depends on the date parameters it is evaluated with (e.g. a report's
+	 * start and end date), and some filters (e.g. {@link DrugOrderFilter}) restrict their result to
+	 * the base cohort of the context, so both are added to the cache key when sharing results across
+	 * contexts. A context without a base cohort uses a constant key for all patients, so they are
+	 * not loaded just for the key.
+	 * 
+	 * @param key the cache key of this filter
+	 * @param context the context the filter is evaluated in
+	 * @return the key for the shared cohort cache
+	 */
+	private String getSharedCacheKey(String key, EvaluationContext context) {
+		SortedMap<String, Long> dates = new TreeMap<String, Long>();
+		for (Map<Parameter, Object> values : context.getParameterValues().values()) {
+			for (Map.Entry<Parameter, Object> e : values.entrySet()) {
+				if (e.getValue() instanceof Date)
+					dates.put(e.getKey().getName(), ((Date) e.getValue()).getTime());
+			}
+		}
+		String sharedKey = dates.isEmpty() ? key : key + dates;
+		return sharedKey + " base:" + context.getBaseCohortKey();
+	}
+	
 	/**
 	 * @see org.openmrs.reporting.PatientFilter#filter(org.openmrs.Cohort,
 	 *      org.openmrs.report.EvaluationContext)
@@ -0,0 +1,281 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.Cohort;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.api.context.Context;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * A cohort cache shared by all users, so that the same patient filter evaluated by the cohort
+ * builder or a report does not have to be run again. Entries expire after
+ * {@link OpenmrsConstants#GP_COHORT_CACHE_TIME_TO_LIVE} seconds, and the least recently used
+ * entries are dropped when the cached cohorts hold more than
+ * {@link OpenmrsConstants#GP_COHORT_CACHE_MAX_PATIENT_IDS} patient ids in total. All entries
+ * become stale when patient data is changed, see {@link CohortResultCacheInterceptor}. <br/>
+ * <br/>
+ * The cached cohorts are shared, so callers must not modify them.
+ *
+ * @since 1.10
+ * @deprecated see reportingcompatibility module
+ */
+@Deprecated
+public class CohortResultCache implements GlobalPropertyListener {
+	
+	private static final Log log = LogFactory.getLog(CohortResultCache.class);
+	
+	/**
+	 * The default number of seconds a cohort stays cached
+	 */
+	public static final int DEFAULT_TIME_TO_LIVE = 600;
+	
+	/**
+	 * The default maximum number of patient ids in all cached cohorts
+	 */
+	public static final int DEFAULT_MAX_PATIENT_IDS = 1000000;
+	
+	private static final Object lock = new Object();
+	
+	/**
+	 * Access ordered, so the first entry is the least recently used one
+	 */
+	private static final Map<String, CachedCohort> entries = new LinkedHashMap<String, CachedCohort>(16, 0.75f, true);
+	
+	private static int patientIdCount = 0;
+	
+	private static volatile long lastDataChange = 0;
+	
+	private static Integer timeToLive = null;
+	
+	private static Integer maxPatientIds = null;
+	
+	/**
+	 * Gets a cached cohort
+	 *
+	 * @param key the cache key of the filter and its evaluation parameters
+	 * @return the cached cohort or null if there is none that is still current
+	 * @should return a cohort that was put in the cache
+	 * @should not return a cohort evaluated before patient data was changed
+	 * @should not return a cohort older than the time to live
+	 */
+	public static Cohort get(String key) {
+		long oldest = System.currentTimeMillis() - getTimeToLive() * 1000L;
+		synchronized (lock) {
+			CachedCohort cached = entries.get(key);
+			if (cached == null)
+				return null;
+			if (cached.evaluated <= lastDataChange || cached.evaluated < oldest) {
+				remove(key);
+				return null;
+			}
+			return cached.cohort;
+		}
+	}
+	
+	/**
+	 * Caches a cohort
+	 *
+	 * @param key the cache key of the filter and its evaluation parameters
+	 * @param cohort the cohort to cache, a copy of it is stored
+	 * @param evaluated the time (in milliseconds) the evaluation of the cohort was started. The
+	 *            cohort is not cached if patient data was changed since then.
+	 * @return the cached copy of the cohort
+	 * @should drop the least recently used cohorts when there are too many patient ids
+	 * @should not cache a cohort whose patient data was changed during evaluation
+	 */
+	public static Cohort put(String key, Cohort cohort, long evaluated) {
+		int max = getMaxPatientIds();
+		Cohort copy = new Cohort(cohort.getMemberIds());
+		if (copy.size() > max || evaluated <= lastDataChange)
+			return copy;
+		
+		synchronized (lock) {
+			remove(key);
+			entries.put(key, new CachedCohort(copy, evaluated));
+			patientIdCount += copy.size();
+			
+			Iterator<Map.Entry<String, CachedCohort>> i = entries.entrySet().iterator();
+			while (patientIdCount > max && i.hasNext()) {
+				Map.Entry<String, CachedCohort> eldest = i.next();
+				patientIdCount -= eldest.getValue().cohort.size();
+				i.remove();
+				if (log.isDebugEnabled())
+					log.debug("Dropped cached cohort " + eldest.getKey() + " to stay below " + max + " patient ids");
+			}
+		}
+		return copy;
+	}
+	
+	/**
+	 * @param evaluated the date a cohort was evaluated
+	 * @return true if no patient data was changed since the given date and it is within the time to
+	 *         live
+	 */
+	public static boolean isCurrent(Date evaluated) {
+		if (evaluated == null)
+			return false;
+		long time = evaluated.getTime();
+		return time > lastDataChange && time >= System.currentTimeMillis() - getTimeToLive() * 1000L;
+	}
+	
+	/**
+	 * Marks all cohorts cached so far as stale. This is called whenever patient data is saved or
+	 * deleted, and through {@link CohortResultCacheInterceptor#dataChangedInBulk()} when it is
+	 * changed with update statements of the API (e.g. stopping visits) or SQL run by an
+	 * administrator. Changes that modules make with their own SQL are not seen, cohorts stay stale
+	 * at most for the {@link OpenmrsConstants#GP_COHORT_CACHE_TIME_TO_LIVE} then. <br/>
+	 * <br/>
+	 * All cohorts are dropped rather than only the ones containing the changed patient: a change can
+	 * make a patient match a filter whose cached cohort does not contain the patient yet, and the
+	 * cache keys don't record which kinds of data a filter looks at. Changes to metadata (concepts,
+	 * locations, users etc.) don't call this, see {@link CohortResultCacheInterceptor}, so the cache
+	 * mainly helps while reports and cohort builder searches are run in bursts between data entry.
+	 */
+	public static void dataChanged() {
+		synchronized (lock) {
+			lastDataChange = System.currentTimeMillis();
+			entries.clear();
+			patientIdCount = 0;
+		}
+	}
+	
+	/**
+	 * Removes all cohorts from the cache
+	 */
+	public static void clear() {
+		synchronized (lock) {
+			entries.clear();
+			patientIdCount = 0;
+		}
+	}
+	
+	/**
+	 * @return the number of cached cohorts
+	 */
+	public static int size() {
+		synchronized (lock) {
+			return entries.size();
+		}
+	}
+	
+	/**
+	 * @return the total number of patient ids in all cached cohorts
+	 */
+	public static int getPatientIdCount() {
+		synchronized (lock) {
+			return patientIdCount;
+		}
+	}
+	
+	/**
+	 * @param timeToLive the number of seconds a cohort stays cached, null to read it from the
+	 *            global property again
+	 */
+	public static void setTimeToLive(Integer timeToLive) {
+		CohortResultCache.timeToLive = timeToLive;
+	}
+	
+	/**
+	 * @param maxPatientIds the maximum number of patient ids in all cached cohorts, null to read it
+	 *            from the global property again
+	 */
+	public static void setMaxPatientIds(Integer maxPatientIds) {
+		CohortResultCache.maxPatientIds = maxPatientIds;
+	}
+	
+	private static int getTimeToLive() {
+		Integer value = timeToLive;
+		if (value == null) {
+			value = getIntegerGlobalProperty(OpenmrsConstants.GP_COHORT_CACHE_TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE);
+			timeToLive = value;
+		}
+		return value;
+	}
+	
+	private static int getMaxPatientIds() {
+		Integer value = maxPatientIds;
+		if (value == null) {
+			value = getIntegerGlobalProperty(OpenmrsConstants.GP_COHORT_CACHE_MAX_PATIENT_IDS, DEFAULT_MAX_PATIENT_IDS);
+			maxPatientIds = value;
+		}
+		return value;
+	}
+	
+	private static int getIntegerGlobalProperty(String propertyName, int defaultValue) {
+		if (!Context.isSessionOpen())
+			return defaultValue;
+		try {
+			return Integer.valueOf(Context.getAdministrationService().getGlobalProperty(propertyName,
+			    String.valueOf(defaultValue)));
+		}
+		catch (NumberFormatException e) {
+			log.warn("The global property " + propertyName + " should be a number, using " + defaultValue);
+			return defaultValue;
+		}
+	}
+	
+	private static void remove(String key) {
+		CachedCohort removed = entries.remove(key);
+		if (removed != null)
+			patientIdCount -= removed.cohort.size();
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyChanged(org.openmrs.GlobalProperty)
+	 */
+	@Override
+	public void globalPropertyChanged(GlobalProperty newValue) {
+		timeToLive = null;
+		maxPatientIds = null;
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyDeleted(java.lang.String)
+	 */
+	@Override
+	public void globalPropertyDeleted(String propertyName) {
+		timeToLive = null;
+		maxPatientIds = null;
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#supportsPropertyName(java.lang.String)
+	 */
+	@Override
+	public boolean supportsPropertyName(String propertyName) {
+		return OpenmrsConstants.GP_COHORT_CACHE_TIME_TO_LIVE.equals(propertyName)
+		        || OpenmrsConstants.GP_COHORT_CACHE_MAX_PATIENT_IDS.equals(propertyName);
+	}
+	
+	private static class CachedCohort {
+		
+		private Cohort cohort;
+		
+		private long evaluated;
+		
+		public CachedCohort(Cohort cohort, long evaluated) {
+			this.cohort = cohort;
+			this.evaluated = evaluated;
+		}
+	}
+}
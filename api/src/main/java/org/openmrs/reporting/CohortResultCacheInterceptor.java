@@ -0,0 +1,117 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import java.io.Serializable;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.Encounter;
+import org.openmrs.Obs;
+import org.openmrs.Order;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PatientProgram;
+import org.openmrs.PatientState;
+import org.openmrs.Person;
+import org.openmrs.PersonAddress;
+import org.openmrs.PersonAttribute;
+import org.openmrs.PersonName;
+import org.openmrs.Relationship;
+import org.openmrs.Visit;
+
+/**
+ * Marks the {@link CohortResultCache} as stale when patient data that patient filters look at is
+ * inserted, updated or deleted. The cache is marked both when the change is flushed, so that the
+ * changing thread does not see stale cohorts, and when the transaction completes, so that cohorts
+ * evaluated by other threads before the commit are not kept either.
+ *
+ * @since 1.10
+ * @deprecated see reportingcompatibility module
+ */
+@Deprecated
+public class CohortResultCacheInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final Class<?>[] PATIENT_DATA_CLASSES = { Person.class, PersonName.class, PersonAddress.class,
+	        PersonAttribute.class, PatientIdentifier.class, Relationship.class, Encounter.class, Visit.class, Obs.class,
+	        Order.class, PatientProgram.class, PatientState.class };
+	
+	private static final ThreadLocal<Boolean> dataChanged = new ThreadLocal<Boolean>();
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onSave(java.lang.Object, java.io.Serializable,
+	 *      java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 * @should mark the cache as stale when patient data is saved
+	 * @should not mark the cache as stale when other data is saved
+	 */
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		checkEntity(entity);
+		return false;
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onFlushDirty(java.lang.Object, java.io.Serializable,
+	 *      java.lang.Object[], java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 */
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		checkEntity(entity);
+		return false;
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onDelete(java.lang.Object, java.io.Serializable,
+	 *      java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 */
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		checkEntity(entity);
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#afterTransactionCompletion(org.hibernate.Transaction)
+	 */
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		if (dataChanged.get() != null) {
+			dataChanged.remove();
+			CohortResultCache.dataChanged();
+		}
+	}
+	
+	/**
+	 * Marks the cache as stale for patient data that is changed with update or delete statements,
+	 * which this interceptor does not see, e.g. visits that are stopped all at once. The cache is
+	 * marked again when the transaction completes.
+	 * 
+	 * @should mark the cache as stale
+	 */
+	public static void dataChangedInBulk() {
+		dataChanged.set(Boolean.TRUE);
+		CohortResultCache.dataChanged();
+	}
+	
+	private void checkEntity(Object entity) {
+		for (Class<?> patientDataClass : PATIENT_DATA_CLASSES) {
+			if (patientDataClass.isInstance(entity)) {
+				dataChangedInBulk();
+				return;
+			}
+		}
+	}
+}
@@ -22,11 +22,13 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.Map.Entry;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -55,6 +57,7 @@ import org.openmrs.api.context.Context;
 import org.openmrs.report.EvaluationContext;
 import org.openmrs.reporting.PatientFilter;
 import org.openmrs.reporting.PatientSearchReportObject;
+import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 
 /**
@@ -74,6 +77,19 @@ public class DataExportFunctions {
 	
 	protected boolean isAllPatients = false;
 	
+	// the whole cohort being exported when the patients are processed in batches; patientSet then
+	// only holds the current batch
+	protected Cohort fullPatientSet;
+	
+	protected List<Integer> fullPatientIds;
+	
+	protected Integer batchSize;
+	
+	protected boolean isBatching = false;
+	
+	// Map<cache name, statistics>, kept after clear() so that they can be reported
+	protected Map<String, CacheStatistics> cacheStatistics = new LinkedHashMap<String, CacheStatistics>();
+	
 	private Integer patientCounter = 0; // used for garbage collection (Clean up every x patients)
 	
 	protected String separator = "	";
@@ -163,6 +179,8 @@ public class DataExportFunctions {
 	
 	@SuppressWarnings("unchecked")
 	public void clear() {
+		recordCacheSizes();
+		
 		for (Map map : patientEncounterMap.values())
 			map.clear();
 		patientEncounterMap.clear();
@@ -196,6 +214,11 @@ public class DataExportFunctions {
 			map.clear();
 		patientAttributeMap.clear();
 		patientAttributeMap = null;
+		personAttributeMap.clear();
+		cohortMap.clear();
+		
+		fullPatientSet = null;
+		fullPatientIds = null;
 		
 		patientSetService = null;
 		patientService = null;
@@ -293,6 +316,162 @@ public class DataExportFunctions {
 		this.isAllPatients = isAllPatients;
 	}
 	
+	/**
+	 * @return the number of patients loaded and cached at a time, defaults to the
+	 *         {@link OpenmrsConstants#GP_DATA_EXPORT_BATCH_SIZE} global property
+	 */
+	public Integer getBatchSize() {
+		if (batchSize == null) {
+			batchSize = Context.getAdministrationService().getGlobalPropertyValue(
+			    OpenmrsConstants.GP_DATA_EXPORT_BATCH_SIZE, 1000);
+			if (batchSize < 1)
+				batchSize = 1000;
+		}
+		return batchSize;
+	}
+	
+	/**
+	 * @param batchSize the number of patients to load and cache at a time
+	 */
+	public void setBatchSize(Integer batchSize) {
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Used by the generated template to split the patient set into batches. The template loops
+	 * over <code>[0..$numberOfBatches]</code> (inclusive), so this returns the index of the last
+	 * batch rather than the number of batches.
+	 * 
+	 * @return the index of the last batch or null if there is no patient set to split
+	 * @see DataExportReportObject#generateTemplate()
+	 * @see #setPatientSetFromBatch(Integer)
+	 */
+	public Integer getPatientSetBatchCount() {
+		if (fullPatientSet == null) {
+			fullPatientSet = getPatientSet();
+			if (fullPatientSet == null && isAllPatients)
+				fullPatientSet = patientSetService.getAllPatients();
+			if (fullPatientSet == null)
+				return null;
+			fullPatientIds = new Vector<Integer>(fullPatientSet.getMemberIds());
+			Collections.sort(fullPatientIds);
+		}
+		
+		int size = fullPatientIds.size();
+		if (size == 0)
+			return 0;
+		
+		return (size - 1) / getBatchSize();
+	}
+	
+	/**
+	 * Restricts the patient set to the patients in the given batch. Everything cached for the
+	 * previous batch is evicted first so that at most one batch worth of column data is held in
+	 * memory at a time.
+	 * 
+	 * @param batchIndex zero based index of the batch
+	 * @see #getPatientSetBatchCount()
+	 */
+	public void setPatientSetFromBatch(Integer batchIndex) {
+		if (getPatientSetBatchCount() == null)
+			return;
+		
+		evictBatch();
+		
+		int from = Math.min(batchIndex * getBatchSize(), fullPatientIds.size());
+		int to = Math.min(from + getBatchSize(), fullPatientIds.size());
+		
+		log.debug("Exporting patients " + from + " to " + to + " of " + fullPatientIds.size());
+		
+		setPatientSet(new Cohort(fullPatientIds.subList(from, to)));
+		isBatching = true;
+	}
+	
+	/**
+	 * Removes all of the patient data cached for the current batch and clears the hibernate session.
+	 * Cohort memberships are kept since they are computed for the whole patient set.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void evictBatch() {
+		recordCacheSizes();
+		
+		for (Map<String, ? extends Map<Integer, ?>> cache : getPatientCaches().values()) {
+			for (Map map : cache.values())
+				map.clear();
+			cache.clear();
+		}
+		
+		// the session is cleared below, so don't hang on to detached concepts
+		conceptNameMap.clear();
+		setPatient(null);
+		Context.clearSession();
+	}
+	
+	/**
+	 * @return the caches holding data per patient, keyed on the name the statistics are reported
+	 *         under
+	 */
+	protected Map<String, Map<String, ? extends Map<Integer, ?>>> getPatientCaches() {
+		Map<String, Map<String, ? extends Map<Integer, ?>>> caches = new LinkedHashMap<String, Map<String, ? extends Map<Integer, ?>>>();
+		caches.put("patientEncounterMap", patientEncounterMap);
+		caches.put("patientIdentifierMap", patientIdentifierMap);
+		caches.put("patientFirstEncounterMap", patientFirstEncounterMap);
+		caches.put("conceptAttrObsMap", conceptAttrObsMap);
+		caches.put("relationshipMap", relationshipMap);
+		caches.put("programMap", programMap);
+		caches.put("drugOrderMap", drugOrderMap);
+		caches.put("currentDrugOrderMap", currentDrugOrderMap);
+		caches.put("patientAttributeMap", patientAttributeMap);
+		caches.put("personAttributeMap", personAttributeMap);
+		return caches;
+	}
+	
+	/**
+	 * Records the number of patients and values currently held by each cache so that the peak can
+	 * be reported
+	 */
+	protected void recordCacheSizes() {
+		for (Entry<String, Map<String, ? extends Map<Integer, ?>>> entry : getPatientCaches().entrySet()) {
+			if (entry.getValue() == null)
+				continue;
+			long entries = 0;
+			long values = 0;
+			for (Map<Integer, ?> map : entry.getValue().values()) {
+				entries += map.size();
+				for (Object value : map.values())
+					values += (value instanceof Collection) ? ((Collection<?>) value).size() : 1;
+			}
+			getCacheStatistics(entry.getKey()).recordSize(entries, values);
+		}
+	}
+	
+	/**
+	 * Gets the statistics for the given cache, creating them if needed
+	 * 
+	 * @param cacheName the name of the cache field
+	 * @return the CacheStatistics for the cache
+	 */
+	protected CacheStatistics getCacheStatistics(String cacheName) {
+		CacheStatistics stats = cacheStatistics.get(cacheName);
+		if (stats == null) {
+			stats = new CacheStatistics(cacheName);
+			cacheStatistics.put(cacheName, stats);
+		}
+		return stats;
+	}
+	
+	/**
+	 * @return the statistics of the caches that were used by this export
+	 */
+	public Collection<CacheStatistics> getCacheStatistics() {
+		List<CacheStatistics> ret = new Vector<CacheStatistics>();
+		for (CacheStatistics stats : cacheStatistics.values()) {
+			if (stats.getLookups() > 0)
+				ret.add(stats);
+		}
+		return ret;
+	}
+	
 	/**
 	 * @return Returns the separator.
 	 */
@@ -333,12 +512,12 @@ public class DataExportFunctions {
 			ps = Context.getCohortService().getCohort(Integer.valueOf(key.substring(2)));
 		} else if (key.startsWith("F.")) {
 			PatientFilter pf = Context.getReportObjectService().getPatientFilterById(Integer.valueOf(key.substring(2)));
-			ps = pf.filter(getPatientSet(), context);
+			ps = pf.filter(getFullPatientSetIfNotAllPatients(), context);
 		} else if (key.startsWith("S.")) {
 			PatientSearchReportObject ro = (PatientSearchReportObject) Context.getReportObjectService().getReportObject(
 			    Integer.valueOf(key.substring(2)));
 			PatientFilter pf = OpenmrsUtil.toPatientFilter(ro.getPatientSearch(), null);
-			ps = pf.filter(getPatientSet(), context);
+			ps = pf.filter(getFullPatientSetIfNotAllPatients(), context);
 		} else {
 			log.error("key = " + key);
 		}
@@ -353,10 +532,14 @@ public class DataExportFunctions {
 	 * @param encounterType
 	 */
 	public Encounter getLastEncounter(String encounterType) {
-		if (patientEncounterMap.containsKey(encounterType))
+		CacheStatistics stats = getCacheStatistics("patientEncounterMap");
+		if (patientEncounterMap.containsKey(encounterType)) {
+			stats.hit();
 			return (Encounter) patientEncounterMap.get(encounterType).get(getPatientId());
+		}
 		
 		log.debug("getting first encounters for type: " + encounterType);
+		long start = System.currentTimeMillis();
 		
 		EncounterType type = null;
 		if (!encounterType.equals(""))
@@ -365,6 +548,7 @@ public class DataExportFunctions {
 		Map<Integer, ?> encounterMap = patientSetService.getEncountersByType(getPatientSetIfNotAllPatients(), type);
 		
 		patientEncounterMap.put(encounterType, encounterMap);
+		stats.load(System.currentTimeMillis() - start);
 		
 		return (Encounter) encounterMap.get(getPatientId());
 	}
@@ -383,10 +567,14 @@ public class DataExportFunctions {
 		List<String> types = (List<String>) typeArray;
 		String key = OpenmrsUtil.join(types, ",") + "|" + attr;
 		
-		if (patientEncounterMap.containsKey(key))
+		CacheStatistics stats = getCacheStatistics("patientEncounterMap");
+		if (patientEncounterMap.containsKey(key)) {
+			stats.hit();
 			return patientEncounterMap.get(key).get(getPatientId());
+		}
 		
 		log.debug("getting first encounters for type: " + key);
+		long start = System.currentTimeMillis();
 		
 		List<EncounterType> encounterTypes = new Vector<EncounterType>();
 		
@@ -410,6 +598,7 @@ public class DataExportFunctions {
 		    encounterTypes, attr);
 		
 		patientEncounterMap.put(key, encounterMap);
+		stats.load(System.currentTimeMillis() - start);
 		
 		return encounterMap.get(getPatientId());
 		
@@ -420,10 +609,14 @@ public class DataExportFunctions {
 	 * @param encounterType
 	 */
 	public Encounter getFirstEncounter(String encounterType) {
-		if (patientFirstEncounterMap.containsKey(encounterType))
+		CacheStatistics stats = getCacheStatistics("patientFirstEncounterMap");
+		if (patientFirstEncounterMap.containsKey(encounterType)) {
+			stats.hit();
 			return (Encounter) patientFirstEncounterMap.get(encounterType).get(getPatientId());
+		}
 		
 		log.debug("getting first encounters for type: " + encounterType);
+		long start = System.currentTimeMillis();
 		
 		EncounterType type = null;
 		if (!encounterType.equals(""))
@@ -433,6 +626,7 @@ public class DataExportFunctions {
 		    type);
 		
 		patientFirstEncounterMap.put(encounterType, encounterMap);
+		stats.load(System.currentTimeMillis() - start);
 		
 		return encounterMap.get(getPatientId());
 	}
@@ -450,10 +644,14 @@ public class DataExportFunctions {
 		List<String> types = (List<String>) typeArray;
 		String key = OpenmrsUtil.join(types, ",") + "|" + attr;
 		
-		if (patientFirstEncounterMap.containsKey(key))
+		CacheStatistics stats = getCacheStatistics("patientFirstEncounterMap");
+		if (patientFirstEncounterMap.containsKey(key)) {
+			stats.hit();
 			return patientFirstEncounterMap.get(key).get(getPatientId());
+		}
 		
 		log.debug("getting first encounters for type: " + key);
+		long start = System.currentTimeMillis();
 		
 		List<EncounterType> encounterTypes = new Vector<EncounterType>();
 		
@@ -477,6 +675,7 @@ public class DataExportFunctions {
 		    encounterTypes, attr);
 		
 		patientFirstEncounterMap.put(key, encounterMap);
+		stats.load(System.currentTimeMillis() - start);
 		
 		return encounterMap.get(getPatientId());
 		
@@ -529,11 +728,16 @@ public class DataExportFunctions {
 			attrs = new Vector<String>();
 		
 		String key = c.getConceptId() + "";
+		CacheStatistics stats = getCacheStatistics("conceptAttrObsMap");
 		Map<Integer, List<List<Object>>> patientIdObsMap = conceptAttrObsMap.get(key);
 		if (patientIdObsMap == null) {
 			//log.debug("getting obs list for concept: " + c + " and attr: " + attr);
+			long start = System.currentTimeMillis();
 			patientIdObsMap = patientSetService.getObservationsValues(getPatientSetIfNotAllPatients(), c, attrs);
 			conceptAttrObsMap.put(key, patientIdObsMap);
+			stats.load(System.currentTimeMillis() - start);
+		} else {
+			stats.hit();
 		}
 		return patientIdObsMap.get(patientId);
 	}
@@ -547,9 +751,12 @@ public class DataExportFunctions {
 	public PatientProgram getProgram(String programIdOrName) {
 		
 		Map<Integer, PatientProgram> patientIdProgramMap;
+		CacheStatistics stats = getCacheStatistics("programMap");
 		if (programMap.containsKey(programIdOrName)) {
+			stats.hit();
 			patientIdProgramMap = programMap.get(programIdOrName);
 		} else {
+			long start = System.currentTimeMillis();
 			
 			Program program = null;
 			
@@ -567,18 +774,23 @@ public class DataExportFunctions {
 			}
 			patientIdProgramMap = patientSetService.getPatientPrograms(getPatientSetIfNotAllPatients(), program);
 			programMap.put(programIdOrName, patientIdProgramMap);
+			stats.load(System.currentTimeMillis() - start);
 		}
 		return patientIdProgramMap.get(patientId);
 	}
 	
 	public List<DrugOrder> getCurrentDrugOrders(String drugSetName) {
 		Map<Integer, List<DrugOrder>> patientIdDrugOrderMap;
+		CacheStatistics stats = getCacheStatistics("currentDrugOrderMap");
 		if (currentDrugOrderMap.containsKey(drugSetName)) {
+			stats.hit();
 			patientIdDrugOrderMap = currentDrugOrderMap.get(drugSetName);
 		} else {
+			long start = System.currentTimeMillis();
 			Concept drugSet = conceptService.getConceptByName(drugSetName);
 			patientIdDrugOrderMap = patientSetService.getCurrentDrugOrders(getPatientSetIfNotAllPatients(), drugSet);
 			currentDrugOrderMap.put(drugSetName, patientIdDrugOrderMap);
+			stats.load(System.currentTimeMillis() - start);
 		}
 		return patientIdDrugOrderMap.get(patientId);
 	}
@@ -602,12 +814,16 @@ public class DataExportFunctions {
 	
 	public List<DrugOrder> getDrugOrders(String drugSetName) {
 		Map<Integer, List<DrugOrder>> patientIdDrugOrderMap;
+		CacheStatistics stats = getCacheStatistics("drugOrderMap");
 		if (drugOrderMap.containsKey(drugSetName)) {
+			stats.hit();
 			patientIdDrugOrderMap = drugOrderMap.get(drugSetName);
 		} else {
+			long start = System.currentTimeMillis();
 			Concept drugSet = conceptService.getConceptByName(drugSetName);
 			patientIdDrugOrderMap = patientSetService.getDrugOrders(getPatientSetIfNotAllPatients(), drugSet);
 			drugOrderMap.put(drugSetName, patientIdDrugOrderMap);
+			stats.load(System.currentTimeMillis() - start);
 		}
 		return patientIdDrugOrderMap.get(patientId);
 	}
@@ -626,13 +842,17 @@ public class DataExportFunctions {
 	
 	public List<Relationship> getRelationships(String relationshipTypeName) {
 		Map<Integer, List<Relationship>> patientIdRelationshipMap;
+		CacheStatistics stats = getCacheStatistics("relationshipMap");
 		if (relationshipMap.containsKey(relationshipTypeName)) {
+			stats.hit();
 			patientIdRelationshipMap = relationshipMap.get(relationshipTypeName);
 		} else {
 			//log.debug("getting relationship list for type: " + relationshipTypeName);
+			long start = System.currentTimeMillis();
 			RelationshipType relType = Context.getPersonService().getRelationshipTypeByName(relationshipTypeName);
 			patientIdRelationshipMap = patientSetService.getRelationships(getPatientSetIfNotAllPatients(), relType);
 			relationshipMap.put(relationshipTypeName, patientIdRelationshipMap);
+			stats.load(System.currentTimeMillis() - start);
 		}
 		return patientIdRelationshipMap.get(patientId);
 	}
@@ -719,13 +939,17 @@ public class DataExportFunctions {
 			key += "--all";
 		
 		Map<Integer, Object> patientIdAttrMap;
+		CacheStatistics stats = getCacheStatistics("patientAttributeMap");
 		if (patientAttributeMap.containsKey(key)) {
+			stats.hit();
 			patientIdAttrMap = patientAttributeMap.get(key);
 		} else {
 			//log.debug("getting patient attrs: " + key);
+			long start = System.currentTimeMillis();
 			patientIdAttrMap = patientSetService.getPatientAttributes(getPatientSetIfNotAllPatients(), className, property,
 			    returnAll);
 			patientAttributeMap.put(key, patientIdAttrMap);
+			stats.load(System.currentTimeMillis() - start);
 		}
 		
 		return patientIdAttrMap.get(patientId);
@@ -739,13 +963,17 @@ public class DataExportFunctions {
 			key += "--all";
 		
 		Map<Integer, Object> personIdAttrMap;
+		CacheStatistics stats = getCacheStatistics("personAttributeMap");
 		if (personAttributeMap.containsKey(key)) {
+			stats.hit();
 			personIdAttrMap = personAttributeMap.get(key);
 		} else {
 			//log.debug("getting patient attrs: " + key);
+			long start = System.currentTimeMillis();
 			personIdAttrMap = patientSetService.getPersonAttributes(getPatientSetIfNotAllPatients(), attributeName,
 			    joinClass, joinProperty, outputColumn, returnAll);
 			personAttributeMap.put(key, personIdAttrMap);
+			stats.load(System.currentTimeMillis() - start);
 		}
 		return personIdAttrMap.get(patientId);
 	}
@@ -1013,9 +1241,12 @@ public class DataExportFunctions {
 		
 		log.debug("Identifier Type: " + typeName);
 		Map<Integer, PatientIdentifier> patientIdentifiers;
+		CacheStatistics stats = getCacheStatistics("patientIdentifierMap");
 		if (patientIdentifierMap.containsKey(typeName)) {
+			stats.hit();
 			patientIdentifiers = patientIdentifierMap.get(typeName);
 		} else {
+			long start = System.currentTimeMillis();
 			PatientIdentifierType type = null;
 			// First try by Integer id
 			try {
@@ -1033,6 +1264,7 @@ public class DataExportFunctions {
 			log.debug("Found identifiers for patient identifier " + type + " = " + patientIdentifiers);
 			
 			patientIdentifierMap.put(typeName, patientIdentifiers);
+			stats.load(System.currentTimeMillis() - start);
 		}
 		
 		return patientIdentifiers.get(patientId);
@@ -1199,9 +1431,110 @@ public class DataExportFunctions {
 	 * @return PatientSet object with patients or null if it isn't needed
 	 */
 	public Cohort getPatientSetIfNotAllPatients() {
-		if (isAllPatients)
+		if (isAllPatients && !isBatching)
 			return null;
 		return getPatientSet();
 	}
 	
+	/**
+	 * Returns the whole patient set being exported, regardless of the current batch. Returns null
+	 * if all patients are being exported
+	 * 
+	 * @return Cohort of all patients in this export or null if it isn't needed
+	 */
+	public Cohort getFullPatientSetIfNotAllPatients() {
+		if (isAllPatients)
+			return null;
+		return fullPatientSet != null ? fullPatientSet : getPatientSet();
+	}
+	
+	/**
+	 * Lookup and memory statistics of one of the caches held by this class
+	 */
+	public static class CacheStatistics {
+		
+		private String name;
+		
+		private long lookups = 0;
+		
+		private long loads = 0;
+		
+		private long loadMillis = 0;
+		
+		private long peakEntries = 0;
+		
+		private long peakValues = 0;
+		
+		public CacheStatistics(String name) {
+			this.name = name;
+		}
+		
+		/**
+		 * Records a lookup that was answered from the cache
+		 */
+		public void hit() {
+			lookups++;
+		}
+		
+		/**
+		 * Records a lookup that had to load data into the cache
+		 * 
+		 * @param millis the time spent loading
+		 */
+		public void load(long millis) {
+			lookups++;
+			loads++;
+			loadMillis += millis;
+		}
+		
+		/**
+		 * @param entries the number of patients currently held by the cache
+		 * @param values the number of values currently held by the cache
+		 */
+		public void recordSize(long entries, long values) {
+			peakEntries = Math.max(peakEntries, entries);
+			peakValues = Math.max(peakValues, values);
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public long getLookups() {
+			return lookups;
+		}
+		
+		public long getLoads() {
+			return loads;
+		}
+		
+		public long getLoadMillis() {
+			return loadMillis;
+		}
+		
+		public long getPeakEntries() {
+			return peakEntries;
+		}
+		
+		public long getPeakValues() {
+			return peakValues;
+		}
+		
+		/**
+		 * @return the fraction of lookups that did not need to load data, between 0 and 1
+		 */
+		public double getHitRatio() {
+			if (lookups == 0)
+				return 0;
+			return (double) (lookups - loads) / lookups;
+		}
+		
+		@Override
+		public String toString() {
+			return name + ": lookups=" + lookups + ", loads=" + loads + ", loadTime=" + loadMillis + "ms, hitRatio="
+			        + String.format("%.4f", getHitRatio()) + ", peakPatients=" + peakEntries + ", peakValues="
+			        + peakValues;
+		}
+	}
+	
 }
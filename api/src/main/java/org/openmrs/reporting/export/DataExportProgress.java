@@ -0,0 +1,118 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting.export;
+
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Keeps track of how far a run of {@link DataExportUtil#generateExports} has come. All methods are
+ * safe to call from the threads generating the exports and from the thread reporting the progress.
+ * 
+ * @deprecated see reportingcompatibility module
+ */
+@Deprecated
+public class DataExportProgress {
+	
+	private final int total;
+	
+	private final long startTime = System.currentTimeMillis();
+	
+	private int completed = 0;
+	
+	private int failed = 0;
+	
+	private Set<String> running = new LinkedHashSet<String>();
+	
+	/**
+	 * @param total the number of exports that will be generated
+	 */
+	public DataExportProgress(int total) {
+		this.total = total;
+	}
+	
+	/**
+	 * Called when the given export starts being generated
+	 * 
+	 * @param dataExport the export
+	 */
+	public synchronized void started(DataExportReportObject dataExport) {
+		running.add(dataExport.getName());
+	}
+	
+	/**
+	 * Called when the given export is done being generated
+	 * 
+	 * @param dataExport the export
+	 * @param success false if the export failed
+	 */
+	public synchronized void finished(DataExportReportObject dataExport, boolean success) {
+		running.remove(dataExport.getName());
+		if (success)
+			completed++;
+		else
+			failed++;
+	}
+	
+	public int getTotal() {
+		return total;
+	}
+	
+	public synchronized int getCompleted() {
+		return completed;
+	}
+	
+	public synchronized int getFailed() {
+		return failed;
+	}
+	
+	/**
+	 * @return true if every export has been generated (or has failed)
+	 * @should return true when every export has finished or failed
+	 */
+	public synchronized boolean isDone() {
+		return completed + failed >= total;
+	}
+	
+	/**
+	 * Estimates when the remaining exports will be done, assuming they take as long on average as
+	 * the ones that are done already
+	 * 
+	 * @return the estimated completion time or null if no export has finished yet
+	 * @should return null if no export has finished
+	 * @should return a time after the start if some exports have finished
+	 */
+	public synchronized Date getEstimatedCompletion() {
+		int done = completed + failed;
+		if (done == 0)
+			return null;
+		long elapsed = System.currentTimeMillis() - startTime;
+		return new Date(startTime + elapsed * total / done);
+	}
+	
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(completed + failed).append(" of ").append(total).append(" exports generated");
+		if (failed > 0)
+			sb.append(" (").append(failed).append(" failed)");
+		if (!running.isEmpty())
+			sb.append(", generating ").append(running);
+		Date eta = getEstimatedCompletion();
+		if (eta != null && !isDone())
+			sb.append(", estimated to finish at ").append(eta);
+		return sb.toString();
+	}
+}
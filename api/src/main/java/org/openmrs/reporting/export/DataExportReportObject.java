@@ -226,6 +226,17 @@ public class DataExportReportObject extends AbstractReportObject implements Seri
 		return cohort;
 	}
 	
+	/**
+	 * Returns a key describing the criteria {@link #generatePatientSet(EvaluationContext)} uses, so
+	 * that exports with equal keys can share the evaluated patient set
+	 * 
+	 * @return the patient set key
+	 */
+	public String getPatientSetKey() {
+		return getPatientIds() + "|" + (location == null ? "" : location.getLocationId()) + "|" + cohortId + "|"
+		        + cohortDefinitionId + "|" + patientSearchId;
+	}
+	
 	/**
 	 * Quickly intersects two cohorts, possibly mutating the inputs. Treats null as "all patients".
 	 * 
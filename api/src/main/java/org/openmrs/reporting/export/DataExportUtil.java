@@ -15,10 +15,15 @@ package org.openmrs.reporting.export;
 
 import java.io.File;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -31,7 +36,11 @@ import org.apache.velocity.app.event.MethodExceptionEventHandler;
 import org.openmrs.Cohort;
 import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
 import org.openmrs.report.EvaluationContext;
+import org.openmrs.report.Parameter;
+import org.openmrs.report.Parameterizable;
+import org.openmrs.reporting.export.DataExportFunctions.CacheStatistics;
 import org.openmrs.util.OpenmrsUtil;
 
 /**
@@ -82,18 +91,164 @@ public class DataExportUtil {
 	 * @param exports
 	 */
 	public static void generateExports(List<DataExportReportObject> exports, EvaluationContext context) {
+		generateExports(exports, context, null);
+	}
+	
+	/**
+	 * Generates the given exports one after another, collecting the statistics of the caches used
+	 * by each of them
+	 * 
+	 * @param exports the data exports to generate
+	 * @param context the EvaluationContext to generate the patient sets in
+	 * @param cacheStatistics if not null, the cache statistics of each export are put in here
+	 */
+	public static void generateExports(List<DataExportReportObject> exports, EvaluationContext context,
+	        Map<DataExportReportObject, Collection<CacheStatistics>> cacheStatistics) {
+		generateExports(exports, context, 1, null, cacheStatistics);
+	}
+	
+	/**
+	 * Generates the given exports on up to <code>poolSize</code> threads at a time. The patient
+	 * sets of all exports are evaluated up front on the calling thread, so exports that are run on
+	 * the same cohort only evaluate it once. Each export is then generated in its own
+	 * {@link Daemon} thread with its own session. <br/>
+	 * <br/>
+	 * Exports are only generated concurrently when this is called from a daemon thread (e.g. a
+	 * scheduled task), otherwise they are generated one after another on the calling thread.
+	 * 
+	 * @param exports the data exports to generate
+	 * @param context the EvaluationContext to generate the patient sets in
+	 * @param poolSize the maximum number of exports to generate at the same time
+	 * @param progress if not null, this is updated as exports start and finish
+	 * @param cacheStatistics if not null, the cache statistics of each export are put in here
+	 */
+	public static void generateExports(List<DataExportReportObject> exports, final EvaluationContext context, int poolSize,
+	        final DataExportProgress progress, final Map<DataExportReportObject, Collection<CacheStatistics>> cacheStatistics) {
 		
-		Log log = LogFactory.getLog(DataExportUtil.class);
+		final Log log = LogFactory.getLog(DataExportUtil.class);
+		
+		final Map<DataExportReportObject, Cohort> patientSets = prefetchPatientSets(exports, context);
+		final Queue<DataExportReportObject> queue = new ConcurrentLinkedQueue<DataExportReportObject>(exports);
+		final Queue<EvaluationContext> workerContexts = new ConcurrentLinkedQueue<EvaluationContext>();
+		
+		Runnable worker = new Runnable() {
+			
+			public void run() {
+				// the cache of an EvaluationContext is not thread safe, so concurrent workers each get a copy
+				EvaluationContext workerContext = workerContexts.poll();
+				if (workerContext == null)
+					workerContext = context;
+				
+				DataExportReportObject dataExport;
+				while ((dataExport = queue.poll()) != null) {
+					if (progress != null)
+						progress.started(dataExport);
+					
+					boolean success = false;
+					DataExportFunctions functions = new DataExportFunctions();
+					try {
+						generateExport(dataExport, patientSets.get(dataExport), functions, workerContext);
+						success = true;
+					}
+					catch (Exception e) {
+						log.warn("Error while generating export: " + dataExport, e);
+					}
+					finally {
+						if (progress != null)
+							progress.finished(dataExport, success);
+						if (cacheStatistics != null) {
+							synchronized (cacheStatistics) {
+								cacheStatistics.put(dataExport, functions.getCacheStatistics());
+							}
+						}
+					}
+				}
+			}
+		};
+		
+		int threadCount = Math.min(poolSize, exports.size());
+		if (threadCount <= 1 || !Daemon.isDaemonThread()) {
+			worker.run();
+			return;
+		}
+		
+		for (int i = 0; i < threadCount; i++)
+			workerContexts.add(copyContext(context));
+		
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < threadCount; i++)
+			threads.add(Daemon.runInNewDaemonThread(worker));
+		
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			}
+			catch (InterruptedException e) {
+				log.warn("Interrupted while waiting for the data exports to be generated", e);
+				queue.clear();
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Copies the base cohort and parameter values of a context into a new context with an empty
+	 * cache. A base cohort of all patients is not copied, so the copy shares cached cohorts with
+	 * other contexts of all patients.
+	 * 
+	 * @param context the context to copy
+	 * @return the new context
+	 */
+	private static EvaluationContext copyContext(EvaluationContext context) {
+		EvaluationContext copy = new EvaluationContext();
+		if (context.isBaseCohortSet())
+			copy.setBaseCohort(context.getBaseCohort());
+		Map<Parameterizable, Map<Parameter, Object>> parameterValues = new HashMap<Parameterizable, Map<Parameter, Object>>(
+		        context.getParameterValues().size());
+		for (Map.Entry<Parameterizable, Map<Parameter, Object>> entry : context.getParameterValues().entrySet())
+			parameterValues.put(entry.getKey(), new HashMap<Parameter, Object>(entry.getValue()));
+		copy.setParameterValues(parameterValues);
+		return copy;
+	}
+	
+	/**
+	 * Evaluates the patient set of each of the given exports, evaluating exports that share the
+	 * same cohort definition only once
+	 * 
+	 * @param exports the data exports to evaluate the patient sets for
+	 * @param context the EvaluationContext to generate the patient sets in
+	 * @return a map from export to its patient set, the value is null if the export is run on all
+	 *         patients
+	 * @see DataExportReportObject#getPatientSetKey()
+	 */
+	private static Map<DataExportReportObject, Cohort> prefetchPatientSets(List<DataExportReportObject> exports,
+	        EvaluationContext context) {
+		Map<String, Cohort> cohortsByKey = new HashMap<String, Cohort>();
+		Map<DataExportReportObject, Cohort> patientSets = new HashMap<DataExportReportObject, Cohort>();
 		
 		for (DataExportReportObject dataExport : exports) {
 			try {
-				generateExport(dataExport, null, context);
+				String key = dataExport.getPatientSetKey();
+				Cohort cohort;
+				if (cohortsByKey.containsKey(key)) {
+					cohort = cohortsByKey.get(key);
+				} else {
+					cohort = dataExport.generatePatientSet(context);
+					cohortsByKey.put(key, cohort);
+				}
+				
+				// generateExport is free to modify the patient set, so hand each export its own copy
+				if (cohort != null)
+					patientSets.put(dataExport, new Cohort(cohort.getMemberIds()));
 			}
 			catch (Exception e) {
-				log.warn("Error while generating export: " + dataExport, e);
+				// the patient set will be evaluated again (and the error reported) when generating the export
+				LogFactory.getLog(DataExportUtil.class).debug("Unable to prefetch patient set of: " + dataExport, e);
 			}
 		}
 		
+		return patientSets;
 	}
 	
 	/**
@@ -163,6 +318,10 @@ public class DataExportUtil {
 			functions.setAllPatients(dataExport.isAllPatients());
 		}
 		
+		// the template splits this into batches, see DataExportFunctions#getPatientSetBatchCount()
+		if (functions.getPatientSet() == null)
+			functions.setPatientSet(patientSet);
+		
 		// add the error handler
 		EventCartridge ec = new EventCartridge();
 		ec.addEventHandler(new VelocityExceptionHandler());
@@ -222,6 +381,10 @@ public class DataExportUtil {
 			
 			patientSet = null;
 			functions.clear();
+			if (log.isDebugEnabled()) {
+				for (CacheStatistics stats : functions.getCacheStatistics())
+					log.debug("Data export cache " + stats);
+			}
 			functions = null;
 			template = null;
 			dataExport = null;
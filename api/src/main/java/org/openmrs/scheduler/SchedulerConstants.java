@@ -53,4 +53,31 @@ public class SchedulerConstants {
 	/** Scheduler admin email property - Used to email administrator if a task fails */
 	public static String SCHEDULER_ADMIN_EMAIL_PROPERTY = "scheduler.admin_email";
 	
+	/** Scheduler thread pool size property - The maximum number of tasks that execute at the same time */
+	public static String SCHEDULER_THREAD_POOL_SIZE_PROPERTY = "scheduler.threadPoolSize";
+	
+	// Number of tasks that can execute at the same time if the property is not set
+	public static int SCHEDULER_DEFAULT_THREAD_POOL_SIZE = 5;
+	
+	/**
+	 * Task property that tells what to do with a run that starts late, either RUN_ONCE (the
+	 * default) or SKIP. See {@link org.openmrs.scheduler.executor.ExecutorSchedulerTask.MisfirePolicy}
+	 */
+	public final static String TASK_MISFIRE_POLICY_PROPERTY = "scheduler.misfirePolicy";
+	
+	/** Task property with the number of seconds after which a late run is a misfire */
+	public final static String TASK_MISFIRE_THRESHOLD_PROPERTY = "scheduler.misfireThreshold";
+	
+	// Number of seconds after which a late run is a misfire if the task property is not set
+	public static long SCHEDULER_DEFAULT_MISFIRE_THRESHOLD = 60;
+	
+	/**
+	 * Task property with the maximum number of seconds that the first run of a repeating task is
+	 * randomly delayed by, so that tasks scheduled at the same time do not all start at once
+	 */
+	public final static String TASK_MAX_JITTER_PROPERTY = "scheduler.maxJitter";
+	
+	// Maximum number of seconds the first run of a repeating task without a start time is delayed by
+	public static long SCHEDULER_DEFAULT_MAX_JITTER = 30;
+	
 }
@@ -35,6 +35,17 @@ public interface SchedulerService extends OpenmrsService {
 	@Authorized( { "Manage Scheduler" })
 	public String getStatus(Integer id);
 	
+	/**
+	 * Gets the progress of a scheduled task that is executing right now
+	 * 
+	 * @param id the identifier of the task
+	 * @return the progress reported by {@link org.openmrs.scheduler.tasks.AbstractTask#getProgress()},
+	 *         or null if the task is not executing or doesn't report progress
+	 * @since 1.10
+	 */
+	@Authorized( { "Manage Scheduler" })
+	public String getProgress(Integer id);
+	
 	/**
 	 * Start all tasks that are scheduled to run on startup.
 	 */
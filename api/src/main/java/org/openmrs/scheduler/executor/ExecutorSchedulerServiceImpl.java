@@ -0,0 +1,319 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.executor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.scheduler.SchedulerConstants;
+import org.openmrs.scheduler.SchedulerException;
+import org.openmrs.scheduler.SchedulerUtil;
+import org.openmrs.scheduler.Task;
+import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.scheduler.TaskFactory;
+import org.openmrs.scheduler.executor.ExecutorSchedulerTask.MisfirePolicy;
+import org.openmrs.scheduler.tasks.AbstractTask;
+import org.openmrs.scheduler.timer.TimerSchedulerServiceImpl;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Scheduler service that executes all scheduled tasks on one bounded thread pool, instead of
+ * starting a {@link java.util.Timer} thread for every task like the
+ * {@link TimerSchedulerServiceImpl}. The size of the pool is read from the
+ * {@link SchedulerConstants#SCHEDULER_THREAD_POOL_SIZE_PROPERTY} global property when the first
+ * task is scheduled. <br/>
+ * <br/>
+ * Every task definition can set these properties:
+ * <ul>
+ * <li>{@link SchedulerConstants#TASK_MISFIRE_POLICY_PROPERTY} &mdash; RUN_ONCE or SKIP, see
+ * {@link MisfirePolicy}</li>
+ * <li>{@link SchedulerConstants#TASK_MISFIRE_THRESHOLD_PROPERTY} &mdash; the seconds after which a
+ * run is late</li>
+ * <li>{@link SchedulerConstants#TASK_MAX_JITTER_PROPERTY} &mdash; the maximum seconds the first run
+ * of a repeating task is randomly delayed by. Repeating tasks without a start time are delayed by up
+ * to {@link SchedulerConstants#SCHEDULER_DEFAULT_MAX_JITTER} seconds by default.</li>
+ * </ul>
+ *
+ * @since 1.10
+ */
+@Transactional
+public class ExecutorSchedulerServiceImpl extends TimerSchedulerServiceImpl {
+	
+	private static final Log log = LogFactory.getLog(ExecutorSchedulerServiceImpl.class);
+	
+	/**
+	 * Scheduled Task Map
+	 */
+	private static Map<Integer, ExecutorSchedulerTask> scheduledTasks = Collections
+	        .synchronizedMap(new HashMap<Integer, ExecutorSchedulerTask>());
+	
+	private static ScheduledThreadPoolExecutor executor = null;
+	
+	private static final Random random = new Random();
+	
+	/**
+	 * @return the thread pool that all tasks run on, creating it if needed
+	 */
+	private static synchronized ScheduledThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			int poolSize = SchedulerConstants.SCHEDULER_DEFAULT_THREAD_POOL_SIZE;
+			try {
+				String value = Context.getAdministrationService().getGlobalProperty(
+				    SchedulerConstants.SCHEDULER_THREAD_POOL_SIZE_PROPERTY);
+				if (StringUtils.isNotBlank(value))
+					poolSize = Integer.parseInt(value.trim());
+			}
+			catch (Exception e) {
+				log.warn("Unable to read the scheduler thread pool size, using " + poolSize, e);
+			}
+			
+			log.info("Starting scheduler thread pool with " + poolSize + " threads");
+			executor = new ScheduledThreadPoolExecutor(Math.max(1, poolSize), new ThreadFactory() {
+				
+				private AtomicInteger count = new AtomicInteger();
+				
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "OpenMRS Scheduler-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+	
+	/**
+	 * Shutdown hook for the scheduler and all of its scheduled tasks.
+	 *
+	 * @see org.openmrs.scheduler.timer.TimerSchedulerServiceImpl#onShutdown()
+	 */
+	@Override
+	public void onShutdown() {
+		super.onShutdown();
+		synchronized (ExecutorSchedulerServiceImpl.class) {
+			if (executor != null) {
+				executor.shutdownNow();
+				executor = null;
+			}
+		}
+	}
+	
+	/**
+	 * Schedule the given task according to the given schedule.
+	 *
+	 * @param taskDefinition the task to be scheduled
+	 * @should handle zero repeat interval
+	 * @should run a task without repeat interval once
+	 */
+	@Override
+	public Task scheduleTask(TaskDefinition taskDefinition) throws SchedulerException {
+		Task clientTask = null;
+		if (taskDefinition != null) {
+			
+			// Cancel any existing runs for the same task definition
+			ExecutorSchedulerTask schedulerTask = scheduledTasks.get(taskDefinition.getId());
+			if (schedulerTask != null) {
+				log.info("Shutting down the existing instance of this task to avoid conflicts!!");
+				schedulerTask.shutdown();
+			}
+			
+			try {
+				// Create new task from task definition
+				clientTask = TaskFactory.getInstance().createInstance(taskDefinition);
+				
+				// if we were unable to get a class, just quit
+				if (clientTask != null) {
+					long repeatInterval = 0;
+					if (taskDefinition.getRepeatInterval() != null)
+						repeatInterval = taskDefinition.getRepeatInterval() * SchedulerConstants.SCHEDULER_MILLIS_PER_SECOND;
+					
+					long delay;
+					if (taskDefinition.getStartTime() != null) {
+						// the start time is most likely in the past, so calculate the next execution time
+						delay = SchedulerUtil.getNextExecution(taskDefinition).getTime() - System.currentTimeMillis();
+					} else if (repeatInterval > 0) {
+						delay = SchedulerConstants.SCHEDULER_DEFAULT_DELAY;
+					} else {
+						delay = 0;
+					}
+					if (repeatInterval > 0)
+						delay += getJitter(taskDefinition, repeatInterval);
+					delay = Math.max(0, delay);
+					
+					// Update the task status in the database first, so that a new task definition has an id
+					taskDefinition.setTaskInstance(clientTask);
+					taskDefinition.setStarted(true);
+					saveTask(taskDefinition);
+					
+					schedulerTask = new ExecutorSchedulerTask(clientTask, taskDefinition.getId(), repeatInterval,
+					        getMisfirePolicy(taskDefinition), getMisfireThreshold(taskDefinition));
+					log.info("Starting task ... the task will execute for the first time at "
+					        + new Date(System.currentTimeMillis() + delay));
+					schedulerTask.schedule(getExecutor(), delay);
+					
+					//  Add the new task to the scheduler running task list
+					scheduledTasks.put(taskDefinition.getId(), schedulerTask);
+				}
+			}
+			catch (Exception e) {
+				log.error("Failed to schedule task " + taskDefinition.getName(), e);
+				throw new SchedulerException("Failed to schedule task", e);
+			}
+		}
+		return clientTask;
+	}
+	
+	/**
+	 * Stops a running task.
+	 *
+	 * @param taskDefinition the task to be stopped
+	 * @see org.openmrs.scheduler.SchedulerService#shutdownTask(TaskDefinition)
+	 */
+	@Override
+	public void shutdownTask(TaskDefinition taskDefinition) throws SchedulerException {
+		if (taskDefinition != null) {
+			
+			// Remove the task from the scheduled tasks and cancel its future runs
+			ExecutorSchedulerTask schedulerTask = scheduledTasks.remove(taskDefinition.getId());
+			if (schedulerTask != null) {
+				schedulerTask.shutdown();
+			}
+			
+			// Update task that has been started
+			taskDefinition.setStarted(false);
+			saveTask(taskDefinition);
+		}
+	}
+	
+	/**
+	 * Get all scheduled tasks.
+	 *
+	 * @return all scheduled tasks
+	 */
+	@Override
+	public Collection<TaskDefinition> getScheduledTasks() {
+		List<Integer> taskIds;
+		synchronized (scheduledTasks) {
+			taskIds = new ArrayList<Integer>(scheduledTasks.keySet());
+		}
+		
+		List<TaskDefinition> list = new ArrayList<TaskDefinition>();
+		for (Integer id : taskIds) {
+			// tasks whose definition was never saved can't be looked up
+			TaskDefinition task = id == null ? null : getTask(id);
+			if (task != null)
+				list.add(task);
+		}
+		return list;
+	}
+	
+	/**
+	 * Returns the state of the task followed by its run statistics
+	 *
+	 * @see org.openmrs.scheduler.SchedulerService#getStatus(java.lang.Integer)
+	 * @should return the run statistics of a task that has run
+	 */
+	@Override
+	public String getStatus(Integer id) {
+		ExecutorSchedulerTask scheduledTask = scheduledTasks.get(id);
+		if (scheduledTask == null)
+			return "Not Running";
+		
+		String status;
+		Task task = scheduledTask.getTask();
+		if (task != null && task.isExecuting()) {
+			status = "Currently executing";
+		} else if (scheduledTask.getNextScheduledTime() > 0) {
+			status = "Scheduled to execute at " + new Date(scheduledTask.getNextScheduledTime());
+		} else {
+			status = "Finished";
+		}
+		
+		String statistics = scheduledTask.getStatistics();
+		return statistics == null ? status : status + " (" + statistics + ")";
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.SchedulerService#getProgress(java.lang.Integer)
+	 */
+	@Override
+	public String getProgress(Integer id) {
+		ExecutorSchedulerTask scheduledTask = scheduledTasks.get(id);
+		Task task = scheduledTask == null ? null : scheduledTask.getTask();
+		if (task != null && task.isExecuting() && task instanceof AbstractTask)
+			return ((AbstractTask) task).getProgress();
+		return null;
+	}
+	
+	/**
+	 * @return the milliseconds to randomly delay the first run of the given repeating task by
+	 */
+	private long getJitter(TaskDefinition taskDefinition, long repeatInterval) {
+		long maxJitter = taskDefinition.getStartTime() == null ? SchedulerConstants.SCHEDULER_DEFAULT_MAX_JITTER : 0;
+		maxJitter = getLongProperty(taskDefinition, SchedulerConstants.TASK_MAX_JITTER_PROPERTY, maxJitter);
+		
+		// never delay by more than the repeat interval
+		long max = Math.min(maxJitter * SchedulerConstants.SCHEDULER_MILLIS_PER_SECOND, repeatInterval);
+		if (max <= 0)
+			return 0;
+		synchronized (random) {
+			return (long) (random.nextDouble() * max);
+		}
+	}
+	
+	private MisfirePolicy getMisfirePolicy(TaskDefinition taskDefinition) {
+		String value = taskDefinition.getProperty(SchedulerConstants.TASK_MISFIRE_POLICY_PROPERTY);
+		if (StringUtils.isNotBlank(value)) {
+			try {
+				return MisfirePolicy.valueOf(value.trim().toUpperCase());
+			}
+			catch (IllegalArgumentException e) {
+				log.warn("Unknown misfire policy " + value + " for task " + taskDefinition.getName());
+			}
+		}
+		return MisfirePolicy.RUN_ONCE;
+	}
+	
+	private long getMisfireThreshold(TaskDefinition taskDefinition) {
+		return getLongProperty(taskDefinition, SchedulerConstants.TASK_MISFIRE_THRESHOLD_PROPERTY,
+		    SchedulerConstants.SCHEDULER_DEFAULT_MISFIRE_THRESHOLD)
+		        * SchedulerConstants.SCHEDULER_MILLIS_PER_SECOND;
+	}
+	
+	private long getLongProperty(TaskDefinition taskDefinition, String property, long defaultValue) {
+		String value = taskDefinition.getProperty(property);
+		if (StringUtils.isNotBlank(value)) {
+			try {
+				return Long.parseLong(value.trim());
+			}
+			catch (NumberFormatException e) {
+				log.warn("The property " + property + " of task " + taskDefinition.getName() + " should be a number");
+			}
+		}
+		return defaultValue;
+	}
+}
@@ -0,0 +1,248 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.executor;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.scheduler.Task;
+import org.openmrs.scheduler.timer.TimerSchedulerTask;
+
+/**
+ * Runs a task on the thread pool of the {@link ExecutorSchedulerServiceImpl}. It extends
+ * {@link TimerSchedulerTask} so that the task is still executed through
+ * {@link org.openmrs.api.context.Daemon#executeScheduledTask(Task)}. <br/>
+ * <br/>
+ * On top of that this class makes sure that two runs of the same task definition never overlap,
+ * applies the {@link MisfirePolicy} to runs that start late, and keeps statistics on the run
+ * durations and the delay between the scheduled and the actual start of each run.
+ *
+ * @since 1.10
+ */
+public class ExecutorSchedulerTask extends TimerSchedulerTask {
+	
+	/**
+	 * What to do with a run that starts later than it was scheduled to, e.g. because all threads
+	 * were busy or the previous run took longer than the repeat interval
+	 */
+	public enum MisfirePolicy {
+		/**
+		 * Run late runs, but only once if several runs are overdue
+		 */
+		RUN_ONCE,
+		/**
+		 * Skip runs that start more than the misfire threshold late
+		 */
+		SKIP
+	}
+	
+	private static final Log log = LogFactory.getLog(ExecutorSchedulerTask.class);
+	
+	/**
+	 * The task definitions (or tasks without a definition id) that are executing right now
+	 */
+	private static final Set<Object> executingKeys = Collections.synchronizedSet(new HashSet<Object>());
+	
+	private Object key;
+	
+	private long repeatInterval;
+	
+	private MisfirePolicy misfirePolicy;
+	
+	private long misfireThreshold;
+	
+	private volatile long nextScheduledTime;
+	
+	private ScheduledFuture<?> future;
+	
+	private int runCount = 0;
+	
+	private int overlapCount = 0;
+	
+	private int misfireCount = 0;
+	
+	private long lastDuration = 0;
+	
+	private long totalDuration = 0;
+	
+	private long maxDuration = 0;
+	
+	private long lastQueueDelay = 0;
+	
+	private long totalQueueDelay = 0;
+	
+	/**
+	 * @param task the task to execute
+	 * @param taskDefinitionId the id of the task's definition, runs of the same id never overlap
+	 * @param repeatInterval the milliseconds between runs, 0 to run once
+	 * @param misfirePolicy what to do with runs that start late
+	 * @param misfireThreshold the milliseconds after which a run is late
+	 */
+	public ExecutorSchedulerTask(Task task, Integer taskDefinitionId, long repeatInterval, MisfirePolicy misfirePolicy,
+	    long misfireThreshold) {
+		super(task);
+		this.key = taskDefinitionId != null ? taskDefinitionId : this;
+		this.repeatInterval = repeatInterval;
+		this.misfirePolicy = misfirePolicy;
+		this.misfireThreshold = misfireThreshold;
+	}
+	
+	/**
+	 * Schedules this task on the given executor
+	 *
+	 * @param executor the executor to run the task on
+	 * @param delay the milliseconds until the first run
+	 */
+	public synchronized void schedule(ScheduledExecutorService executor, long delay) {
+		nextScheduledTime = System.currentTimeMillis() + delay;
+		if (repeatInterval > 0)
+			future = executor.scheduleAtFixedRate(this, delay, repeatInterval, TimeUnit.MILLISECONDS);
+		else
+			future = executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Executes the task unless another run of the same task definition is still executing or the
+	 * misfire policy says to skip this run
+	 *
+	 * @see org.openmrs.scheduler.timer.TimerSchedulerTask#run()
+	 * @should skip a run while another run of the same task definition is executing
+	 * @should run only once if several runs are overdue
+	 * @should skip late runs if the misfire policy is skip
+	 */
+	@Override
+	public void run() {
+		long start = System.currentTimeMillis();
+		long scheduled = nextScheduledTime;
+		if (repeatInterval > 0)
+			nextScheduledTime = scheduled + repeatInterval;
+		long queueDelay = Math.max(0, start - scheduled);
+		
+		if (repeatInterval > 0 && scheduled + repeatInterval <= start) {
+			// the next run is already due as well, so leave this one to it
+			misfired("a later run is already due");
+			return;
+		}
+		if (misfirePolicy == MisfirePolicy.SKIP && queueDelay > misfireThreshold) {
+			misfired("it started " + queueDelay + " ms late");
+			return;
+		}
+		if (!executingKeys.add(key)) {
+			synchronized (this) {
+				overlapCount++;
+			}
+			log.info("Skipping a run of " + getTask().getClass().getName() + " because it is still executing");
+			return;
+		}
+		
+		try {
+			super.run();
+		}
+		finally {
+			executingKeys.remove(key);
+			recordRun(System.currentTimeMillis() - start, queueDelay);
+		}
+	}
+	
+	/**
+	 * Stops future runs and invokes the task's shutdown() callback method
+	 *
+	 * @see org.openmrs.scheduler.timer.TimerSchedulerTask#shutdown()
+	 */
+	@Override
+	public void shutdown() {
+		synchronized (this) {
+			if (future != null)
+				future.cancel(false);
+		}
+		super.shutdown();
+	}
+	
+	/**
+	 * @return the time (in milliseconds) this task is scheduled to run next or 0 if it won't run
+	 *         again
+	 */
+	public long getNextScheduledTime() {
+		synchronized (this) {
+			if (future == null || future.isDone())
+				return 0;
+		}
+		return nextScheduledTime;
+	}
+	
+	/**
+	 * @return the number of runs that executed the task
+	 */
+	public synchronized int getRunCount() {
+		return runCount;
+	}
+	
+	/**
+	 * @return the number of runs that were skipped because the task was still executing
+	 */
+	public synchronized int getOverlapCount() {
+		return overlapCount;
+	}
+	
+	/**
+	 * @return the number of runs that were skipped because they started late
+	 */
+	public synchronized int getMisfireCount() {
+		return misfireCount;
+	}
+	
+	/**
+	 * @return a short description of the run durations and delays of this task, or null if the
+	 *         task has not run or skipped a run yet
+	 */
+	public synchronized String getStatistics() {
+		if (runCount == 0 && overlapCount == 0 && misfireCount == 0)
+			return null;
+		
+		StringBuilder sb = new StringBuilder();
+		sb.append(runCount).append(runCount == 1 ? " run" : " runs");
+		if (runCount > 0) {
+			sb.append(", last took ").append(lastDuration).append(" ms");
+			sb.append(" (average ").append(totalDuration / runCount).append(" ms, max ").append(maxDuration).append(" ms)");
+			sb.append(", last started ").append(lastQueueDelay).append(" ms late");
+			sb.append(" (average ").append(totalQueueDelay / runCount).append(" ms)");
+		}
+		if (overlapCount > 0)
+			sb.append(", ").append(overlapCount).append(" skipped while executing");
+		if (misfireCount > 0)
+			sb.append(", ").append(misfireCount).append(" misfired");
+		return sb.toString();
+	}
+	
+	private synchronized void misfired(String reason) {
+		misfireCount++;
+		if (log.isDebugEnabled())
+			log.debug("Skipping a run of " + getTask().getClass().getName() + " because " + reason);
+	}
+	
+	private synchronized void recordRun(long duration, long queueDelay) {
+		runCount++;
+		lastDuration = duration;
+		totalDuration += duration;
+		maxDuration = Math.max(maxDuration, duration);
+		lastQueueDelay = queueDelay;
+		totalQueueDelay += queueDelay;
+	}
+}
@@ -28,7 +28,7 @@ public abstract class AbstractTask implements Task {
 	private static final Log log = LogFactory.getLog(AbstractTask.class);
 	
 	// Indicates whether the task is currently running
-	protected boolean isExecuting = false;
+	protected volatile boolean isExecuting = false;
 	
 	// The task definition of the running task
 	protected TaskDefinition taskDefinition;
@@ -82,6 +82,18 @@ public abstract class AbstractTask implements Task {
 		taskDefinition = null;
 	}
 	
+	/**
+	 * Tasks that run for a long time can override this to describe how far the current execution
+	 * has come. It is shown on the scheduler admin page while the task is executing.
+	 * 
+	 * @return a short description of the progress of the current execution or null if the task
+	 *         doesn't report progress
+	 * @see org.openmrs.scheduler.SchedulerService#getStatus(Integer)
+	 */
+	public String getProgress() {
+		return null;
+	}
+	
 	/**
 	 * Callback method that tells the task that it has started executing.
 	 */
@@ -15,16 +15,21 @@ package org.openmrs.scheduler.tasks;
 
 import java.util.Date;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.VisitService;
 import org.openmrs.api.context.Context;
 import org.openmrs.util.OpenmrsConstants;
-import org.openmrs.util.OpenmrsUtil;
 
 /**
  * A scheduled task that automatically closes all unvoided active visits that match the visit
  * type(s) set as the value of the global property
- * {@link OpenmrsConstants#GP_VISIT_TYPES_TO_AUTO_CLOSE}
+ * {@link OpenmrsConstants#GP_VISIT_TYPES_TO_AUTO_CLOSE} <br/>
+ * <br/>
+ * The visits are closed in batches of {@link #BATCH_SIZE_PROPERTY} visits, each in its own
+ * transaction, and the progress is shown on the scheduler page. If the task property
+ * {@link #DRY_RUN_PROPERTY} is true, the visits that would be closed are only counted.
  * 
  * @since 1.9
  */
@@ -32,6 +37,33 @@ public class AutoCloseVisitsTask extends AbstractTask {
 	
 	private static final Log log = LogFactory.getLog(AutoCloseVisitsTask.class);
 	
+	/**
+	 * The task property with the number of visits to close in each transaction
+	 * 
+	 * @since 1.10
+	 */
+	public static final String BATCH_SIZE_PROPERTY = "batchSize";
+	
+	/**
+	 * The task property that makes the task only count the visits to close if it is true
+	 * 
+	 * @since 1.10
+	 */
+	public static final String DRY_RUN_PROPERTY = "dryRun";
+	
+	/**
+	 * The default number of visits to close in each transaction
+	 * 
+	 * @since 1.10
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	
+	private volatile int visitsToClose = 0;
+	
+	private volatile int visitsClosed = 0;
+	
+	private volatile long startTime = 0;
+	
 	/**
 	 * @see org.openmrs.scheduler.tasks.AbstractTask#execute()
 	 */
@@ -43,7 +75,7 @@ public class AutoCloseVisitsTask extends AbstractTask {
 			
 			startExecuting();
 			try {
-				Context.getVisitService().stopVisits(new Date());
+				closeVisits();
 			}
 			catch (Exception e) {
 				log.error("Error while auto closing visits:", e);
@@ -53,4 +85,66 @@ public class AutoCloseVisitsTask extends AbstractTask {
 			}
 		}
 	}
+	
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#getProgress()
+	 */
+	@Override
+	public String getProgress() {
+		if (startTime == 0)
+			return null;
+		
+		long seconds = Math.max(1, (System.currentTimeMillis() - startTime) / 1000);
+		return "closed " + visitsClosed + " of " + visitsToClose + " visits (" + (visitsClosed / seconds)
+		        + " per second)";
+	}
+	
+	private void closeVisits() {
+		VisitService visitService = Context.getVisitService();
+		Date maximumStartDate = new Date();
+		visitsClosed = 0;
+		visitsToClose = visitService.stopVisits(maximumStartDate, null, true);
+		if (isDryRun()) {
+			log.info("Dry run: " + visitsToClose + " visits would be closed");
+			return;
+		}
+		
+		int batchSize = getBatchSize();
+		startTime = System.currentTimeMillis();
+		try {
+			int closed;
+			do {
+				// each call runs in its own transaction
+				closed = visitService.stopVisits(maximumStartDate, batchSize, false);
+				visitsClosed += closed;
+				if (log.isDebugEnabled())
+					log.debug(getProgress());
+			} while (closed == batchSize);
+			
+			log.info("Closed " + visitsClosed + " visits in " + (System.currentTimeMillis() - startTime) + " ms");
+		}
+		finally {
+			startTime = 0;
+		}
+	}
+	
+	private boolean isDryRun() {
+		return taskDefinition != null && Boolean.valueOf(StringUtils.trim(taskDefinition.getProperty(DRY_RUN_PROPERTY)));
+	}
+	
+	private int getBatchSize() {
+		String value = taskDefinition == null ? null : taskDefinition.getProperty(BATCH_SIZE_PROPERTY);
+		if (StringUtils.isNotBlank(value)) {
+			try {
+				int batchSize = Integer.parseInt(value.trim());
+				if (batchSize > 0)
+					return batchSize;
+			}
+			catch (NumberFormatException e) {
+				// use the default
+			}
+			log.warn("The " + BATCH_SIZE_PROPERTY + " property should be a positive number, using " + DEFAULT_BATCH_SIZE);
+		}
+		return DEFAULT_BATCH_SIZE;
+	}
 }
@@ -13,7 +13,10 @@
  */
 package org.openmrs.scheduler.tasks;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import org.apache.commons.logging.Log;
@@ -22,9 +25,12 @@ import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 import org.openmrs.report.EvaluationContext;
 import org.openmrs.reporting.ReportObjectService;
+import org.openmrs.reporting.export.DataExportProgress;
 import org.openmrs.reporting.export.DataExportReportObject;
 import org.openmrs.reporting.export.DataExportUtil;
+import org.openmrs.reporting.export.DataExportFunctions.CacheStatistics;
 import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.util.OpenmrsConstants;
 
 /**
  * Generates a data export
@@ -42,6 +48,9 @@ public class GenerateDataExportTask extends AbstractTask {
 	
 	private EvaluationContext context;
 	
+	// progress of the current execution, null when not executing
+	private volatile DataExportProgress progress;
+	
 	/**
 	 * @see org.openmrs.scheduler.tasks.AbstractTask#initialize(TaskDefinition)
 	 */
@@ -58,11 +67,21 @@ public class GenerateDataExportTask extends AbstractTask {
 		return this.context;
 	}
 	
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#getProgress()
+	 */
+	@Override
+	public String getProgress() {
+		DataExportProgress current = progress;
+		return current == null ? null : current.toString();
+	}
+	
 	/**
 	 * Process the next form entry in the database and then remove the form entry from the database.
 	 */
 	public void execute() {
 		Context.openSession();
+		startExecuting();
 		try {
 			log.debug("Generating data exports...");
 			
@@ -87,7 +106,18 @@ public class GenerateDataExportTask extends AbstractTask {
 					}
 				}
 				
-				DataExportUtil.generateExports(reports, this.getEvaluationContext());
+				Integer poolSize = Context.getAdministrationService().getGlobalPropertyValue(
+				    OpenmrsConstants.GP_DATA_EXPORT_THREAD_POOL_SIZE, 2);
+				
+				Map<DataExportReportObject, Collection<CacheStatistics>> cacheStatistics = new LinkedHashMap<DataExportReportObject, Collection<CacheStatistics>>();
+				progress = new DataExportProgress(reports.size());
+				DataExportUtil.generateExports(reports, this.getEvaluationContext(), poolSize, progress, cacheStatistics);
+				log.info("Generate data export task done: " + progress);
+				
+				for (Map.Entry<DataExportReportObject, Collection<CacheStatistics>> entry : cacheStatistics.entrySet()) {
+					for (CacheStatistics stats : entry.getValue())
+						log.info(entry.getKey() + " cache " + stats);
+				}
 			}
 			
 		}
@@ -96,6 +126,8 @@ public class GenerateDataExportTask extends AbstractTask {
 			throw new APIException("Error running generate data export queue task", e);
 		}
 		finally {
+			progress = null;
+			stopExecuting();
 			Context.closeSession();
 		}
 		
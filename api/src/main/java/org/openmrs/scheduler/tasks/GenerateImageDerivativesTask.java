@@ -0,0 +1,113 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.tasks;
+
+import java.io.File;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.obs.handler.ImageHandler;
+import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.util.OpenmrsUtil;
+
+/**
+ * A scheduled task that creates the smaller copies of the complex obs images that were saved
+ * before {@link ImageHandler} created them, or whose copies are older than the image. Every file in
+ * the {@link OpenmrsConstants#GLOBAL_PROPERTY_COMPLEX_OBS_DIR} directory and its sub directories
+ * that is an image is checked, and the progress is shown on the scheduler page.
+ * 
+ * @since 1.10
+ */
+public class GenerateImageDerivativesTask extends AbstractTask {
+	
+	private static final Log log = LogFactory.getLog(GenerateImageDerivativesTask.class);
+	
+	private volatile int filesChecked = 0;
+	
+	private volatile int images = 0;
+	
+	private volatile long startTime = 0;
+	
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#execute()
+	 */
+	@Override
+	public void execute() {
+		if (!isExecuting) {
+			if (log.isDebugEnabled())
+				log.debug("Starting Generate Image Derivatives Task...");
+			
+			startExecuting();
+			try {
+				createDerivatives();
+			}
+			catch (Exception e) {
+				log.error("Error while generating image derivatives:", e);
+			}
+			finally {
+				stopExecuting();
+			}
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#getProgress()
+	 */
+	@Override
+	public String getProgress() {
+		if (startTime == 0)
+			return null;
+		
+		return "checked " + filesChecked + " files (" + images + " images)";
+	}
+	
+	private void createDerivatives() {
+		File dir = OpenmrsUtil.getDirectoryInApplicationDataDirectory(Context.getAdministrationService()
+		        .getGlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_COMPLEX_OBS_DIR));
+		
+		filesChecked = 0;
+		images = 0;
+		startTime = System.currentTimeMillis();
+		try {
+			createDerivatives(dir, new ImageHandler());
+			
+			log.info("Checked the derivatives of " + images + " images in " + (System.currentTimeMillis() - startTime)
+			        + " ms");
+		}
+		finally {
+			startTime = 0;
+		}
+	}
+	
+	/**
+	 * Creates the copies of the images in a directory and its sub directories, except for the
+	 * directories with the copies themselves
+	 */
+	private void createDerivatives(File dir, ImageHandler handler) {
+		File[] children = dir.listFiles();
+		if (children == null)
+			return;
+		
+		for (File child : children) {
+			if (child.isFile()) {
+				if (handler.createDerivatives(child))
+					images++;
+				filesChecked++;
+			} else if (child.isDirectory() && !ImageHandler.DERIVATIVES_DIR.equals(child.getName())) {
+				createDerivatives(child, handler);
+			}
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.tasks;
+
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.Obs;
+import org.openmrs.api.APIException;
+import org.openmrs.api.ObsService;
+import org.openmrs.api.context.Context;
+import org.openmrs.obs.handler.AbstractHandler;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * A scheduled task that moves the files of complex obs stored in the flat layout into the sharded
+ * layout of {@link AbstractHandler}, see {@link OpenmrsConstants#GLOBAL_PROPERTY_COMPLEX_OBS_LAYOUT}.
+ * <br/>
+ * <br/>
+ * Every page of obs is moved in its own transaction with {@link ObsService#migrateComplexData(List)},
+ * which counts the obs that still refer to the old files of the page with one query. Obs that are
+ * moved already are skipped, so the task can be stopped at any time and continues where it stopped
+ * when it runs again. The progress is shown on the scheduler page.
+ * 
+ * @since 1.10
+ */
+public class MigrateComplexObsTask extends AbstractTask {
+	
+	private static final Log log = LogFactory.getLog(MigrateComplexObsTask.class);
+	
+	/**
+	 * The number of obs that are read at a time
+	 */
+	private static final int PAGE_SIZE = 100;
+	
+	private volatile int obsChecked = 0;
+	
+	private volatile int obsMoved = 0;
+	
+	private volatile int obsFailed = 0;
+	
+	private volatile long startTime = 0;
+	
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#execute()
+	 */
+	@Override
+	public void execute() {
+		if (!isExecuting) {
+			if (log.isDebugEnabled())
+				log.debug("Starting Migrate Complex Obs Task...");
+			
+			startExecuting();
+			try {
+				migrate();
+			}
+			catch (Exception e) {
+				log.error("Error while migrating complex obs:", e);
+			}
+			finally {
+				stopExecuting();
+			}
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#getProgress()
+	 */
+	@Override
+	public String getProgress() {
+		if (startTime == 0)
+			return null;
+		
+		return "checked " + obsChecked + " complex obs, moved " + obsMoved + " (" + obsFailed + " failed)";
+	}
+	
+	private void migrate() {
+		ObsService obsService = Context.getObsService();
+		obsChecked = 0;
+		obsMoved = 0;
+		obsFailed = 0;
+		startTime = System.currentTimeMillis();
+		try {
+			List<Obs> page;
+			Obs last = null;
+			do {
+				page = obsService.getComplexObservationPage(last, PAGE_SIZE);
+				if (!page.isEmpty()) {
+					last = page.get(page.size() - 1);
+					try {
+						// each call runs in its own transaction
+						obsMoved += obsService.migrateComplexData(page).size();
+					}
+					catch (APIException e) {
+						log.warn("Unable to migrate the complex data of the obs up to " + last.getObsId(), e);
+						obsFailed += page.size();
+					}
+					obsChecked += page.size();
+				}
+				Context.clearSession();
+			} while (page.size() == PAGE_SIZE);
+			
+			log.info("Checked " + obsChecked + " complex obs in " + (System.currentTimeMillis() - startTime) + " ms, moved "
+			        + obsMoved + ", " + obsFailed + " failed");
+		}
+		finally {
+			startTime = 0;
+		}
+	}
+}
@@ -39,6 +39,7 @@ import org.openmrs.scheduler.Task;
 import org.openmrs.scheduler.TaskDefinition;
 import org.openmrs.scheduler.TaskFactory;
 import org.openmrs.scheduler.db.SchedulerDAO;
+import org.openmrs.scheduler.tasks.AbstractTask;
 import org.openmrs.util.OpenmrsMemento;
 import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.transaction.annotation.Transactional;
@@ -511,6 +512,18 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 		return "Not Running";
 	}
 	
+	/**
+	 * @see org.openmrs.scheduler.SchedulerService#getProgress(java.lang.Integer)
+	 */
+	@Override
+	public String getProgress(Integer id) {
+		TimerSchedulerTask scheduledTask = scheduledTasks.get(id);
+		Task task = scheduledTask == null ? null : scheduledTask.getTask();
+		if (task != null && task.isExecuting() && task instanceof AbstractTask)
+			return ((AbstractTask) task).getProgress();
+		return null;
+	}
+	
 	@Override
 	public void scheduleIfNotRunning(TaskDefinition taskDef) {
 		Task task = taskDef.getTaskInstance();
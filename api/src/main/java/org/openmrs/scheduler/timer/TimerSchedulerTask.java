@@ -38,6 +38,13 @@ public class TimerSchedulerTask extends TimerTask {
 		this.task = task;
 	}
 	
+	/**
+	 * @return the task that is executed by the JDK timer
+	 */
+	public Task getTask() {
+		return task;
+	}
+	
 	/**
 	 * * Executes the action to be performed by this timer task.
 	 * 
@@ -848,6 +848,14 @@ public final class OpenmrsConstants {
 	
 	public static final String GLOBAL_PROPERTY_COMPLEX_OBS_DIR = "obs.complex_obs_dir";
 	
+	/**
+	 * The layout of the files in the complex obs directory, "flat" or "sharded"
+	 * 
+	 * @see org.openmrs.obs.handler.AbstractHandler
+	 * @since 1.10
+	 */
+	public static final String GLOBAL_PROPERTY_COMPLEX_OBS_LAYOUT = "obs.complex_obs_layout";
+	
 	public static final String GLOBAL_PROPERTY_MIN_SEARCH_CHARACTERS = "minSearchCharacters";
 	
 	public static final int GLOBAL_PROPERTY_DEFAULT_MIN_SEARCH_CHARACTERS = 3;
@@ -1074,8 +1082,38 @@ public final class OpenmrsConstants {
 	
 	public static final String GP_ALLOWED_FAILED_LOGINS_BEFORE_LOCKOUT = "security.allowedFailedLoginsBeforeLockout";
 	
+	/**
+	 * Global property name for the number of seconds a verified login is remembered so that its
+	 * password does not have to be checked against the database again
+	 */
+	public static final String GP_AUTHENTICATION_CACHE_TIME_TO_LIVE = "security.authenticationCacheTimeToLive";
+	
 	public static final String GP_CASE_SENSITIVE_NAMES_IN_CONCEPT_NAME_TABLE = "concept.caseSensitiveNamesInConceptNameTable";
 	
+	/**
+	 * Global property name for the number of patients whose data is loaded and cached at a time
+	 * while generating a data export
+	 */
+	public static final String GP_DATA_EXPORT_BATCH_SIZE = "dataExport.batchSize";
+	
+	/**
+	 * Global property name for the number of data exports that the generate data export task
+	 * generates at the same time
+	 */
+	public static final String GP_DATA_EXPORT_THREAD_POOL_SIZE = "dataExport.threadPoolSize";
+	
+	/**
+	 * Global property name for the number of seconds a patient filter result stays in the shared
+	 * cohort cache
+	 */
+	public static final String GP_COHORT_CACHE_TIME_TO_LIVE = "cohortCache.timeToLive";
+	
+	/**
+	 * Global property name for the maximum number of patient ids in all cohorts of the shared cohort
+	 * cache
+	 */
+	public static final String GP_COHORT_CACHE_MAX_PATIENT_IDS = "cohortCache.maxPatientIds";
+	
 	/**
 	 * At OpenMRS startup these global properties/default values/descriptions are inserted into the
 	 * database if they do not exist yet.
@@ -1245,6 +1283,9 @@ public final class OpenmrsConstants {
 		        "Username for the OpenMRS user that will perform the scheduler activities"));
 		props.add(new GlobalProperty("scheduler.password", SchedulerConstants.SCHEDULER_DEFAULT_PASSWORD,
 		        "Password for the OpenMRS user that will perform the scheduler activities"));
+		props.add(new GlobalProperty(SchedulerConstants.SCHEDULER_THREAD_POOL_SIZE_PROPERTY, String
+		        .valueOf(SchedulerConstants.SCHEDULER_DEFAULT_THREAD_POOL_SIZE),
+		        "The maximum number of scheduled tasks that execute at the same time. Takes effect after a restart."));
 		
 		props.add(new GlobalProperty(GLOBAL_PROPERTY_CONCEPTS_LOCKED, "false", "if true, do not allow editing concepts",
 		        BooleanDatatype.class, null));
@@ -1350,6 +1391,12 @@ public final class OpenmrsConstants {
 		props.add(new GlobalProperty(GLOBAL_PROPERTY_COMPLEX_OBS_DIR, "complex_obs",
 		        "Default directory for storing complex obs."));
 		
+		props.add(new GlobalProperty(GLOBAL_PROPERTY_COMPLEX_OBS_LAYOUT, "flat",
+		        "How complex obs files are stored: 'flat' puts all files in the complex obs directory under their "
+		                + "own names, 'sharded' names files after the digest of their content, stores them in nested "
+		                + "sub directories and stores files with the same content once. Existing files are moved to "
+		                + "the sharded layout by the Migrate Complex Obs Task."));
+		
 		props
 		        .add(new GlobalProperty(
 		                GLOBAL_PROPERTY_ENCOUNTER_FORM_OBS_SORT_ORDER,
@@ -1488,6 +1535,10 @@ public final class OpenmrsConstants {
 		props.add(new GlobalProperty(GP_ALLOWED_FAILED_LOGINS_BEFORE_LOCKOUT, "7",
 		        "Maximum number of failed logins allowed after which username is locked out"));
 		
+		props.add(new GlobalProperty(GP_AUTHENTICATION_CACHE_TIME_TO_LIVE, "300",
+		        "The number of seconds a verified username and password is remembered, 0 to check every login against "
+		                + "the database"));
+		
 		props.add(new GlobalProperty(GP_DEFAULT_CONCEPT_MAP_TYPE, "NARROWER-THAN",
 		        "Default concept map type which is used when no other is set"));
 		
@@ -1519,6 +1570,20 @@ public final class OpenmrsConstants {
 		props.add(new GlobalProperty(GLOBAL_PROPERTY_USER_REQUIRE_EMAIL_AS_USERNAME, "false",
 		        "Indicates whether a username must be a valid e-mail or not.", BooleanDatatype.class, null));
 		
+		props.add(new GlobalProperty(GP_DATA_EXPORT_BATCH_SIZE, "1000",
+		        "The number of patients whose column data is loaded and cached at a time while generating a data export. "
+		                + "Smaller values use less memory, larger values issue fewer queries."));
+		
+		props.add(new GlobalProperty(GP_DATA_EXPORT_THREAD_POOL_SIZE, "2",
+		        "The maximum number of data exports that the Generate Data Export task generates at the same time"));
+		
+		props.add(new GlobalProperty(GP_COHORT_CACHE_TIME_TO_LIVE, "600",
+		        "The number of seconds a patient filter result is shared between cohort builder and report runs"));
+		
+		props.add(new GlobalProperty(GP_COHORT_CACHE_MAX_PATIENT_IDS, "1000000",
+		        "The maximum number of patient ids in all shared patient filter results. "
+		                + "The least recently used results are dropped first."));
+		
 		for (GlobalProperty gp : ModuleFactory.getGlobalProperties()) {
 			props.add(gp);
 		}
@@ -1770,6 +1835,28 @@ public final class OpenmrsConstants {
 	
 	public static final String TEXT_VIEW = "TEXT_VIEW";
 	
+	/**
+	 * The view of complex data that is stored in a file, the data is the {@link java.io.File} itself so
+	 * that it can be streamed without reading it into memory
+	 * 
+	 * @since 1.10
+	 */
+	public static final String FILE_VIEW = "FILE_VIEW";
+	
+	/**
+	 * The view of a complex image as a small picture, e.g. to list many images on a page
+	 * 
+	 * @since 1.10
+	 */
+	public static final String THUMBNAIL_VIEW = "THUMBNAIL_VIEW";
+	
+	/**
+	 * The view of a complex image that fits on a screen
+	 * 
+	 * @since 1.10
+	 */
+	public static final String SCREEN_VIEW = "SCREEN_VIEW";
+	
 	public static final String ORDER_NUMBER_DEFAULT_PREFIX = "OR:";
 	
 	/** The data type to return on failing to load a custom data type. */
@@ -19,6 +19,8 @@ import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
 
 import javax.crypto.Cipher;
@@ -49,6 +51,20 @@ public class Security {
 	 */
 	public static Log log = LogFactory.getLog(Security.class);
 	
+	/**
+	 * The init vector and secret key from the runtime properties, read when they are first needed
+	 */
+	private static volatile SavedKeys savedKeys = null;
+	
+	/**
+	 * Cipher and message digest instances are expensive to create and not thread safe, so every
+	 * thread keeps its own
+	 */
+	private static final ThreadLocal<Cipher> threadCipher = new ThreadLocal<Cipher>();
+	
+	private static final ThreadLocal<Map<String, MessageDigest>> threadDigests =
+	        new ThreadLocal<Map<String, MessageDigest>>();
+	
 	/**
 	 * Compare the given hash and the given string-to-hash to see if they are equal. The
 	 * string-to-hash is usually of the form password + salt. <br/>
@@ -86,7 +102,7 @@ public class Security {
 		MessageDigest md;
 		byte[] input;
 		try {
-			md = MessageDigest.getInstance(algorithm);
+			md = getMessageDigest(algorithm);
 			input = strToEncode.getBytes(encoding);
 		}
 		catch (NoSuchAlgorithmException e) {
@@ -111,7 +127,7 @@ public class Security {
 		MessageDigest md;
 		byte[] input;
 		try {
-			md = MessageDigest.getInstance(algorithm);
+			md = getMessageDigest(algorithm);
 			input = strToEncode.getBytes(encoding);
 		}
 		catch (NoSuchAlgorithmException e) {
@@ -125,6 +141,44 @@ public class Security {
 		return hexString(md.digest(input));
 	}
 	
+	/**
+	 * Gets the message digest of the current thread for the given algorithm
+	 * 
+	 * @param algorithm the digest algorithm
+	 * @return a reset message digest
+	 * @throws NoSuchAlgorithmException if the algorithm is not available
+	 */
+	private static MessageDigest getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+		Map<String, MessageDigest> digests = threadDigests.get();
+		if (digests == null) {
+			digests = new HashMap<String, MessageDigest>();
+			threadDigests.set(digests);
+		}
+		MessageDigest md = digests.get(algorithm);
+		if (md == null) {
+			md = MessageDigest.getInstance(algorithm);
+			digests.put(algorithm, md);
+		} else {
+			md.reset();
+		}
+		return md;
+	}
+	
+	/**
+	 * Gets the cipher of the current thread, it has to be initialized before it is used
+	 * 
+	 * @return the cipher
+	 * @throws GeneralSecurityException if the cipher is not available
+	 */
+	private static Cipher getCipher() throws GeneralSecurityException {
+		Cipher cipher = threadCipher.get();
+		if (cipher == null) {
+			cipher = Cipher.getInstance(OpenmrsConstants.ENCRYPTION_CIPHER_CONFIGURATION);
+			threadCipher.set(cipher);
+		}
+		return cipher;
+	}
+	
 	/**
 	 * Convenience method to convert a byte array to a string
 	 * 
@@ -159,7 +213,7 @@ public class Security {
 		MessageDigest md;
 		byte[] input;
 		try {
-			md = MessageDigest.getInstance(algorithm);
+			md = getMessageDigest(algorithm);
 			input = strToEncode.getBytes(encoding);
 		}
 		catch (NoSuchAlgorithmException e) {
@@ -216,12 +270,15 @@ public class Security {
 	 * @since 1.9
 	 */
 	public static String encrypt(String text, byte[] initVector, byte[] secretKey) {
-		IvParameterSpec initVectorSpec = new IvParameterSpec(initVector);
-		SecretKeySpec secret = new SecretKeySpec(secretKey, OpenmrsConstants.ENCRYPTION_KEY_SPEC);
+		return encrypt(text, new IvParameterSpec(initVector), new SecretKeySpec(secretKey,
+		        OpenmrsConstants.ENCRYPTION_KEY_SPEC));
+	}
+	
+	private static String encrypt(String text, IvParameterSpec initVectorSpec, SecretKeySpec secret) {
 		byte[] encrypted;
 		
 		try {
-			Cipher cipher = Cipher.getInstance(OpenmrsConstants.ENCRYPTION_CIPHER_CONFIGURATION);
+			Cipher cipher = getCipher();
 			cipher.init(Cipher.ENCRYPT_MODE, secret, initVectorSpec);
 			encrypted = cipher.doFinal(text.getBytes(encoding));
 		}
@@ -244,7 +301,8 @@ public class Security {
 	 * @should encrypt short and long text
 	 */
 	public static String encrypt(String text) {
-		return Security.encrypt(text, Security.getSavedInitVector(), Security.getSavedSecretKey());
+		SavedKeys keys = getSavedKeys();
+		return Security.encrypt(text, keys.initVectorSpec, keys.secretKeySpec);
 	}
 	
 	/**
@@ -260,12 +318,15 @@ public class Security {
 	 * @since 1.9
 	 */
 	public static String decrypt(String text, byte[] initVector, byte[] secretKey) {
-		IvParameterSpec initVectorSpec = new IvParameterSpec(initVector);
-		SecretKeySpec secret = new SecretKeySpec(secretKey, OpenmrsConstants.ENCRYPTION_KEY_SPEC);
+		return decrypt(text, new IvParameterSpec(initVector), new SecretKeySpec(secretKey,
+		        OpenmrsConstants.ENCRYPTION_KEY_SPEC));
+	}
+	
+	private static String decrypt(String text, IvParameterSpec initVectorSpec, SecretKeySpec secret) {
 		String decrypted = null;
 		
 		try {
-			Cipher cipher = Cipher.getInstance(OpenmrsConstants.ENCRYPTION_CIPHER_CONFIGURATION);
+			Cipher cipher = getCipher();
 			cipher.init(Cipher.DECRYPT_MODE, secret, initVectorSpec);
 			byte[] original = cipher.doFinal(Base64.decode(text));
 			decrypted = new String(original, encoding);
@@ -289,7 +350,30 @@ public class Security {
 	 * @should decrypt short and long text
 	 */
 	public static String decrypt(String text) {
-		return Security.decrypt(text, Security.getSavedInitVector(), Security.getSavedSecretKey());
+		SavedKeys keys = getSavedKeys();
+		return Security.decrypt(text, keys.initVectorSpec, keys.secretKeySpec);
+	}
+	
+	/**
+	 * @return the saved init vector and secret key, read from the runtime properties if needed
+	 */
+	private static SavedKeys getSavedKeys() {
+		SavedKeys keys = savedKeys;
+		if (keys == null) {
+			keys = new SavedKeys(readSavedInitVector(), readSavedSecretKey());
+			savedKeys = keys;
+		}
+		return keys;
+	}
+	
+	/**
+	 * Forgets the init vector and secret key read from the runtime properties, they are read again
+	 * when they are needed next. This is called when the runtime properties are set.
+	 * 
+	 * @since 1.10
+	 */
+	public static void clearSavedKeys() {
+		savedKeys = null;
 	}
 	
 	/**
@@ -297,8 +381,13 @@ public class Security {
 	 * 
 	 * @return stored init vector byte array
 	 * @since 1.9
+	 * @should return the init vector from the runtime properties
 	 */
 	public static byte[] getSavedInitVector() {
+		return getSavedKeys().initVector.clone();
+	}
+	
+	private static byte[] readSavedInitVector() {
 		String initVectorText = Context.getRuntimeProperties().getProperty(
 		    OpenmrsConstants.ENCRYPTION_VECTOR_RUNTIME_PROPERTY, OpenmrsConstants.ENCRYPTION_VECTOR_DEFAULT);
 		
@@ -333,8 +422,13 @@ public class Security {
 	 * 
 	 * @return stored secret key byte array
 	 * @since 1.9
+	 * @should read the secret key again after the runtime properties are set
 	 */
 	public static byte[] getSavedSecretKey() {
+		return getSavedKeys().secretKey.clone();
+	}
+	
+	private static byte[] readSavedSecretKey() {
 		String keyText = Context.getRuntimeProperties().getProperty(OpenmrsConstants.ENCRYPTION_KEY_RUNTIME_PROPERTY,
 		    OpenmrsConstants.ENCRYPTION_KEY_DEFAULT);
 		
@@ -368,4 +462,25 @@ public class Security {
 		return skey.getEncoded();
 	}
 	
+	/**
+	 * The decoded init vector and secret key with their specs, which are immutable and can be
+	 * shared by all threads
+	 */
+	private static class SavedKeys {
+		
+		private final byte[] initVector;
+		
+		private final byte[] secretKey;
+		
+		private final IvParameterSpec initVectorSpec;
+		
+		private final SecretKeySpec secretKeySpec;
+		
+		public SavedKeys(byte[] initVector, byte[] secretKey) {
+			this.initVector = initVector;
+			this.secretKey = secretKey;
+			this.initVectorSpec = new IvParameterSpec(initVector);
+			this.secretKeySpec = new SecretKeySpec(secretKey, OpenmrsConstants.ENCRYPTION_KEY_SPEC);
+		}
+	}
 }
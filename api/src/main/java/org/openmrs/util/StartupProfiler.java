@@ -0,0 +1,140 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Measures how long the phases of starting OpenMRS take, e.g. reading the runtime properties,
+ * checking for database updates, parsing the hibernate mappings, refreshing the spring context and
+ * starting the modules. <br/>
+ * <br/>
+ * Phases can be nested and can run more than once, e.g. the hibernate mappings are parsed during
+ * every refresh of the spring context. The time of every run of a phase is added to its total.
+ *
+ * @since 1.10
+ */
+public class StartupProfiler {
+	
+	private static final Log log = LogFactory.getLog(StartupProfiler.class);
+	
+	public static final String RUNTIME_PROPERTIES = "runtime properties";
+	
+	public static final String DATABASE_UPDATE_CHECK = "database update check";
+	
+	public static final String HIBERNATE_MAPPINGS = "hibernate mappings";
+	
+	public static final String HIBERNATE_SESSION_FACTORY = "hibernate session factory";
+	
+	public static final String SPRING_REFRESH = "spring refresh";
+	
+	public static final String MODULE_STARTUP = "module startup";
+	
+	public static final String CORE_DATASET_CHECK = "core dataset check";
+	
+	public static final String WEB_MODULE_STARTUP = "web module startup";
+	
+	public static final String SCHEDULER_STARTUP = "scheduler startup";
+	
+	private static final Map<String, Long> started = new HashMap<String, Long>();
+	
+	/**
+	 * The total milliseconds of each phase in the order the phases were first started
+	 */
+	private static final Map<String, Long> durations = new LinkedHashMap<String, Long>();
+	
+	private static final Map<String, Integer> counts = new HashMap<String, Integer>();
+	
+	/**
+	 * Marks the start of a phase
+	 *
+	 * @param phase the name of the phase
+	 */
+	public static synchronized void start(String phase) {
+		started.put(phase, System.currentTimeMillis());
+		if (!durations.containsKey(phase))
+			durations.put(phase, 0L);
+	}
+	
+	/**
+	 * Marks the end of a phase that was started with {@link #start(String)}
+	 *
+	 * @param phase the name of the phase
+	 * @return the milliseconds this run of the phase took, 0 if the phase was not started
+	 * @should add the time of every run of a phase
+	 * @should ignore phases that were not started
+	 */
+	public static synchronized long stop(String phase) {
+		Long start = started.remove(phase);
+		if (start == null)
+			return 0;
+		
+		long duration = System.currentTimeMillis() - start;
+		durations.put(phase, durations.get(phase) + duration);
+		Integer count = counts.get(phase);
+		counts.put(phase, count == null ? 1 : count + 1);
+		if (log.isDebugEnabled())
+			log.debug("Startup phase " + phase + " took " + duration + " ms");
+		return duration;
+	}
+	
+	/**
+	 * @return the total milliseconds of each finished phase in the order the phases were started
+	 */
+	public static synchronized Map<String, Long> getDurations() {
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		for (Map.Entry<String, Long> entry : durations.entrySet()) {
+			if (counts.containsKey(entry.getKey()))
+				result.put(entry.getKey(), entry.getValue());
+		}
+		return result;
+	}
+	
+	/**
+	 * @return a line for each finished phase with its total time and the number of times it ran
+	 * @should list the phases in the order they were started
+	 */
+	public static synchronized String getReport() {
+		StringBuilder sb = new StringBuilder("Startup timings:");
+		for (Map.Entry<String, Long> entry : getDurations().entrySet()) {
+			int count = counts.get(entry.getKey());
+			sb.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue()).append(" ms");
+			if (count > 1)
+				sb.append(" (").append(count).append(" runs)");
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Logs the report of all finished phases
+	 */
+	public static void logReport() {
+		if (log.isInfoEnabled())
+			log.info(getReport());
+	}
+	
+	/**
+	 * Forgets all phases, e.g. before OpenMRS is started again
+	 */
+	public static synchronized void clear() {
+		started.clear();
+		durations.clear();
+		counts.clear();
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util.databasechange;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import liquibase.change.custom.CustomChange;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * This change set fills the concept_set_closure table from the concept_set table, one level of set
+ * members at a time
+ */
+public class ConceptSetClosureChangeSet implements CustomTaskChange {
+	
+	protected final static Log log = LogFactory.getLog(ConceptSetClosureChangeSet.class);
+	
+	private int rowCount = 0;
+	
+	/**
+	 * @see CustomTaskChange#execute(Database)
+	 */
+	@Override
+	public void execute(Database database) throws CustomChangeException {
+		JdbcConnection connection = (JdbcConnection) database.getConnection();
+		
+		StringBuilder insertNextLevelSql = new StringBuilder();
+		insertNextLevelSql.append("INSERT INTO concept_set_closure (ancestor_id, descendant_id, depth)");
+		insertNextLevelSql.append(" SELECT DISTINCT closure.ancestor_id, cs.concept_id, ? FROM concept_set_closure closure");
+		insertNextLevelSql.append(" JOIN concept_set cs ON cs.concept_set = closure.descendant_id WHERE closure.depth = ?");
+		insertNextLevelSql.append(" AND NOT EXISTS (SELECT * FROM concept_set_closure existing");
+		insertNextLevelSql.append(" WHERE existing.ancestor_id = closure.ancestor_id AND existing.descendant_id = cs.concept_id)");
+		
+		PreparedStatement insertNextLevel = null;
+		try {
+			// the direct members of each set
+			int inserted = connection.createStatement().executeUpdate(
+			    "INSERT INTO concept_set_closure (ancestor_id, descendant_id, depth)"
+			            + " SELECT DISTINCT concept_set, concept_id, 1 FROM concept_set");
+			rowCount = inserted;
+			
+			// then the members of the members that aren't in the closure yet
+			insertNextLevel = connection.prepareStatement(insertNextLevelSql.toString());
+			for (int depth = 1; inserted > 0; depth++) {
+				insertNextLevel.setInt(1, depth + 1);
+				insertNextLevel.setInt(2, depth);
+				inserted = insertNextLevel.executeUpdate();
+				rowCount += inserted;
+			}
+		}
+		catch (SQLException e) {
+			throw new CustomChangeException("Unable to fill the concept set closure", e);
+		}
+		catch (DatabaseException e) {
+			throw new CustomChangeException("Unable to fill the concept set closure", e);
+		}
+		finally {
+			if (insertNextLevel != null) {
+				try {
+					insertNextLevel.close();
+				}
+				catch (SQLException e) {
+					log.warn("Failed to close the prepared statement", e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @see CustomChange#getConfirmationMessage()
+	 */
+	@Override
+	public String getConfirmationMessage() {
+		return "Finished filling the concept set closure with " + rowCount + " rows";
+	}
+	
+	/**
+	 * @see CustomChange#setFileOpener(ResourceAccessor)
+	 */
+	@Override
+	public void setFileOpener(ResourceAccessor fo) {
+	}
+	
+	/**
+	 * @see CustomChange#setUp()
+	 */
+	@Override
+	public void setUp() throws SetupException {
+	}
+	
+	/**
+	 * @see CustomChange#validate(Database)
+	 */
+	@Override
+	public ValidationErrors validate(Database db) {
+		return new ValidationErrors();
+	}
+}
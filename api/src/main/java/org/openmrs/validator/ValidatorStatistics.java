@@ -0,0 +1,121 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.validator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how often each validator runs and how long it takes, so that the validators that slow
+ * down saving objects can be found. The times are recorded by
+ * {@link org.openmrs.api.AdministrationService#validate(Object, org.springframework.validation.Errors)}
+ * and shown on the system information page. Counters are kept since startup or the last
+ * {@link #clear()}, without locking.
+ * 
+ * @since 1.10
+ */
+public class ValidatorStatistics {
+	
+	private static final ConcurrentMap<String, Timing> timings = new ConcurrentHashMap<String, Timing>();
+	
+	/**
+	 * Records one run of a validator
+	 * 
+	 * @param validatorClass the class of the validator
+	 * @param nanos the time the validator took in nanoseconds
+	 * @should count the calls and add up the time of a validator
+	 */
+	public static void record(Class<?> validatorClass, long nanos) {
+		String name = validatorClass.getName();
+		Timing timing = timings.get(name);
+		if (timing == null) {
+			timing = new Timing(name);
+			Timing existing = timings.putIfAbsent(name, timing);
+			if (existing != null)
+				timing = existing;
+		}
+		timing.add(nanos);
+	}
+	
+	/**
+	 * Gets a summary of the validators that have run, starting with the one that took the longest
+	 * in total
+	 * 
+	 * @return a map from the validator class name to the number of calls and the total, average
+	 *         and maximum time
+	 * @should order the validators by their total time
+	 */
+	public static Map<String, String> getSummary() {
+		List<Timing> sorted = new ArrayList<Timing>(timings.values());
+		Collections.sort(sorted, new Comparator<Timing>() {
+			
+			public int compare(Timing t1, Timing t2) {
+				long total1 = t1.totalNanos.get();
+				long total2 = t2.totalNanos.get();
+				return total1 < total2 ? 1 : (total1 == total2 ? 0 : -1);
+			}
+		});
+		
+		Map<String, String> summary = new LinkedHashMap<String, String>();
+		for (Timing timing : sorted) {
+			long calls = timing.calls.get();
+			long total = timing.totalNanos.get();
+			summary.put(timing.name, calls + " calls, total " + toMillis(total) + " ms, average "
+			        + toMillis(calls == 0 ? 0 : total / calls) + " ms, max " + toMillis(timing.maxNanos.get()) + " ms");
+		}
+		return summary;
+	}
+	
+	/**
+	 * Forgets the counters of all validators
+	 */
+	public static void clear() {
+		timings.clear();
+	}
+	
+	private static String toMillis(long nanos) {
+		return String.format(Locale.ENGLISH, "%.3f", nanos / 1000000.0);
+	}
+	
+	private static class Timing {
+		
+		private final String name;
+		
+		private final AtomicLong calls = new AtomicLong();
+		
+		private final AtomicLong totalNanos = new AtomicLong();
+		
+		private final AtomicLong maxNanos = new AtomicLong();
+		
+		public Timing(String name) {
+			this.name = name;
+		}
+		
+		public void add(long nanos) {
+			calls.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+			long max = maxNanos.get();
+			while (nanos > max && !maxNanos.compareAndSet(max, nanos))
+				max = maxNanos.get();
+		}
+	}
+}
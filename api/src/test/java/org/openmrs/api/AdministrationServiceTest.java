@@ -27,8 +27,10 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.openmrs.BaseOpenmrsObject;
 import org.openmrs.GlobalProperty;
 import org.openmrs.ImplementationId;
+import org.openmrs.Location;
 import org.openmrs.User;
 import org.openmrs.api.context.Context;
 import org.openmrs.customdatatype.datatype.BooleanDatatype;
@@ -37,6 +39,8 @@ import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.Verifies;
 import org.openmrs.util.HttpClient;
 import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.validator.LocationValidator;
+import org.openmrs.validator.ValidatorStatistics;
 
 import org.springframework.validation.BindException;
 import org.springframework.validation.Errors;
@@ -800,4 +804,40 @@ public class AdministrationServiceTest extends BaseContextSensitiveTest {
 		BindException errors = new BindException(new Object(), "");
 		Context.getAdministrationService().validate(null, errors);
 	}
+	
+	/**
+	 * @see AdministrationService#getMaximumPropertyLength(Class,String)
+	 * @verifies return the length of the column of the property
+	 */
+	@Test
+	public void getMaximumPropertyLength_shouldReturnTheLengthOfTheColumnOfTheProperty() throws Exception {
+		AdministrationService as = Context.getAdministrationService();
+		Assert.assertEquals(255, as.getMaximumPropertyLength(Location.class, "name"));
+		Assert.assertEquals(50, as.getMaximumPropertyLength(Location.class, "country"));
+		Assert.assertEquals(38, as.getMaximumPropertyLength(Location.class, "uuid"));
+	}
+	
+	/**
+	 * @see AdministrationService#getMaximumPropertyLength(Class,String)
+	 * @verifies fail for a class that is not mapped
+	 */
+	@Test(expected = APIException.class)
+	public void getMaximumPropertyLength_shouldFailForAClassThatIsNotMapped() throws Exception {
+		Context.getAdministrationService().getMaximumPropertyLength(BaseOpenmrsObject.class, "uuid");
+	}
+	
+	/**
+	 * @see AdministrationService#validate(Object,Errors)
+	 * @verifies record the time spent in the validators
+	 */
+	@Test
+	public void validate_shouldRecordTheTimeSpentInTheValidators() throws Exception {
+		ValidatorStatistics.clear();
+		Location location = Context.getLocationService().getLocation(1);
+		Context.getAdministrationService().validate(location, new BindException(location, "location"));
+		
+		String summary = ValidatorStatistics.getSummary().get(LocationValidator.class.getName());
+		Assert.assertNotNull(summary);
+		Assert.assertTrue(summary, summary.startsWith("1 calls"));
+	}
 }
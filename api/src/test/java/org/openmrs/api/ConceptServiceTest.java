@@ -36,6 +36,7 @@ import java.util.Set;
 import junit.framework.Assert;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.hibernate.Hibernate;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -265,6 +266,79 @@ public class ConceptServiceTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(3, iterator.next().getConceptId().intValue());
 	}
 	
+	/**
+	 * @see ConceptService#getConceptPage(Concept,int,boolean)
+	 * @verifies return the concepts after the given concept ordered by concept id
+	 */
+	@Test
+	public void getConceptPage_shouldReturnTheConceptsAfterTheGivenConceptOrderedByConceptId() throws Exception {
+		List<Concept> firstPage = conceptService.getConceptPage(null, 2, true);
+		Assert.assertEquals(2, firstPage.size());
+		Assert.assertEquals(conceptService.getAllConcepts().get(0), firstPage.get(0));
+		Assert.assertTrue(firstPage.get(0).getConceptId() < firstPage.get(1).getConceptId());
+		
+		List<Concept> secondPage = conceptService.getConceptPage(firstPage.get(1), 2, true);
+		Assert.assertTrue(firstPage.get(1).getConceptId() < secondPage.get(0).getConceptId());
+	}
+	
+	/**
+	 * @see ConceptService#getConceptPage(Concept,int,boolean)
+	 * @verifies return every concept exactly once when paging through all pages
+	 */
+	@Test
+	public void getConceptPage_shouldReturnEveryConceptExactlyOnceWhenPagingThroughAllPages() throws Exception {
+		Set<Integer> conceptIds = new HashSet<Integer>();
+		int count = 0;
+		List<Concept> page = conceptService.getConceptPage(null, 3, true);
+		while (!page.isEmpty()) {
+			for (Concept concept : page) {
+				conceptIds.add(concept.getConceptId());
+				count++;
+			}
+			page = conceptService.getConceptPage(page.get(page.size() - 1), 3, true);
+		}
+		
+		Assert.assertEquals(conceptService.getAllConcepts().size(), count);
+		Assert.assertEquals(count, conceptIds.size());
+	}
+	
+	/**
+	 * @see ConceptService#getConceptPage(Concept,int,boolean)
+	 * @verifies not return retired concepts if includeRetired is false
+	 */
+	@Test
+	public void getConceptPage_shouldNotReturnRetiredConceptsIfIncludeRetiredIsFalse() throws Exception {
+		List<Concept> concepts = conceptService.getConceptPage(null, 1000, false);
+		Assert.assertEquals(conceptService.getAllConcepts(null, true, false).size(), concepts.size());
+		for (Concept concept : concepts)
+			Assert.assertFalse(concept.isRetired());
+	}
+	
+	/**
+	 * @see ConceptService#getConceptPage(Concept,int,boolean)
+	 * @verifies fetch the names and descriptions of the concepts
+	 */
+	@Test
+	public void getConceptPage_shouldFetchTheNamesAndDescriptionsOfTheConcepts() throws Exception {
+		Context.clearSession();
+		List<Concept> concepts = conceptService.getConceptPage(null, 5, true);
+		Assert.assertFalse(concepts.isEmpty());
+		for (Concept concept : concepts) {
+			Assert.assertTrue(Hibernate.isInitialized(concept.getNames(true)));
+			Assert.assertTrue(Hibernate.isInitialized(concept.getDescriptions()));
+			Assert.assertTrue(Hibernate.isInitialized(concept.getConceptSets()));
+		}
+	}
+	
+	/**
+	 * @see ConceptService#getConceptPage(Concept,int,boolean)
+	 * @verifies fail if pageSize is not positive
+	 */
+	@Test(expected = APIException.class)
+	public void getConceptPage_shouldFailIfPageSizeIsNotPositive() throws Exception {
+		conceptService.getConceptPage(null, 0, true);
+	}
+	
 	/**
 	 * This test will fail if it takes more than 15 seconds to run. (Checks for an error with the
 	 * iterator looping forever) The @Timed annotation is used as an alternative to
@@ -1369,6 +1443,32 @@ public class ConceptServiceTest extends BaseContextSensitiveTest {
 		assertThat(conceptSet, containsInAnyOrder(hasId(2), hasId(3), hasId(4), hasId(5), hasId(6)));
 	}
 	
+	/**
+	 * @see {@link ConceptService#getConceptsByConceptSet(Concept)}
+	 */
+	@Test
+	@Verifies(value = "should return members added to a subset after the set was saved", method = "getConceptsByConceptSet(Concept)")
+	public void getConceptsByConceptSet_shouldReturnMembersAddedToASubsetAfterTheSetWasSaved() throws Exception {
+		Concept subset = new Concept();
+		subset.addName(new ConceptName("FOOD SUBSET", Context.getLocale()));
+		subset.setDatatype(conceptService.getConceptDatatypeByName("N/A"));
+		subset.setConceptClass(conceptService.getConceptClassByName("ConvSet"));
+		subset.setSet(true);
+		subset.addSetMember(conceptService.getConcept(5089));
+		conceptService.saveConcept(subset);
+		
+		Concept set = conceptService.getConcept(23);
+		set.addSetMember(subset);
+		conceptService.saveConcept(set);
+		assertThat(conceptService.getConceptsByConceptSet(set), containsInAnyOrder(hasId(18), hasId(19), hasId(20),
+		    hasId(subset.getConceptId()), hasId(5089)));
+		
+		subset.addSetMember(conceptService.getConcept(5497));
+		conceptService.saveConcept(subset);
+		assertThat(conceptService.getConceptsByConceptSet(set), containsInAnyOrder(hasId(18), hasId(19), hasId(20),
+		    hasId(subset.getConceptId()), hasId(5089), hasId(5497)));
+	}
+	
 	/**
 	 * @see {@link ConceptService#saveConceptStopWord(org.openmrs.ConceptStopWord)}
 	 */
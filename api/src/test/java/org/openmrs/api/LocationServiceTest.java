@@ -271,6 +271,69 @@ public class LocationServiceTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(2, locations.size());
 	}
 	
+	/**
+	 * @see {@link LocationService#getDescendantLocations(Location,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should return all descendants of the location", method = "getDescendantLocations(Location,boolean)")
+	public void getDescendantLocations_shouldReturnAllDescendantsOfTheLocation() throws Exception {
+		LocationService ls = Context.getLocationService();
+		List<Location> locations = ls.getDescendantLocations(ls.getLocation(1), false);
+		
+		Assert.assertEquals(3, locations.size());
+		Assert.assertTrue(locations.contains(ls.getLocation(2)));
+		Assert.assertTrue(locations.contains(ls.getLocation(3)));
+		Assert.assertTrue(locations.contains(ls.getLocation(4)));
+		Assert.assertEquals(1, ls.getDescendantLocations(ls.getLocation(3), false).size());
+		Assert.assertEquals(0, ls.getDescendantLocations(ls.getLocation(4), false).size());
+	}
+	
+	/**
+	 * @see {@link LocationService#getDescendantLocations(Location,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should not return retired descendants if includeRetired is false", method = "getDescendantLocations(Location,boolean)")
+	public void getDescendantLocations_shouldNotReturnRetiredDescendantsIfIncludeRetiredIsFalse() throws Exception {
+		LocationService ls = Context.getLocationService();
+		ls.retireLocation(ls.getLocation(4), "for testing");
+		
+		Assert.assertEquals(2, ls.getDescendantLocations(ls.getLocation(1), false).size());
+		Assert.assertEquals(3, ls.getDescendantLocations(ls.getLocation(1), true).size());
+	}
+	
+	/**
+	 * @see {@link LocationService#getDescendantLocations(Location,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should return new descendants after a location is saved", method = "getDescendantLocations(Location,boolean)")
+	public void getDescendantLocations_shouldReturnNewDescendantsAfterALocationIsSaved() throws Exception {
+		LocationService ls = Context.getLocationService();
+		Assert.assertEquals(3, ls.getDescendantLocations(ls.getLocation(1), false).size());
+		
+		Location location = new Location();
+		location.setName("Test Level C Child Location");
+		location.setParentLocation(ls.getLocation(4));
+		ls.saveLocation(location);
+		
+		List<Location> locations = ls.getDescendantLocations(ls.getLocation(1), false);
+		Assert.assertEquals(4, locations.size());
+		Assert.assertTrue(locations.contains(location));
+	}
+	
+	/**
+	 * @see {@link LocationService#getDescendantLocations(Location,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should not return descendants after they are purged", method = "getDescendantLocations(Location,boolean)")
+	public void getDescendantLocations_shouldNotReturnDescendantsAfterTheyArePurged() throws Exception {
+		LocationService ls = Context.getLocationService();
+		Assert.assertEquals(1, ls.getDescendantLocations(ls.getLocation(3), false).size());
+		
+		ls.purgeLocation(ls.getLocation(4));
+		
+		Assert.assertEquals(0, ls.getDescendantLocations(ls.getLocation(3), false).size());
+	}
+	
 	/**
 	 * @see {@link LocationService#getAllLocations(null)}
 	 */
@@ -36,6 +36,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +49,7 @@ import org.junit.Test;
 import org.openmrs.Concept;
 import org.openmrs.ConceptName;
 import org.openmrs.Encounter;
+import org.openmrs.GlobalProperty;
 import org.openmrs.Location;
 import org.openmrs.Obs;
 import org.openmrs.Order;
@@ -57,6 +59,9 @@ import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.ObsServiceImpl;
 import org.openmrs.obs.ComplexData;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.ObsRow;
+import org.openmrs.obs.ObsValues;
+import org.openmrs.obs.handler.AbstractHandler;
 import org.openmrs.obs.handler.BinaryDataHandler;
 import org.openmrs.obs.handler.ImageHandler;
 import org.openmrs.obs.handler.TextHandler;
@@ -507,6 +512,131 @@ public class ObsServiceTest extends BaseContextSensitiveTest {
 		Assert.assertFalse(normalObs.isComplex());
 	}
 	
+	/**
+	 * @see ObsService#getComplexObs(Integer,String)
+	 */
+	@Test
+	@Verifies(value = "should return the file of the complex data for the file view", method = "getComplexObs(Integer,String)")
+	public void getComplexObs_shouldReturnTheFileOfTheComplexDataForTheFileView() throws Exception {
+		executeDataSet(COMPLEX_OBS_XML);
+		AdministrationService as = Context.getAdministrationService();
+		File complexObsDir = OpenmrsUtil.getDirectoryInApplicationDataDirectory(as
+		        .getGlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_COMPLEX_OBS_DIR));
+		File createdFile = new File(complexObsDir, "sometext.txt");
+		Writer writer = new FileWriter(createdFile);
+		writer.write("some text");
+		writer.close();
+		
+		try {
+			Obs complexObs = Context.getObsService().getComplexObs(45, OpenmrsConstants.FILE_VIEW);
+			
+			Assert.assertEquals(createdFile, complexObs.getComplexData().getData());
+			Assert.assertEquals("txtimage", complexObs.getComplexData().getTitle());
+		}
+		finally {
+			// the file is outside the database and can't be rolled back
+			createdFile.delete();
+		}
+	}
+	
+	/**
+	 * @see ObsService#getComplexObservationPage(Obs,int)
+	 * @verifies return the complex obs after the given obs
+	 */
+	@Test
+	public void getComplexObservationPage_shouldReturnTheComplexObsAfterTheGivenObs() throws Exception {
+		executeDataSet(COMPLEX_OBS_XML);
+		ObsService os = Context.getObsService();
+		
+		List<Obs> firstPage = os.getComplexObservationPage(null, 1);
+		Assert.assertEquals(1, firstPage.size());
+		Assert.assertEquals(44, firstPage.get(0).getObsId().intValue());
+		
+		List<Obs> secondPage = os.getComplexObservationPage(firstPage.get(0), 10);
+		Assert.assertEquals(1, secondPage.size());
+		Assert.assertEquals(45, secondPage.get(0).getObsId().intValue());
+	}
+	
+	/**
+	 * @see ObsService#getObservationCountByComplexDataLocation(String)
+	 * @verifies count the obs that refer to the location
+	 */
+	@Test
+	public void getObservationCountByComplexDataLocation_shouldCountTheObsThatReferToTheLocation() throws Exception {
+		executeDataSet(COMPLEX_OBS_XML);
+		ObsService os = Context.getObsService();
+		
+		Assert.assertEquals(1, os.getObservationCountByComplexDataLocation("sometext.txt").intValue());
+		Assert.assertEquals(0, os.getObservationCountByComplexDataLocation("text.txt").intValue());
+	}
+	
+	/**
+	 * @see ObsService#getObservationCountByComplexDataLocation(String)
+	 * @verifies not treat underscores and percent signs in the location as wildcards
+	 */
+	@Test
+	public void getObservationCountByComplexDataLocation_shouldNotTreatUnderscoresAndPercentSignsInTheLocationAsWildcards()
+	        throws Exception {
+		executeDataSet(COMPLEX_OBS_XML);
+		ObsService os = Context.getObsService();
+		
+		Assert.assertEquals(0, os.getObservationCountByComplexDataLocation("_ometext.txt").intValue());
+		Assert.assertEquals(0, os.getObservationCountByComplexDataLocation("%.txt").intValue());
+		Assert.assertEquals(1, os.getObservationCountByComplexDataLocation("openmrs_logo_small.gif").intValue());
+	}
+	
+	/**
+	 * @see ObsService#migrateComplexData(List)
+	 * @verifies move the files into the sharded layout
+	 */
+	@Test
+	public void migrateComplexData_shouldMoveTheFilesIntoTheShardedLayout() throws Exception {
+		executeDataSet(COMPLEX_OBS_XML);
+		ObsService os = Context.getObsService();
+		File complexObsDir = OpenmrsUtil.getDirectoryInApplicationDataDirectory(Context.getAdministrationService()
+		        .getGlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_COMPLEX_OBS_DIR));
+		File oldFile = new File(complexObsDir, "sometext.txt");
+		Writer writer = new FileWriter(oldFile);
+		writer.write("some text");
+		writer.close();
+		
+		File newFile = null;
+		try {
+			List<Obs> migrated = os.migrateComplexData(Collections.singletonList(os.getObs(45)));
+			
+			Assert.assertEquals(1, migrated.size());
+			Obs obs = migrated.get(0);
+			String location = AbstractHandler.getComplexDataLocation(obs);
+			Assert.assertTrue(obs.getValueComplex().startsWith("txt image |"));
+			Assert.assertTrue(location.matches("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}\\.txt"));
+			newFile = AbstractHandler.getComplexDataFile(obs);
+			Assert.assertEquals("some text", OpenmrsUtil.getFileAsString(newFile));
+			Assert.assertEquals(1, os.getObservationCountByComplexDataLocation(location).intValue());
+			Assert.assertEquals(0, os.getObservationCountByComplexDataLocation("sometext.txt").intValue());
+		}
+		finally {
+			// the files are outside the database and can't be rolled back
+			oldFile.delete();
+			if (newFile != null)
+				OpenmrsUtil.deleteDirectory(newFile.getParentFile().getParentFile());
+		}
+	}
+	
+	/**
+	 * @see ObsService#migrateComplexData(List)
+	 * @verifies leave obs that are in the sharded layout already as they are
+	 */
+	@Test
+	public void migrateComplexData_shouldLeaveObsThatAreInTheShardedLayoutAlreadyAsTheyAre() throws Exception {
+		executeDataSet(COMPLEX_OBS_XML);
+		ObsService os = Context.getObsService();
+		Obs obs = os.getObs(45);
+		obs.setValueComplex("txt image |ab/cd/abcd.txt");
+		
+		Assert.assertTrue(os.migrateComplexData(Collections.singletonList(obs)).isEmpty());
+		Assert.assertEquals("txt image |ab/cd/abcd.txt", obs.getValueComplex());
+	}
+	
 	/**
 	 * @see ObsService#getHandler(String)
 	 */
@@ -716,6 +846,47 @@ public class ObsServiceTest extends BaseContextSensitiveTest {
 		
 	}
 	
+	/**
+	 * @see ObsService#saveObs(Obs,String)
+	 * @verifies store complex data in the sharded layout if it is configured
+	 */
+	@Test
+	public void saveObs_shouldStoreComplexDataInTheShardedLayoutIfItIsConfigured() throws Exception {
+		executeDataSet(COMPLEX_OBS_XML);
+		ObsService os = Context.getObsService();
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_COMPLEX_OBS_LAYOUT, AbstractHandler.SHARDED_LAYOUT));
+		
+		// this is a concept mapped to the text handler
+		Concept questionConcept = Context.getConceptService().getConcept(8474);
+		Obs first = new Obs(new Person(1), questionConcept, new Date(), new Location(1));
+		first.setComplexData(new ComplexData("first.txt", new CharArrayReader("the same text".toCharArray())));
+		Obs second = new Obs(new Person(1), questionConcept, new Date(), new Location(1));
+		second.setComplexData(new ComplexData("second.txt", new CharArrayReader("the same text".toCharArray())));
+		
+		File file = null;
+		try {
+			os.saveObs(first, null);
+			os.saveObs(second, null);
+			
+			file = AbstractHandler.getComplexDataFile(first);
+			Assert.assertEquals("the same text", OpenmrsUtil.getFileAsString(file));
+			Assert.assertTrue(AbstractHandler.getComplexDataLocation(first).matches(
+			    "[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}\\.txt"));
+			Assert.assertTrue(first.getValueComplex().startsWith("first.txt file |"));
+			
+			// files with the same content are stored once
+			Assert.assertEquals(file, AbstractHandler.getComplexDataFile(second));
+			Assert.assertEquals(2, os.getObservationCountByComplexDataLocation(
+			    AbstractHandler.getComplexDataLocation(first)).intValue());
+		}
+		finally {
+			// the files are outside the database and can't be rolled back
+			if (file != null)
+				OpenmrsUtil.deleteDirectory(file.getParentFile().getParentFile());
+		}
+	}
+	
 	/**
 	 * @see ObsService#setHandlers(Map<QString;QComplexObsHandler;>)}
 	 */
@@ -1648,4 +1819,147 @@ public class ObsServiceTest extends BaseContextSensitiveTest {
 		assertEquals(changeMessage, obs.getVoidReason());
 	}
 	
+	/**
+	 * @see ObsService#getObservationPage(List,List,List,List,Date,Date,boolean,Obs,int)
+	 * @verifies return the most recent obs first
+	 */
+	@Test
+	public void getObservationPage_shouldReturnTheMostRecentObsFirst() throws Exception {
+		List<Obs> page = Context.getObsService().getObservationPage(Collections.singletonList(new Person(7)), null,
+		    null, null, null, null, false, null, 3);
+		
+		assertEquals(Arrays.asList(16, 15, 14), getObsIds(page));
+	}
+	
+	/**
+	 * @see ObsService#getObservationPage(List,List,List,List,Date,Date,boolean,Obs,int)
+	 * @verifies return the obs after the given obs
+	 */
+	@Test
+	public void getObservationPage_shouldReturnTheObsAfterTheGivenObs() throws Exception {
+		ObsService obsService = Context.getObsService();
+		
+		// obs 10 to 15 have the same obs datetime, so they are ordered by id
+		List<Obs> page = obsService.getObservationPage(Collections.singletonList(new Person(7)), null, null, null, null,
+		    null, false, obsService.getObs(14), 3);
+		
+		assertEquals(Arrays.asList(13, 12, 11), getObsIds(page));
+	}
+	
+	/**
+	 * @see ObsService#getObservationPage(List,List,List,List,Date,Date,boolean,Obs,int)
+	 * @verifies return every obs exactly once when paging through all pages
+	 */
+	@Test
+	public void getObservationPage_shouldReturnEveryObsExactlyOnceWhenPagingThroughAllPages() throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Person> whom = Collections.singletonList(new Person(7));
+		
+		List<Integer> obsIds = new ArrayList<Integer>();
+		List<Obs> page = obsService.getObservationPage(whom, null, null, null, null, null, false, null, 2);
+		while (!page.isEmpty()) {
+			obsIds.addAll(getObsIds(page));
+			page = obsService.getObservationPage(whom, null, null, null, null, null, false, page.get(page.size() - 1), 2);
+		}
+		
+		assertEquals(Arrays.asList(16, 15, 14, 13, 12, 11, 10, 9, 7), obsIds);
+	}
+	
+	/**
+	 * @see ObsService#getObservationPage(List,List,List,List,Date,Date,boolean,Obs,int)
+	 * @verifies fail if pageSize is not positive
+	 */
+	@Test(expected = APIException.class)
+	public void getObservationPage_shouldFailIfPageSizeIsNotPositive() throws Exception {
+		Context.getObsService().getObservationPage(null, null, null, null, null, null, false, null, 0);
+	}
+	
+	/**
+	 * @see ObsService#getObservationRowPage(List,List,List,List,Date,Date,boolean,ObsRow,int)
+	 * @verifies return the same obs as getObservationPage
+	 */
+	@Test
+	public void getObservationRowPage_shouldReturnTheSameObsAsGetObservationPage() throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Person> whom = Collections.singletonList(new Person(7));
+		
+		List<ObsRow> rows = obsService.getObservationRowPage(whom, null, null, null, null, null, false, null, 4);
+		List<Integer> rowIds = new ArrayList<Integer>();
+		for (ObsRow row : obsService.getObservationRowPage(whom, null, null, null, null, null, false, rows.get(3), 4))
+			rowIds.add(row.getObsId());
+		
+		List<Obs> page = obsService.getObservationPage(whom, null, null, null, null, null, false, obsService.getObs(rows
+		        .get(3).getObsId()), 4);
+		assertEquals(getObsIds(page), rowIds);
+	}
+	
+	/**
+	 * @see ObsService#getObservationRowPage(List,List,List,List,Date,Date,boolean,ObsRow,int)
+	 * @verifies return the values of the obs
+	 */
+	@Test
+	public void getObservationRowPage_shouldReturnTheValuesOfTheObs() throws Exception {
+		List<ObsRow> rows = Context.getObsService().getObservationRowPage(Collections.singletonList(new Person(7)),
+		    null, null, null, null, null, false, null, 1);
+		
+		assertEquals(1, rows.size());
+		ObsRow row = rows.get(0);
+		assertEquals(16, row.getObsId().intValue());
+		assertEquals(7, row.getPersonId().intValue());
+		assertEquals(5089, row.getConceptId().intValue());
+		assertEquals(61.0, row.getValueNumeric(), 0);
+		assertEquals(Context.getObsService().getObs(16).getObsDatetime(), row.getObsDatetime());
+	}
+	
+	/**
+	 * @see ObsService#getObservationIterator(List,List,List,List,Date,Date,boolean,int)
+	 * @verifies iterate over all matching obs in the order of the pages
+	 */
+	@Test
+	public void getObservationIterator_shouldIterateOverAllMatchingObsInTheOrderOfThePages() throws Exception {
+		Iterator<Obs> iterator = Context.getObsService().getObservationIterator(
+		    Collections.singletonList(new Person(7)), null, null, null, null, null, false, 4);
+		
+		List<Integer> obsIds = new ArrayList<Integer>();
+		while (iterator.hasNext())
+			obsIds.add(iterator.next().getObsId());
+		
+		assertEquals(Arrays.asList(16, 15, 14, 13, 12, 11, 10, 9, 7), obsIds);
+	}
+	
+	/**
+	 * @see ObsService#getObservationValues(Person,List)
+	 * @verifies return the values of the obs of the person for the given concepts most recent first
+	 */
+	@Test
+	public void getObservationValues_shouldReturnTheValuesOfTheObsOfThePersonForTheGivenConceptsMostRecentFirst()
+	        throws Exception {
+		ObsService obsService = Context.getObsService();
+		ObsValues values = obsService.getObservationValues(new Person(7), Collections.singletonList(new Concept(5089)));
+		
+		assertEquals(3, values.size());
+		assertEquals(61.0, values.getValueNumeric(0), 0);
+		assertEquals(55.0, values.getValueNumeric(1), 0);
+		assertEquals(50.0, values.getValueNumeric(2), 0);
+		assertEquals(obsService.getObs(16).getObsDatetime().getTime(), values.getObsDatetime(0));
+		assertEquals(5089, values.getConceptId(2));
+		assertNull(values.getValueCodedId(0));
+	}
+	
+	/**
+	 * @see ObsService#getObservationValues(Person,List)
+	 * @verifies return empty values if no concepts are given
+	 */
+	@Test
+	public void getObservationValues_shouldReturnEmptyValuesIfNoConceptsAreGiven() throws Exception {
+		assertEquals(0, Context.getObsService().getObservationValues(new Person(7), new ArrayList<Concept>()).size());
+	}
+	
+	private List<Integer> getObsIds(List<Obs> obs) {
+		List<Integer> obsIds = new ArrayList<Integer>();
+		for (Obs o : obs)
+			obsIds.add(o.getObsId());
+		return obsIds;
+	}
+	
 }
@@ -44,6 +44,7 @@ import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 
 /**
@@ -57,6 +58,10 @@ public class VisitServiceTest extends BaseContextSensitiveTest {
 	
 	protected static final String VISITS_ATTRIBUTES_XML = "org/openmrs/api/include/VisitServiceTest-visitAttributes.xml";
 	
+	protected static final String VISITS_TO_AUTO_CLOSE_XML = "org/openmrs/api/include/VisitServiceTest-includeVisitsAndTypeToAutoClose.xml";
+	
+	protected static final String ENCOUNTER_AFTER_STOP_DATE_XML = "org/openmrs/api/include/VisitServiceTest-includeEncounterAfterStopDate.xml";
+	
 	private VisitService service;
 	
 	@Before
@@ -886,6 +891,69 @@ public class VisitServiceTest extends BaseContextSensitiveTest {
 		assertTrue("Not all active unvoided vists were closed", activeVisitCount == 0);
 	}
 	
+	/**
+	 * @see {@link VisitService#stopVisits(Date,Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should stop at most the given number of visits", method = "stopVisits(Date,Integer,boolean)")
+	public void stopVisits_shouldStopAtMostTheGivenNumberOfVisits() throws Exception {
+		executeDataSet(VISITS_TO_AUTO_CLOSE_XML);
+		int activeVisitCount = service.stopVisits(null, null, true);
+		assertTrue("There should be some active visits for this test to be valid", activeVisitCount > 2);
+		
+		assertEquals(2, service.stopVisits(null, 2, false));
+		assertEquals(activeVisitCount - 2, service.stopVisits(null, null, true));
+	}
+	
+	/**
+	 * @see {@link VisitService#stopVisits(Date,Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should only count the visits to stop on a dry run", method = "stopVisits(Date,Integer,boolean)")
+	public void stopVisits_shouldOnlyCountTheVisitsToStopOnADryRun() throws Exception {
+		executeDataSet(VISITS_TO_AUTO_CLOSE_XML);
+		int activeVisitCount = service.stopVisits(null, null, true);
+		assertTrue("There should be some active visits for this test to be valid", activeVisitCount > 0);
+		
+		assertEquals(activeVisitCount, service.stopVisits(null, null, true));
+		assertEquals(1, service.stopVisits(null, 1, true));
+		assertNull(service.getVisit(104).getStopDatetime());
+	}
+	
+	/**
+	 * @see {@link VisitService#stopVisits(Date,Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should not stop visits with encounters after the stop date", method = "stopVisits(Date,Integer,boolean)")
+	public void stopVisits_shouldNotStopVisitsWithEncountersAfterTheStopDate() throws Exception {
+		executeDataSet(VISITS_TO_AUTO_CLOSE_XML);
+		executeDataSet(ENCOUNTER_AFTER_STOP_DATE_XML);
+		
+		service.stopVisits(null, null, false);
+		Context.clearSession();
+		
+		assertNull(service.getVisit(104).getStopDatetime());
+		assertNotNull(service.getVisit(105).getStopDatetime());
+		assertEquals(0, service.stopVisits(null, null, true));
+	}
+	
+	/**
+	 * @see {@link VisitService#stopVisits(Date,Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should set the changed by and date changed fields of the stopped visits", method = "stopVisits(Date,Integer,boolean)")
+	public void stopVisits_shouldSetTheChangedByAndDateChangedFieldsOfTheStoppedVisits() throws Exception {
+		executeDataSet(VISITS_TO_AUTO_CLOSE_XML);
+		
+		service.stopVisits(null, null, false);
+		Context.clearSession();
+		
+		Visit visit = service.getVisit(105);
+		assertNotNull(visit.getStopDatetime());
+		assertEquals(Context.getAuthenticatedUser(), visit.getChangedBy());
+		assertNotNull(visit.getDateChanged());
+	}
+	
 	/**
 	 * @see {@link VisitService#saveVisit(Visit)}
 	 */
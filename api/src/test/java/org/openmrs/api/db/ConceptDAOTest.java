@@ -17,7 +17,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
@@ -536,4 +538,93 @@ public class ConceptDAOTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(cn1b, searchResults1.get(0).getConceptName());
 	}
 	
+	
+	/**
+	 * @see {@link ConceptDAO#getConceptSetsInSetAndSubsets(Concept)}
+	 */
+	@Test
+	@Verifies(value = "should return the rows of the set and all its subsets", method = "getConceptSetsInSetAndSubsets(Concept)")
+	public void getConceptSetsInSetAndSubsets_shouldReturnTheRowsOfTheSetAndAllItsSubsets() throws Exception {
+		executeDataSet("org/openmrs/api/include/ConceptServiceTest-getConceptsBySet.xml");
+		
+		List<Integer> memberIds = new ArrayList<Integer>();
+		for (ConceptSet conceptSet : dao.getConceptSetsInSetAndSubsets(dao.getConcept(1)))
+			memberIds.add(conceptSet.getConcept().getConceptId());
+		Collections.sort(memberIds);
+		
+		Assert.assertEquals(Arrays.asList(2, 3, 4, 5, 6), memberIds);
+		Assert.assertEquals(1, dao.getConceptSetsInSetAndSubsets(dao.getConcept(4)).size());
+	}
+	
+	/**
+	 * @see {@link ConceptDAO#updateConceptSetClosure(Concept)}
+	 */
+	@Test
+	@Verifies(value = "should add the members of a new set to the closure of the sets containing it", method = "updateConceptSetClosure(Concept)")
+	public void updateConceptSetClosure_shouldAddTheMembersOfANewSetToTheClosureOfTheSetsContainingIt() throws Exception {
+		executeDataSet("org/openmrs/api/include/ConceptServiceTest-getConceptsBySet.xml");
+		Concept concept = dao.getConcept(4);
+		concept.addSetMember(dao.getConcept(5089));
+		dao.saveConcept(concept);
+		dao.updateConceptSetClosure(concept);
+		
+		Assert.assertEquals(3, getClosureDepth(1, 5089));
+		Assert.assertEquals(2, getClosureDepth(3, 5089));
+		Assert.assertEquals(1, getClosureDepth(4, 5089));
+	}
+	
+	/**
+	 * @see {@link ConceptDAO#updateConceptSetClosure(Concept)}
+	 */
+	@Test
+	@Verifies(value = "should remove members that were removed from a set", method = "updateConceptSetClosure(Concept)")
+	public void updateConceptSetClosure_shouldRemoveMembersThatWereRemovedFromASet() throws Exception {
+		executeDataSet("org/openmrs/api/include/ConceptServiceTest-getConceptsBySet.xml");
+		Concept concept = dao.getConcept(3);
+		Assert.assertEquals(2, getClosureDepth(1, 6));
+		
+		for (Iterator<ConceptSet> i = concept.getConceptSets().iterator(); i.hasNext();) {
+			if (i.next().getConcept().getConceptId().equals(4))
+				i.remove();
+		}
+		dao.saveConcept(concept);
+		dao.updateConceptSetClosure(concept);
+		
+		Assert.assertEquals(-1, getClosureDepth(1, 4));
+		Assert.assertEquals(-1, getClosureDepth(1, 6));
+		Assert.assertEquals(-1, getClosureDepth(3, 6));
+		Assert.assertEquals(1, getClosureDepth(3, 5));
+		Assert.assertEquals(1, getClosureDepth(4, 6));
+	}
+	
+	/**
+	 * @see {@link ConceptDAO#rebuildConceptSetClosure()}
+	 */
+	@Test
+	@Verifies(value = "should build the closure of all concept sets", method = "rebuildConceptSetClosure()")
+	public void rebuildConceptSetClosure_shouldBuildTheClosureOfAllConceptSets() throws Exception {
+		executeDataSet("org/openmrs/api/include/ConceptServiceTest-getConceptsBySet.xml");
+		Context.getAdministrationService().executeSQL("delete from concept_set_closure", false);
+		Assert.assertEquals(-1, getClosureDepth(1, 2));
+		
+		dao.rebuildConceptSetClosure();
+		
+		Assert.assertEquals(1, getClosureDepth(1, 2));
+		Assert.assertEquals(1, getClosureDepth(1, 3));
+		Assert.assertEquals(2, getClosureDepth(1, 4));
+		Assert.assertEquals(3, getClosureDepth(1, 6));
+		Assert.assertEquals(2, getClosureDepth(3, 6));
+		Assert.assertEquals(-1, getClosureDepth(2, 1));
+	}
+	
+	/**
+	 * @return the depth of the descendant in the concept set closure of the ancestor, -1 if it is
+	 *         not in it
+	 */
+	private int getClosureDepth(int ancestorId, int descendantId) {
+		List<List<Object>> rows = Context.getAdministrationService().executeSQL(
+		    "select depth from concept_set_closure where ancestor_id = " + ancestorId + " and descendant_id = "
+		            + descendantId, true);
+		return rows.isEmpty() ? -1 : ((Number) rows.get(0).get(0)).intValue();
+	}
 }
@@ -351,4 +351,35 @@ public class ContextDAOTest extends BaseContextSensitiveTest {
 		dao.authenticate("  ", "password");
 	}
 	
+	/**
+	 * @see {@link ContextDAO#authenticate(String,String)}
+	 */
+	@Test
+	@Verifies(value = "should not authenticate with the old password after the password is changed", method = "authenticate(String,String)")
+	public void authenticate_shouldNotAuthenticateWithTheOldPasswordAfterThePasswordIsChanged() throws Exception {
+		User user = dao.authenticate("correct", "test");
+		Context.getUserService().changePassword(user, "Newpassw0rd");
+		
+		try {
+			dao.authenticate("correct", "test");
+			Assert.fail("The old password should not be remembered after it was changed");
+		}
+		catch (ContextAuthenticationException authException) {
+			// pass
+		}
+		Assert.assertEquals(user.getUserId(), dao.authenticate("correct", "Newpassw0rd").getUserId());
+	}
+	
+	/**
+	 * @see {@link ContextDAO#authenticate(String,String)}
+	 */
+	@Test(expected = ContextAuthenticationException.class)
+	@Verifies(value = "should not authenticate a retired user with a remembered password", method = "authenticate(String,String)")
+	public void authenticate_shouldNotAuthenticateARetiredUserWithARememberedPassword() throws Exception {
+		User user = dao.authenticate("correct", "test");
+		Context.getUserService().retireUser(user, "no longer works here");
+		
+		dao.authenticate("correct", "test");
+	}
+	
 }
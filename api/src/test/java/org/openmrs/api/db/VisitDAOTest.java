@@ -14,13 +14,16 @@
 package org.openmrs.api.db;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Date;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.VisitType;
 import org.openmrs.api.VisitService;
+import org.openmrs.api.context.Context;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.Verifies;
 
@@ -34,6 +37,8 @@ public class VisitDAOTest extends BaseContextSensitiveTest {
 	
 	protected static final String VISITS_INCLUDE_VISITS_TO_AUTO_CLOSE_XML = "org/openmrs/api/include/VisitServiceTest-includeVisitsAndTypeToAutoClose.xml";
 	
+	protected static final String ENCOUNTER_AFTER_STOP_DATE_XML = "org/openmrs/api/include/VisitServiceTest-includeEncounterAfterStopDate.xml";
+	
 	private VisitDAO dao = null;
 	
 	/**
@@ -83,4 +88,66 @@ public class VisitDAOTest extends BaseContextSensitiveTest {
 		cal.set(Calendar.MILLISECOND, 999);
 		Assert.assertEquals(105, dao.getNextVisit(dao.getVisit(1), visitTypes, cal.getTime()).getVisitId().intValue());
 	}
+	
+	/**
+	 * @see {@link VisitDAO#getVisitIdsToStop(Collection<VisitType>,Date,Date,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return the ids of unvoided active visits matching the specified types and startDate", method = "getVisitIdsToStop(Collection<VisitType>,Date,Date,Integer)")
+	public void getVisitIdsToStop_shouldReturnTheIdsOfUnvoidedActiveVisitsMatchingTheSpecifiedTypesAndStartDate()
+	        throws Exception {
+		executeDataSet(VISITS_INCLUDE_VISITS_TO_AUTO_CLOSE_XML);
+		ArrayList<VisitType> visitTypes = new ArrayList<VisitType>();
+		visitTypes.add(dao.getVisitType(4));
+		Calendar cal = Calendar.getInstance();
+		cal.set(2005, 0, 4, 23, 59, 59);
+		cal.set(Calendar.MILLISECOND, 999);
+		Assert.assertEquals(Arrays.asList(105, 106), dao.getVisitIdsToStop(visitTypes, cal.getTime(), new Date(), null));
+		Assert.assertEquals(Arrays.asList(105), dao.getVisitIdsToStop(visitTypes, cal.getTime(), new Date(), 1));
+	}
+	
+	/**
+	 * @see {@link VisitDAO#getVisitIdsToStop(Collection<VisitType>,Date,Date,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should not return visits with encounters after the stop date", method = "getVisitIdsToStop(Collection<VisitType>,Date,Date,Integer)")
+	public void getVisitIdsToStop_shouldNotReturnVisitsWithEncountersAfterTheStopDate() throws Exception {
+		executeDataSet(VISITS_INCLUDE_VISITS_TO_AUTO_CLOSE_XML);
+		executeDataSet(ENCOUNTER_AFTER_STOP_DATE_XML);
+		ArrayList<VisitType> visitTypes = new ArrayList<VisitType>();
+		visitTypes.add(dao.getVisitType(4));
+		Assert.assertEquals(Arrays.asList(105, 106), dao.getVisitIdsToStop(visitTypes, null, new Date(), null));
+		Assert.assertEquals(2, dao.getCountOfVisitsToStop(visitTypes, null, new Date()));
+	}
+	
+	/**
+	 * @see {@link VisitDAO#stopVisits(List<Integer>,Date,User,Date)}
+	 */
+	@Test
+	@Verifies(value = "should stop the active visits with the given ids", method = "stopVisits(List<Integer>,Date,User,Date)")
+	public void stopVisits_shouldStopTheActiveVisitsWithTheGivenIds() throws Exception {
+		executeDataSet(VISITS_INCLUDE_VISITS_TO_AUTO_CLOSE_XML);
+		Date now = new Date();
+		Assert.assertEquals(2, dao.stopVisits(Arrays.asList(105, 106), now, Context.getAuthenticatedUser(), now));
+		Context.clearSession();
+		
+		Assert.assertNotNull(dao.getVisit(105).getStopDatetime());
+		Assert.assertNotNull(dao.getVisit(106).getStopDatetime());
+		Assert.assertNull(dao.getVisit(104).getStopDatetime());
+	}
+	
+	/**
+	 * @see {@link VisitDAO#stopVisits(List<Integer>,Date,User,Date)}
+	 */
+	@Test
+	@Verifies(value = "should not change visits that are already stopped", method = "stopVisits(List<Integer>,Date,User,Date)")
+	public void stopVisits_shouldNotChangeVisitsThatAreAlreadyStopped() throws Exception {
+		executeDataSet(VISITS_INCLUDE_VISITS_TO_AUTO_CLOSE_XML);
+		Date stopDate = dao.getVisit(102).getStopDatetime();
+		Date now = new Date();
+		Assert.assertEquals(0, dao.stopVisits(Arrays.asList(102), now, Context.getAuthenticatedUser(), now));
+		Context.clearSession();
+		
+		Assert.assertEquals(stopDate.getTime(), dao.getVisit(102).getStopDatetime().getTime());
+	}
 }
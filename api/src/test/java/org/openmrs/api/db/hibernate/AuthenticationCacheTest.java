@@ -0,0 +1,132 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * Tests the lockout of the {@link AuthenticationCache}, without a session the default number of
+ * allowed failed logins is used
+ */
+public class AuthenticationCacheTest {
+	
+	private static final int ALLOWED = AuthenticationCache.DEFAULT_ALLOWED_FAILED_LOGINS;
+	
+	@Before
+	public void before() {
+		AuthenticationCache.clear();
+		new AuthenticationCache().globalPropertyDeleted(OpenmrsConstants.GP_ALLOWED_FAILED_LOGINS_BEFORE_LOCKOUT);
+	}
+	
+	@After
+	public void after() {
+		AuthenticationCache.clear();
+	}
+	
+	/**
+	 * @see AuthenticationCache#isLockedOut(String)
+	 * @verifies not lock out a login that failed the allowed number of times
+	 */
+	@Test
+	public void isLockedOut_shouldNotLockOutALoginThatFailedTheAllowedNumberOfTimes() throws Exception {
+		for (int i = 0; i < ALLOWED; i++)
+			AuthenticationCache.loginFailed("admin", 1);
+		
+		Assert.assertFalse(AuthenticationCache.isLockedOut("admin"));
+		Assert.assertFalse(AuthenticationCache.isLockedOut("someone else"));
+	}
+	
+	/**
+	 * @see AuthenticationCache#isLockedOut(String)
+	 * @verifies lock out a login that failed more than the allowed number of times
+	 */
+	@Test
+	public void isLockedOut_shouldLockOutALoginThatFailedMoreThanTheAllowedNumberOfTimes() throws Exception {
+		for (int i = 0; i <= ALLOWED; i++)
+			AuthenticationCache.loginFailed("admin", 1);
+		
+		Assert.assertTrue(AuthenticationCache.isLockedOut("admin"));
+		Assert.assertFalse(AuthenticationCache.isLockedOut("someone else"));
+	}
+	
+	/**
+	 * @see AuthenticationCache#isLockedOut(String)
+	 * @verifies not lock out a login after the lockout time
+	 */
+	@Test
+	public void isLockedOut_shouldNotLockOutALoginAfterTheLockoutTime() throws Exception {
+		long start = System.currentTimeMillis();
+		for (int i = 0; i <= ALLOWED; i++)
+			AuthenticationCache.loginFailed("admin", 1, start);
+		
+		// an attempt while locked out restarts the lockout time
+		Assert.assertTrue(AuthenticationCache.isLockedOut("admin", start + AuthenticationCache.LOCKOUT_TIME));
+		Assert.assertTrue(AuthenticationCache.isLockedOut("admin", start + 2 * AuthenticationCache.LOCKOUT_TIME));
+		Assert.assertFalse(AuthenticationCache.isLockedOut("admin", start + 3 * AuthenticationCache.LOCKOUT_TIME + 1));
+	}
+	
+	/**
+	 * @see AuthenticationCache#loginFailed(String,Integer)
+	 * @verifies start counting again after the lockout time
+	 */
+	@Test
+	public void loginFailed_shouldStartCountingAgainAfterTheLockoutTime() throws Exception {
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < ALLOWED; i++)
+			AuthenticationCache.loginFailed("admin", 1, start);
+		
+		long later = start + AuthenticationCache.LOCKOUT_TIME + 1;
+		AuthenticationCache.loginFailed("admin", 1, later);
+		Assert.assertFalse(AuthenticationCache.isLockedOut("admin", later));
+	}
+	
+	/**
+	 * @see AuthenticationCache#loginFailed(String,Integer)
+	 * @verifies keep at most the maximum number of logins
+	 */
+	@Test
+	public void loginFailed_shouldKeepAtMostTheMaximumNumberOfLogins() throws Exception {
+		for (int i = 0; i <= ALLOWED; i++) {
+			AuthenticationCache.loginFailed("first", null);
+			AuthenticationCache.loginFailed("used", null);
+		}
+		
+		for (int i = 0; i < AuthenticationCache.MAX_ENTRIES - 2; i++)
+			AuthenticationCache.loginFailed("login" + i, null);
+		// the least recently used login is dropped, not the one that was checked
+		Assert.assertTrue(AuthenticationCache.isLockedOut("used"));
+		AuthenticationCache.loginFailed("one more", null);
+		
+		Assert.assertFalse(AuthenticationCache.isLockedOut("first"));
+		Assert.assertTrue(AuthenticationCache.isLockedOut("used"));
+	}
+	
+	/**
+	 * @see AuthenticationCache#loginSucceeded(String,String,Integer)
+	 * @verifies forget the failed attempts of the login
+	 */
+	@Test
+	public void loginSucceeded_shouldForgetTheFailedAttemptsOfTheLogin() throws Exception {
+		for (int i = 0; i <= ALLOWED; i++)
+			AuthenticationCache.loginFailed("admin", 1);
+		
+		AuthenticationCache.loginSucceeded("admin", "test", 1);
+		
+		Assert.assertFalse(AuthenticationCache.isLockedOut("admin"));
+	}
+}
@@ -0,0 +1,204 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.logic;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.logic.datasource.ColumnarLogicDataSource;
+import org.openmrs.logic.datasource.LogicDataSource;
+import org.openmrs.logic.op.Operator;
+import org.openmrs.logic.result.ColumnarResult;
+import org.openmrs.logic.result.Result;
+import org.openmrs.logic.result.Result.Datatype;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link LogicBatchEvaluator} class
+ */
+public class LogicBatchEvaluatorTest {
+	
+	private LogicService logicService;
+	
+	private LogicContext context;
+	
+	private LogicDataSource dataSource;
+	
+	private LogicCriteria keyCriteria;
+	
+	@Before
+	public void setUp() throws Exception {
+		logicService = mock(LogicService.class);
+		context = mock(LogicContext.class);
+		dataSource = mock(LogicDataSource.class);
+		keyCriteria = mockCriteria("WEIGHT", null);
+		
+		Map<String, LogicDataSource> dataSources = new HashMap<String, LogicDataSource>();
+		dataSources.put("obs", dataSource);
+		when(logicService.getLogicDataSources()).thenReturn(dataSources);
+		when(logicService.parse("'WEIGHT'")).thenReturn(keyCriteria);
+		when(dataSource.hasKey("WEIGHT")).thenReturn(true);
+		
+		Map<Integer, Result> values = new HashMap<Integer, Result>();
+		values.put(1, new Result(Arrays.asList(new Result(new Date(1000), 60.0, null), new Result(new Date(3000), 70.0,
+		        null), new Result(new Date(2000), 65.0, null))));
+		values.put(2, new Result(new Date(1000), 80.0, null));
+		when(dataSource.read(eq(context), any(Cohort.class), eq(keyCriteria))).thenReturn(values);
+	}
+	
+	/**
+	 * @see {@link LogicBatchEvaluator#eval(Cohort,List)}
+	 */
+	@Test
+	@Verifies(value = "should read each key from its data source once per chunk", method = "eval(Cohort,List)")
+	public void eval_shouldReadEachKeyFromItsDataSourceOncePerChunk() throws Exception {
+		LogicCriteria last = mockCriteria("WEIGHT", new LogicTransform(Operator.LAST));
+		LogicCriteria count = mockCriteria("WEIGHT", new LogicTransform(Operator.COUNT));
+		
+		LogicBatchEvaluator evaluator = new LogicBatchEvaluator(logicService, context);
+		evaluator.setChunkSize(2);
+		evaluator.eval(new Cohort(Arrays.asList(1, 2, 3)), Arrays.asList(last, count, keyCriteria));
+		
+		verify(dataSource, times(2)).read(eq(context), any(Cohort.class), eq(keyCriteria));
+		verify(dataSource, times(0)).read(eq(context), any(Cohort.class), eq(last));
+		verify(dataSource, times(0)).read(eq(context), any(Cohort.class), eq(count));
+	}
+	
+	/**
+	 * @see {@link LogicBatchEvaluator#eval(Cohort,List)}
+	 */
+	@Test
+	@Verifies(value = "should apply transforms to the shared read", method = "eval(Cohort,List)")
+	public void eval_shouldApplyTransformsToTheSharedRead() throws Exception {
+		LogicCriteria last = mockCriteria("WEIGHT", new LogicTransform(Operator.LAST));
+		LogicCriteria first = mockCriteria("WEIGHT", new LogicTransform(Operator.FIRST));
+		LogicCriteria count = mockCriteria("WEIGHT", new LogicTransform(Operator.COUNT));
+		LogicCriteria average = mockCriteria("WEIGHT", new LogicTransform(Operator.AVERAGE));
+		LogicCriteria exists = mockCriteria("WEIGHT", new LogicTransform(Operator.EXISTS));
+		
+		Map<LogicCriteria, Map<Integer, Result>> results = new LogicBatchEvaluator(logicService, context).eval(new Cohort(
+		        Arrays.asList(1, 2, 3)), Arrays.asList(last, first, count, average, exists));
+		
+		Assert.assertEquals(70.0, results.get(last).get(1).toNumber(), 0);
+		Assert.assertEquals(60.0, results.get(first).get(1).toNumber(), 0);
+		Assert.assertEquals(3, results.get(count).get(1).toNumber(), 0);
+		Assert.assertEquals(1, results.get(count).get(2).toNumber(), 0);
+		Assert.assertEquals(0, results.get(count).get(3).toNumber(), 0);
+		Assert.assertEquals(65.0, results.get(average).get(1).toNumber(), 0);
+		Assert.assertTrue(results.get(exists).get(2).toBoolean());
+		Assert.assertFalse(results.get(exists).get(3).toBoolean());
+		Assert.assertTrue(results.get(last).get(3).isNull());
+	}
+	
+	/**
+	 * @see {@link LogicBatchEvaluator#eval(Cohort,List)}
+	 */
+	@Test
+	@Verifies(value = "should pass criteria with comparisons to the data source", method = "eval(Cohort,List)")
+	public void eval_shouldPassCriteriaWithComparisonsToTheDataSource() throws Exception {
+		LogicCriteria greaterThan = mockCriteria("WEIGHT", null);
+		when(greaterThan.getExpression().getOperator()).thenReturn(Operator.GT);
+		Map<Integer, Result> read = new HashMap<Integer, Result>();
+		read.put(2, new Result(80.0));
+		when(dataSource.read(eq(context), any(Cohort.class), eq(greaterThan))).thenReturn(read);
+		
+		Map<LogicCriteria, Map<Integer, Result>> results = new LogicBatchEvaluator(logicService, context).eval(new Cohort(
+		        Arrays.asList(1, 2)), Collections.singletonList(greaterThan));
+		
+		verify(dataSource, times(0)).read(eq(context), any(Cohort.class), eq(keyCriteria));
+		Assert.assertTrue(results.get(greaterThan).get(1).isNull());
+		Assert.assertEquals(80.0, results.get(greaterThan).get(2).toNumber(), 0);
+	}
+	
+	/**
+	 * @see {@link LogicBatchEvaluator#eval(Cohort,List)}
+	 */
+	@Test
+	@Verifies(value = "should evaluate rule tokens per patient", method = "eval(Cohort,List)")
+	public void eval_shouldEvaluateRuleTokensPerPatient() throws Exception {
+		LogicCriteria rule = mockCriteria("SOME RULE", null);
+		when(context.eval(eq(1), eq(rule), any(Map.class))).thenReturn(new Result("one"));
+		when(context.eval(eq(2), eq(rule), any(Map.class))).thenReturn(new Result("two"));
+		
+		Map<LogicCriteria, Map<Integer, Result>> results = new LogicBatchEvaluator(logicService, context).eval(new Cohort(
+		        Arrays.asList(1, 2)), Collections.singletonList(rule));
+		
+		Assert.assertEquals("one", results.get(rule).get(1).toString());
+		Assert.assertEquals("two", results.get(rule).get(2).toString());
+		verify(dataSource, times(0)).read(any(LogicContext.class), any(Cohort.class), any(LogicCriteria.class));
+	}
+	
+	/**
+	 * @see {@link LogicBatchEvaluator#eval(Cohort,List)}
+	 */
+	@Test
+	@Verifies(value = "should read columns from columnar data sources", method = "eval(Cohort,List)")
+	public void eval_shouldReadColumnsFromColumnarDataSources() throws Exception {
+		ColumnarLogicDataSource columnarDataSource = mock(ColumnarLogicDataSource.class);
+		Map<String, LogicDataSource> dataSources = new HashMap<String, LogicDataSource>();
+		dataSources.put("obs", columnarDataSource);
+		when(logicService.getLogicDataSources()).thenReturn(dataSources);
+		when(columnarDataSource.hasKey("WEIGHT")).thenReturn(true);
+		when(columnarDataSource.supportsColumns("WEIGHT")).thenReturn(true);
+		
+		ColumnarResult weights = new ColumnarResult(Datatype.NUMERIC);
+		weights.addNumeric(new Date(1000), 60.0);
+		weights.addNumeric(new Date(3000), 70.0);
+		weights.addNumeric(new Date(2000), 65.0);
+		Map<Integer, ColumnarResult> values = new HashMap<Integer, ColumnarResult>();
+		values.put(1, weights);
+		when(columnarDataSource.readColumns(eq(context), any(Cohort.class), eq("WEIGHT"))).thenReturn(values);
+		
+		LogicCriteria last = mockCriteria("WEIGHT", new LogicTransform(Operator.LAST));
+		LogicCriteria average = mockCriteria("WEIGHT", new LogicTransform(Operator.AVERAGE));
+		LogicCriteria lastTwo = mockCriteria("WEIGHT", new LogicTransform(Operator.LAST, 2));
+		
+		Map<LogicCriteria, Map<Integer, Result>> results = new LogicBatchEvaluator(logicService, context).eval(new Cohort(
+		        Arrays.asList(1, 2)), Arrays.asList(last, average, lastTwo));
+		
+		verify(columnarDataSource, times(1)).readColumns(eq(context), any(Cohort.class), eq("WEIGHT"));
+		verify(columnarDataSource, times(0)).read(any(LogicContext.class), any(Cohort.class), any(LogicCriteria.class));
+		Assert.assertEquals(70.0, results.get(last).get(1).toNumber(), 0);
+		Assert.assertEquals(65.0, results.get(average).get(1).toNumber(), 0);
+		Assert.assertEquals(2, results.get(lastTwo).get(1).size());
+		Assert.assertEquals(65.0, results.get(lastTwo).get(1).get(1).toNumber(), 0);
+		Assert.assertTrue(results.get(last).get(2).isNull());
+	}
+	
+	private LogicCriteria mockCriteria(String token, LogicTransform transform) {
+		LogicExpression expression = mock(LogicExpression.class);
+		when(expression.getRootToken()).thenReturn(token);
+		when(expression.getTransform()).thenReturn(transform);
+		
+		LogicCriteria criteria = mock(LogicCriteria.class);
+		when(criteria.getRootToken()).thenReturn(token);
+		when(criteria.getExpression()).thenReturn(expression);
+		return criteria;
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.logic.result;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.logic.result.Result.Datatype;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link ColumnarResult} class
+ */
+public class ColumnarResultTest {
+	
+	/**
+	 * @see {@link ColumnarResult#ColumnarResult(Datatype)}
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	@Verifies(value = "should fail for text datatype", method = "ColumnarResult(Datatype)")
+	public void ColumnarResult_shouldFailForTextDatatype() throws Exception {
+		new ColumnarResult(Datatype.TEXT);
+	}
+	
+	/**
+	 * @see {@link ColumnarResult#addNumeric(Date,double)}
+	 */
+	@Test(expected = IllegalStateException.class)
+	@Verifies(value = "should fail if the datatype is not numeric", method = "addNumeric(Date,double)")
+	public void addNumeric_shouldFailIfTheDatatypeIsNotNumeric() throws Exception {
+		new ColumnarResult(Datatype.CODED).addNumeric(new Date(), 1);
+	}
+	
+	/**
+	 * @see {@link ColumnarResult#latest()}
+	 */
+	@Test
+	@Verifies(value = "should return the value with the latest result date", method = "latest()")
+	public void latest_shouldReturnTheValueWithTheLatestResultDate() throws Exception {
+		ColumnarResult result = new ColumnarResult(Datatype.NUMERIC, 2);
+		for (int i = 0; i < 20; i++)
+			result.addNumeric(new Date(i * 1000L), i);
+		result.addNumeric(null, 100);
+		
+		Assert.assertEquals(1, result.latest().size());
+		Assert.assertEquals(19, result.latest().getNumeric(0), 0);
+		Assert.assertEquals(0, result.earliest().getNumeric(0), 0);
+		
+		ColumnarResult latestThree = result.latest(3);
+		Assert.assertEquals(3, latestThree.size());
+		Assert.assertEquals(19, latestThree.getNumeric(0), 0);
+		Assert.assertEquals(17, latestThree.getNumeric(2), 0);
+	}
+	
+	/**
+	 * @see {@link ColumnarResult#latest()}
+	 */
+	@Test
+	@Verifies(value = "should return the first value if no value has a result date", method = "latest()")
+	public void latest_shouldReturnTheFirstValueIfNoValueHasAResultDate() throws Exception {
+		ColumnarResult result = new ColumnarResult(Datatype.NUMERIC);
+		result.addNumeric(null, 1);
+		result.addNumeric(null, 2);
+		
+		Assert.assertEquals(1, result.latest().getNumeric(0), 0);
+		Assert.assertNull(result.latest().getResultDate(0));
+	}
+	
+	/**
+	 * @see {@link ColumnarResult#average()}
+	 */
+	@Test
+	@Verifies(value = "should return the average of numeric values", method = "average()")
+	public void average_shouldReturnTheAverageOfNumericValues() throws Exception {
+		ColumnarResult result = new ColumnarResult(Datatype.NUMERIC);
+		Assert.assertNull(result.average());
+		
+		result.addNumeric(new Date(), 2);
+		result.addNumeric(new Date(), 4);
+		Assert.assertEquals(3, result.average(), 0);
+	}
+	
+	/**
+	 * @see {@link ColumnarResult#distinct()}
+	 */
+	@Test
+	@Verifies(value = "should remove duplicate values", method = "distinct()")
+	public void distinct_shouldRemoveDuplicateValues() throws Exception {
+		ColumnarResult result = new ColumnarResult(Datatype.CODED);
+		result.addCoded(new Date(1000), 5);
+		result.addCoded(new Date(2000), 7);
+		result.addCoded(new Date(3000), 5);
+		
+		ColumnarResult distinct = result.distinct();
+		Assert.assertEquals(2, distinct.size());
+		Assert.assertEquals(5, distinct.getConceptId(0));
+		Assert.assertEquals(new Date(1000), distinct.getResultDate(0));
+		Assert.assertEquals(7, distinct.getConceptId(1));
+	}
+	
+	/**
+	 * @see {@link ColumnarResult#toResult()}
+	 */
+	@Test
+	@Verifies(value = "should convert a single value to a single result", method = "toResult()")
+	public void toResult_shouldConvertASingleValueToASingleResult() throws Exception {
+		ColumnarResult result = new ColumnarResult(Datatype.BOOLEAN);
+		result.addBoolean(new Date(1000), true);
+		
+		Result converted = result.toResult();
+		Assert.assertEquals(0, converted.size());
+		Assert.assertEquals(Datatype.BOOLEAN, converted.getDatatype());
+		Assert.assertTrue(converted.toBoolean());
+		Assert.assertEquals(new Date(1000), converted.getResultDate());
+	}
+	
+	/**
+	 * @see {@link ColumnarResult#toResult()}
+	 */
+	@Test
+	@Verifies(value = "should convert several values to a list result", method = "toResult()")
+	public void toResult_shouldConvertSeveralValuesToAListResult() throws Exception {
+		ColumnarResult result = new ColumnarResult(Datatype.DATETIME);
+		result.addDatetime(new Date(1000), new Date(5000));
+		result.addDatetime(null, new Date(6000));
+		
+		Result converted = result.toResult();
+		Assert.assertEquals(2, converted.size());
+		Assert.assertEquals(new Date(5000), converted.get(0).toDatetime());
+		Assert.assertEquals(new Date(6000), converted.get(1).toDatetime());
+		Assert.assertNull(converted.get(1).getResultDate());
+	}
+	
+	/**
+	 * @see {@link ColumnarResult#toResult()}
+	 */
+	@Test
+	@Verifies(value = "should convert no values to an empty result", method = "toResult()")
+	public void toResult_shouldConvertNoValuesToAnEmptyResult() throws Exception {
+		Assert.assertTrue(new ColumnarResult(Datatype.NUMERIC).toResult().isNull());
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.messagesource.impl;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.util.OpenmrsUtil;
+import org.springframework.core.io.DefaultResourceLoader;
+
+/**
+ * Tests the {@link MutableResourceBundleMessageSource} with properties files in a temporary
+ * directory
+ */
+public class MutableResourceBundleMessageSourceTest {
+	
+	private File directory;
+	
+	private MutableResourceBundleMessageSource messageSource;
+	
+	@Before
+	public void before() throws Exception {
+		directory = File.createTempFile("messages", "");
+		directory.delete();
+		directory.mkdirs();
+		
+		writeMessages("messages.properties", "general.save", "Save", "general.cancel", "Cancel", "general.hello",
+		    "Hello {0}");
+		writeMessages("messages_fr.properties", "general.save", "Enregistrer");
+		
+		messageSource = new MutableResourceBundleMessageSource();
+		messageSource.setResourceLoader(new DefaultResourceLoader());
+		messageSource.setBasenames(new String[] { directory.toURI().toString() + "messages" });
+		messageSource.setFallbackToSystemLocale(false);
+	}
+	
+	@After
+	public void after() throws Exception {
+		OpenmrsUtil.deleteDirectory(directory);
+	}
+	
+	/**
+	 * @see MutableResourceBundleMessageSource#resolveCodeWithoutArguments(String,Locale)
+	 * @verifies resolve a message from the properties file of the locale
+	 */
+	@Test
+	public void resolveCodeWithoutArguments_shouldResolveAMessageFromThePropertiesFileOfTheLocale() throws Exception {
+		Assert.assertEquals("Enregistrer", messageSource.getMessage("general.save", null, Locale.FRENCH));
+		Assert.assertEquals("Save", messageSource.getMessage("general.save", null, Locale.ENGLISH));
+	}
+	
+	/**
+	 * @see MutableResourceBundleMessageSource#resolveCodeWithoutArguments(String,Locale)
+	 * @verifies fall back to the properties file without a locale
+	 */
+	@Test
+	public void resolveCodeWithoutArguments_shouldFallBackToThePropertiesFileWithoutALocale() throws Exception {
+		Assert.assertEquals("Cancel", messageSource.getMessage("general.cancel", null, Locale.FRANCE));
+	}
+	
+	/**
+	 * @see MutableResourceBundleMessageSource#resolveCodeWithoutArguments(String,Locale)
+	 * @verifies return null for an unknown code
+	 */
+	@Test
+	public void resolveCodeWithoutArguments_shouldReturnNullForAnUnknownCode() throws Exception {
+		Assert.assertNull(messageSource.resolveCodeWithoutArguments("general.unknown", Locale.FRENCH));
+		Assert.assertEquals("default", messageSource.getMessage("general.unknown", null, "default", Locale.FRENCH));
+	}
+	
+	/**
+	 * @see MutableResourceBundleMessageSource#resolveCode(String,Locale)
+	 * @verifies resolve a message with arguments
+	 */
+	@Test
+	public void resolveCode_shouldResolveAMessageWithArguments() throws Exception {
+		Assert.assertEquals("Hello Bob", messageSource.getMessage("general.hello", new Object[] { "Bob" }, Locale.FRENCH));
+		Assert.assertSame(messageSource.resolveCode("general.hello", Locale.FRENCH), messageSource.resolveCode(
+		    "general.hello", Locale.FRENCH));
+	}
+	
+	/**
+	 * @see MutableResourceBundleMessageSource#refresh()
+	 * @verifies read changed messages again
+	 */
+	@Test
+	public void refresh_shouldReadChangedMessagesAgain() throws Exception {
+		Assert.assertEquals("Enregistrer", messageSource.getMessage("general.save", null, Locale.FRENCH));
+		
+		writeMessages("messages_fr.properties", "general.save", "Sauvegarder");
+		Assert.assertEquals("Enregistrer", messageSource.getMessage("general.save", null, Locale.FRENCH));
+		
+		messageSource.refresh();
+		Assert.assertEquals("Sauvegarder", messageSource.getMessage("general.save", null, Locale.FRENCH));
+	}
+	
+	private void writeMessages(String filename, String... codesAndMessages) {
+		Properties props = new Properties();
+		for (int i = 0; i < codesAndMessages.length; i += 2)
+			props.setProperty(codesAndMessages[i], codesAndMessages[i + 1]);
+		OpenmrsUtil.storeProperties(props, new File(directory, filename), null);
+	}
+}
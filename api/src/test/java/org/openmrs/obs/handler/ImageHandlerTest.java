@@ -0,0 +1,95 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.obs.handler;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Obs;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.util.OpenmrsUtil;
+
+/**
+ * Tests for the {@link ImageHandler} class.
+ */
+public class ImageHandlerTest extends BaseContextSensitiveTest {
+	
+	protected static final String COMPLEX_OBS_XML = "org/openmrs/api/include/ObsServiceTest-complex.xml";
+	
+	private File complexObsDir;
+	
+	private File image;
+	
+	@Before
+	public void createComplexObsDir() throws Exception {
+		executeDataSet(COMPLEX_OBS_XML);
+		complexObsDir = OpenmrsUtil.getDirectoryInApplicationDataDirectory(Context.getAdministrationService()
+		        .getGlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_COMPLEX_OBS_DIR));
+		image = new File(complexObsDir, "openmrs_logo_small.gif");
+	}
+	
+	/**
+	 * The files are outside the database and can't be rolled back
+	 */
+	@After
+	public void deleteImages() throws Exception {
+		image.delete();
+		OpenmrsUtil.deleteDirectory(new File(complexObsDir, ImageHandler.DERIVATIVES_DIR));
+	}
+	
+	/**
+	 * @see {@link ImageHandler#getObs(Obs,String)}
+	 */
+	@Test
+	@Verifies(value = "should return a smaller copy of the image for the thumbnail view", method = "getObs(Obs,String)")
+	public void getObs_shouldReturnASmallerCopyOfTheImageForTheThumbnailView() throws Exception {
+		ImageIO.write(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "gif", image);
+		
+		Obs obs = Context.getObsService().getComplexObs(44, OpenmrsConstants.THUMBNAIL_VIEW);
+		
+		File thumbnail = (File) obs.getComplexData().getData();
+		Assert.assertFalse(image.equals(thumbnail));
+		BufferedImage img = ImageIO.read(thumbnail);
+		Assert.assertEquals(150, img.getWidth());
+		Assert.assertEquals(75, img.getHeight());
+	}
+	
+	/**
+	 * @see {@link ImageHandler#getObs(Obs,String)}
+	 */
+	@Test
+	@Verifies(value = "should create the smaller copy again if the image is newer", method = "getObs(Obs,String)")
+	public void getObs_shouldCreateTheSmallerCopyAgainIfTheImageIsNewer() throws Exception {
+		ImageIO.write(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "gif", image);
+		File thumbnail = (File) Context.getObsService().getComplexObs(44, OpenmrsConstants.THUMBNAIL_VIEW)
+		        .getComplexData().getData();
+		
+		ImageIO.write(new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB), "gif", image);
+		image.setLastModified(thumbnail.lastModified() + 10000);
+		Obs obs = Context.getObsService().getComplexObs(44, OpenmrsConstants.THUMBNAIL_VIEW);
+		
+		BufferedImage img = ImageIO.read((File) obs.getComplexData().getData());
+		Assert.assertEquals(150, img.getWidth());
+		Assert.assertEquals(150, img.getHeight());
+	}
+}
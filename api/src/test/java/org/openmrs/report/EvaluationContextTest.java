@@ -14,14 +14,17 @@
 package org.openmrs.report;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.fail;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 
 import org.junit.Test;
+import org.openmrs.Cohort;
 
 /**
  *
@@ -76,4 +79,46 @@ public class EvaluationContextTest {
 		    "This report is from 2007-01-10 10:30:17 to 2007-01-31 10:30:17 for male patients");
 	}
 	
+	/**
+	 * @see EvaluationContext#getBaseCohortKey()
+	 * @verifies return the all patients key without loading all patients if no base cohort was set
+	 */
+	@Test
+	public void getBaseCohortKey_shouldReturnTheAllPatientsKeyWithoutLoadingAllPatientsIfNoBaseCohortWasSet()
+	        throws Exception {
+		// there is no context in this test, so loading all patients would fail
+		EvaluationContext context = new EvaluationContext();
+		assertEquals(EvaluationContext.ALL_PATIENTS_KEY, context.getBaseCohortKey());
+		assertFalse(context.isBaseCohortSet());
+	}
+	
+	/**
+	 * @see EvaluationContext#getBaseCohortKey()
+	 * @verifies return the same key for base cohorts with the same members
+	 */
+	@Test
+	public void getBaseCohortKey_shouldReturnTheSameKeyForBaseCohortsWithTheSameMembers() throws Exception {
+		EvaluationContext first = new EvaluationContext();
+		first.setBaseCohort(new Cohort(Arrays.asList(1, 2, 3)));
+		EvaluationContext second = new EvaluationContext();
+		second.setBaseCohort(new Cohort(Arrays.asList(3, 2, 1)));
+		
+		assertEquals(first.getBaseCohortKey(), second.getBaseCohortKey());
+	}
+	
+	/**
+	 * @see EvaluationContext#getBaseCohortKey()
+	 * @verifies return another key for a base cohort with other members
+	 */
+	@Test
+	public void getBaseCohortKey_shouldReturnAnotherKeyForABaseCohortWithOtherMembers() throws Exception {
+		EvaluationContext context = new EvaluationContext();
+		context.setBaseCohort(new Cohort(Arrays.asList(1, 2, 3)));
+		String key = context.getBaseCohortKey();
+		
+		context.setBaseCohort(new Cohort(Arrays.asList(1, 2, 4)));
+		assertFalse(key.equals(context.getBaseCohortKey()));
+		assertFalse(EvaluationContext.ALL_PATIENTS_KEY.equals(key));
+	}
+	
 }
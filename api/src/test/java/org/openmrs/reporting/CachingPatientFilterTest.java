@@ -15,12 +15,18 @@ package org.openmrs.reporting;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Date;
 
 import org.junit.Test;
 import org.openmrs.Cohort;
 import org.openmrs.report.EvaluationContext;
+import org.openmrs.report.Parameter;
 import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
 
 /**
  *
@@ -48,4 +54,66 @@ public class CachingPatientFilterTest extends BaseContextSensitiveTest {
 		assertEquals("Cache should have been automatically cleared", 0, ec.getCache().size());
 	}
 	
+	/**
+	 * @see {@link CachingPatientFilter#getAndMaybeCache(EvaluationContext)}
+	 */
+	@Test
+	@Verifies(value = "should reuse results cached by another evaluation context", method = "getAndMaybeCache(EvaluationContext)")
+	public void getAndMaybeCache_shouldReuseResultsCachedByAnotherEvaluationContext() throws Exception {
+		executeDataSet("org/openmrs/reporting/include/PatientFilterTest.xml");
+		CachingPatientFilter maleFilter = new PatientCharacteristicFilter("M", null, null);
+		
+		EvaluationContext first = new EvaluationContext();
+		maleFilter.filter(null, first);
+		EvaluationContext second = new EvaluationContext();
+		maleFilter.filter(null, second);
+		
+		assertEquals(1, CohortResultCache.size());
+		assertSame(first.getFromCache(maleFilter.getCacheKey()), second.getFromCache(maleFilter.getCacheKey()));
+	}
+	
+	/**
+	 * @see {@link CachingPatientFilter#getAndMaybeCache(EvaluationContext)}
+	 */
+	@Test
+	@Verifies(value = "should not reuse results for other date parameter values", method = "getAndMaybeCache(EvaluationContext)")
+	public void getAndMaybeCache_shouldNotReuseResultsForOtherDateParameterValues() throws Exception {
+		executeDataSet("org/openmrs/reporting/include/PatientFilterTest.xml");
+		CachingPatientFilter maleFilter = new PatientCharacteristicFilter("M", null, null);
+		Parameter endDate = new Parameter("endDate", "End Date", Date.class, null);
+		
+		EvaluationContext first = new EvaluationContext();
+		first.addParameterValue(endDate, new Date(0));
+		maleFilter.filter(null, first);
+		EvaluationContext second = new EvaluationContext();
+		second.addParameterValue(endDate, new Date());
+		maleFilter.filter(null, second);
+		
+		assertEquals(2, CohortResultCache.size());
+		assertNotSame(first.getFromCache(maleFilter.getCacheKey()), second.getFromCache(maleFilter.getCacheKey()));
+	}
+	
+	/**
+	 * @see {@link CachingPatientFilter#getAndMaybeCache(EvaluationContext)}
+	 */
+	@Test
+	@Verifies(value = "should not reuse results for another base cohort", method = "getAndMaybeCache(EvaluationContext)")
+	public void getAndMaybeCache_shouldNotReuseResultsForAnotherBaseCohort() throws Exception {
+		executeDataSet("org/openmrs/reporting/include/PatientFilterTest.xml");
+		CachingPatientFilter maleFilter = new PatientCharacteristicFilter("M", null, null);
+		
+		EvaluationContext first = new EvaluationContext();
+		maleFilter.filter(null, first);
+		EvaluationContext second = new EvaluationContext();
+		second.setBaseCohort(new Cohort("2"));
+		maleFilter.filter(null, second);
+		EvaluationContext third = new EvaluationContext();
+		third.setBaseCohort(new Cohort("2"));
+		maleFilter.filter(null, third);
+		
+		assertEquals(2, CohortResultCache.size());
+		assertNotSame(first.getFromCache(maleFilter.getCacheKey()), second.getFromCache(maleFilter.getCacheKey()));
+		assertSame(second.getFromCache(maleFilter.getCacheKey()), third.getFromCache(maleFilter.getCacheKey()));
+	}
+	
 }
@@ -0,0 +1,79 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link CohortResultCacheInterceptor} class
+ */
+public class CohortResultCacheInterceptorTest {
+	
+	@After
+	public void clearCache() {
+		CohortResultCache.clear();
+	}
+	
+	/**
+	 * @see {@link CohortResultCacheInterceptor#onSave(Object,Serializable,Object[],String[],Type[])}
+	 */
+	@Test
+	@Verifies(value = "should mark the cache as stale when patient data is saved", method = "onSave(Object,Serializable,Object[],String[],Type[])")
+	public void onSave_shouldMarkTheCacheAsStaleWhenPatientDataIsSaved() throws Exception {
+		Thread.sleep(2);
+		CohortResultCache.put("males", new Cohort(Arrays.asList(1, 2)), System.currentTimeMillis());
+		
+		new CohortResultCacheInterceptor().onSave(new Obs(), 1, null, null, null);
+		
+		assertNull(CohortResultCache.get("males"));
+	}
+	
+	/**
+	 * @see {@link CohortResultCacheInterceptor#onSave(Object,Serializable,Object[],String[],Type[])}
+	 */
+	@Test
+	@Verifies(value = "should not mark the cache as stale when other data is saved", method = "onSave(Object,Serializable,Object[],String[],Type[])")
+	public void onSave_shouldNotMarkTheCacheAsStaleWhenOtherDataIsSaved() throws Exception {
+		Thread.sleep(2);
+		CohortResultCache.put("males", new Cohort(Arrays.asList(1, 2)), System.currentTimeMillis());
+		
+		new CohortResultCacheInterceptor().onSave(new Location(), 1, null, null, null);
+		
+		assertNotNull(CohortResultCache.get("males"));
+	}
+	
+	/**
+	 * @see CohortResultCacheInterceptor#dataChangedInBulk()
+	 * @verifies mark the cache as stale
+	 */
+	@Test
+	public void dataChangedInBulk_shouldMarkTheCacheAsStale() throws Exception {
+		Thread.sleep(2);
+		CohortResultCache.put("males", new Cohort(Arrays.asList(1, 2)), System.currentTimeMillis());
+		
+		CohortResultCacheInterceptor.dataChangedInBulk();
+		
+		assertNull(CohortResultCache.get("males"));
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link CohortResultCache} class
+ */
+public class CohortResultCacheTest {
+	
+	@After
+	public void resetCache() {
+		CohortResultCache.clear();
+		CohortResultCache.setTimeToLive(null);
+		CohortResultCache.setMaxPatientIds(null);
+	}
+	
+	/**
+	 * @see {@link CohortResultCache#get(String)}
+	 */
+	@Test
+	@Verifies(value = "should return a cohort that was put in the cache", method = "get(String)")
+	public void get_shouldReturnACohortThatWasPutInTheCache() throws Exception {
+		CohortResultCache.put("males", new Cohort(Arrays.asList(1, 2)), now());
+		
+		Cohort cached = CohortResultCache.get("males");
+		assertNotNull(cached);
+		assertEquals(2, cached.size());
+		assertNull(CohortResultCache.get("females"));
+	}
+	
+	/**
+	 * @see {@link CohortResultCache#get(String)}
+	 */
+	@Test
+	@Verifies(value = "should not return a cohort evaluated before patient data was changed", method = "get(String)")
+	public void get_shouldNotReturnACohortEvaluatedBeforePatientDataWasChanged() throws Exception {
+		CohortResultCache.put("males", new Cohort(Arrays.asList(1, 2)), now());
+		CohortResultCache.dataChanged();
+		
+		assertNull(CohortResultCache.get("males"));
+	}
+	
+	/**
+	 * @see {@link CohortResultCache#get(String)}
+	 */
+	@Test
+	@Verifies(value = "should not return a cohort older than the time to live", method = "get(String)")
+	public void get_shouldNotReturnACohortOlderThanTheTimeToLive() throws Exception {
+		CohortResultCache.setTimeToLive(0);
+		CohortResultCache.put("males", new Cohort(Arrays.asList(1, 2)), now());
+		Thread.sleep(5);
+		
+		assertNull(CohortResultCache.get("males"));
+		assertEquals(0, CohortResultCache.size());
+	}
+	
+	/**
+	 * @see {@link CohortResultCache#put(String,Cohort,long)}
+	 */
+	@Test
+	@Verifies(value = "should drop the least recently used cohorts when there are too many patient ids", method = "put(String,Cohort,long)")
+	public void put_shouldDropTheLeastRecentlyUsedCohortsWhenThereAreTooManyPatientIds() throws Exception {
+		CohortResultCache.setMaxPatientIds(3);
+		long evaluated = now();
+		CohortResultCache.put("a", new Cohort(Arrays.asList(1, 2)), evaluated);
+		CohortResultCache.put("b", new Cohort(Arrays.asList(3)), evaluated);
+		CohortResultCache.get("a");
+		CohortResultCache.put("c", new Cohort(Arrays.asList(4)), evaluated);
+		
+		assertNotNull(CohortResultCache.get("a"));
+		assertNull(CohortResultCache.get("b"));
+		assertNotNull(CohortResultCache.get("c"));
+		assertEquals(3, CohortResultCache.getPatientIdCount());
+	}
+	
+	/**
+	 * @see {@link CohortResultCache#put(String,Cohort,long)}
+	 */
+	@Test
+	@Verifies(value = "should not cache a cohort whose patient data was changed during evaluation", method = "put(String,Cohort,long)")
+	public void put_shouldNotCacheACohortWhosePatientDataWasChangedDuringEvaluation() throws Exception {
+		long evaluated = now();
+		CohortResultCache.dataChanged();
+		CohortResultCache.put("males", new Cohort(Arrays.asList(1, 2)), evaluated);
+		
+		assertNull(CohortResultCache.get("males"));
+	}
+	
+	/**
+	 * Waits a moment, so that the returned time is after any data change of an earlier test
+	 */
+	private long now() throws InterruptedException {
+		Thread.sleep(2);
+		return System.currentTimeMillis();
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting.export;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the methods in {@link DataExportProgress}
+ */
+public class DataExportProgressTest {
+	
+	private DataExportReportObject export(String name) {
+		DataExportReportObject export = new DataExportReportObject();
+		export.setName(name);
+		return export;
+	}
+	
+	/**
+	 * @see {@link DataExportProgress#isDone()}
+	 */
+	@Test
+	@Verifies(value = "should return true when every export has finished or failed", method = "isDone()")
+	public void isDone_shouldReturnTrueWhenEveryExportHasFinishedOrFailed() throws Exception {
+		DataExportProgress progress = new DataExportProgress(2);
+		DataExportReportObject first = export("first");
+		DataExportReportObject second = export("second");
+		
+		progress.started(first);
+		progress.started(second);
+		progress.finished(first, true);
+		Assert.assertFalse(progress.isDone());
+		
+		progress.finished(second, false);
+		Assert.assertTrue(progress.isDone());
+		Assert.assertEquals(1, progress.getCompleted());
+		Assert.assertEquals(1, progress.getFailed());
+	}
+	
+	/**
+	 * @see {@link DataExportProgress#getEstimatedCompletion()}
+	 */
+	@Test
+	@Verifies(value = "should return null if no export has finished", method = "getEstimatedCompletion()")
+	public void getEstimatedCompletion_shouldReturnNullIfNoExportHasFinished() throws Exception {
+		DataExportProgress progress = new DataExportProgress(3);
+		progress.started(export("first"));
+		Assert.assertNull(progress.getEstimatedCompletion());
+	}
+	
+	/**
+	 * @see {@link DataExportProgress#getEstimatedCompletion()}
+	 */
+	@Test
+	@Verifies(value = "should return a time after the start if some exports have finished", method = "getEstimatedCompletion()")
+	public void getEstimatedCompletion_shouldReturnATimeAfterTheStartIfSomeExportsHaveFinished() throws Exception {
+		Date before = new Date();
+		DataExportProgress progress = new DataExportProgress(3);
+		DataExportReportObject first = export("first");
+		progress.started(first);
+		progress.finished(first, true);
+		
+		Date eta = progress.getEstimatedCompletion();
+		Assert.assertNotNull(eta);
+		Assert.assertFalse(eta.before(before));
+	}
+}
@@ -634,4 +634,45 @@ public class DataExportTest extends BaseContextSensitiveTest {
 		assertEquals("The output is not right.", expectedOutput, output);
 		
 	}
+	
+	/**
+	 * Makes sure that splitting the patient set into batches evicts the cached column data without
+	 * changing the output
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void shouldExportPatientsInBatches() throws Exception {
+		
+		DataExportReportObject export = new DataExportReportObject();
+		export.setName("BATCHED EXPORT");
+		
+		SimpleColumn patientId = new SimpleColumn("PATIENT_ID", "$!{fn.patientId}");
+		export.getColumns().add(patientId);
+		
+		SimpleColumn gender = new SimpleColumn("GENDER", "$!{fn.getPatientAttr('Person', 'gender')}");
+		export.getColumns().add(gender);
+		
+		Cohort patients = new Cohort();
+		patients.addMember(7);
+		patients.addMember(8);
+		
+		DataExportFunctions functions = new DataExportFunctions();
+		functions.setSeparator("\t");
+		functions.setBatchSize(1);
+		
+		DataExportUtil.generateExport(export, patients, functions, null);
+		File exportFile = DataExportUtil.getGeneratedFile(export);
+		
+		String expectedOutput = "PATIENT_ID\tGENDER\n7\tF\n8\tF\n";
+		String output = OpenmrsUtil.getFileAsString(exportFile);
+		exportFile.delete();
+		
+		assertEquals("The output is not right.", expectedOutput, output);
+		
+		// one patient per batch means the attribute column had to be loaded for each batch
+		DataExportFunctions.CacheStatistics stats = functions.getCacheStatistics("patientAttributeMap");
+		assertEquals(2, stats.getLoads());
+		assertEquals(1, stats.getPeakEntries());
+	}
 }
@@ -0,0 +1,103 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.executor;
+
+import static org.junit.Assert.assertNotNull;
+
+import java.util.Calendar;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.scheduler.Task;
+import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests methods in ExecutorSchedulerServiceImpl
+ */
+public class ExecutorSchedulerServiceImplTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see {@link ExecutorSchedulerServiceImpl#scheduleTask(TaskDefinition)}
+	 */
+	@Test
+	@Verifies(value = "should handle zero repeat interval", method = "scheduleTask(TaskDefinition)")
+	public void scheduleTask_shouldHandleZeroRepeatInterval() throws Exception {
+		TaskDefinition taskDefinition = new TaskDefinition();
+		taskDefinition.setName("TestTask");
+		taskDefinition.setTaskClass("org.openmrs.scheduler.tasks.TestTask");
+		taskDefinition.setStartTime(Calendar.getInstance().getTime());
+		taskDefinition.setRepeatInterval(0L);
+		taskDefinition.setStartOnStartup(false);
+		
+		ExecutorSchedulerServiceImpl service = new ExecutorSchedulerServiceImpl();
+		Task clientTask = service.scheduleTask(taskDefinition);
+		
+		assertNotNull(clientTask);
+		service.shutdownTask(taskDefinition);
+	}
+	
+	/**
+	 * @see {@link ExecutorSchedulerServiceImpl#scheduleTask(TaskDefinition)}
+	 */
+	@Test
+	@Verifies(value = "should run a task without repeat interval once", method = "scheduleTask(TaskDefinition)")
+	public void scheduleTask_shouldRunATaskWithoutRepeatIntervalOnce() throws Exception {
+		TaskDefinition taskDefinition = new TaskDefinition();
+		taskDefinition.setName("TestTask");
+		taskDefinition.setTaskClass("org.openmrs.scheduler.tasks.TestTask");
+		taskDefinition.setStartOnStartup(false);
+		
+		ExecutorSchedulerServiceImpl service = new ExecutorSchedulerServiceImpl();
+		service.scheduleTask(taskDefinition);
+		String status = waitForStatus(service, taskDefinition.getId(), "1 run");
+		
+		Assert.assertTrue(status, status.startsWith("Finished"));
+		service.shutdownTask(taskDefinition);
+	}
+	
+	/**
+	 * @see {@link ExecutorSchedulerServiceImpl#getStatus(Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return the run statistics of a task that has run", method = "getStatus(Integer)")
+	public void getStatus_shouldReturnTheRunStatisticsOfATaskThatHasRun() throws Exception {
+		TaskDefinition taskDefinition = new TaskDefinition();
+		taskDefinition.setName("TestTask");
+		taskDefinition.setTaskClass("org.openmrs.scheduler.tasks.TestTask");
+		taskDefinition.setStartOnStartup(false);
+		
+		ExecutorSchedulerServiceImpl service = new ExecutorSchedulerServiceImpl();
+		Assert.assertEquals("Not Running", service.getStatus(taskDefinition.getId()));
+		service.scheduleTask(taskDefinition);
+		String status = waitForStatus(service, taskDefinition.getId(), "1 run");
+		
+		Assert.assertTrue(status, status.contains("last took"));
+		Assert.assertTrue(status, status.contains("ms late"));
+		service.shutdownTask(taskDefinition);
+	}
+	
+	/**
+	 * Waits up to ten seconds for the status of the given task to contain the given text
+	 */
+	private String waitForStatus(ExecutorSchedulerServiceImpl service, Integer id, String text) throws Exception {
+		String status = service.getStatus(id);
+		for (int i = 0; i < 100 && !status.contains(text); i++) {
+			Thread.sleep(100);
+			status = service.getStatus(id);
+		}
+		return status;
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.executor;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.scheduler.executor.ExecutorSchedulerTask.MisfirePolicy;
+import org.openmrs.scheduler.tasks.AbstractTask;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link ExecutorSchedulerTask} class
+ */
+public class ExecutorSchedulerTaskTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see {@link ExecutorSchedulerTask#run()}
+	 */
+	@Test
+	@Verifies(value = "should skip a run while another run of the same task definition is executing", method = "run()")
+	public void run_shouldSkipARunWhileAnotherRunOfTheSameTaskDefinitionIsExecuting() throws Exception {
+		final BlockingTask blockingTask = new BlockingTask();
+		final ExecutorSchedulerTask first = new ExecutorSchedulerTask(blockingTask, 1, 0, MisfirePolicy.RUN_ONCE, 1000);
+		Thread firstRun = new Thread(new Runnable() {
+			
+			public void run() {
+				first.run();
+			}
+		});
+		firstRun.start();
+		Assert.assertTrue(blockingTask.started.await(10, TimeUnit.SECONDS));
+		
+		ExecutorSchedulerTask second = new ExecutorSchedulerTask(new BlockingTask(), 1, 0, MisfirePolicy.RUN_ONCE, 1000);
+		second.run();
+		blockingTask.finish.countDown();
+		firstRun.join();
+		
+		Assert.assertEquals(1, first.getRunCount());
+		Assert.assertEquals(0, second.getRunCount());
+		Assert.assertEquals(1, second.getOverlapCount());
+	}
+	
+	/**
+	 * @see {@link ExecutorSchedulerTask#run()}
+	 */
+	@Test
+	@Verifies(value = "should run only once if several runs are overdue", method = "run()")
+	public void run_shouldRunOnlyOnceIfSeveralRunsAreOverdue() throws Exception {
+		BlockingTask task = new BlockingTask();
+		task.finish.countDown();
+		ExecutorSchedulerTask schedulerTask = new ExecutorSchedulerTask(task, null, 1000, MisfirePolicy.RUN_ONCE, 60000);
+		
+		// the first of three runs was due 2.5 seconds ago
+		schedulerTask.schedule(mock(ScheduledExecutorService.class), -2500);
+		schedulerTask.run();
+		schedulerTask.run();
+		schedulerTask.run();
+		
+		Assert.assertEquals(1, schedulerTask.getRunCount());
+		Assert.assertEquals(2, schedulerTask.getMisfireCount());
+	}
+	
+	/**
+	 * @see {@link ExecutorSchedulerTask#run()}
+	 */
+	@Test
+	@Verifies(value = "should skip late runs if the misfire policy is skip", method = "run()")
+	public void run_shouldSkipLateRunsIfTheMisfirePolicyIsSkip() throws Exception {
+		BlockingTask task = new BlockingTask();
+		task.finish.countDown();
+		ExecutorSchedulerTask schedulerTask = new ExecutorSchedulerTask(task, null, 0, MisfirePolicy.SKIP, 100);
+		
+		schedulerTask.schedule(mock(ScheduledExecutorService.class), -1000);
+		schedulerTask.run();
+		
+		Assert.assertEquals(0, schedulerTask.getRunCount());
+		Assert.assertEquals(1, schedulerTask.getMisfireCount());
+	}
+	
+	/**
+	 * A task that waits until it is told to finish
+	 */
+	private class BlockingTask extends AbstractTask {
+		
+		private CountDownLatch started = new CountDownLatch(1);
+		
+		private CountDownLatch finish = new CountDownLatch(1);
+		
+		@Override
+		public void execute() {
+			started.countDown();
+			try {
+				finish.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				// just finish
+			}
+		}
+	}
+}
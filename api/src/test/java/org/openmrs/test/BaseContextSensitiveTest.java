@@ -67,7 +67,11 @@ import org.junit.Before;
 import org.openmrs.User;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.ContextAuthenticationException;
+import org.openmrs.api.db.ConceptDAO;
+import org.openmrs.api.db.hibernate.AuthenticationCache;
+import org.openmrs.api.impl.LocationHierarchyIndex;
 import org.openmrs.module.ModuleConstants;
+import org.openmrs.reporting.CohortResultCache;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.util.OpenmrsConstants;
 import org.springframework.test.context.ContextConfiguration;
@@ -613,6 +617,20 @@ public abstract class BaseContextSensitiveTest extends AbstractJUnit4SpringConte
 		//Do the actual update/insert:
 		//insert new rows, update existing rows, and leave others alone
 		DatabaseOperation.REFRESH.execute(dbUnitConn, dataset);
+		
+		//the concept set closure, location index and verified logins are maintained by the API, so
+		//they have to be rebuilt or dropped for rows inserted here
+		boolean conceptSets = false;
+		for (String tableName : dataset.getTableNames()) {
+			if ("concept_set".equalsIgnoreCase(tableName))
+				conceptSets = true;
+			else if (tableName.toLowerCase().startsWith("location"))
+				LocationHierarchyIndex.invalidate();
+			else if ("users".equalsIgnoreCase(tableName) || "user_property".equalsIgnoreCase(tableName))
+				AuthenticationCache.clear();
+		}
+		if (conceptSets)
+			((ConceptDAO) applicationContext.getBean("conceptDAO")).rebuildConceptSetClosure();
 	}
 	
 	private IDatabaseConnection setupDatabaseConnection(Connection connection) throws DatabaseUnitException {
@@ -678,6 +696,31 @@ public abstract class BaseContextSensitiveTest extends AbstractJUnit4SpringConte
 		sf.getCache().evictEntityRegions();
 	}
 	
+	/**
+	 * Method to clear the shared cohort cache, test data sets are not loaded through hibernate so
+	 * they don't mark it as stale
+	 */
+	@Before
+	public void clearCohortResultCache() {
+		CohortResultCache.clear();
+	}
+	
+	/**
+	 * Drops the location hierarchy index, it may have been built from data of a previous test
+	 */
+	@Before
+	public void clearLocationHierarchyIndex() {
+		LocationHierarchyIndex.invalidate();
+	}
+	
+	/**
+	 * Forgets the verified logins and failed login attempts of a previous test
+	 */
+	@Before
+	public void clearAuthenticationCache() {
+		AuthenticationCache.clear();
+	}
+	
 	/**
 	 * This method is run before all test methods that extend this {@link BaseContextSensitiveTest}
 	 * unless you annotate your method with the "@SkipBaseSetup" annotation After running this
@@ -13,9 +13,15 @@
  */
 package org.openmrs.util;
 
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.xerces.impl.dv.util.Base64;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
+import org.openmrs.api.context.Context;
 import org.openmrs.test.Verifies;
 import org.springframework.util.StringUtils;
 
@@ -24,6 +30,8 @@ import org.springframework.util.StringUtils;
  */
 public class SecurityTest {
 	
+	private static final Log log = LogFactory.getLog(SecurityTest.class);
+	
 	private static final int HASH_LENGTH = 128;
 	
 	/**
@@ -220,4 +228,85 @@ public class SecurityTest {
 		Assert.assertTrue(OpenmrsUtil.nullSafeEquals(expected, actual));
 	}
 	
+	/**
+	 * @see {@link Security#getSavedInitVector()}
+	 */
+	@Test
+	@Verifies(value = "should return the init vector from the runtime properties", method = "getSavedInitVector()")
+	public void getSavedInitVector_shouldReturnTheInitVectorFromTheRuntimeProperties() throws Exception {
+		Properties original = Context.getRuntimeProperties();
+		try {
+			byte[] initVector = Security.generateNewInitVector();
+			Properties props = Context.getRuntimeProperties();
+			props.setProperty(OpenmrsConstants.ENCRYPTION_VECTOR_RUNTIME_PROPERTY, Base64.encode(initVector));
+			Context.setRuntimeProperties(props);
+			
+			Assert.assertArrayEquals(initVector, Security.getSavedInitVector());
+		}
+		finally {
+			Context.setRuntimeProperties(original);
+		}
+	}
+	
+	/**
+	 * @see {@link Security#getSavedSecretKey()}
+	 */
+	@Test
+	@Verifies(value = "should read the secret key again after the runtime properties are set", method = "getSavedSecretKey()")
+	public void getSavedSecretKey_shouldReadTheSecretKeyAgainAfterTheRuntimePropertiesAreSet() throws Exception {
+		Properties original = Context.getRuntimeProperties();
+		try {
+			byte[] firstKey = Security.generateNewSecretKey();
+			Properties props = Context.getRuntimeProperties();
+			props.setProperty(OpenmrsConstants.ENCRYPTION_KEY_RUNTIME_PROPERTY, Base64.encode(firstKey));
+			Context.setRuntimeProperties(props);
+			Assert.assertArrayEquals(firstKey, Security.getSavedSecretKey());
+			String encrypted = Security.encrypt("text");
+			
+			byte[] secondKey = Security.generateNewSecretKey();
+			props = Context.getRuntimeProperties();
+			props.setProperty(OpenmrsConstants.ENCRYPTION_KEY_RUNTIME_PROPERTY, Base64.encode(secondKey));
+			Context.setRuntimeProperties(props);
+			Assert.assertArrayEquals(secondKey, Security.getSavedSecretKey());
+			Assert.assertFalse(encrypted.equals(Security.encrypt("text")));
+		}
+		finally {
+			Context.setRuntimeProperties(original);
+		}
+	}
+	
+	/**
+	 * Measures the throughput of {@link Security#encrypt(String)} and
+	 * {@link Security#decrypt(String)}, e.g. to compare changes to them. It is not run with the
+	 * other tests because it only logs the results.
+	 */
+	@Test
+	@Ignore
+	public void benchmarkEncryptAndDecrypt() throws Exception {
+		String text = "1234567890-ABCDEFGHIJ";
+		int iterations = 100000;
+		
+		// warm up
+		for (int i = 0; i < iterations / 10; i++)
+			Security.decrypt(Security.encrypt(text + i));
+		
+		long start = System.nanoTime();
+		String[] encrypted = new String[iterations];
+		for (int i = 0; i < iterations; i++)
+			encrypted[i] = Security.encrypt(text + i);
+		long encryptNanos = System.nanoTime() - start;
+		
+		start = System.nanoTime();
+		String[] decrypted = new String[iterations];
+		for (int i = 0; i < iterations; i++)
+			decrypted[i] = Security.decrypt(encrypted[i]);
+		long decryptNanos = System.nanoTime() - start;
+		
+		for (int i = 0; i < iterations; i++)
+			Assert.assertEquals(text + i, decrypted[i]);
+		
+		log.info("encrypt: " + (iterations * 1000000000L / encryptNanos) + " ops/s");
+		log.info("decrypt: " + (iterations * 1000000000L / decryptNanos) + " ops/s");
+	}
+	
 }
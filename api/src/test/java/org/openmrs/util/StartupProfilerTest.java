@@ -0,0 +1,86 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the methods in {@link StartupProfiler}
+ */
+public class StartupProfilerTest {
+	
+	@Before
+	@After
+	public void clear() {
+		StartupProfiler.clear();
+	}
+	
+	/**
+	 * @see {@link StartupProfiler#stop(String)}
+	 */
+	@Test
+	@Verifies(value = "should add the time of every run of a phase", method = "stop(String)")
+	public void stop_shouldAddTheTimeOfEveryRunOfAPhase() throws Exception {
+		StartupProfiler.start("phase");
+		Thread.sleep(20);
+		long first = StartupProfiler.stop("phase");
+		StartupProfiler.start("phase");
+		Thread.sleep(20);
+		long second = StartupProfiler.stop("phase");
+		
+		Assert.assertTrue(first > 0);
+		Assert.assertEquals(first + second, StartupProfiler.getDurations().get("phase").longValue());
+		Assert.assertTrue(StartupProfiler.getReport().contains("phase: " + (first + second) + " ms (2 runs)"));
+	}
+	
+	/**
+	 * @see {@link StartupProfiler#stop(String)}
+	 */
+	@Test
+	@Verifies(value = "should ignore phases that were not started", method = "stop(String)")
+	public void stop_shouldIgnorePhasesThatWereNotStarted() throws Exception {
+		Assert.assertEquals(0, StartupProfiler.stop("phase"));
+		Assert.assertTrue(StartupProfiler.getDurations().isEmpty());
+	}
+	
+	/**
+	 * @see {@link StartupProfiler#getReport()}
+	 */
+	@Test
+	@Verifies(value = "should list the phases in the order they were started", method = "getReport()")
+	public void getReport_shouldListThePhasesInTheOrderTheyWereStarted() throws Exception {
+		StartupProfiler.start(StartupProfiler.SPRING_REFRESH);
+		StartupProfiler.start(StartupProfiler.HIBERNATE_MAPPINGS);
+		StartupProfiler.stop(StartupProfiler.HIBERNATE_MAPPINGS);
+		StartupProfiler.stop(StartupProfiler.SPRING_REFRESH);
+		StartupProfiler.start(StartupProfiler.MODULE_STARTUP);
+		
+		Map<String, Long> durations = StartupProfiler.getDurations();
+		List<String> phases = new ArrayList<String>(durations.keySet());
+		Assert.assertEquals(2, phases.size());
+		Assert.assertEquals(StartupProfiler.SPRING_REFRESH, phases.get(0));
+		Assert.assertEquals(StartupProfiler.HIBERNATE_MAPPINGS, phases.get(1));
+		
+		String report = StartupProfiler.getReport();
+		Assert.assertTrue(report.indexOf(StartupProfiler.SPRING_REFRESH) < report.indexOf(StartupProfiler.HIBERNATE_MAPPINGS));
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.validator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ValidatorStatistics}
+ */
+public class ValidatorStatisticsTest {
+	
+	@After
+	public void after() throws Exception {
+		ValidatorStatistics.clear();
+	}
+	
+	/**
+	 * @see ValidatorStatistics#record(Class,long)
+	 * @verifies count the calls and add up the time of a validator
+	 */
+	@Test
+	public void record_shouldCountTheCallsAndAddUpTheTimeOfAValidator() throws Exception {
+		ValidatorStatistics.record(ObsValidator.class, 1000000);
+		ValidatorStatistics.record(ObsValidator.class, 3000000);
+		
+		Assert.assertEquals("2 calls, total 4.000 ms, average 2.000 ms, max 3.000 ms", ValidatorStatistics.getSummary()
+		        .get(ObsValidator.class.getName()));
+	}
+	
+	/**
+	 * @see ValidatorStatistics#getSummary()
+	 * @verifies order the validators by their total time
+	 */
+	@Test
+	public void getSummary_shouldOrderTheValidatorsByTheirTotalTime() throws Exception {
+		ValidatorStatistics.record(ObsValidator.class, 1000);
+		ValidatorStatistics.record(PatientValidator.class, 5000);
+		ValidatorStatistics.record(ObsValidator.class, 1000);
+		
+		Map<String, String> summary = ValidatorStatistics.getSummary();
+		List<String> names = new ArrayList<String>(summary.keySet());
+		Assert.assertEquals(2, names.size());
+		Assert.assertEquals(PatientValidator.class.getName(), names.get(0));
+		Assert.assertEquals(ObsValidator.class.getName(), names.get(1));
+	}
+}
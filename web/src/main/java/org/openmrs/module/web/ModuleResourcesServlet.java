@@ -27,6 +27,7 @@ import org.apache.commons.logging.LogFactory;
 import org.openmrs.module.Module;
 import org.openmrs.module.ModuleUtil;
 import org.openmrs.util.OpenmrsUtil;
+import org.openmrs.web.ResourceCache;
 
 public class ModuleResourcesServlet extends HttpServlet {
 	
@@ -43,6 +44,10 @@ public class ModuleResourcesServlet extends HttpServlet {
 	 */
 	@Override
 	protected long getLastModified(HttpServletRequest req) {
+		ResourceCache.Resource resource = getCachedResource(req);
+		if (resource != null)
+			return resource.getLastModified();
+		
 		File f = getFile(req);
 		
 		if (f == null)
@@ -55,15 +60,31 @@ public class ModuleResourcesServlet extends HttpServlet {
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		log.debug("In service method for module servlet: " + request.getPathInfo());
 		
-		File f = getFile(request);
-		if (f == null) {
-			response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-			return;
+		ResourceCache.Resource resource = getCachedResource(request);
+		if (resource == null) {
+			File f = getFile(request);
+			if (f == null) {
+				response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+			
+			String mimeType = getServletContext().getMimeType(f.getName());
+			resource = ResourceCache.load(getCacheKey(request), f.toURI().toURL(), mimeType);
+			if (resource == null) {
+				writeFile(f, mimeType, response);
+				return;
+			}
 		}
 		
+		ResourceCache.serve(request, response, resource, false);
+	}
+	
+	/**
+	 * Sends a file that is too large to be cached
+	 */
+	private void writeFile(File f, String mimeType, HttpServletResponse response) throws IOException {
 		response.setDateHeader("Last-Modified", f.lastModified());
 		response.setContentLength(new Long(f.length()).intValue());
-		String mimeType = getServletContext().getMimeType(f.getName());
 		response.setContentType(mimeType);
 		
 		FileInputStream is = new FileInputStream(f);
@@ -75,6 +96,29 @@ public class ModuleResourcesServlet extends HttpServlet {
 		}
 	}
 	
+	/**
+	 * The key of a module resource contains the version of the module, so that a new version of the
+	 * module does not get the cached resources of the old one
+	 * 
+	 * @param request the current http request
+	 * @return the key of the requested resource in the {@link ResourceCache}, or null if no module
+	 *         handles the path
+	 */
+	protected String getCacheKey(HttpServletRequest request) {
+		String path = request.getPathInfo();
+		Module module = ModuleUtil.getModuleForPath(path);
+		if (module == null)
+			return null;
+		
+		return "moduleResources:" + module.getModuleId() + ":" + module.getVersion() + ":"
+		        + ModuleUtil.getPathForResource(module, path);
+	}
+	
+	private ResourceCache.Resource getCachedResource(HttpServletRequest request) {
+		String key = getCacheKey(request);
+		return key == null ? null : ResourceCache.get(key);
+	}
+	
 	/**
 	 * Turns the given request/path into a File object
 	 * 
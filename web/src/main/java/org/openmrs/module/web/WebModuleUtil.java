@@ -47,6 +47,8 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
+import org.openmrs.messagesource.MutableMessageSource;
+import org.openmrs.messagesource.impl.MutableResourceBundleMessageSource;
 import org.openmrs.module.Module;
 import org.openmrs.module.ModuleConstants;
 import org.openmrs.module.ModuleException;
@@ -57,8 +59,10 @@ import org.openmrs.module.web.filter.ModuleFilterDefinition;
 import org.openmrs.module.web.filter.ModuleFilterMapping;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
+import org.openmrs.util.StartupProfiler;
 import org.openmrs.web.DispatcherServlet;
 import org.openmrs.web.OpenmrsJspServlet;
+import org.openmrs.web.ResourceCache;
 import org.openmrs.web.StaticDispatcherServlet;
 import org.openmrs.web.dwr.OpenmrsDWRServlet;
 import org.springframework.web.context.support.WebApplicationContextUtils;
@@ -122,6 +126,8 @@ public class WebModuleUtil {
 			String realPath = servletContext.getRealPath("");
 			
 			copyModuleMessagesIntoWebapp(mod, realPath);
+			refreshMessages();
+			ResourceCache.clear();
 			log.debug("Done copying messages");
 			
 			// flag to tell whether we added any xml/dwr/etc changes that necessitate a refresh
@@ -402,6 +408,16 @@ public class WebModuleUtil {
 		return true;
 	}
 	
+	/**
+	 * Makes the active message source read the messages again after the module messages were
+	 * copied into the webapp
+	 */
+	private static void refreshMessages() {
+		MutableMessageSource messageSource = Context.getMessageSourceService().getActiveMessageSource();
+		if (messageSource instanceof MutableResourceBundleMessageSource)
+			((MutableResourceBundleMessageSource) messageSource).refresh();
+	}
+	
 	/**
 	 * Send an Alert to all super users that the given module did not start successfully.
 	 * 
@@ -746,6 +762,9 @@ public class WebModuleUtil {
 		
 		String realPath = servletContext.getRealPath("");
 		
+		// forget the cached resources of the module
+		ResourceCache.clear();
+		
 		// delete the web files from the webapp
 		String absPath = realPath + "/WEB-INF/view/module/" + moduleId;
 		File moduleWebFolder = new File(absPath.replace("/", File.separator));
@@ -859,8 +878,15 @@ public class WebModuleUtil {
 			OpenmrsJspServlet.jspServlet.stop();
 		}
 		
-		XmlWebApplicationContext newAppContext = (XmlWebApplicationContext) ModuleUtil.refreshApplicationContext(wac,
-		    isOpenmrsStartup, startedModule);
+		XmlWebApplicationContext newAppContext = null;
+		StartupProfiler.start(StartupProfiler.SPRING_REFRESH);
+		try {
+			newAppContext = (XmlWebApplicationContext) ModuleUtil.refreshApplicationContext(wac, isOpenmrsStartup,
+			    startedModule);
+		}
+		finally {
+			StartupProfiler.stop(StartupProfiler.SPRING_REFRESH);
+		}
 		
 		if (OpenmrsJspServlet.jspServlet != null) {
 			OpenmrsJspServlet.jspServlet.refresh();
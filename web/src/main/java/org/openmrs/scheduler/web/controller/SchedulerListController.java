@@ -174,10 +174,19 @@ public class SchedulerListController extends SimpleFormController {
 		
 		Collection<TaskDefinition> tasks = (Collection<TaskDefinition>) command;
 		Map<TaskDefinition, String> intervals = new HashMap<TaskDefinition, String>();
+		Map<TaskDefinition, String> statuses = new HashMap<TaskDefinition, String>();
 		MessageSourceAccessor msa = getMessageSourceAccessor();
 		
 		for (TaskDefinition task : tasks) {
 			
+			if (task.getStarted()) {
+				String progress = Context.getSchedulerService().getProgress(task.getId());
+				if (progress != null)
+					statuses.put(task, msa.getMessage("Scheduler.list.currentlyExecuting", new Object[] { progress }));
+				else
+					statuses.put(task, Context.getSchedulerService().getStatus(task.getId()));
+			}
+			
 			Long interval = task.getRepeatInterval();
 			
 			if (interval < 60) {
@@ -194,6 +203,7 @@ public class SchedulerListController extends SimpleFormController {
 			}
 		}
 		map.put("intervals", intervals);
+		map.put("statuses", statuses);
 		
 		return map;
 	}
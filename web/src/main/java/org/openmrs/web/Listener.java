@@ -53,6 +53,7 @@ import org.openmrs.util.MemoryLeakUtil;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
+import org.openmrs.util.StartupProfiler;
 import org.openmrs.web.filter.initialization.InitializationFilter;
 import org.openmrs.web.filter.update.UpdateFilter;
 import org.springframework.context.ApplicationContext;
@@ -118,6 +119,7 @@ public final class Listener extends ContextLoader implements ServletContextListe
 		Log log = LogFactory.getLog(Listener.class);
 		
 		log.debug("Starting the OpenMRS webapp");
+		StartupProfiler.clear();
 		
 		try {
 			// validate the current JVM version
@@ -132,7 +134,14 @@ public final class Listener extends ContextLoader implements ServletContextListe
 			clearDWRFile(servletContext);
 			
 			// Try to get the runtime properties
-			Properties props = getRuntimeProperties();
+			Properties props = null;
+			StartupProfiler.start(StartupProfiler.RUNTIME_PROPERTIES);
+			try {
+				props = getRuntimeProperties();
+			}
+			finally {
+				StartupProfiler.stop(StartupProfiler.RUNTIME_PROPERTIES);
+			}
 			if (props != null) {
 				// the user has defined a runtime properties file
 				runtimePropertiesFound = true;
@@ -155,9 +164,15 @@ public final class Listener extends ContextLoader implements ServletContextListe
 				 * Copied here instead of calling that so that the context is not cached
 				 * and hence not garbage collected
 				 */
-				ApplicationContext parent = loadParentContext(servletContext);
-				WebApplicationContext context = createWebApplicationContext(servletContext, parent);
-				servletContext.setAttribute(WebApplicationContext.ROOT_WEB_APPLICATION_CONTEXT_ATTRIBUTE, context);
+				StartupProfiler.start(StartupProfiler.SPRING_REFRESH);
+				try {
+					ApplicationContext parent = loadParentContext(servletContext);
+					WebApplicationContext context = createWebApplicationContext(servletContext, parent);
+					servletContext.setAttribute(WebApplicationContext.ROOT_WEB_APPLICATION_CONTEXT_ATTRIBUTE, context);
+				}
+				finally {
+					StartupProfiler.stop(StartupProfiler.SPRING_REFRESH);
+				}
 				/** */
 				
 				WebDaemon.startOpenmrs(event.getServletContext());
@@ -182,7 +197,13 @@ public final class Listener extends ContextLoader implements ServletContextListe
 		if (!runtimePropertiesFound)
 			return true;
 		
-		return DatabaseUpdater.updatesRequired() && !DatabaseUpdater.allowAutoUpdate();
+		StartupProfiler.start(StartupProfiler.DATABASE_UPDATE_CHECK);
+		try {
+			return DatabaseUpdater.updatesRequired() && !DatabaseUpdater.allowAutoUpdate();
+		}
+		finally {
+			StartupProfiler.stop(StartupProfiler.DATABASE_UPDATE_CHECK);
+		}
 	}
 	
 	/**
@@ -228,10 +249,24 @@ public final class Listener extends ContextLoader implements ServletContextListe
 		try {
 			
 			// web load modules
-			Listener.performWebStartOfModules(servletContext);
+			StartupProfiler.start(StartupProfiler.WEB_MODULE_STARTUP);
+			try {
+				Listener.performWebStartOfModules(servletContext);
+			}
+			finally {
+				StartupProfiler.stop(StartupProfiler.WEB_MODULE_STARTUP);
+			}
 			
 			// start the scheduled tasks
-			SchedulerUtil.startup(getRuntimeProperties());
+			StartupProfiler.start(StartupProfiler.SCHEDULER_STARTUP);
+			try {
+				SchedulerUtil.startup(getRuntimeProperties());
+			}
+			finally {
+				StartupProfiler.stop(StartupProfiler.SCHEDULER_STARTUP);
+			}
+			
+			StartupProfiler.logReport();
 		}
 		catch (Throwable t) {
 			Context.shutdown();
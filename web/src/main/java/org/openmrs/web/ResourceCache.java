@@ -0,0 +1,319 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.APIException;
+import org.openmrs.util.OpenmrsUtil;
+import org.openmrs.web.filter.GZIPResponseWrapper;
+
+/**
+ * Keeps the bytes of static resources like scripts, style sheets and module resources in memory, so
+ * that they are read from disk and compressed only once. <br/>
+ * <br/>
+ * Resources are cached by a key that contains the version of OpenMRS or of the module they belong
+ * to, and the cache is cleared when a module is started or stopped. A resource is sent with a
+ * strong ETag and its Last-Modified date, and conditional requests are answered with
+ * <code>304 Not Modified</code>. If the response is compressed by the
+ * {@link org.openmrs.web.filter.GZIPFilter}, the compressed bytes of the resource are sent as they
+ * are instead of being compressed again.
+ *
+ * @since 1.10
+ */
+public class ResourceCache {
+	
+	private static final Log log = LogFactory.getLog(ResourceCache.class);
+	
+	/**
+	 * The largest resource in bytes that is cached, larger ones are read from disk every time
+	 */
+	public static final int MAX_RESOURCE_SIZE = 1024 * 1024;
+	
+	/**
+	 * The number of bytes of all cached resources above which the cache is cleared
+	 */
+	public static final long MAX_TOTAL_SIZE = 32 * 1024 * 1024;
+	
+	/**
+	 * The seconds a browser may keep a resource that was requested with the version of OpenMRS in
+	 * its url
+	 */
+	public static final int VERSIONED_MAX_AGE = 365 * 24 * 60 * 60;
+	
+	private static final ConcurrentMap<String, Resource> resources = new ConcurrentHashMap<String, Resource>();
+	
+	/**
+	 * Guards the changes of the resources and of the sizes, so that the size of the cache is always
+	 * the size of the resources that are in it
+	 */
+	private static final Object lock = new Object();
+	
+	private static long totalSize = 0;
+	
+	/**
+	 * @param key the key of the resource
+	 * @return the cached resource or null if it is not cached
+	 */
+	public static Resource get(String key) {
+		return resources.get(key);
+	}
+	
+	/**
+	 * Reads a resource and caches it
+	 *
+	 * @param key the key of the resource, which should contain the version of the code the resource
+	 *            belongs to
+	 * @param url the location of the resource
+	 * @param contentType the mime type of the resource, may be null
+	 * @return the cached resource, or null if it is larger than {@link #MAX_RESOURCE_SIZE}
+	 * @throws IOException if the resource cannot be read
+	 * @should read and cache the resource
+	 * @should not cache a resource that is too large
+	 */
+	public static Resource load(String key, URL url, String contentType) throws IOException {
+		URLConnection connection = url.openConnection();
+		if (connection.getContentLength() > MAX_RESOURCE_SIZE)
+			return null;
+		
+		byte[] content;
+		InputStream in = connection.getInputStream();
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(connection.getContentLength(), 1024));
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				if (out.size() + read > MAX_RESOURCE_SIZE)
+					return null;
+				out.write(buffer, 0, read);
+			}
+			content = out.toByteArray();
+		}
+		finally {
+			OpenmrsUtil.closeStream(in);
+		}
+		
+		long lastModified = connection.getLastModified();
+		if (lastModified <= 0)
+			lastModified = System.currentTimeMillis();
+		
+		Resource resource = new Resource(key, content, lastModified, contentType);
+		synchronized (lock) {
+			if (totalSize + content.length > MAX_TOTAL_SIZE) {
+				log.debug("The resource cache is full, clearing it");
+				clear();
+			}
+			Resource replaced = resources.put(key, resource);
+			if (replaced != null)
+				totalSize -= replaced.size;
+			totalSize += resource.size;
+		}
+		return resource;
+	}
+	
+	/**
+	 * Forgets all cached resources
+	 */
+	public static void clear() {
+		synchronized (lock) {
+			resources.clear();
+			totalSize = 0;
+		}
+	}
+	
+	/**
+	 * Sends a cached resource, or <code>304 Not Modified</code> if the browser has the same version
+	 * of it
+	 *
+	 * @param request the current request
+	 * @param response the response to send the resource with
+	 * @param resource the cached resource
+	 * @param versioned true if the url of the resource contains the version it belongs to, so that
+	 *            the browser may keep it for {@link #VERSIONED_MAX_AGE} seconds
+	 * @throws IOException
+	 * @should send the resource with its etag and last modified date
+	 * @should send not modified if the etag matches
+	 * @should send not modified if the resource was not modified since the given date
+	 * @should send the compressed resource if the response is compressed
+	 */
+	public static void serve(HttpServletRequest request, HttpServletResponse response, Resource resource,
+	        boolean versioned) throws IOException {
+		GZIPResponseWrapper gzipResponse = getGZIPResponse(response);
+		String eTag = gzipResponse == null ? resource.getETag() : resource.getCompressedETag();
+		
+		response.setHeader("ETag", eTag);
+		response.setDateHeader("Last-Modified", resource.getLastModified());
+		response.setHeader("Vary", "Accept-Encoding");
+		if (versioned)
+			response.setHeader("Cache-Control", "public, max-age=" + VERSIONED_MAX_AGE);
+		
+		if (isNotModified(request, resource)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		
+		if (resource.getContentType() != null)
+			response.setContentType(resource.getContentType());
+		if (gzipResponse != null) {
+			gzipResponse.writeCompressed(resource.getCompressedContent());
+		} else {
+			response.setContentLength(resource.getContent().length);
+			response.getOutputStream().write(resource.getContent());
+		}
+	}
+	
+	private static boolean isNotModified(HttpServletRequest request, Resource resource) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			for (String eTag : ifNoneMatch.split(",")) {
+				eTag = eTag.trim();
+				if (eTag.equals("*") || eTag.equals(resource.getETag()) || eTag.equals(resource.getCompressedETag()))
+					return true;
+			}
+			return false;
+		}
+		
+		try {
+			long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+			return ifModifiedSince != -1 && ifModifiedSince >= resource.getLastModified();
+		}
+		catch (IllegalArgumentException e) {
+			// an invalid date is ignored
+			return false;
+		}
+	}
+	
+	private static GZIPResponseWrapper getGZIPResponse(ServletResponse response) {
+		while (response instanceof ServletResponseWrapper) {
+			if (response instanceof GZIPResponseWrapper)
+				return (GZIPResponseWrapper) response;
+			response = ((ServletResponseWrapper) response).getResponse();
+		}
+		return null;
+	}
+	
+	/**
+	 * The bytes of a cached resource
+	 */
+	public static class Resource {
+		
+		private final String key;
+		
+		private final byte[] content;
+		
+		private volatile byte[] compressedContent = null;
+		
+		private final long lastModified;
+		
+		private final String contentType;
+		
+		private final String eTag;
+		
+		/**
+		 * The bytes of the content and of the compressed content once it is created, guarded by the
+		 * lock of the cache
+		 */
+		private long size;
+		
+		private Resource(String key, byte[] content, long lastModified, String contentType) {
+			this.key = key;
+			this.content = content;
+			this.size = content.length;
+			// http dates have no milliseconds
+			this.lastModified = lastModified / 1000 * 1000;
+			this.contentType = contentType;
+			this.eTag = "\"" + getHash(content) + "\"";
+		}
+		
+		/**
+		 * @return the bytes of the resource, the array is not copied
+		 */
+		public byte[] getContent() {
+			return content;
+		}
+		
+		/**
+		 * @return the bytes of the resource compressed with gzip, the array is not copied
+		 * @throws IOException
+		 */
+		public byte[] getCompressedContent() throws IOException {
+			byte[] compressed = compressedContent;
+			if (compressed == null) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + 64);
+				GZIPOutputStream gzip = new GZIPOutputStream(out);
+				gzip.write(content);
+				gzip.close();
+				compressed = out.toByteArray();
+				synchronized (lock) {
+					if (compressedContent != null)
+						return compressedContent;
+					compressedContent = compressed;
+					size += compressed.length;
+					// a resource that was cleared or replaced is not counted anymore
+					if (resources.get(key) == this)
+						totalSize += compressed.length;
+				}
+			}
+			return compressed;
+		}
+		
+		public long getLastModified() {
+			return lastModified;
+		}
+		
+		public String getContentType() {
+			return contentType;
+		}
+		
+		/**
+		 * @return the strong entity tag of the uncompressed resource, with quotes
+		 */
+		public String getETag() {
+			return eTag;
+		}
+		
+		/**
+		 * @return the strong entity tag of the compressed resource, with quotes
+		 */
+		public String getCompressedETag() {
+			return eTag.substring(0, eTag.length() - 1) + "-gzip\"";
+		}
+		
+		private static String getHash(byte[] content) {
+			try {
+				return new BigInteger(1, MessageDigest.getInstance("MD5").digest(content)).toString(16);
+			}
+			catch (NoSuchAlgorithmException e) {
+				throw new APIException("System cannot find the MD5 algorithm", e);
+			}
+		}
+	}
+}
@@ -15,6 +15,7 @@ package org.openmrs.web.controller;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -103,6 +104,9 @@ public class PortletController implements Controller {
 	 *          (Map<String, Concept>) conceptMapByStringIds
 	 * </pre>
 	 * 
+	 * The patient data other than the patient itself is loaded when a portlet first gets it from the
+	 * model (see {@link PortletModel}), and the model is shared by all portlets of a page.
+	 * 
 	 * @should calculate bmi into patientBmiAsString
 	 * @should not fail with empty height and weight properties
 	 */
@@ -110,19 +114,18 @@ public class PortletController implements Controller {
 	public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response) throws ServletException,
 	        IOException {
 		
-		AdministrationService as = Context.getAdministrationService();
 		ConceptService cs = Context.getConceptService();
 		
 		// find the portlet that was identified in the openmrs:portlet taglib
 		Object uri = request.getAttribute("javax.servlet.include.servlet_path");
 		String portletPath = "";
-		Map<String, Object> model = null;
+		PortletModel model = null;
 		{
 			HttpSession session = request.getSession();
 			String uniqueRequestId = (String) request.getAttribute(WebConstants.INIT_REQ_UNIQUE_ID);
 			String lastRequestId = (String) session.getAttribute(WebConstants.OPENMRS_PORTLET_LAST_REQ_ID);
 			if (uniqueRequestId.equals(lastRequestId)) {
-				model = (Map<String, Object>) session.getAttribute(WebConstants.OPENMRS_PORTLET_CACHED_MODEL);
+				model = (PortletModel) session.getAttribute(WebConstants.OPENMRS_PORTLET_CACHED_MODEL);
 				
 				// remove cached parameters 
 				List<String> parameterKeys = (List<String>) model.get("parameterKeys");
@@ -134,7 +137,7 @@ public class PortletController implements Controller {
 			}
 			if (model == null) {
 				log.debug("creating new portlet model");
-				model = new HashMap<String, Object>();
+				model = new PortletModel();
 				session.setAttribute(WebConstants.OPENMRS_PORTLET_LAST_REQ_ID, uniqueRequestId);
 				session.setAttribute(WebConstants.OPENMRS_PORTLET_CACHED_MODEL, model);
 			}
@@ -181,150 +184,85 @@ public class PortletController implements Controller {
 			// if a patient id is available, put patient data documented above in the model
 			Object o = request.getAttribute("org.openmrs.portlet.patientId");
 			if (o != null) {
-				String patientVariation = "";
 				Integer patientId = (Integer) o;
 				if (!model.containsKey("patient")) {
 					// we can't continue if the user can't view patients
 					if (Context.hasPrivilege(PrivilegeConstants.VIEW_PATIENTS)) {
-						Patient p = Context.getPatientService().getPatient(patientId);
+						final Patient p = Context.getPatientService().getPatient(patientId);
 						model.put("patient", p);
-						if (p.isDead())
-							patientVariation = "Dead";
 						
-						// add encounters if this user can view them
-						if (Context.hasPrivilege(PrivilegeConstants.VIEW_ENCOUNTERS))
-							model.put("patientEncounters", Context.getEncounterService().getEncountersByPatient(p));
+						// the patient data is only loaded when a portlet on the page uses it
+						if (Context.hasPrivilege(PrivilegeConstants.VIEW_ENCOUNTERS)) {
+							model.putLazy(new PortletModel.Loader() {
+								
+								public void load(Map<String, Object> model) {
+									model.put("patientEncounters", Context.getEncounterService().getEncountersByPatient(p));
+								}
+							}, "patientEncounters");
+						}
 						
-						// add visits if this user can view them
 						if (Context.hasPrivilege(PrivilegeConstants.VIEW_VISITS)) {
 							model.put("person", p);
 							PortletControllerUtil.addFormToEditAndViewUrlMaps(model);
-							model.put("patientVisits", Context.getVisitService().getVisitsByPatient(p));
-							model.put("activeVisits", Context.getVisitService().getActiveVisitsByPatient(p));
+							model.putLazy(new PortletModel.Loader() {
+								
+								public void load(Map<String, Object> model) {
+									model.put("patientVisits", Context.getVisitService().getVisitsByPatient(p));
+								}
+							}, "patientVisits");
+							model.putLazy(new PortletModel.Loader() {
+								
+								public void load(Map<String, Object> model) {
+									model.put("activeVisits", Context.getVisitService().getActiveVisitsByPatient(p));
+								}
+							}, "activeVisits");
 						}
 						
 						if (Context.hasPrivilege(PrivilegeConstants.VIEW_OBS)) {
-							List<Obs> patientObs = Context.getObsService().getObservationsByPerson(p);
-							model.put("patientObs", patientObs);
-							Obs latestWeight = null;
-							Obs latestHeight = null;
-							String bmiAsString = "?";
-							try {
-								String weightString = as.getGlobalProperty("concept.weight");
-								ConceptNumeric weightConcept = null;
-								if (StringUtils.hasLength(weightString))
-									weightConcept = cs.getConceptNumeric(cs.getConcept(Integer.valueOf(weightString))
-									        .getConceptId());
-								String heightString = as.getGlobalProperty("concept.height");
-								ConceptNumeric heightConcept = null;
-								if (StringUtils.hasLength(heightString))
-									heightConcept = cs.getConceptNumeric(cs.getConcept(Integer.valueOf(heightString))
-									        .getConceptId());
-								for (Obs obs : patientObs) {
-									if (obs.getConcept().equals(weightConcept)) {
-										if (latestWeight == null
-										        || obs.getObsDatetime().compareTo(latestWeight.getObsDatetime()) > 0)
-											latestWeight = obs;
-									} else if (obs.getConcept().equals(heightConcept)) {
-										if (latestHeight == null
-										        || obs.getObsDatetime().compareTo(latestHeight.getObsDatetime()) > 0)
-											latestHeight = obs;
-									}
+							model.putLazy(new PortletModel.Loader() {
+								
+								public void load(Map<String, Object> model) {
+									model.put("patientObs", Context.getObsService().getObservationsByPerson(p));
 								}
-								if (latestWeight != null)
-									model.put("patientWeight", latestWeight);
-								if (latestHeight != null)
-									model.put("patientHeight", latestHeight);
-								if (latestWeight != null && latestHeight != null) {
-									double weightInKg;
-									double heightInM;
-									if (weightConcept.getUnits().equals("kg"))
-										weightInKg = latestWeight.getValueNumeric();
-									else if (weightConcept.getUnits().equals("lb"))
-										weightInKg = latestWeight.getValueNumeric() * 0.45359237;
-									else
-										throw new IllegalArgumentException("Can't handle units of weight concept: "
-										        + weightConcept.getUnits());
-									if (heightConcept.getUnits().equals("cm"))
-										heightInM = latestHeight.getValueNumeric() / 100;
-									else if (heightConcept.getUnits().equals("m"))
-										heightInM = latestHeight.getValueNumeric();
-									else if (heightConcept.getUnits().equals("in"))
-										heightInM = latestHeight.getValueNumeric() * 0.0254;
-									else
-										throw new IllegalArgumentException("Can't handle units of height concept: "
-										        + heightConcept.getUnits());
-									double bmi = weightInKg / (heightInM * heightInM);
-									model.put("patientBmi", bmi);
-									String temp = "" + bmi;
-									bmiAsString = temp.substring(0, temp.indexOf('.') + 2);
+							}, "patientObs");
+							model.putLazy(new PortletModel.Loader() {
+								
+								public void load(Map<String, Object> model) {
+									addBmi(p, model);
 								}
-							}
-							catch (Exception ex) {
-								if (latestWeight != null && latestHeight != null)
-									log.error("Failed to calculate BMI even though a weight and height were found", ex);
-							}
-							model.put("patientBmiAsString", bmiAsString);
+							}, "patientWeight", "patientHeight", "patientBmi", "patientBmiAsString");
 						} else {
 							model.put("patientObs", new HashSet<Obs>());
 						}
 						
 						// information about whether or not the patient has exited care
-						Obs reasonForExitObs = null;
-						String reasonForExitConceptString = as.getGlobalProperty("concept.reasonExitedCare");
-						if (StringUtils.hasLength(reasonForExitConceptString)) {
-							Concept reasonForExitConcept = cs.getConcept(reasonForExitConceptString);
-							if (reasonForExitConcept != null) {
-								List<Obs> patientExitObs = Context.getObsService().getObservationsByPersonAndConcept(p,
-								    reasonForExitConcept);
-								if (patientExitObs != null) {
-									log.debug("Exit obs is size " + patientExitObs.size());
-									if (patientExitObs.size() == 1) {
-										reasonForExitObs = patientExitObs.iterator().next();
-										Concept exitReason = reasonForExitObs.getValueCoded();
-										Date exitDate = reasonForExitObs.getObsDatetime();
-										if (exitReason != null && exitDate != null) {
-											patientVariation = "Exited";
-										}
-									} else {
-										if (patientExitObs.size() == 0) {
-											log.debug("Patient has no reason for exit");
-										} else {
-											log.error("Too many reasons for exit - not putting data into model");
-										}
-									}
-								}
+						model.putLazy(new PortletModel.Loader() {
+							
+							public void load(Map<String, Object> model) {
+								addReasonForExit(p, model);
 							}
-						}
-						model.put("patientReasonForExit", reasonForExitObs);
+						}, "patientReasonForExit", "patientVariation");
 						
 						if (Context.hasPrivilege(PrivilegeConstants.VIEW_ORDERS)) {
-							List<DrugOrder> drugOrderList = Context.getOrderService().getDrugOrdersByPatient(p);
-							model.put("patientDrugOrders", drugOrderList);
-							List<DrugOrder> currentDrugOrders = new ArrayList<DrugOrder>();
-							List<DrugOrder> discontinuedDrugOrders = new ArrayList<DrugOrder>();
-							Date rightNow = new Date();
-							for (Iterator<DrugOrder> iter = drugOrderList.iterator(); iter.hasNext();) {
-								DrugOrder next = iter.next();
-								if (next.isCurrent() || next.isFuture())
-									currentDrugOrders.add(next);
-								if (next.isDiscontinued(rightNow))
-									discontinuedDrugOrders.add(next);
-							}
-							model.put("currentDrugOrders", currentDrugOrders);
-							model.put("completedDrugOrders", discontinuedDrugOrders);
-							
-							List<RegimenSuggestion> standardRegimens = Context.getOrderService().getStandardRegimens();
-							if (standardRegimens != null)
-								model.put("standardRegimens", standardRegimens);
+							model.putLazy(new PortletModel.Loader() {
+								
+								public void load(Map<String, Object> model) {
+									addDrugOrders(p, model);
+								}
+							}, "patientDrugOrders", "currentDrugOrders", "completedDrugOrders", "standardRegimens");
 						}
 						
 						if (Context.hasPrivilege(PrivilegeConstants.VIEW_PROGRAMS)
 						        && Context.hasPrivilege(PrivilegeConstants.VIEW_PATIENT_PROGRAMS)) {
-							model.put("patientPrograms", Context.getProgramWorkflowService().getPatientPrograms(p, null,
-							    null, null, null, null, false));
-							model.put("patientCurrentPrograms", Context.getProgramWorkflowService().getPatientPrograms(p,
-							    null, null, new Date(), new Date(), null, false));
+							model.putLazy(new PortletModel.Loader() {
+								
+								public void load(Map<String, Object> model) {
+									model.put("patientPrograms", Context.getProgramWorkflowService().getPatientPrograms(p,
+									    null, null, null, null, null, false));
+									model.put("patientCurrentPrograms", Context.getProgramWorkflowService()
+									        .getPatientPrograms(p, null, null, new Date(), new Date(), null, false));
+								}
+							}, "patientPrograms", "patientCurrentPrograms");
 						}
 						
 						model.put("patientId", patientId);
@@ -332,8 +270,6 @@ public class PortletController implements Controller {
 							personId = p.getPatientId();
 							model.put("personId", personId);
 						}
-						
-						model.put("patientVariation", patientVariation);
 					}
 				}
 			}
@@ -441,6 +377,149 @@ public class PortletController implements Controller {
 		
 	}
 	
+	/**
+	 * Puts the most recent weight and height obs of the patient and the BMI derived from them into
+	 * the model
+	 * 
+	 * @param p the patient
+	 * @param model the portlet model
+	 */
+	private void addBmi(Patient p, Map<String, Object> model) {
+		AdministrationService as = Context.getAdministrationService();
+		ConceptService cs = Context.getConceptService();
+		
+		Obs latestWeight = null;
+		Obs latestHeight = null;
+		String bmiAsString = "?";
+		try {
+			String weightString = as.getGlobalProperty("concept.weight");
+			ConceptNumeric weightConcept = null;
+			if (StringUtils.hasLength(weightString))
+				weightConcept = cs.getConceptNumeric(cs.getConcept(Integer.valueOf(weightString)).getConceptId());
+			String heightString = as.getGlobalProperty("concept.height");
+			ConceptNumeric heightConcept = null;
+			if (StringUtils.hasLength(heightString))
+				heightConcept = cs.getConceptNumeric(cs.getConcept(Integer.valueOf(heightString)).getConceptId());
+			
+			// only the most recent obs of each concept are read instead of every obs of the patient
+			latestWeight = getLatestObs(p, weightConcept);
+			latestHeight = getLatestObs(p, heightConcept);
+			if (latestWeight != null)
+				model.put("patientWeight", latestWeight);
+			if (latestHeight != null)
+				model.put("patientHeight", latestHeight);
+			if (latestWeight != null && latestHeight != null) {
+				double weightInKg;
+				double heightInM;
+				if (weightConcept.getUnits().equals("kg"))
+					weightInKg = latestWeight.getValueNumeric();
+				else if (weightConcept.getUnits().equals("lb"))
+					weightInKg = latestWeight.getValueNumeric() * 0.45359237;
+				else
+					throw new IllegalArgumentException("Can't handle units of weight concept: " + weightConcept.getUnits());
+				if (heightConcept.getUnits().equals("cm"))
+					heightInM = latestHeight.getValueNumeric() / 100;
+				else if (heightConcept.getUnits().equals("m"))
+					heightInM = latestHeight.getValueNumeric();
+				else if (heightConcept.getUnits().equals("in"))
+					heightInM = latestHeight.getValueNumeric() * 0.0254;
+				else
+					throw new IllegalArgumentException("Can't handle units of height concept: " + heightConcept.getUnits());
+				double bmi = weightInKg / (heightInM * heightInM);
+				model.put("patientBmi", bmi);
+				String temp = "" + bmi;
+				bmiAsString = temp.substring(0, temp.indexOf('.') + 2);
+			}
+		}
+		catch (Exception ex) {
+			if (latestWeight != null && latestHeight != null)
+				log.error("Failed to calculate BMI even though a weight and height were found", ex);
+		}
+		model.put("patientBmiAsString", bmiAsString);
+	}
+	
+	/**
+	 * @return the most recent obs of the patient for the concept, null if there is none
+	 */
+	private Obs getLatestObs(Patient p, Concept concept) {
+		if (concept == null)
+			return null;
+		List<Obs> obs = Context.getObsService().getObservations(Collections.<Person> singletonList(p), null,
+		    Collections.singletonList(concept), null, null, null, null, 1, null, null, null, false);
+		return obs.isEmpty() ? null : obs.get(0);
+	}
+	
+	/**
+	 * Puts the obs with the reason the patient exited care and the variation of the patient
+	 * portlets ("Dead", "Exited" or "") into the model
+	 * 
+	 * @param p the patient
+	 * @param model the portlet model
+	 */
+	private void addReasonForExit(Patient p, Map<String, Object> model) {
+		String patientVariation = "";
+		if (p.isDead())
+			patientVariation = "Dead";
+		
+		Obs reasonForExitObs = null;
+		String reasonForExitConceptString = Context.getAdministrationService().getGlobalProperty(
+		    "concept.reasonExitedCare");
+		if (StringUtils.hasLength(reasonForExitConceptString)) {
+			Concept reasonForExitConcept = Context.getConceptService().getConcept(reasonForExitConceptString);
+			if (reasonForExitConcept != null) {
+				List<Obs> patientExitObs = Context.getObsService().getObservationsByPersonAndConcept(p,
+				    reasonForExitConcept);
+				if (patientExitObs != null) {
+					log.debug("Exit obs is size " + patientExitObs.size());
+					if (patientExitObs.size() == 1) {
+						reasonForExitObs = patientExitObs.iterator().next();
+						Concept exitReason = reasonForExitObs.getValueCoded();
+						Date exitDate = reasonForExitObs.getObsDatetime();
+						if (exitReason != null && exitDate != null) {
+							patientVariation = "Exited";
+						}
+					} else {
+						if (patientExitObs.size() == 0) {
+							log.debug("Patient has no reason for exit");
+						} else {
+							log.error("Too many reasons for exit - not putting data into model");
+						}
+					}
+				}
+			}
+		}
+		model.put("patientReasonForExit", reasonForExitObs);
+		model.put("patientVariation", patientVariation);
+	}
+	
+	/**
+	 * Puts all, current and completed drug orders of the patient and the standard regimens into the
+	 * model
+	 * 
+	 * @param p the patient
+	 * @param model the portlet model
+	 */
+	private void addDrugOrders(Patient p, Map<String, Object> model) {
+		List<DrugOrder> drugOrderList = Context.getOrderService().getDrugOrdersByPatient(p);
+		model.put("patientDrugOrders", drugOrderList);
+		List<DrugOrder> currentDrugOrders = new ArrayList<DrugOrder>();
+		List<DrugOrder> discontinuedDrugOrders = new ArrayList<DrugOrder>();
+		Date rightNow = new Date();
+		for (Iterator<DrugOrder> iter = drugOrderList.iterator(); iter.hasNext();) {
+			DrugOrder next = iter.next();
+			if (next.isCurrent() || next.isFuture())
+				currentDrugOrders.add(next);
+			if (next.isDiscontinued(rightNow))
+				discontinuedDrugOrders.add(next);
+		}
+		model.put("currentDrugOrders", currentDrugOrders);
+		model.put("completedDrugOrders", discontinuedDrugOrders);
+		
+		List<RegimenSuggestion> standardRegimens = Context.getOrderService().getStandardRegimens();
+		if (standardRegimens != null)
+			model.put("standardRegimens", standardRegimens);
+	}
+	
 	/**
 	 * Subclasses should override this to put more data into the model. This will be called AFTER
 	 * handleRequest has put mappings in the model as described in its javadoc. Note that context
@@ -0,0 +1,161 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.controller;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The model of the portlets of a page. Values that are expensive to load, like all the obs or
+ * encounters of a patient, are not loaded when the portlet controller runs but when a portlet first
+ * gets them from the model. The model is shared by all portlets of the same page (see
+ * {@link PortletController#handleRequest}), so every value is loaded at most once per page, and
+ * not at all if no portlet on the page uses it. <br/>
+ * <br/>
+ * Lazy values are not listed by {@link #keySet()}, {@link #values()} and {@link #entrySet()} until
+ * they are loaded, but {@link #get(Object)} and {@link #containsKey(Object)} know about them. The
+ * model is meant to be used by one request at a time and is not thread safe.
+ *
+ * @since 1.10
+ */
+public class PortletModel extends HashMap<String, Object> {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final Log log = LogFactory.getLog(PortletModel.class);
+	
+	/**
+	 * Puts one or more values into the model when they are first needed
+	 */
+	public interface Loader {
+		
+		/**
+		 * Loads the values and puts them into the model
+		 *
+		 * @param model the model to put the values in
+		 */
+		public void load(Map<String, Object> model);
+	}
+	
+	/**
+	 * The loaders of the values that have not been loaded yet, by key. Loaders are not kept when
+	 * the session is serialized, the values are loaded again by the next request instead.
+	 */
+	private transient Map<String, Loader> loaders;
+	
+	/**
+	 * Registers a loader for values that are loaded when any of them is first needed. A loader is
+	 * not registered for keys that already have a value, so that values shared by portlets of the
+	 * same page are only loaded once.
+	 *
+	 * @param loader the loader that puts the values into the model
+	 * @param keys the keys of all values the loader puts into the model
+	 * @should load the values when one of them is first needed
+	 * @should load the values only once
+	 * @should not register a loader for keys that already have a value
+	 */
+	public void putLazy(Loader loader, String... keys) {
+		if (loaders == null)
+			loaders = new HashMap<String, Loader>();
+		for (String key : keys) {
+			if (!containsKey(key))
+				loaders.put(key, loader);
+		}
+	}
+	
+	/**
+	 * @param key the key of a value
+	 * @return true if the value of the key was registered with {@link #putLazy(Loader, String...)}
+	 *         and has not been loaded yet
+	 */
+	public boolean isLazy(Object key) {
+		return loaders != null && loaders.containsKey(key);
+	}
+	
+	/**
+	 * @see java.util.HashMap#get(java.lang.Object)
+	 */
+	@Override
+	public Object get(Object key) {
+		if (isLazy(key))
+			load(loaders.get(key));
+		return super.get(key);
+	}
+	
+	/**
+	 * @see java.util.HashMap#containsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean containsKey(Object key) {
+		return isLazy(key) || super.containsKey(key);
+	}
+	
+	/**
+	 * @see java.util.HashMap#put(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public Object put(String key, Object value) {
+		if (loaders != null)
+			loaders.remove(key);
+		return super.put(key, value);
+	}
+	
+	/**
+	 * @see java.util.HashMap#putAll(java.util.Map)
+	 */
+	@Override
+	public void putAll(Map<? extends String, ? extends Object> m) {
+		if (loaders != null)
+			loaders.keySet().removeAll(m.keySet());
+		super.putAll(m);
+	}
+	
+	/**
+	 * @see java.util.HashMap#remove(java.lang.Object)
+	 */
+	@Override
+	public Object remove(Object key) {
+		if (loaders != null)
+			loaders.remove(key);
+		return super.remove(key);
+	}
+	
+	/**
+	 * @see java.util.HashMap#clear()
+	 */
+	@Override
+	public void clear() {
+		if (loaders != null)
+			loaders.clear();
+		super.clear();
+	}
+	
+	private void load(Loader loader) {
+		// forget the loader first, so that it can get the values it puts without loading them again
+		for (Iterator<Loader> i = loaders.values().iterator(); i.hasNext();) {
+			if (i.next() == loader)
+				i.remove();
+		}
+		
+		long start = System.currentTimeMillis();
+		loader.load(this);
+		if (log.isDebugEnabled())
+			log.debug("Loading portlet values with " + loader.getClass().getName() + " took "
+			        + (System.currentTimeMillis() - start) + " ms");
+	}
+}
@@ -13,9 +13,12 @@
  */
 package org.openmrs.web.controller;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.URL;
 import java.util.Map;
 
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -24,6 +27,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.GlobalProperty;
 import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.web.ResourceCache;
+import org.springframework.web.context.ServletContextAware;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.Controller;
 import org.springframework.web.servlet.mvc.LastModified;
@@ -35,9 +41,12 @@ import org.springframework.web.servlet.mvc.LastModified;
  * If you specify any 'rewrites' then the specified paths are remapped, e.g:<br/>
  * /scripts/jquery/jquery-1.3.2.min.js -> /scripts/jquery/jquery.min.js <br/>
  * All jstl files are cached in the browser until a server restart or a global property is
- * added/changed/deleted
+ * added/changed/deleted <br/>
+ * Files without jstl are sent from the {@link ResourceCache}, so they are read from disk and
+ * compressed only once.
  */
-public class PseudoStaticContentController implements Controller, LastModified, GlobalPropertyListener {
+public class PseudoStaticContentController implements Controller, LastModified, GlobalPropertyListener,
+        ServletContextAware {
 	
 	protected final Log log = LogFactory.getLog(getClass());
 	
@@ -47,6 +56,13 @@ public class PseudoStaticContentController implements Controller, LastModified,
 	
 	private static Long lastModified = System.currentTimeMillis();
 	
+	/**
+	 * The folder the views are in, the prefix of the view resolver of the static content servlet
+	 */
+	private static final String VIEW_FOLDER = "/WEB-INF/view";
+	
+	private ServletContext servletContext;
+	
 	public Boolean getInterpretJstl() {
 		return interpretJstl;
 	}
@@ -70,11 +86,50 @@ public class PseudoStaticContentController implements Controller, LastModified,
 		if (rewrites != null && rewrites.containsKey(path))
 			path = rewrites.get(path);
 		if (interpretJstl)
-			path += ".withjstl";
+			return new ModelAndView(path + ".withjstl");
+		
+		ResourceCache.Resource resource = getResource(path);
+		if (resource != null) {
+			boolean versioned = OpenmrsConstants.OPENMRS_VERSION_SHORT.equals(request.getParameter("v"));
+			ResourceCache.serve(request, response, resource, versioned);
+			return null;
+		}
 		
 		return new ModelAndView(path);
 	}
 	
+	/**
+	 * Gets a file from the cache and reads it into the cache if it is not there yet. The key of the
+	 * file contains the version of OpenMRS, the files only change with it.
+	 * 
+	 * @param path the path of the file below the view folder
+	 * @return the cached file, or null if it does not exist or is too large to be cached
+	 * @throws IOException
+	 */
+	private ResourceCache.Resource getResource(String path) throws IOException {
+		if (servletContext == null || !path.startsWith("/") || path.contains(".."))
+			return null;
+		
+		String key = "static:" + OpenmrsConstants.OPENMRS_VERSION_SHORT + ":" + path;
+		ResourceCache.Resource resource = ResourceCache.get(key);
+		if (resource == null) {
+			URL url = servletContext.getResource(VIEW_FOLDER + path);
+			String realPath = servletContext.getRealPath(VIEW_FOLDER + path);
+			if (url == null || (realPath != null && new File(realPath).isDirectory()))
+				return null;
+			resource = ResourceCache.load(key, url, servletContext.getMimeType(path));
+		}
+		return resource;
+	}
+	
+	/**
+	 * @see org.springframework.web.context.ServletContextAware#setServletContext(javax.servlet.ServletContext)
+	 */
+	@Override
+	public void setServletContext(ServletContext servletContext) {
+		this.servletContext = servletContext;
+	}
+	
 	@Override
 	public long getLastModified(HttpServletRequest request) {
 		
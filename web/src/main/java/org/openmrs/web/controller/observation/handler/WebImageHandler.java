@@ -16,6 +16,7 @@ package org.openmrs.web.controller.observation.handler;
 import org.openmrs.Obs;
 import org.openmrs.obs.ComplexData;
 import org.openmrs.obs.handler.ImageHandler;
+import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.web.WebConstants;
 
 /**
@@ -41,7 +42,7 @@ public class WebImageHandler extends ImageHandler {
 	 * ComplexData from the parent class since this does not require access to the service layer.
 	 * Gives a link to the ComplexServlet for this obs
 	 * <li>{@link WebConstants#HTML_VIEW}: An html tag that will display this complex data. For this
-	 * ImageHandler, its an html img tag.
+	 * ImageHandler, its an html img tag of the {@link OpenmrsConstants#SCREEN_VIEW} of the image.
 	 * </ul>
 	 * 
 	 * @see org.openmrs.obs.handler.ImageHandler#getComplexData(org.openmrs.Obs, java.lang.String)
@@ -54,7 +55,7 @@ public class WebImageHandler extends ImageHandler {
 			obs.setComplexData(cd);
 			return obs;
 		} else if (WebConstants.HTML_VIEW.equals(view)) {
-			String imgtag = "<img src='" + getHyperlink(obs) + "'/>";
+			String imgtag = "<img src='" + getHyperlink(obs) + "&view=" + OpenmrsConstants.SCREEN_VIEW + "'/>";
 			ComplexData cd = new ComplexData(obs.getValueAsString(null), imgtag);
 			obs.setComplexData(cd);
 			return obs;
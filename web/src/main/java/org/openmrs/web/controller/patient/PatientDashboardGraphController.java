@@ -13,12 +13,13 @@
  */
 package org.openmrs.web.controller.patient;
 
-import java.util.List;
+import java.util.Collections;
 
+import org.openmrs.Concept;
 import org.openmrs.ConceptNumeric;
-import org.openmrs.Obs;
 import org.openmrs.Patient;
 import org.openmrs.api.context.Context;
+import org.openmrs.obs.ObsValues;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -49,7 +50,8 @@ public class PatientDashboardGraphController {
 		Patient patient = Context.getPatientService().getPatient(patientId);
 		ConceptNumeric concept = Context.getConceptService().getConceptNumeric(conceptId);
 		
-		List<Obs> observations = Context.getObsService().getObservationsByPersonAndConcept(patient, concept);
+		ObsValues values = Context.getObsService().getObservationValues(patient,
+		    Collections.<Concept> singletonList(concept));
 		
 		PatientGraphData graph = new PatientGraphData();
 		graph.setCriticalHigh(concept.getHiCritical());
@@ -61,8 +63,8 @@ public class PatientDashboardGraphController {
 		graph.setUnits(concept.getUnits());
 		graph.setConceptName(concept.getName().getName());
 		
-		for (Obs obs : observations) {
-			graph.addValue(obs.getObsDatetime().getTime(), obs.getValueNumeric());
+		for (int i = 0; i < values.size(); i++) {
+			graph.addValue(values.getObsDatetime(i), values.getValueNumeric(i));
 		}
 		
 		map.put("graph", graph);
@@ -105,6 +105,24 @@ public class GZIPResponseWrapper extends HttpServletResponseWrapper {
 	public void setContentLength(int length) {
 	}
 	
+	/**
+	 * Sends content that is already compressed with gzip, e.g. a cached resource, without
+	 * compressing it again
+	 * 
+	 * @param compressed the compressed content
+	 * @throws IOException
+	 * @since 1.10
+	 */
+	public void writeCompressed(byte[] compressed) throws IOException {
+		if (stream != null) {
+			throw new IllegalStateException("The response has already been written to!");
+		}
+		
+		origResponse.addHeader("Content-Encoding", "gzip");
+		origResponse.setContentLength(compressed.length);
+		origResponse.getOutputStream().write(compressed);
+	}
+	
 	/**
 	 * @see javax.servlet.http.HttpServletResponse#sendError(int, java.lang.String)
 	 */
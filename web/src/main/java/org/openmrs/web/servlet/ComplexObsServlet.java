@@ -15,8 +15,13 @@ package org.openmrs.web.servlet;
 
 import java.awt.image.RenderedImage;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 import javax.imageio.ImageIO;
 import javax.servlet.ServletException;
@@ -25,15 +30,22 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Obs;
 import org.openmrs.api.context.Context;
 import org.openmrs.obs.ComplexData;
+import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
 import org.openmrs.web.WebConstants;
 
+/**
+ * Sends the complex data of an obs. Data that the handler stores in a file is streamed from the
+ * file without reading it into memory, and supports conditional requests with ETags and partial
+ * downloads with Range requests.
+ */
 public class ComplexObsServlet extends HttpServlet {
 	
 	public static final long serialVersionUID = 1234432L;
@@ -64,8 +76,16 @@ public class ComplexObsServlet extends HttpServlet {
 			return;
 		}
 		
+		// ask the handler for the file instead of its contents if the raw data is wanted
+		if (StringUtils.isBlank(view) || "download".equals(view))
+			view = OpenmrsConstants.FILE_VIEW;
+		
 		Obs complexObs = Context.getObsService().getComplexObs(Integer.valueOf(obsId), view);
-		ComplexData cd = complexObs.getComplexData();
+		ComplexData cd = complexObs == null ? null : complexObs.getComplexData();
+		if (cd == null || cd.getData() == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
 		Object data = cd.getData();
 		
 		if ("download".equals(viewType)) {
@@ -73,7 +93,9 @@ public class ComplexObsServlet extends HttpServlet {
 			response.setHeader("Pragma", "no-cache");
 		}
 		
-		if (data instanceof byte[]) {
+		if (data instanceof File) {
+			sendFile(request, response, complexObs, (File) data);
+		} else if (data instanceof byte[]) {
 			ByteArrayInputStream stream = new ByteArrayInputStream((byte[]) data);
 			OpenmrsUtil.copyFile(stream, response.getOutputStream());
 		} else if (RenderedImage.class.isAssignableFrom(data.getClass())) {
@@ -95,4 +117,141 @@ public class ComplexObsServlet extends HttpServlet {
 		}
 	}
 	
+	/**
+	 * Sends the given file, or the part of it asked for by the Range header of the request. The
+	 * file is copied to the response with
+	 * {@link FileChannel#transferTo(long, long, WritableByteChannel)} so that it is never held in
+	 * memory as a whole.
+	 */
+	private void sendFile(HttpServletRequest request, HttpServletResponse response, Obs obs, File file)
+	        throws IOException {
+		long length = file.length();
+		long lastModified = file.lastModified();
+		String etag = "\"" + obs.getObsId() + "-" + length + "-" + lastModified + "\"";
+		
+		response.setHeader("ETag", etag);
+		response.setDateHeader("Last-Modified", lastModified);
+		response.setHeader("Accept-Ranges", "bytes");
+		
+		if (isNotModified(request, etag, lastModified)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		
+		long start = 0;
+		long end = length - 1;
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange == null || ifRange.equals(etag)) {
+			long[] range = parseRange(request.getHeader("Range"), length);
+			if (range != null && range.length == 0) {
+				response.setHeader("Content-Range", "bytes */" + length);
+				response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			}
+			if (range != null) {
+				start = range[0];
+				end = range[1];
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+			}
+		}
+		
+		long count = end - start + 1;
+		response.setHeader("Content-Length", String.valueOf(count));
+		
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			while (count > 0) {
+				long sent = channel.transferTo(start, count, out);
+				if (sent <= 0)
+					break;
+				start += sent;
+				count -= sent;
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * @return true if the If-None-Match header of the request matches the ETag, or if there is no
+	 *         such header and the file has not been modified since the If-Modified-Since header
+	 */
+	private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			for (String tag : ifNoneMatch.split(",")) {
+				if (tag.trim().equals(etag) || tag.trim().equals("*"))
+					return true;
+			}
+			return false;
+		}
+		
+		try {
+			long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+			return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+		}
+		catch (IllegalArgumentException e) {
+			log.debug("Ignoring invalid If-Modified-Since header", e);
+			return false;
+		}
+	}
+	
+	/**
+	 * Parses a Range header with a single byte range, e.g. "bytes=0-499", "bytes=500-" or
+	 * "bytes=-500" for the last 500 bytes.
+	 * 
+	 * @param range the value of the Range header
+	 * @param length the length of the file
+	 * @return the first and the last byte of the range, null if the whole file should be sent, or
+	 *         an empty array if the range is not satisfiable
+	 * @should return null if there is no range
+	 * @should return null for multiple or invalid ranges
+	 * @should return the first and last byte of the range
+	 * @should limit the last byte to the end of the file
+	 * @should return the last bytes for a suffix range
+	 * @should return an empty array if the range starts after the end of the file
+	 */
+	static long[] parseRange(String range, long length) {
+		if (range == null || !range.startsWith("bytes=") || range.indexOf(',') >= 0)
+			return null;
+		
+		String spec = range.substring("bytes=".length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash < 0)
+			return null;
+		String first = spec.substring(0, dash).trim();
+		String last = spec.substring(dash + 1).trim();
+		
+		try {
+			long start;
+			long end = length - 1;
+			if (first.length() == 0) {
+				if (last.length() == 0)
+					return null;
+				long suffix = Long.parseLong(last);
+				if (suffix <= 0)
+					return new long[0];
+				start = Math.max(0, length - suffix);
+			} else {
+				start = Long.parseLong(first);
+				if (last.length() > 0) {
+					long lastByte = Long.parseLong(last);
+					if (lastByte < start)
+						return null;
+					end = Math.min(lastByte, end);
+				}
+			}
+			if (start < 0 || start >= length)
+				return new long[0];
+			return new long[] { start, end };
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+	
 }
@@ -13,11 +13,16 @@
  */
 package org.openmrs.web.servlet;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -31,12 +36,19 @@ import org.openmrs.ConceptAnswer;
 import org.openmrs.ConceptDescription;
 import org.openmrs.ConceptName;
 import org.openmrs.ConceptSet;
+import org.openmrs.User;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.context.Context;
 
 /**
  * This servlet will package all non retired concepts into a comma delimited file. Retired concepts
- * are ignored.
+ * are ignored. <br/>
+ * <br/>
+ * Concepts are read in pages of {@link #batchSize} with
+ * {@link ConceptService#getConceptPage(Concept, int, boolean)}, which fetches the names,
+ * descriptions, answers and set members of a whole page at once, and the session is cleared after
+ * every page. Lines are written straight to a buffered writer, compressed with gzip if the browser
+ * supports it.
  */
 public class DownloadDictionaryServlet extends HttpServlet {
 	
@@ -64,84 +76,34 @@ public class DownloadDictionaryServlet extends HttpServlet {
 			
 			response.setHeader("Content-Type", "text/csv;charset=UTF-8");
 			response.setHeader("Content-Disposition", "attachment; filename=conceptDictionary" + s + ".csv");
+			// the response is compressed or not depending on this request header
+			response.setHeader("Vary", "Accept-Encoding");
 			
-			String line = "Concept Id,Name,Description,Synonyms,Answers,Set Members,Class,Datatype,Changed By,Creator\n";
-			response.getWriter().write(line);
+			OutputStream out = response.getOutputStream();
+			String acceptEncoding = request.getHeader("Accept-Encoding");
+			if (acceptEncoding != null && acceptEncoding.indexOf("gzip") != -1) {
+				response.setHeader("Content-Encoding", "gzip");
+				out = new GZIPOutputStream(out, 8192);
+			}
+			Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), 65536);
+			
+			writer.write("Concept Id,Name,Description,Synonyms,Answers,Set Members,Class,Datatype,Changed By,Creator\n");
 			
-			int listIndex = 0;
-			Iterator<Concept> conceptIterator = cs.conceptIterator();
-			while (conceptIterator.hasNext()) {
-				Concept c = conceptIterator.next();
-				if (!c.isRetired()) {
-					
-					line = c.getConceptId() + ",";
-					String name, description;
-					ConceptName cn = c.getName(locale);
-					if (cn == null)
-						name = "";
-					else
-						name = cn.getName();
-					
-					ConceptDescription cd = c.getDescription(locale);
-					if (cd == null)
-						description = "";
-					else
-						description = cd.getDescription();
-					
-					line += '"' + name.replace("\"", "\"\"") + "\",";
-					
-					if (description == null)
-						description = "";
-					line = line + '"' + description.replace("\"", "\"\"") + "\",";
-					
-					String tmp = "";
-					for (ConceptName syn : c.getNames()) {
-						tmp += syn + "\n";
-					}
-					line += '"' + tmp.trim() + "\",";
-					
-					tmp = "";
-					for (ConceptAnswer answer : c.getAnswers(false)) {
-						if (answer.getAnswerConcept() != null)
-							tmp += answer.getAnswerConcept().getName() + "\n";
-						else if (answer.getAnswerDrug() != null)
-							tmp += answer.getAnswerDrug().getFullName(Context.getLocale()) + "\n";
-					}
-					line += '"' + tmp.trim() + "\",";
-					
-					tmp = "";
-					for (ConceptSet set : c.getConceptSets()) {
-						if (set.getConcept() != null) {
-							name = set.getConcept().getName().toString();
-							tmp += name.replace("\"", "\"\"") + "\n";
-						}
-					}
-					line += '"' + tmp.trim() + "\",";
-					
-					line += '"';
-					if (c.getConceptClass() != null)
-						line += c.getConceptClass().getName();
-					line += "\",";
-					
-					line += '"';
-					if (c.getDatatype() != null)
-						line += c.getDatatype().getName();
-					line += "\",";
-					
-					line += '"';
-					if (c.getChangedBy() != null)
-						line += c.getChangedBy().getPersonName();
-					line += "\",";
-					
-					line += '"';
-					if (c.getCreator() != null)
-						line += c.getCreator().getPersonName();
-					line += "\"\n";
-					
-					response.getWriter().write(line);
-				}
+			List<Concept> page = cs.getConceptPage(null, batchSize, false);
+			while (!page.isEmpty()) {
+				for (Concept c : page)
+					writeConcept(writer, c, locale);
+				if (page.size() < batchSize)
+					break;
 				
+				// the concepts that were written are not needed anymore
+				Concept last = page.get(page.size() - 1);
+				writer.flush();
+				Context.clearSession();
+				page = cs.getConceptPage(last, batchSize, false);
 			}
+			
+			writer.close();
 		}
 		catch (Throwable t) {
 			log.error("Error while downloading concepts.", t);
@@ -151,4 +113,95 @@ public class DownloadDictionaryServlet extends HttpServlet {
 	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		doGet(request, response);
 	}
+	
+	/**
+	 * Writes the line of the given concept
+	 */
+	private void writeConcept(Writer writer, Concept c, Locale locale) throws IOException {
+		writer.write(String.valueOf(c.getConceptId()));
+		writer.write(',');
+		
+		ConceptName cn = c.getName(locale);
+		writeQuoted(writer, cn == null ? null : cn.getName());
+		writer.write(',');
+		
+		ConceptDescription cd = c.getDescription(locale);
+		writeQuoted(writer, cd == null ? null : cd.getDescription());
+		writer.write(',');
+		
+		writer.write('"');
+		boolean first = true;
+		for (ConceptName syn : c.getNames()) {
+			first = writeListItem(writer, syn.getName(), first);
+		}
+		writer.write("\",");
+		
+		writer.write('"');
+		first = true;
+		for (ConceptAnswer answer : c.getAnswers(false)) {
+			if (answer.getAnswerConcept() != null)
+				first = writeListItem(writer, String.valueOf(answer.getAnswerConcept().getName()), first);
+			else if (answer.getAnswerDrug() != null)
+				first = writeListItem(writer, answer.getAnswerDrug().getFullName(locale), first);
+		}
+		writer.write("\",");
+		
+		writer.write('"');
+		first = true;
+		for (ConceptSet set : c.getConceptSets()) {
+			if (set.getConcept() != null)
+				first = writeListItem(writer, String.valueOf(set.getConcept().getName()), first);
+		}
+		writer.write("\",");
+		
+		writeQuoted(writer, c.getConceptClass() == null ? null : c.getConceptClass().getName());
+		writer.write(',');
+		writeQuoted(writer, c.getDatatype() == null ? null : c.getDatatype().getName());
+		writer.write(',');
+		writeQuoted(writer, getPersonName(c.getChangedBy()));
+		writer.write(',');
+		writeQuoted(writer, getPersonName(c.getCreator()));
+		writer.write('\n');
+	}
+	
+	private String getPersonName(User user) {
+		if (user == null || user.getPersonName() == null)
+			return null;
+		return user.getPersonName().toString();
+	}
+	
+	/**
+	 * Writes the given value in quotes, doubling the quotes in it
+	 */
+	private void writeQuoted(Writer writer, String value) throws IOException {
+		writer.write('"');
+		writeEscaped(writer, value);
+		writer.write('"');
+	}
+	
+	/**
+	 * Writes an item of a list of values that are separated by new lines inside one quoted value
+	 * 
+	 * @return false, so that it can be passed as first for the next item
+	 */
+	private boolean writeListItem(Writer writer, String value, boolean first) throws IOException {
+		if (value == null || value.trim().length() == 0)
+			return first;
+		if (!first)
+			writer.write('\n');
+		writeEscaped(writer, value.trim());
+		return false;
+	}
+	
+	private void writeEscaped(Writer writer, String value) throws IOException {
+		if (value == null)
+			return;
+		int start = 0;
+		for (int i = value.indexOf('"'); i != -1; i = value.indexOf('"', start)) {
+			writer.write(value, start, i + 1 - start);
+			writer.write('"');
+			start = i + 1;
+		}
+		writer.write(value, start, value.length() - start);
+	}
 }
@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 
@@ -26,7 +27,6 @@ import javax.servlet.jsp.tagext.BodyTagSupport;
 
 import org.apache.commons.beanutils.BeanComparator;
 import org.apache.commons.collections.comparators.ComparableComparator;
-import org.apache.commons.collections.comparators.ReverseComparator;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Obs;
@@ -76,9 +76,7 @@ public class ForEachObsTag extends BodyTagSupport {
 		if (sortBy == null || sortBy.equals("")) {
 			sortBy = "obsDatetime";
 		}
-		Comparator comp = new BeanComparator(sortBy, (descending ? new ReverseComparator(new ComparableComparator())
-		        : new ComparableComparator()));
-		Collections.sort(matchingObs, comp);
+		Collections.sort(matchingObs, getComparator(sortBy, Boolean.TRUE.equals(descending)));
 		
 		// Return appropriate number of results
 		if (matchingObs.isEmpty()) {
@@ -89,6 +87,80 @@ public class ForEachObsTag extends BodyTagSupport {
 		}
 	}
 	
+	/**
+	 * Gets a comparator for the given property of obs. The dates, ids and values that pages
+	 * usually sort by are compared without reflection, any other property is read with a
+	 * {@link BeanComparator}.
+	 * 
+	 * @param sortBy the name of the property
+	 * @param descending true to sort from the largest to the smallest value
+	 * @return the comparator
+	 * @should sort obs by a date property
+	 * @should sort obs without a value first
+	 * @should sort obs by any other property
+	 */
+	@SuppressWarnings("unchecked")
+	static Comparator<Obs> getComparator(String sortBy, boolean descending) {
+		Comparator<Obs> comparator;
+		if ("obsDatetime".equals(sortBy)) {
+			comparator = new PropertyComparator<Date>() {
+				
+				protected Date getValue(Obs obs) {
+					return obs.getObsDatetime();
+				}
+			};
+		} else if ("obsId".equals(sortBy)) {
+			comparator = new PropertyComparator<Integer>() {
+				
+				protected Integer getValue(Obs obs) {
+					return obs.getObsId();
+				}
+			};
+		} else if ("dateCreated".equals(sortBy)) {
+			comparator = new PropertyComparator<Date>() {
+				
+				protected Date getValue(Obs obs) {
+					return obs.getDateCreated();
+				}
+			};
+		} else if ("valueNumeric".equals(sortBy)) {
+			comparator = new PropertyComparator<Double>() {
+				
+				protected Double getValue(Obs obs) {
+					return obs.getValueNumeric();
+				}
+			};
+		} else if ("valueDatetime".equals(sortBy)) {
+			comparator = new PropertyComparator<Date>() {
+				
+				protected Date getValue(Obs obs) {
+					return obs.getValueDatetime();
+				}
+			};
+		} else {
+			comparator = new BeanComparator(sortBy, new ComparableComparator());
+		}
+		return descending ? Collections.reverseOrder(comparator) : comparator;
+	}
+	
+	/**
+	 * Compares obs by a property, obs without a value come first
+	 */
+	private static abstract class PropertyComparator<T extends Comparable<? super T>> implements Comparator<Obs> {
+		
+		protected abstract T getValue(Obs obs);
+		
+		public int compare(Obs o1, Obs o2) {
+			T v1 = getValue(o1);
+			T v2 = getValue(o2);
+			if (v1 == null)
+				return v2 == null ? 0 : -1;
+			if (v2 == null)
+				return 1;
+			return v1.compareTo(v2);
+		}
+	}
+	
 	/**
 	 * @see javax.servlet.jsp.tagext.IterationTag#doAfterBody()
 	 */
@@ -140,16 +140,31 @@ public class FormatTag extends TagSupport {
 	 */
 	private String caseConversion;
 	
+	/**
+	 * The objects and formatted strings of the current request
+	 */
+	private TagLookupCache lookupCache;
+	
+	/**
+	 * Prints the display string of every object that was set on the tag, or looked up by the ids set
+	 * on it, to the page or to the variable named by {@link #setVar(String)}. The objects and
+	 * their display strings come from the {@link TagLookupCache} of the request, so an object is
+	 * loaded and formatted only once however many times it is shown on a page.
+	 * 
+	 * @should look up objects by id only once per request
+	 * @should format an object only once per request
+	 */
 	@Override
 	public int doStartTag() {
 		StringBuilder sb = new StringBuilder();
+		lookupCache = TagLookupCache.getInstance(pageContext);
 		
 		if (object != null) {
 			printObject(sb, object);
 		}
 		
 		if (conceptId != null)
-			concept = Context.getConceptService().getConcept(conceptId);
+			concept = lookupCache.get(Concept.class, conceptId);
 		if (concept != null) {
 			printConcept(sb, concept);
 		}
@@ -158,59 +173,59 @@ public class FormatTag extends TagSupport {
 			sb.append(obsValue.getValueAsString(Context.getLocale()));
 		
 		if (userId != null)
-			user = Context.getUserService().getUser(userId);
+			user = lookupCache.get(User.class, userId);
 		if (user != null)
 			printUser(sb, user);
 		
 		if (personId != null)
-			person = Context.getPersonService().getPerson(personId);
+			person = lookupCache.get(Person.class, personId);
 		if (person != null)
 			printPerson(sb, person);
 		
 		if (encounterId != null)
-			encounter = Context.getEncounterService().getEncounter(encounterId);
+			encounter = lookupCache.get(Encounter.class, encounterId);
 		if (encounter != null) {
 			printEncounter(sb, encounter);
 		}
 		
 		if (encounterTypeId != null)
-			encounterType = Context.getEncounterService().getEncounterType(encounterTypeId);
+			encounterType = lookupCache.get(EncounterType.class, encounterTypeId);
 		if (encounterType != null) {
 			printMetadata(sb, encounterType);
 		}
 		
 		if (visitTypeId != null)
-			visitType = Context.getVisitService().getVisitType(visitTypeId);
+			visitType = lookupCache.get(VisitType.class, visitTypeId);
 		if (visitType != null) {
 			printMetadata(sb, visitType);
 		}
 		
 		if (visitId != null)
-			visit = Context.getVisitService().getVisit(visitId);
+			visit = lookupCache.get(Visit.class, visitId);
 		if (visit != null) {
 			printVisit(sb, visit);
 		}
 		
 		if (locationId != null)
-			location = Context.getLocationService().getLocation(locationId);
+			location = lookupCache.get(Location.class, locationId);
 		if (location != null) {
 			printMetadata(sb, location);
 		}
 		
 		if (locationTagId != null)
-			locationTag = Context.getLocationService().getLocationTag(locationTagId);
+			locationTag = lookupCache.get(LocationTag.class, locationTagId);
 		if (locationTag != null) {
 			printMetadata(sb, locationTag);
 		}
 		
 		if (programId != null)
-			program = Context.getProgramWorkflowService().getProgram(programId);
+			program = lookupCache.get(Program.class, programId);
 		if (program != null) {
 			printProgram(sb, program);
 		}
 		
 		if (providerId != null)
-			provider = Context.getProviderService().getProvider(providerId);
+			provider = lookupCache.get(Provider.class, providerId);
 		if (provider != null)
 			printProvider(sb, provider);
 		
@@ -393,6 +408,16 @@ public class FormatTag extends TagSupport {
 	 * @should print the name with the correct name and type
 	 */
 	protected void printConcept(StringBuilder sb, Concept concept) {
+		String format = "concept," + withConceptNameType + "," + withConceptNameTag + "," + caseConversion;
+		String formatted = getLookupCache().getFormatted(concept, format);
+		if (formatted == null) {
+			formatted = formatConcept(concept);
+			getLookupCache().putFormatted(concept, format, formatted);
+		}
+		sb.append(formatted);
+	}
+	
+	private String formatConcept(Concept concept) {
 		Locale loc = Context.getLocale();
 		
 		if (withConceptNameType != null || withConceptNameTag != null) {
@@ -407,18 +432,24 @@ public class FormatTag extends TagSupport {
 				lookForNameTag = Context.getConceptService().getConceptNameTagByName(withConceptNameTag);
 			
 			ConceptName name = concept.getName(loc, lookForNameType, lookForNameTag);
-			if (name != null) {
-				sb.append(applyConversion(name.getName()));
-				return;
-			}
+			if (name != null)
+				return applyConversion(name.getName());
 		}
 		
 		ConceptName name = concept.getPreferredName(loc);
-		if (name != null) {
-			sb.append(applyConversion(name.getName()));
-			return;
-		}
-		sb.append(applyConversion(concept.getDisplayString()));
+		if (name != null)
+			return applyConversion(name.getName());
+		return applyConversion(concept.getDisplayString());
+	}
+	
+	/**
+	 * @return the cache of the current request, a cache that is not shared if the tag is used
+	 *         without a page
+	 */
+	private TagLookupCache getLookupCache() {
+		if (lookupCache == null)
+			lookupCache = TagLookupCache.getInstance(pageContext);
+		return lookupCache;
 	}
 	
 	/**
@@ -465,7 +496,13 @@ public class FormatTag extends TagSupport {
 	 */
 	private void printMetadata(StringBuilder sb, OpenmrsMetadata metadata) {
 		if (metadata != null) {
-			sb.append(applyConversion(metadata.getName()));
+			String format = "metadata," + caseConversion;
+			String formatted = getLookupCache().getFormatted(metadata, format);
+			if (formatted == null) {
+				formatted = applyConversion(metadata.getName());
+				getLookupCache().putFormatted(metadata, format, formatted);
+			}
+			sb.append(formatted);
 		}
 	}
 	
@@ -476,6 +513,13 @@ public class FormatTag extends TagSupport {
 	 * @param u
 	 */
 	private void printUser(StringBuilder sb, User u) {
+		String formatted = getLookupCache().getFormatted(u, "user");
+		if (formatted != null) {
+			sb.append(formatted);
+			return;
+		}
+		
+		int start = sb.length();
 		sb.append("<span class=\"user\">");
 		sb.append("<span class=\"username\">");
 		sb.append(u.getUsername());
@@ -486,6 +530,7 @@ public class FormatTag extends TagSupport {
 			sb.append("</span>");
 		}
 		sb.append("</span>");
+		getLookupCache().putFormatted(u, "user", sb.substring(start));
 	}
 	
 	/**
@@ -495,8 +540,14 @@ public class FormatTag extends TagSupport {
 	 * @param p
 	 */
 	private void printPerson(StringBuilder sb, Person p) {
-		if (p != null)
-			sb.append(p.getPersonName().getFullName());
+		if (p != null) {
+			String formatted = getLookupCache().getFormatted(p, "person");
+			if (formatted == null) {
+				formatted = p.getPersonName().getFullName();
+				getLookupCache().putFormatted(p, "person", formatted);
+			}
+			sb.append(formatted);
+		}
 	}
 	
 	/**
@@ -506,8 +557,14 @@ public class FormatTag extends TagSupport {
 	 * @param p the provider
 	 */
 	private void printProvider(StringBuilder sb, Provider p) {
-		if (p != null)
-			sb.append(getProviderName(p));
+		if (p != null) {
+			String formatted = getLookupCache().getFormatted(p, "provider");
+			if (formatted == null) {
+				formatted = getProviderName(p);
+				getLookupCache().putFormatted(p, "provider", formatted);
+			}
+			sb.append(formatted);
+		}
 	}
 	
 	/**
@@ -666,6 +723,7 @@ public class FormatTag extends TagSupport {
 		encounterProviders = null;
 		form = null;
 		singleCustomValue = null;
+		lookupCache = null;
 	}
 	
 	/**
@@ -27,9 +27,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
+import java.util.SortedMap;
 import java.util.StringTokenizer;
-import java.util.TreeSet;
+import java.util.TreeMap;
 
 import javax.servlet.jsp.JspWriter;
 import javax.servlet.jsp.tagext.TagSupport;
@@ -265,10 +265,10 @@ public class ObsTableWidget extends TagSupport {
 			log.debug("conceptList == " + conceptList);
 		}
 		
-		// organize obs of those concepts by Date and Concept
-		Set<Integer> conceptsWithObs = new HashSet<Integer>();
-		SortedSet<Date> dates = new TreeSet<Date>();
-		Map<String, List<Obs>> groupedObs = new HashMap<String, List<Obs>>(); // key is conceptId + "." + date
+		// organize obs of those concepts by Concept and Date in one pass, dates are keyed by their
+		// time because obs datetimes can be Timestamps, which are never equal to Dates
+		SortedMap<Long, Date> dates = new TreeMap<Long, Date>();
+		Map<Integer, Map<Long, List<Obs>>> groupedObs = new HashMap<Integer, Map<Long, List<Obs>>>();
 		for (Obs o : observations) {
 			Integer conceptId = o.getConcept().getConceptId();
 			if (conceptIds.contains(conceptId)) {
@@ -278,26 +278,31 @@ public class ObsTableWidget extends TagSupport {
 				        || (toDate != null && thisDate.compareTo(toDate) > 0)) {
 					continue;
 				}
-				dates.add(thisDate);
-				String key = conceptId + "." + thisDate;
-				List<Obs> group = groupedObs.get(key);
+				Long time = thisDate.getTime();
+				if (!dates.containsKey(time))
+					dates.put(time, thisDate);
+				Map<Long, List<Obs>> obsByDate = groupedObs.get(conceptId);
+				if (obsByDate == null) {
+					obsByDate = new HashMap<Long, List<Obs>>();
+					groupedObs.put(conceptId, obsByDate);
+				}
+				List<Obs> group = obsByDate.get(time);
 				if (group == null) {
 					group = new ArrayList<Obs>();
-					groupedObs.put(key, group);
+					obsByDate.put(time, group);
 				}
 				group.add(o);
-				conceptsWithObs.add(conceptId);
 			}
 		}
 		
 		if (!showEmptyConcepts) {
 			for (Iterator<Concept> i = conceptList.iterator(); i.hasNext();) {
-				if (!conceptsWithObs.contains(i.next().getConceptId()))
+				if (!groupedObs.containsKey(i.next().getConceptId()))
 					i.remove();
 			}
 		}
 		
-		List<Date> dateOrder = new ArrayList<Date>(dates);
+		List<Long> dateOrder = new ArrayList<Long>(dates.keySet());
 		if (sortDescending)
 			Collections.reverse(dateOrder);
 		
@@ -309,56 +314,73 @@ public class ObsTableWidget extends TagSupport {
 			}
 		}
 		
-		StringBuilder ret = new StringBuilder();
-		ret.append("<table");
-		if (id != null)
-			ret.append(" id=\"" + id + "\"");
-		if (cssClass != null)
-			ret.append(" class=\"" + cssClass + "\"");
-		ret.append(">");
+		// format every date and look up every concept name once, not once per cell
+		Map<Long, String> dateHeaders = new HashMap<Long, String>();
+		if (showDateHeader) {
+			for (Long time : dateOrder)
+				dateHeaders.put(time, df.format(dates.get(time)));
+		}
+		Map<Integer, String> conceptNames = new HashMap<Integer, String>();
+		if (showConceptHeader) {
+			for (Concept c : conceptList)
+				conceptNames.put(c.getConceptId(), getConceptName(loc, c));
+		}
 		
-		if (orientVertical) {
-			if (showConceptHeader) {
-				ret.append("<tr>");
-				ret.append("<th></th>");
-				for (Concept c : conceptList) {
-					showConceptHeader(loc, ret, c);
-				}
-				ret.append("</tr>");
-			}
-			for (Date date : dateOrder) {
-				ret.append("<tr>");
-				if (showDateHeader)
-					ret.append("<th>" + df.format(date) + "</th>");
-				for (Concept c : conceptList) {
-					showConcept(loc, groupedObs, ret, date, c);
-				}
-				ret.append("</tr>");
-			}
+		try {
+			JspWriter w = pageContext.getOut();
 			
-		} else { // horizontal
-			if (showDateHeader) {
-				ret.append("<tr>");
-				ret.append("<th></th>");
-				for (Date date : dateOrder) {
-					ret.append("<th>" + df.format(date) + "</th>");
-				}
-			}
-			for (Concept c : conceptList) {
-				ret.append("<tr>");
+			// every row is built in the same buffer and then written out
+			StringBuilder ret = new StringBuilder();
+			ret.append("<table");
+			if (id != null)
+				ret.append(" id=\"").append(id).append("\"");
+			if (cssClass != null)
+				ret.append(" class=\"").append(cssClass).append("\"");
+			ret.append(">");
+			
+			if (orientVertical) {
 				if (showConceptHeader) {
-					showConceptHeader(loc, ret, c);
+					ret.append("<tr>");
+					ret.append("<th></th>");
+					for (Concept c : conceptList) {
+						showConceptHeader(ret, c, conceptNames);
+					}
+					ret.append("</tr>");
 				}
-				for (Date date : dateOrder) {
-					showConcept(loc, groupedObs, ret, date, c);
+				for (Long date : dateOrder) {
+					w.write(ret.toString());
+					ret.setLength(0);
+					ret.append("<tr>");
+					if (showDateHeader)
+						ret.append("<th>").append(dateHeaders.get(date)).append("</th>");
+					for (Concept c : conceptList) {
+						showConcept(loc, groupedObs, ret, date, c);
+					}
+					ret.append("</tr>");
+				}
+				
+			} else { // horizontal
+				if (showDateHeader) {
+					ret.append("<tr>");
+					ret.append("<th></th>");
+					for (Long date : dateOrder) {
+						ret.append("<th>").append(dateHeaders.get(date)).append("</th>");
+					}
+				}
+				for (Concept c : conceptList) {
+					w.write(ret.toString());
+					ret.setLength(0);
+					ret.append("<tr>");
+					if (showConceptHeader) {
+						showConceptHeader(ret, c, conceptNames);
+					}
+					for (Long date : dateOrder) {
+						showConcept(loc, groupedObs, ret, date, c);
+					}
+					ret.append("</tr>");
 				}
-				ret.append("</tr>");
 			}
-		}
-		ret.append("</table>");
-		
-		try {
-			JspWriter w = pageContext.getOut();
+			ret.append("</table>");
 			w.println(ret);
 		}
 		catch (IOException ex) {
@@ -367,17 +389,18 @@ public class ObsTableWidget extends TagSupport {
 		return SKIP_BODY;
 	}
 	
-	private void showConcept(Locale loc, Map<String, List<Obs>> groupedObs, StringBuilder ret, Date date, Concept c) {
+	private void showConcept(Locale loc, Map<Integer, Map<Long, List<Obs>>> groupedObs, StringBuilder ret, Long date,
+	        Concept c) {
 		ret.append("<td align=\"center\">");
-		String key = c.getConceptId() + "." + date;
-		List<Obs> list = groupedObs.get(key);
-		showObservationsIfExists(loc, ret, list);
+		Map<Long, List<Obs>> obsByDate = groupedObs.get(c.getConceptId());
+		if (obsByDate != null)
+			showObservationsIfExists(loc, ret, obsByDate.get(date));
 		ret.append("</td>");
 	}
 	
 	private void showObservationsIfExists(Locale loc, StringBuilder ret, List<Obs> list) {
 		if (list != null) {
-			if (combineEqualResults) {
+			if (combineEqualResults && list.size() > 1) {
 				Collection<String> unique = new LinkedHashSet<String>();
 				for (Obs obs : list)
 					unique.add(obs.getValueAsString(loc));
@@ -390,13 +413,12 @@ public class ObsTableWidget extends TagSupport {
 		}
 	}
 	
-	private void showConceptHeader(Locale loc, StringBuilder ret, Concept c) {
-		String name = getConceptName(loc, c);
+	private void showConceptHeader(StringBuilder ret, Concept c, Map<Integer, String> conceptNames) {
 		ret.append("<th>");
 		if (conceptLink != null) {
-			ret.append("<a href=\"" + conceptLink + "conceptId=" + c.getConceptId() + "\">");
+			ret.append("<a href=\"").append(conceptLink).append("conceptId=").append(c.getConceptId()).append("\">");
 		}
-		ret.append(name);
+		ret.append(conceptNames.get(c.getConceptId()));
 		if (conceptLink != null) {
 			ret.append("</a>");
 		}
@@ -405,7 +427,7 @@ public class ObsTableWidget extends TagSupport {
 	
 	private String getConceptName(Locale loc, Concept c) {
 		ConceptName cn = c.getName();
-		return cn.getName();
+		return cn == null ? "" : cn.getName();
 	}
 	
 	public int doEndTag() {
@@ -0,0 +1,163 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.taglib;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.jsp.PageContext;
+
+import org.openmrs.Concept;
+import org.openmrs.Encounter;
+import org.openmrs.EncounterType;
+import org.openmrs.Location;
+import org.openmrs.LocationTag;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.Person;
+import org.openmrs.Program;
+import org.openmrs.Provider;
+import org.openmrs.User;
+import org.openmrs.Visit;
+import org.openmrs.VisitType;
+import org.openmrs.api.context.Context;
+
+/**
+ * Remembers the objects and formatted strings of the display tags for the length of one request,
+ * so that a listing page that shows the same user, location or concept in hundreds of rows only
+ * looks it up and formats it once. <br/>
+ * <br/>
+ * Objects are looked up one id at a time when a tag first needs them, so that a page only loads
+ * the rows it refers to and not whole tables. A formatted string is remembered by the uuid of the
+ * object, the locale of the user and a format naming the tag options it depends on.
+ * The cache is meant to be used by one request at a time and is not thread safe.
+ *
+ * @see FormatTag
+ * @since 1.10
+ */
+public class TagLookupCache {
+	
+	/**
+	 * The name of the request attribute the cache is kept in
+	 */
+	public static final String REQUEST_ATTRIBUTE = TagLookupCache.class.getName();
+	
+	private final Map<Class<?>, Map<Integer, Object>> objects = new HashMap<Class<?>, Map<Integer, Object>>();
+	
+	private final Map<String, String> formatted = new HashMap<String, String>();
+	
+	/**
+	 * Gets the cache of the request of the given page, and creates it if the request has none yet
+	 *
+	 * @param pageContext the page context of a tag, may be null
+	 * @return the cache of the request, or a new cache that is not shared if there is no request
+	 * @should return the same cache for the same request
+	 * @should return a new cache if there is no page context
+	 */
+	public static TagLookupCache getInstance(PageContext pageContext) {
+		ServletRequest request = pageContext == null ? null : pageContext.getRequest();
+		if (request == null)
+			return new TagLookupCache();
+		
+		TagLookupCache cache = (TagLookupCache) request.getAttribute(REQUEST_ATTRIBUTE);
+		if (cache == null) {
+			cache = new TagLookupCache();
+			request.setAttribute(REQUEST_ATTRIBUTE, cache);
+		}
+		return cache;
+	}
+	
+	/**
+	 * Gets an object by its id, loading it only if it was not looked up before
+	 *
+	 * @param type the type of the object, one of the types {@link FormatTag} looks up by id
+	 * @param id the id of the object
+	 * @return the object or null if there is none with that id
+	 * @should look up an object only once
+	 * @should return null for an id that does not exist
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends OpenmrsObject> T get(Class<T> type, Integer id) {
+		if (id == null)
+			return null;
+		
+		Map<Integer, Object> byId = objects.get(type);
+		if (byId == null) {
+			byId = new HashMap<Integer, Object>();
+			objects.put(type, byId);
+		}
+		
+		if (!byId.containsKey(id))
+			byId.put(id, load(type, id));
+		return (T) byId.get(id);
+	}
+	
+	/**
+	 * Gets the string an object was formatted to before
+	 *
+	 * @param object the formatted object
+	 * @param format names the kind of object and the options it was formatted with
+	 * @return the formatted string or null if the object was not formatted with that format yet
+	 */
+	public String getFormatted(OpenmrsObject object, String format) {
+		String key = getKey(object, format);
+		return key == null ? null : formatted.get(key);
+	}
+	
+	/**
+	 * Remembers the string an object was formatted to. Nothing is remembered for objects without a
+	 * uuid.
+	 *
+	 * @param object the formatted object
+	 * @param format names the kind of object and the options it was formatted with
+	 * @param value the formatted string
+	 */
+	public void putFormatted(OpenmrsObject object, String format, String value) {
+		String key = getKey(object, format);
+		if (key != null)
+			formatted.put(key, value);
+	}
+	
+	private String getKey(OpenmrsObject object, String format) {
+		if (object == null || object.getUuid() == null)
+			return null;
+		return format + "|" + Context.getLocale() + "|" + object.getUuid();
+	}
+	
+	private Object load(Class<?> type, Integer id) {
+		if (Concept.class.equals(type))
+			return Context.getConceptService().getConcept(id);
+		else if (User.class.equals(type))
+			return Context.getUserService().getUser(id);
+		else if (Person.class.equals(type))
+			return Context.getPersonService().getPerson(id);
+		else if (Encounter.class.equals(type))
+			return Context.getEncounterService().getEncounter(id);
+		else if (EncounterType.class.equals(type))
+			return Context.getEncounterService().getEncounterType(id);
+		else if (Visit.class.equals(type))
+			return Context.getVisitService().getVisit(id);
+		else if (VisitType.class.equals(type))
+			return Context.getVisitService().getVisitType(id);
+		else if (Location.class.equals(type))
+			return Context.getLocationService().getLocation(id);
+		else if (LocationTag.class.equals(type))
+			return Context.getLocationService().getLocationTag(id);
+		else if (Program.class.equals(type))
+			return Context.getProgramWorkflowService().getProgram(id);
+		else if (Provider.class.equals(type))
+			return Context.getProviderService().getProvider(id);
+		throw new IllegalArgumentException("Cannot look up objects of type " + type.getName() + " by id");
+	}
+}
@@ -21,7 +21,6 @@ import javax.servlet.jsp.tagext.TagSupport;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.User;
-import org.openmrs.api.context.Context;
 
 public class UserWidgetTag extends TagSupport {
 	
@@ -45,7 +44,7 @@ public class UserWidgetTag extends TagSupport {
 	}
 	
 	public int doStartTag() {
-		User user = Context.getUserService().getUser(userId);
+		User user = TagLookupCache.getInstance(pageContext).get(User.class, userId);
 		
 		try {
 			JspWriter w = pageContext.getOut();
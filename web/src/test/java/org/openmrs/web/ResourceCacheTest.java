@@ -0,0 +1,161 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.util.OpenmrsUtil;
+import org.openmrs.web.filter.GZIPResponseWrapper;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Tests methods on the {@link ResourceCache} class.
+ */
+public class ResourceCacheTest {
+	
+	private static final String CONTENT = "var x = 'cached';";
+	
+	private File file;
+	
+	@Before
+	public void createFile() throws Exception {
+		file = File.createTempFile("resourceCacheTest", ".js");
+		write(file, CONTENT.getBytes("UTF-8"));
+	}
+	
+	@After
+	public void deleteFile() {
+		file.delete();
+		ResourceCache.clear();
+	}
+	
+	/**
+	 * @see ResourceCache#load(String,URL,String)
+	 * @verifies read and cache the resource
+	 */
+	@Test
+	public void load_shouldReadAndCacheTheResource() throws Exception {
+		ResourceCache.Resource resource = ResourceCache.load("test", file.toURI().toURL(), "text/javascript");
+		Assert.assertEquals(CONTENT, new String(resource.getContent(), "UTF-8"));
+		Assert.assertEquals("text/javascript", resource.getContentType());
+		Assert.assertEquals(file.lastModified() / 1000 * 1000, resource.getLastModified());
+		Assert.assertSame(resource, ResourceCache.get("test"));
+	}
+	
+	/**
+	 * @see ResourceCache#load(String,URL,String)
+	 * @verifies not cache a resource that is too large
+	 */
+	@Test
+	public void load_shouldNotCacheAResourceThatIsTooLarge() throws Exception {
+		write(file, new byte[ResourceCache.MAX_RESOURCE_SIZE + 1]);
+		Assert.assertNull(ResourceCache.load("test", file.toURI().toURL(), null));
+		Assert.assertNull(ResourceCache.get("test"));
+	}
+	
+	/**
+	 * @see ResourceCache#serve(HttpServletRequest,HttpServletResponse,Resource,boolean)
+	 * @verifies send the resource with its etag and last modified date
+	 */
+	@Test
+	public void serve_shouldSendTheResourceWithItsEtagAndLastModifiedDate() throws Exception {
+		ResourceCache.Resource resource = ResourceCache.load("test", file.toURI().toURL(), "text/javascript");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ResourceCache.serve(new MockHttpServletRequest(), response, resource, true);
+		
+		Assert.assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		Assert.assertEquals(CONTENT, response.getContentAsString());
+		Assert.assertEquals(resource.getETag(), response.getHeader("ETag"));
+		Assert.assertEquals(resource.getLastModified(), response.getHeader("Last-Modified"));
+		Assert.assertEquals("public, max-age=" + ResourceCache.VERSIONED_MAX_AGE, response.getHeader("Cache-Control"));
+	}
+	
+	/**
+	 * @see ResourceCache#serve(HttpServletRequest,HttpServletResponse,Resource,boolean)
+	 * @verifies send not modified if the etag matches
+	 */
+	@Test
+	public void serve_shouldSendNotModifiedIfTheEtagMatches() throws Exception {
+		ResourceCache.Resource resource = ResourceCache.load("test", file.toURI().toURL(), "text/javascript");
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("If-None-Match", "\"other\", " + resource.getETag());
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ResourceCache.serve(request, response, resource, false);
+		
+		Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+		Assert.assertEquals(0, response.getContentAsByteArray().length);
+		Assert.assertNull(response.getHeader("Cache-Control"));
+	}
+	
+	/**
+	 * @see ResourceCache#serve(HttpServletRequest,HttpServletResponse,Resource,boolean)
+	 * @verifies send not modified if the resource was not modified since the given date
+	 */
+	@Test
+	public void serve_shouldSendNotModifiedIfTheResourceWasNotModifiedSinceTheGivenDate() throws Exception {
+		ResourceCache.Resource resource = ResourceCache.load("test", file.toURI().toURL(), "text/javascript");
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("If-Modified-Since", resource.getLastModified());
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ResourceCache.serve(request, response, resource, false);
+		Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+		
+		request = new MockHttpServletRequest();
+		request.addHeader("If-Modified-Since", resource.getLastModified() - 1000);
+		response = new MockHttpServletResponse();
+		ResourceCache.serve(request, response, resource, false);
+		Assert.assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+	}
+	
+	/**
+	 * @see ResourceCache#serve(HttpServletRequest,HttpServletResponse,Resource,boolean)
+	 * @verifies send the compressed resource if the response is compressed
+	 */
+	@Test
+	public void serve_shouldSendTheCompressedResourceIfTheResponseIsCompressed() throws Exception {
+		ResourceCache.Resource resource = ResourceCache.load("test", file.toURI().toURL(), "text/javascript");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		GZIPResponseWrapper gzipResponse = new GZIPResponseWrapper(response);
+		ResourceCache.serve(new MockHttpServletRequest(), gzipResponse, resource, false);
+		gzipResponse.finishResponse();
+		
+		Assert.assertEquals("gzip", response.getHeader("Content-Encoding"));
+		Assert.assertEquals(resource.getCompressedETag(), response.getHeader("ETag"));
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OpenmrsUtil.copyFile(in, out);
+		Assert.assertEquals(CONTENT, new String(out.toByteArray(), "UTF-8"));
+	}
+	
+	private void write(File f, byte[] content) throws Exception {
+		FileOutputStream out = new FileOutputStream(f);
+		try {
+			out.write(content);
+		}
+		finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.controller;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the methods in {@link PortletModel}
+ */
+public class PortletModelTest {
+	
+	/**
+	 * Counts how often it was asked to load its values
+	 */
+	private static class CountingLoader implements PortletModel.Loader {
+		
+		private int loads = 0;
+		
+		public void load(Map<String, Object> model) {
+			loads++;
+			model.put("first", "one");
+			model.put("second", "two");
+		}
+	}
+	
+	/**
+	 * @see {@link PortletModel#putLazy(PortletModel.Loader, String...)}
+	 */
+	@Test
+	@Verifies(value = "should load the values when one of them is first needed", method = "putLazy(Loader,String...)")
+	public void putLazy_shouldLoadTheValuesWhenOneOfThemIsFirstNeeded() throws Exception {
+		PortletModel model = new PortletModel();
+		CountingLoader loader = new CountingLoader();
+		model.putLazy(loader, "first", "second");
+		
+		Assert.assertEquals(0, loader.loads);
+		Assert.assertTrue(model.containsKey("second"));
+		Assert.assertEquals("two", model.get("second"));
+		Assert.assertEquals(1, loader.loads);
+		Assert.assertFalse(model.isLazy("first"));
+	}
+	
+	/**
+	 * @see {@link PortletModel#putLazy(PortletModel.Loader, String...)}
+	 */
+	@Test
+	@Verifies(value = "should load the values only once", method = "putLazy(Loader,String...)")
+	public void putLazy_shouldLoadTheValuesOnlyOnce() throws Exception {
+		PortletModel model = new PortletModel();
+		CountingLoader loader = new CountingLoader();
+		model.putLazy(loader, "first", "second");
+		
+		model.get("first");
+		model.get("second");
+		model.get("first");
+		Assert.assertEquals(1, loader.loads);
+	}
+	
+	/**
+	 * @see {@link PortletModel#putLazy(PortletModel.Loader, String...)}
+	 */
+	@Test
+	@Verifies(value = "should not register a loader for keys that already have a value", method = "putLazy(Loader,String...)")
+	public void putLazy_shouldNotRegisterALoaderForKeysThatAlreadyHaveAValue() throws Exception {
+		PortletModel model = new PortletModel();
+		model.put("first", "loaded before");
+		CountingLoader loader = new CountingLoader();
+		model.putLazy(loader, "first");
+		
+		Assert.assertEquals("loaded before", model.get("first"));
+		Assert.assertEquals(0, loader.loads);
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.servlet;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.util.OpenmrsUtil;
+import org.openmrs.web.test.BaseWebContextSensitiveTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Tests for the {@link ComplexObsServlet} class.
+ */
+public class ComplexObsServletTest extends BaseWebContextSensitiveTest {
+	
+	protected static final String COMPLEX_OBS_XML = "org/openmrs/api/include/ObsServiceTest-complex.xml";
+	
+	/**
+	 * @see {@link ComplexObsServlet#parseRange(String,long)}
+	 */
+	@Test
+	@Verifies(value = "should return null if there is no range", method = "parseRange(String,long)")
+	public void parseRange_shouldReturnNullIfThereIsNoRange() throws Exception {
+		Assert.assertNull(ComplexObsServlet.parseRange(null, 100));
+	}
+	
+	/**
+	 * @see {@link ComplexObsServlet#parseRange(String,long)}
+	 */
+	@Test
+	@Verifies(value = "should return null for multiple or invalid ranges", method = "parseRange(String,long)")
+	public void parseRange_shouldReturnNullForMultipleOrInvalidRanges() throws Exception {
+		Assert.assertNull(ComplexObsServlet.parseRange("bytes=0-9,20-29", 100));
+		Assert.assertNull(ComplexObsServlet.parseRange("bytes=a-b", 100));
+		Assert.assertNull(ComplexObsServlet.parseRange("bytes=20-10", 100));
+		Assert.assertNull(ComplexObsServlet.parseRange("lines=0-9", 100));
+	}
+	
+	/**
+	 * @see {@link ComplexObsServlet#parseRange(String,long)}
+	 */
+	@Test
+	@Verifies(value = "should return the first and last byte of the range", method = "parseRange(String,long)")
+	public void parseRange_shouldReturnTheFirstAndLastByteOfTheRange() throws Exception {
+		long[] range = ComplexObsServlet.parseRange("bytes=10-19", 100);
+		Assert.assertEquals(10, range[0]);
+		Assert.assertEquals(19, range[1]);
+	}
+	
+	/**
+	 * @see {@link ComplexObsServlet#parseRange(String,long)}
+	 */
+	@Test
+	@Verifies(value = "should limit the last byte to the end of the file", method = "parseRange(String,long)")
+	public void parseRange_shouldLimitTheLastByteToTheEndOfTheFile() throws Exception {
+		Assert.assertEquals(99, ComplexObsServlet.parseRange("bytes=10-200", 100)[1]);
+		Assert.assertEquals(99, ComplexObsServlet.parseRange("bytes=10-", 100)[1]);
+	}
+	
+	/**
+	 * @see {@link ComplexObsServlet#parseRange(String,long)}
+	 */
+	@Test
+	@Verifies(value = "should return the last bytes for a suffix range", method = "parseRange(String,long)")
+	public void parseRange_shouldReturnTheLastBytesForASuffixRange() throws Exception {
+		long[] range = ComplexObsServlet.parseRange("bytes=-30", 100);
+		Assert.assertEquals(70, range[0]);
+		Assert.assertEquals(99, range[1]);
+	}
+	
+	/**
+	 * @see {@link ComplexObsServlet#parseRange(String,long)}
+	 */
+	@Test
+	@Verifies(value = "should return an empty array if the range starts after the end of the file", method = "parseRange(String,long)")
+	public void parseRange_shouldReturnAnEmptyArrayIfTheRangeStartsAfterTheEndOfTheFile() throws Exception {
+		Assert.assertEquals(0, ComplexObsServlet.parseRange("bytes=100-", 100).length);
+	}
+	
+	/**
+	 * @see {@link ComplexObsServlet#doGet(javax.servlet.http.HttpServletRequest,javax.servlet.http.HttpServletResponse)}
+	 */
+	@Test
+	@Verifies(value = "should send the requested range of the file", method = "doGet(HttpServletRequest,HttpServletResponse)")
+	public void doGet_shouldSendTheRequestedRangeOfTheFile() throws Exception {
+		File file = createComplexObsFile("abcdefghij");
+		try {
+			MockHttpServletRequest request = new MockHttpServletRequest("GET", "/complexObsServlet");
+			request.setParameter("obsId", "45");
+			request.addHeader("Range", "bytes=2-4");
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			
+			new ComplexObsServlet().doGet(request, response);
+			
+			Assert.assertEquals(206, response.getStatus());
+			Assert.assertEquals("bytes 2-4/10", response.getHeader("Content-Range"));
+			Assert.assertEquals("cde", response.getContentAsString());
+		}
+		finally {
+			file.delete();
+		}
+	}
+	
+	/**
+	 * @see {@link ComplexObsServlet#doGet(javax.servlet.http.HttpServletRequest,javax.servlet.http.HttpServletResponse)}
+	 */
+	@Test
+	@Verifies(value = "should not send the file if the etag matches", method = "doGet(HttpServletRequest,HttpServletResponse)")
+	public void doGet_shouldNotSendTheFileIfTheEtagMatches() throws Exception {
+		File file = createComplexObsFile("abcdefghij");
+		try {
+			MockHttpServletRequest request = new MockHttpServletRequest("GET", "/complexObsServlet");
+			request.setParameter("obsId", "45");
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			new ComplexObsServlet().doGet(request, response);
+			Assert.assertEquals(200, response.getStatus());
+			Assert.assertEquals("abcdefghij", response.getContentAsString());
+			
+			request.addHeader("If-None-Match", response.getHeader("ETag"));
+			response = new MockHttpServletResponse();
+			new ComplexObsServlet().doGet(request, response);
+			
+			Assert.assertEquals(304, response.getStatus());
+			Assert.assertEquals(0, response.getContentAsByteArray().length);
+		}
+		finally {
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Creates the file of the text complex obs 45, it has to be deleted by the test because it
+	 * can't be rolled back
+	 */
+	private File createComplexObsFile(String text) throws Exception {
+		executeDataSet(COMPLEX_OBS_XML);
+		File complexObsDir = OpenmrsUtil.getDirectoryInApplicationDataDirectory(Context.getAdministrationService()
+		        .getGlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_COMPLEX_OBS_DIR));
+		File file = new File(complexObsDir, "sometext.txt");
+		Writer writer = new FileWriter(file);
+		writer.write(text);
+		writer.close();
+		return file;
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.taglib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Obs;
+
+public class ForEachObsTagTest {
+	
+	/**
+	 * @see ForEachObsTag#getComparator(String,boolean)
+	 * @verifies sort obs by a date property
+	 */
+	@Test
+	public void getComparator_shouldSortObsByADateProperty() throws Exception {
+		List<Obs> obs = createObs();
+		
+		Collections.sort(obs, ForEachObsTag.getComparator("obsDatetime", false));
+		Assert.assertEquals(2, obs.get(0).getObsId().intValue());
+		Assert.assertEquals(1, obs.get(2).getObsId().intValue());
+		
+		Collections.sort(obs, ForEachObsTag.getComparator("obsDatetime", true));
+		Assert.assertEquals(1, obs.get(0).getObsId().intValue());
+		Assert.assertEquals(2, obs.get(2).getObsId().intValue());
+	}
+	
+	/**
+	 * @see ForEachObsTag#getComparator(String,boolean)
+	 * @verifies sort obs without a value first
+	 */
+	@Test
+	public void getComparator_shouldSortObsWithoutAValueFirst() throws Exception {
+		List<Obs> obs = createObs();
+		
+		Collections.sort(obs, ForEachObsTag.getComparator("valueNumeric", false));
+		Assert.assertEquals(3, obs.get(0).getObsId().intValue());
+		Assert.assertEquals(2, obs.get(1).getObsId().intValue());
+		Assert.assertEquals(1, obs.get(2).getObsId().intValue());
+	}
+	
+	/**
+	 * @see ForEachObsTag#getComparator(String,boolean)
+	 * @verifies sort obs by any other property
+	 */
+	@Test
+	public void getComparator_shouldSortObsByAnyOtherProperty() throws Exception {
+		List<Obs> obs = createObs();
+		
+		Collections.sort(obs, ForEachObsTag.getComparator("valueText", true));
+		Assert.assertEquals(2, obs.get(0).getObsId().intValue());
+		Assert.assertEquals(3, obs.get(1).getObsId().intValue());
+		Assert.assertEquals(1, obs.get(2).getObsId().intValue());
+	}
+	
+	private List<Obs> createObs() {
+		List<Obs> obs = new ArrayList<Obs>();
+		obs.add(createObs(1, new Date(3000), 20.0, "a"));
+		obs.add(createObs(2, new Date(1000), 10.0, "c"));
+		obs.add(createObs(3, new Date(2000), null, "b"));
+		return obs;
+	}
+	
+	private Obs createObs(Integer obsId, Date obsDatetime, Double valueNumeric, String valueText) {
+		Obs obs = new Obs(obsId);
+		obs.setObsDatetime(obsDatetime);
+		obs.setValueNumeric(valueNumeric);
+		obs.setValueText(valueText);
+		return obs;
+	}
+}
@@ -23,6 +23,7 @@ import org.junit.Test;
 import org.openmrs.Concept;
 import org.openmrs.ConceptName;
 import org.openmrs.ConceptNameTag;
+import org.openmrs.Location;
 import org.openmrs.api.ConceptNameType;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.context.Context;
@@ -141,6 +142,48 @@ public class FormatTagTest extends BaseContextSensitiveTest {
 		checkStartTagEvaluation(pageContext, tag, Context.getFormService().getForm(1), "Basic Form (v0.1)");
 	}
 	
+	/**
+	 * @see FormatTag#doStartTag()
+	 * @verifies look up objects by id only once per request
+	 */
+	@Test
+	public void doStartTag_shouldLookUpObjectsByIdOnlyOncePerRequest() throws Exception {
+		FormatTag tag = new FormatTag();
+		PageContext pageContext = new MockPageContext();
+		tag.setPageContext(pageContext);
+		tag.setVar(ATTRIBUTE_OBJECT_VALUE);
+		tag.setLocationId(1);
+		tag.doStartTag();
+		Location location = tag.getLocation();
+		
+		Context.clearSession();
+		tag.doStartTag();
+		Assert.assertSame(location, tag.getLocation());
+		Assert.assertEquals("Unknown Location", pageContext.getAttribute(ATTRIBUTE_OBJECT_VALUE));
+	}
+	
+	/**
+	 * @see FormatTag#doStartTag()
+	 * @verifies format an object only once per request
+	 */
+	@Test
+	public void doStartTag_shouldFormatAnObjectOnlyOncePerRequest() throws Exception {
+		FormatTag tag = new FormatTag();
+		PageContext pageContext = new MockPageContext();
+		tag.setPageContext(pageContext);
+		tag.setVar(ATTRIBUTE_OBJECT_VALUE);
+		Location location = Context.getLocationService().getLocation(1);
+		checkStartTagEvaluation(pageContext, tag, location, "Unknown Location");
+		
+		location.setName("Renamed Location");
+		checkStartTagEvaluation(pageContext, tag, location, "Unknown Location");
+		
+		// the next request formats it again
+		pageContext = new MockPageContext();
+		tag.setPageContext(pageContext);
+		checkStartTagEvaluation(pageContext, tag, location, "Renamed Location");
+	}
+	
 	/**
 	 * This method checks correctness of start tag evaluation of given tag
 	 * 
@@ -0,0 +1,79 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.taglib;
+
+import javax.servlet.jsp.PageContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Location;
+import org.openmrs.User;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.springframework.mock.web.MockPageContext;
+
+public class TagLookupCacheTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see TagLookupCache#getInstance(PageContext)
+	 * @verifies return the same cache for the same request
+	 */
+	@Test
+	public void getInstance_shouldReturnTheSameCacheForTheSameRequest() throws Exception {
+		PageContext pageContext = new MockPageContext();
+		TagLookupCache cache = TagLookupCache.getInstance(pageContext);
+		Assert.assertSame(cache, TagLookupCache.getInstance(pageContext));
+		Assert.assertNotSame(cache, TagLookupCache.getInstance(new MockPageContext()));
+	}
+	
+	/**
+	 * @see TagLookupCache#getInstance(PageContext)
+	 * @verifies return a new cache if there is no page context
+	 */
+	@Test
+	public void getInstance_shouldReturnANewCacheIfThereIsNoPageContext() throws Exception {
+		TagLookupCache cache = TagLookupCache.getInstance(null);
+		Assert.assertNotNull(cache);
+		Assert.assertNotSame(cache, TagLookupCache.getInstance(null));
+	}
+	
+	/**
+	 * @see TagLookupCache#get(Class,Integer)
+	 * @verifies look up an object only once
+	 */
+	@Test
+	public void get_shouldLookUpAnObjectOnlyOnce() throws Exception {
+		TagLookupCache cache = TagLookupCache.getInstance(new MockPageContext());
+		User user = cache.get(User.class, 502);
+		Location location = cache.get(Location.class, 1);
+		Assert.assertEquals("butch", user.getUsername());
+		Assert.assertEquals("Unknown Location", location.getName());
+		
+		Context.clearSession();
+		Assert.assertSame(user, cache.get(User.class, 502));
+		Assert.assertSame(location, cache.get(Location.class, 1));
+	}
+	
+	/**
+	 * @see TagLookupCache#get(Class,Integer)
+	 * @verifies return null for an id that does not exist
+	 */
+	@Test
+	public void get_shouldReturnNullForAnIdThatDoesNotExist() throws Exception {
+		TagLookupCache cache = TagLookupCache.getInstance(new MockPageContext());
+		Assert.assertNull(cache.get(User.class, 99999));
+		Assert.assertNull(cache.get(Location.class, 99999));
+		Assert.assertNull(cache.get(Location.class, null));
+	}
+}
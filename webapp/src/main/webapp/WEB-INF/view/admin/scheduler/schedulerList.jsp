@@ -59,6 +59,9 @@
 										<c:if test="${task.startTime!=null}">
 											<i><openmrs:message code="Scheduler.list.runsAgainIn" arguments="${task.secondsUntilNextExecutionTime}"/></i>
 										</c:if>
+										<c:if test="${not empty statuses[task]}">
+											<br/><i><c:out value="${statuses[task]}"/></i>
+										</c:if>
 									</c:when>
 									<c:otherwise>
 										<font color="red"><strong><openmrs:message code="Scheduler.list.stopped"/></strong></font>